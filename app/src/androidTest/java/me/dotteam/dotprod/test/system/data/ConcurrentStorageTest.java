@@ -0,0 +1,182 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeDataDirector;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+
+/**
+ * Stress test of the PersistentStorageEntity used by a writer and a reader at the same time,
+ * the way a session save and the past hikes list do.
+ * Test:
+ * - Write-Ahead Logging is enabled and the DBAssistant is shared
+ * - Reads keep completing, without errors, while sessions are being saved
+ * - Asynchronous loads of different hikes at the same time each get their own hike
+ * Reader latency is written to the log under the BENCH tag.
+ */
+public class ConcurrentStorageTest extends ApplicationTestCase<Application> {
+
+    public static final int SESSIONS=20;
+    public static final int POINTS_PER_SESSION=5000;
+
+    private RenamingDelegatingContext testContext;
+    private PersistentStorageEntity writer;
+    private PersistentStorageEntity reader;
+
+    public ConcurrentStorageTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        testContext = new RenamingDelegatingContext(getContext(),"stress_");
+        writer = new PersistentStorageEntity(testContext);
+        writer.reset();
+        reader = new PersistentStorageEntity(testContext);
+    }
+
+    public void testSharedWriteAheadLog() throws Exception{
+        assertSame(DBAssistant.getInstance(testContext), DBAssistant.getInstance(testContext));
+
+        Cursor cursor = DBAssistant.getInstance(testContext).getReadableDatabase()
+                .rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(cursor.getString(0).toLowerCase(), "wal");
+        cursor.close();
+    }
+
+    public void testReaderAndWriterTogether() throws Exception{
+        //Something to read from the start
+        assertTrue(writer.saveSession(buildSession(new Random(1), POINTS_PER_SESSION)));
+        final int firstHike = writer.getHikesList().get(0).getUniqueID();
+
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        final long[] readStats = new long[2]; //Reads done, slowest read in nanoseconds
+
+        Thread writerThread = new Thread(){
+            @Override
+            public void run(){
+                try {
+                    Random prng = new Random(2);
+                    for (int i = 0; i < SESSIONS; i++) {
+                        if(!writer.saveSession(buildSession(prng, POINTS_PER_SESSION))){
+                            throw new AssertionError("Save "+i+" failed");
+                        }
+                    }
+                }
+                catch (Throwable e){
+                    failure.compareAndSet(null, e);
+                }
+                finally {
+                    writing.set(false);
+                    done.countDown();
+                }
+            }
+        };
+
+        Thread readerThread = new Thread(){
+            @Override
+            public void run(){
+                try {
+                    while (writing.get()){
+                        long start = System.nanoTime();
+                        List<Hike> hikes = reader.getHikesList();
+                        List<Coordinates> track = reader.retrieveCoordinates(firstHike);
+                        long elapsed = System.nanoTime() - start;
+
+                        if(hikes==null || hikes.isEmpty() || track==null || track.size()!=POINTS_PER_SESSION){
+                            throw new AssertionError("Inconsistent read while writing");
+                        }
+                        ++readStats[0];
+                        readStats[1] = Math.max(readStats[1], elapsed);
+                    }
+                }
+                catch (Throwable e){
+                    failure.compareAndSet(null, e);
+                }
+                finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        writerThread.start();
+        readerThread.start();
+        done.await();
+
+        if(failure.get()!=null){
+            throw new AssertionError(failure.get());
+        }
+        Log.i(PersistentStorageBenchmarkTest.TAG, String.format(
+                "Concurrent access: %d reads during %d saves of %d points, slowest read %d ms",
+                readStats[0], SESSIONS, POINTS_PER_SESSION, readStats[1]/1000000));
+
+        assertTrue(readStats[0] > 0);
+        assertEquals(reader.getHikesList().size(), SESSIONS + 1);
+    }
+
+    public void testAsyncLoadsOfDifferentHikes() throws Exception{
+        Random prng = new Random(3);
+        assertTrue(writer.saveSession(buildSession(prng, POINTS_PER_SESSION)));
+        assertTrue(writer.saveSession(buildSession(prng, POINTS_PER_SESSION)));
+        List<Hike> hikes = writer.getHikesList();
+        int firstHike = hikes.get(0).getUniqueID();
+        int secondHike = hikes.get(1).getUniqueID();
+
+        HikeDataDirector director = HikeDataDirector.getInstance(testContext);
+        try {
+            for (int i = 0; i < 20; i++) {
+                //A fresh store every time, so neither load is served from the session cache
+                director.setHikeStore(new PersistentStorageEntity(testContext));
+                Future<SessionData> first = director.retrieveSessionFromHikeAsync(firstHike, null);
+                Future<SessionData> second = director.retrieveSessionFromHikeAsync(secondHike, null);
+                assertEquals(first.get().hikeID(), firstHike);
+                assertEquals(second.get().hikeID(), secondHike);
+            }
+        }
+        finally {
+            director.setHikeStore(null);
+        }
+    }
+
+    private SessionData buildSession(Random prng, int pointCount){
+        Hike aHike = new Hike();
+        aHike.start();
+        EnvData someData = new EnvData();
+        LocationPoints someCoordinates = new LocationPoints();
+        for (int i = 0; i < pointCount; i++) {
+            someCoordinates.addPoint(new Coordinates(
+                    prng.nextDouble(), prng.nextDouble(), prng.nextDouble(), i*1000L));
+        }
+        someData.updateTemp(20+prng.nextDouble());
+        someData.updateHumidity(50+prng.nextDouble());
+        someData.updatePressure(1000+prng.nextDouble());
+        aHike.end();
+        return new SessionData(aHike,new StepCount(pointCount),someData,someCoordinates);
+    }
+
+    protected void tearDown() throws Exception{
+        writer.reset();
+        super.tearDown();
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Random;
 
 import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.StorageValues;
 
 /**
  * Full Unit Test of the Coordinate Class.
@@ -52,7 +53,7 @@ public class CoordinatesTest extends ApplicationTestCase<Application> {
     }
 
     public void testSerialization() throws Exception{
-        ContentValues serialized = subject.toStorage(id);
+        ContentValues serialized = StorageValues.of(subject,id);
         Assert.assertTrue(serialized.containsKey(DBAssistant.HIKE_ID));
         Assert.assertTrue(serialized.containsKey(DBAssistant.LAT_COL));
         Assert.assertTrue(serialized.containsKey(DBAssistant.LONG_COL));
@@ -1,16 +1,22 @@
 package me.dotteam.dotprod.test.system.data;
 
 import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.test.ApplicationTestCase;
 import android.test.RenamingDelegatingContext;
 
 import java.io.File;
+import java.util.List;
 
+import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.StorageValues;
 
 /**
  * Unit Test of DBAssistant Class
- * Tests only the methods required for Creation and Destruction
+ * Tests the methods required for Creation and Destruction, and migration of older versions
  */
 public class DBAssistantTest extends ApplicationTestCase<Application> {
 
@@ -42,4 +48,35 @@ public class DBAssistantTest extends ApplicationTestCase<Application> {
         assertTrue(physicalDB.exists());
     }
 
+    public void testMigrationFromVersion2() throws Exception{
+        final int pointCount = 2500;
+        SQLiteDatabase db = subject.getWritableDatabase();
+        //Recreate the version 2 layout, where every coordinate was a row
+        db.execSQL(DBAssistant.SCHEME_DESTROY + DBAssistant.TRACKS);
+        db.execSQL(DBAssistant.SCHEME_DESTROY + DBAssistant.SUMMARY);
+        db.execSQL(DBAssistant.SCHEME_DESTROY + DBAssistant.CELLS);
+        db.execSQL(DBAssistant.SCHEME_DESTROY + DBAssistant.SERIES);
+        db.execSQL(DBAssistant.SCHEME_CREATE_COORDS_TABLE);
+        db.execSQL("INSERT INTO " + DBAssistant.HIKE + " (id, " + DBAssistant.HIKE_START + ", " + DBAssistant.HIKE_END + ") VALUES (1, 10, 20)");
+        for (int i = 0; i < pointCount; i++) {
+            db.insert(DBAssistant.COORDS, null, StorageValues.of(new Coordinates(i, -i, i * 0.5), 1));
+        }
+
+        subject.onUpgrade(db, 2, DBAssistant.SCHEME_VERSION);
+
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE name=?", new String[]{DBAssistant.COORDS});
+        assertEquals(cursor.getCount(), 0);
+        cursor.close();
+
+        List<Coordinates> migrated = new PersistentStorageEntity(testContext).retrieveCoordinates(1);
+        assertNotNull(migrated);
+        assertEquals(migrated.size(), pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            assertEquals(migrated.get(i).getLongitude(), (double) i);
+            assertEquals(migrated.get(i).getLatitude(), (double) -i);
+        }
+
+        new PersistentStorageEntity(testContext).reset();
+    }
+
 }
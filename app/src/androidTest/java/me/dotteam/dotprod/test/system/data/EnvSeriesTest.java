@@ -0,0 +1,95 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.dotteam.dotprod.data.EnvSample;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.EnvSeriesCodec;
+
+/**
+ * Unit Test of the EnvSeries and EnvSeriesCodec classes
+ * Tests:
+ * - Readings are kept raw and aggregated into the 10 s and 1 min tiers
+ * - Open intervals are only aggregated when asked to
+ * - Tier chosen for a resolution
+ * - Encoding round trip of raw and aggregated samples
+ */
+public class EnvSeriesTest extends ApplicationTestCase<Application> {
+
+    public EnvSeriesTest(){
+        super(Application.class);
+    }
+
+    public void testTiers() throws Exception{
+        EnvSeries subject = new EnvSeries(EnvSeries.TEMPERATURE);
+        //One reading a second for 2.5 minutes, rising by 0.1 degree each time
+        for (int i = 0; i < 150; i++) {
+            subject.addSample(i*1000L, 20 + i*0.1);
+        }
+
+        List<EnvSeries.Batch> batches = new ArrayList<>();
+        subject.takePending(false, batches);
+        assertEquals(batches.size(), 3);
+        assertEquals(batches.get(EnvSeries.TIER_RAW).samples.size(), 150);
+        //The interval being recorded stays open
+        assertEquals(batches.get(EnvSeries.TIER_10S).samples.size(), 14);
+        assertEquals(batches.get(EnvSeries.TIER_1MIN).samples.size(), 2);
+
+        EnvSample firstMinute = batches.get(EnvSeries.TIER_1MIN).samples.get(0);
+        assertEquals(firstMinute.getTime(), 0);
+        assertEquals(firstMinute.getCount(), 60);
+        assertEquals(firstMinute.getMin(), 20.0, 1e-9);
+        assertEquals(firstMinute.getMax(), 25.9, 1e-9);
+        assertEquals(firstMinute.getAvg(), 22.95, 1e-9);
+
+        //Nothing is taken twice, and open intervals are closed at the end
+        batches.clear();
+        subject.takePending(true, batches);
+        assertEquals(batches.size(), 2);
+        assertEquals(batches.get(0).tier, EnvSeries.TIER_10S);
+        assertEquals(batches.get(0).samples.get(0).getTime(), 140000);
+        assertEquals(batches.get(1).tier, EnvSeries.TIER_1MIN);
+        assertEquals(batches.get(1).samples.get(0).getCount(), 30);
+    }
+
+    public void testTierFor() throws Exception{
+        assertEquals(EnvSeries.tierFor(0), EnvSeries.TIER_RAW);
+        assertEquals(EnvSeries.tierFor(9999), EnvSeries.TIER_RAW);
+        assertEquals(EnvSeries.tierFor(10000), EnvSeries.TIER_10S);
+        assertEquals(EnvSeries.tierFor(30000), EnvSeries.TIER_10S);
+        assertEquals(EnvSeries.tierFor(3600000), EnvSeries.TIER_1MIN);
+    }
+
+    public void testCodec() throws Exception{
+        List<EnvSample> raw = new ArrayList<>();
+        List<EnvSample> aggregated = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            raw.add(new EnvSample(1447000000000L + i*1013L, 1013.25 - i*0.007));
+            aggregated.add(new EnvSample(1447000000000L + i*10000L, -5.5 + i*0.01, -5 + i*0.01, -4.25 + i*0.01, 1 + i%12));
+        }
+
+        byte[] rawData = EnvSeriesCodec.encode(EnvSeries.TIER_RAW, raw, 0, raw.size());
+        List<EnvSample> rawDecoded = new ArrayList<>();
+        EnvSeriesCodec.decode(EnvSeries.TIER_RAW, rawData, raw.size(), rawDecoded);
+        //A 64 bit time and value would take 16 bytes per sample
+        assertTrue(rawData.length < raw.size()*6);
+
+        byte[] aggregatedData = EnvSeriesCodec.encode(EnvSeries.TIER_10S, aggregated, 0, aggregated.size());
+        List<EnvSample> aggregatedDecoded = new ArrayList<>();
+        EnvSeriesCodec.decode(EnvSeries.TIER_10S, aggregatedData, aggregated.size(), aggregatedDecoded);
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(rawDecoded.get(i).getTime(), raw.get(i).getTime());
+            assertEquals(rawDecoded.get(i).getAvg(), raw.get(i).getAvg(), 0.0005);
+            assertEquals(aggregatedDecoded.get(i).getTime(), aggregated.get(i).getTime());
+            assertEquals(aggregatedDecoded.get(i).getMin(), aggregated.get(i).getMin(), 0.0005);
+            assertEquals(aggregatedDecoded.get(i).getAvg(), aggregated.get(i).getAvg(), 0.0005);
+            assertEquals(aggregatedDecoded.get(i).getMax(), aggregated.get(i).getMax(), 0.0005);
+            assertEquals(aggregatedDecoded.get(i).getCount(), aggregated.get(i).getCount());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Random;
 
 import me.dotteam.dotprod.data.DBAssistant;
 import me.dotteam.dotprod.data.EnvStatistic;
+import me.dotteam.dotprod.data.StorageValues;
 
 /**
  * Unit Test of EnvStatistic Class
@@ -87,7 +88,7 @@ public class EnvStatisticTest extends ApplicationTestCase<Application> {
 
     public void testSerialization() throws Exception{
         testInsertion();
-        ContentValues serialized = subject.toStorage(id);
+        ContentValues serialized = StorageValues.of(subject,id);
         assertTrue(serialized.containsKey(DBAssistant.HIKE_ID));
         assertTrue(serialized.containsKey(DBAssistant.AVG_COL));
         assertTrue(serialized.containsKey(DBAssistant.MAX_COL));
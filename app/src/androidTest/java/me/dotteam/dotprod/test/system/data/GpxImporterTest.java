@@ -0,0 +1,200 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.EnvSample;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.GpxImporter;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeExporter;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+
+/**
+ * Unit Test of the GpxImporter class
+ * Tests:
+ * - Round trip of a hike through the GPX exporter and importer
+ * - Import of a document from another device, with several tracks, waypoints and per point temperatures
+ * - Cancellation, keeping only the hikes completely imported
+ * - Malformed documents, leaving no partial hike behind
+ */
+public class GpxImporterTest extends ApplicationTestCase<Application> {
+
+    public static final long START_TIME=1447000000000L;
+
+    private PersistentStorageEntity pse;
+    private GpxImporter subject;
+
+    public GpxImporterTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        pse = new PersistentStorageEntity(new RenamingDelegatingContext(getContext(),"test_"));
+        pse.reset();
+        subject = new GpxImporter(pse);
+    }
+
+    public void testRoundTrip() throws Exception{
+        //More than a batch, so the hike is written in several transactions
+        int pointCount = GpxImporter.BATCH_POINTS + 500;
+        SessionData original = buildSession("Round trip", pointCount);
+        assertTrue(pse.saveSession(original));
+        StringWriter out = new StringWriter();
+        new HikeExporter(pse).exportHike(original.hikeID(), out, HikeExporter.FORMAT_GPX);
+
+        List<Integer> imported = subject.importGpx(streamOf(out.toString()), -1, null);
+        assertEquals(imported.size(), 1);
+
+        SessionData copy = pse.loadHikeData(imported.get(0));
+        assertEquals(copy.hikeNickName(), "Round trip");
+        assertEquals(copy.hikeStartTime(), START_TIME);
+        assertEquals(copy.hikeEndTime(), START_TIME + (pointCount-1)*1000L);
+        assertEquals(copy.getStepCount().getStepsTaken(), pointCount);
+        assertEquals(copy.getCurrentStats().getTemperature().getMax(),
+                original.getCurrentStats().getTemperature().getMax(), 0.01);
+        assertEquals(copy.getSummary().getDistance(), original.getSummary().getDistance(), 0.5);
+
+        List<Coordinates> points = copy.getGeoPoints().getCoordinateList();
+        assertEquals(points.size(), pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            Coordinates expected = original.getGeoPoints().getCoordinateList().get(i);
+            assertEquals(points.get(i).getLatitude(), expected.getLatitude(), 1e-7);
+            assertEquals(points.get(i).getLongitude(), expected.getLongitude(), 1e-7);
+            assertEquals(points.get(i).getTime(), expected.getTime());
+        }
+
+        //Found by the spatial index
+        assertEquals(pse.findHikesNear(45.5, -73.5, 100).size(), 2);
+        assertTrue(pse.getOpenHikes().isEmpty());
+    }
+
+    public void testForeignDocument() throws Exception{
+        StringBuilder document = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"Other\" xmlns=\"http://www.topografix.com/GPX/1/1\""
+                + " xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v1\">\n"
+                + "<metadata><name>Trip</name><time>2015-01-01T00:00:00Z</time></metadata>\n"
+                + "<wpt lat=\"10\" lon=\"10\"><name>Lookout</name></wpt>\n");
+        for (int track = 0; track < 2; track++) {
+            document.append("<trk><name>Track ").append(track).append("</name><trkseg>\n");
+            for (int i = 0; i < 120; i++) {
+                document.append("<trkpt lat=\"").append(45 + i*0.0001).append("\" lon=\"-73.5\"><ele>100</ele>")
+                        .append("<time>2015-11-08T16:").append(26 + i/60).append(':').append(pad(i%60))
+                        .append(".000Z</time><extensions><gpxtpx:TrackPointExtension><gpxtpx:atemp>")
+                        .append(10 + i%10).append("</gpxtpx:atemp></gpxtpx:TrackPointExtension></extensions></trkpt>\n");
+                if(i==59){
+                    //A second segment, joined to the first
+                    document.append("</trkseg><trkseg>\n");
+                }
+            }
+            document.append("</trkseg></trk>\n");
+        }
+        document.append("</gpx>\n");
+
+        List<Integer> imported = subject.importGpx(streamOf(document.toString()), document.length(), null);
+        assertEquals(imported.size(), 2);
+        SessionData second = pse.loadHikeData(imported.get(1));
+        assertEquals(second.hikeNickName(), "Track 1");
+        assertEquals(second.getGeoPoints().getCoordinateList().size(), 120);
+        //16:26:00
+        assertEquals(second.hikeStartTime(), START_TIME - 40000);
+        assertEquals(second.getCurrentStats().getTemperature().getMax(), 19.0, 1e-9);
+
+        List<EnvSample> temperatures = pse.loadSeries(imported.get(0), EnvSeries.TEMPERATURE,
+                START_TIME - 40000, START_TIME + 80000, 0);
+        assertEquals(temperatures.size(), 120);
+        assertEquals(temperatures.get(3).getAvg(), 13.0, 0.001);
+    }
+
+    public void testCancel() throws Exception{
+        StringWriter out = new StringWriter();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pse.saveSession(buildSession("Hike" + i, GpxImporter.BATCH_POINTS*2)));
+        }
+        new HikeExporter(pse).exportAll(out, HikeExporter.FORMAT_GPX);
+        pse.reset();
+
+        final int[] progressCalls = {0};
+        List<Integer> imported = subject.importGpx(streamOf(out.toString()), out.getBuffer().length(),
+                new GpxImporter.Listener() {
+                    @Override
+                    public void onProgress(long bytesRead, long totalBytes) {
+                        assertTrue(bytesRead<=totalBytes);
+                        progressCalls[0]++;
+                    }
+
+                    @Override
+                    public void onHikeImported(int hikeID, long pointCount) {
+                        subject.cancel();
+                    }
+                });
+        assertTrue(subject.isCancelled());
+        assertEquals(imported.size(), 1);
+        assertTrue(progressCalls[0]>=2);
+        assertEquals(pse.getHikesList().size(), 1);
+        assertTrue(pse.getOpenHikes().isEmpty());
+    }
+
+    public void testMalformed() throws Exception{
+        StringWriter out = new StringWriter();
+        //Hikes starting together are exported most recently stored first
+        assertTrue(pse.saveSession(buildSession("Second", GpxImporter.BATCH_POINTS*2)));
+        assertTrue(pse.saveSession(buildSession("First", 10)));
+        new HikeExporter(pse).exportAll(out, HikeExporter.FORMAT_GPX);
+        pse.reset();
+
+        //Cut in the middle of the second track, after its first batch was written
+        String document = out.toString();
+        String truncated = document.substring(0, document.length()*3/4);
+        try {
+            subject.importGpx(streamOf(truncated), -1, null);
+            fail("A truncated document should not be accepted");
+        }
+        catch (XmlPullParserException e){
+            //Expected
+        }
+        assertEquals(pse.getHikesList().size(), 1);
+        assertTrue(pse.getOpenHikes().isEmpty());
+    }
+
+    private static String pad(int value){
+        return value<10 ? "0" + value : Integer.toString(value);
+    }
+
+    private static InputStream streamOf(String document) throws Exception{
+        return new ByteArrayInputStream(document.getBytes("UTF-8"));
+    }
+
+    private SessionData buildSession(String name, int pointCount){
+        Hike aHike = new Hike(-1, START_TIME, START_TIME + (pointCount-1)*1000L);
+        aHike.setNickName(name);
+        EnvData someData = new EnvData();
+        LocationPoints someCoordinates = new LocationPoints();
+        for (int i = 0; i < pointCount; i++) {
+            someCoordinates.addPoint(new Coordinates(-73.5 + i*0.000001, 45.5 + i*0.000002, 100 + i%7, START_TIME + i*1000L));
+            someData.updateTemp(20 + i%5);
+            someData.updateHumidity(50 + i%3);
+            someData.updatePressure(1000 + i%4);
+        }
+        return new SessionData(aHike, new StepCount(pointCount), someData, someCoordinates);
+    }
+
+    protected void tearDown() throws Exception{
+        pse.reset();
+        super.tearDown();
+    }
+}
@@ -0,0 +1,89 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.HikeCellIndex;
+
+/**
+ * Unit Test of the HikeCellIndex class
+ * Tests:
+ * - Cells of a track at both levels
+ * - Segments between distant points are indexed
+ * - GPS jumps only get coarse cells
+ * - Query ranges cover the cells of the area, at the right level
+ */
+public class HikeCellIndexTest extends ApplicationTestCase<Application> {
+
+    public HikeCellIndexTest(){
+        super(Application.class);
+    }
+
+    public void testEmptyTrack() throws Exception{
+        assertTrue(HikeCellIndex.of(null).getCells().isEmpty());
+    }
+
+    public void testSingleCell() throws Exception{
+        List<Coordinates> track = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            track.add(new Coordinates(-73.6011 + i*0.0001, 45.5011 + i*0.0001, 0));
+        }
+        HikeCellIndex subject = HikeCellIndex.of(track);
+
+        //One fine and one coarse cell
+        assertEquals(subject.getCells().size(), 2);
+        assertTrue(subject.getCells().contains(
+                HikeCellIndex.cellOf(HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.5011, -73.6011)));
+        assertTrue(subject.getCells().contains(
+                HikeCellIndex.cellOf(HikeCellIndex.COARSE_LEVEL, HikeCellIndex.COARSE_SCALE, 45.5011, -73.6011)));
+    }
+
+    public void testSegments() throws Exception{
+        List<Coordinates> track = new ArrayList<>();
+        //0.1 degree east along one row: every fine cell in between is indexed
+        track.add(new Coordinates(-73.605, 45.505, 0));
+        track.add(new Coordinates(-73.505, 45.505, 0));
+        HikeCellIndex subject = HikeCellIndex.of(track);
+        for (int i = 0; i <= 10; i++) {
+            assertTrue(subject.getCells().contains(HikeCellIndex.cellOf(
+                    HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.505, -73.605 + i*0.01)));
+        }
+
+        //A jump of two degrees only crosses coarse cells
+        track.add(new Coordinates(-71.505, 45.505, 0));
+        subject = HikeCellIndex.of(track);
+        assertFalse(subject.getCells().contains(HikeCellIndex.cellOf(
+                HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.505, -72.505)));
+        assertTrue(subject.getCells().contains(HikeCellIndex.cellOf(
+                HikeCellIndex.COARSE_LEVEL, HikeCellIndex.COARSE_SCALE, 45.505, -72.505)));
+    }
+
+    public void testRanges() throws Exception{
+        //About 2 km around a point: a few rows of fine cells
+        List<long[]> ranges = HikeCellIndex.rangesNear(45.5, -73.6, 2000);
+        assertTrue(ranges.size() < HikeCellIndex.MAX_FINE_ROWS);
+        long inside = HikeCellIndex.cellOf(HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.51, -73.59);
+        long outside = HikeCellIndex.cellOf(HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.6, -73.59);
+        assertTrue(covers(ranges, inside));
+        assertFalse(covers(ranges, outside));
+
+        //A whole province: coarse cells
+        ranges = HikeCellIndex.rangesOf(44, -80, 50, -70);
+        assertEquals(ranges.size(), 7);
+        assertTrue(covers(ranges, HikeCellIndex.cellOf(HikeCellIndex.COARSE_LEVEL, HikeCellIndex.COARSE_SCALE, 45.5, -73.6)));
+        assertFalse(covers(ranges, HikeCellIndex.cellOf(HikeCellIndex.FINE_LEVEL, HikeCellIndex.FINE_SCALE, 45.5, -73.6)));
+    }
+
+    private boolean covers(List<long[]> ranges, long cell){
+        for (long[] range : ranges) {
+            if(cell >= range[0] && cell <= range[1]){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,6 +6,7 @@ import android.test.ApplicationTestCase;
 
 import me.dotteam.dotprod.data.DBAssistant;
 import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.StorageValues;
 
 /**
  * Unit Test of Hike Class
@@ -60,7 +61,7 @@ public class HikeClassTest extends ApplicationTestCase<Application> {
     public void testSerialization() throws Exception{
         testTime();
         subject.setUniqueID(Integer.MAX_VALUE);
-        ContentValues serialized = subject.toStorage();
+        ContentValues serialized = StorageValues.of(subject);
 
         assertTrue(serialized.containsKey(DBAssistant.HIKE_START));
         assertTrue(serialized.containsKey(DBAssistant.HIKE_END));
@@ -0,0 +1,219 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeExporter;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+import me.dotteam.dotprod.data.TrackFormatWriter;
+
+/**
+ * Unit Test of the HikeExporter class
+ * Tests:
+ * - GPX export of a stored hike, with its points, name and statistics
+ * - TCX export of a stored hike, with its lap totals
+ * - TCX export of points without a time, spread over the hike or left out with their Track
+ * - Export of the whole history into one document
+ * - Numbers written without exponents, names escaped
+ */
+public class HikeExporterTest extends ApplicationTestCase<Application> {
+
+    public static final int POINT_COUNT=1500;
+    public static final long START_TIME=1447000000000L;
+
+    private PersistentStorageEntity pse;
+    private HikeExporter subject;
+
+    public HikeExporterTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        pse = new PersistentStorageEntity(new RenamingDelegatingContext(getContext(),"test_"));
+        pse.reset();
+        subject = new HikeExporter(pse);
+    }
+
+    public void testGpx() throws Exception{
+        SessionData session = buildSession("Mont <Royal> & co", POINT_COUNT);
+        assertTrue(pse.saveSession(session));
+
+        StringWriter out = new StringWriter();
+        assertEquals(subject.exportHike(session.hikeID(), out, HikeExporter.FORMAT_GPX), POINT_COUNT);
+
+        XmlPullParser parser = parserOf(out);
+        int points = 0;
+        String name = null;
+        boolean hasTemperature = false;
+        while (parser.next()!=XmlPullParser.END_DOCUMENT){
+            if(parser.getEventType()!=XmlPullParser.START_TAG){
+                continue;
+            }
+            if(parser.getName().equals("trkpt")){
+                Coordinates expected = session.getGeoPoints().getCoordinateList().get(points);
+                assertEquals(Double.parseDouble(parser.getAttributeValue(null, "lat")), expected.getLatitude(), 1e-7);
+                assertEquals(Double.parseDouble(parser.getAttributeValue(null, "lon")), expected.getLongitude(), 1e-7);
+                points++;
+            }
+            else if(parser.getName().equals("name") && name==null){
+                name = parser.nextText();
+            }
+            else if(parser.getName().equals("temperature")){
+                hasTemperature = true;
+                assertEquals(Double.parseDouble(parser.getAttributeValue(null, "max")),
+                        session.getCurrentStats().getTemperature().getMax(), 0.01);
+            }
+        }
+        assertEquals(points, POINT_COUNT);
+        assertEquals(name, "Mont <Royal> & co");
+        assertTrue(hasTemperature);
+
+        assertEquals(subject.exportHike(9999, new StringWriter(), HikeExporter.FORMAT_GPX), -1);
+    }
+
+    public void testTcx() throws Exception{
+        SessionData session = buildSession("Tcx", POINT_COUNT);
+        assertTrue(pse.saveSession(session));
+
+        StringWriter out = new StringWriter();
+        assertEquals(subject.exportHike(session.hikeID(), out, HikeExporter.FORMAT_TCX), POINT_COUNT);
+
+        XmlPullParser parser = parserOf(out);
+        int points = 0;
+        double distance = -1;
+        while (parser.next()!=XmlPullParser.END_DOCUMENT){
+            if(parser.getEventType()!=XmlPullParser.START_TAG){
+                continue;
+            }
+            if(parser.getName().equals("Trackpoint")){
+                points++;
+            }
+            else if(parser.getName().equals("DistanceMeters")){
+                distance = Double.parseDouble(parser.nextText());
+            }
+        }
+        assertEquals(points, POINT_COUNT);
+        assertEquals(distance, pse.loadSummary(session.hikeID()).getDistance(), 0.01);
+    }
+
+    public void testTcxUntimedPoints() throws Exception{
+        //Hikes migrated from the coordinates table have no point times
+        Hike aHike = new Hike(-1, START_TIME, START_TIME + POINT_COUNT*1000L);
+        LocationPoints untimed = new LocationPoints();
+        for (int i = 0; i < POINT_COUNT; i++) {
+            untimed.addPoint(new Coordinates(-73.5 + i*0.00001, 45.5 + i*0.00002, 100));
+        }
+        SessionData session = new SessionData(aHike, new StepCount(0), new EnvData(), untimed);
+        assertTrue(pse.saveSession(session));
+
+        StringWriter out = new StringWriter();
+        assertEquals(subject.exportHike(session.hikeID(), out, HikeExporter.FORMAT_TCX), POINT_COUNT);
+
+        XmlPullParser parser = parserOf(out);
+        int points = 0;
+        String lastTime = null;
+        while (parser.next()!=XmlPullParser.END_DOCUMENT){
+            if(parser.getEventType()==XmlPullParser.START_TAG && parser.getName().equals("Time")){
+                String time = parser.nextText();
+                if(lastTime!=null){
+                    assertTrue(time.compareTo(lastTime)>=0);
+                }
+                lastTime = time;
+                points++;
+            }
+        }
+        assertEquals(points, POINT_COUNT);
+        assertEquals(lastTime, "2015-11-08T16:51:40Z");
+
+        //Without a point count they cannot be placed: the Track is left out rather than written empty
+        SessionData unsummarized = new SessionData(aHike, new StepCount(0), new EnvData(),
+                new SessionData.TrackLoader() {
+                    @Override
+                    public LocationPoints loadTrack() {
+                        return null;
+                    }
+                });
+        out = new StringWriter();
+        TrackFormatWriter writer = HikeExporter.writerFor(HikeExporter.FORMAT_TCX, out);
+        writer.beginDocument();
+        writer.beginTrack(unsummarized);
+        assertFalse(writer.writePoint(untimed.getCoordinateList().get(0)));
+        writer.endTrack();
+        writer.endDocument();
+        assertFalse(out.toString().contains("Track>"));
+        assertTrue(out.toString().contains("</Lap>"));
+    }
+
+    public void testExportAll() throws Exception{
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pse.saveSession(buildSession("Hike" + i, 100*(i+1))));
+        }
+
+        StringWriter out = new StringWriter();
+        assertEquals(subject.exportAll(out, HikeExporter.FORMAT_GPX), 600);
+
+        XmlPullParser parser = parserOf(out);
+        int tracks = 0;
+        while (parser.next()!=XmlPullParser.END_DOCUMENT){
+            if(parser.getEventType()==XmlPullParser.START_TAG && parser.getName().equals("trk")){
+                tracks++;
+            }
+        }
+        assertEquals(tracks, 3);
+    }
+
+    public void testNumberFormat() throws Exception{
+        Hike hike = new Hike(1, START_TIME, START_TIME + 1000);
+        LocationPoints points = new LocationPoints();
+        points.addPoint(new Coordinates(-0.00001, 0.0000001, -12.346, START_TIME));
+        SessionData session = new SessionData(hike, new StepCount(0), new EnvData(), points);
+
+        StringWriter out = new StringWriter();
+        HikeExporter.exportSession(session, out, HikeExporter.FORMAT_GPX);
+        String document = out.toString();
+        assertTrue(document.contains("<trkpt lat=\"0.0000001\" lon=\"-0.0000100\"><ele>-12.35</ele>"
+                + "<time>2015-11-08T16:26:40Z</time></trkpt>"));
+        //Statistics without samples are left out
+        assertFalse(document.contains("temperature"));
+    }
+
+    private XmlPullParser parserOf(StringWriter out) throws Exception{
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new StringReader(out.toString()));
+        return parser;
+    }
+
+    private SessionData buildSession(String name, int pointCount){
+        Hike aHike = new Hike(-1, START_TIME, START_TIME + pointCount*1000L);
+        aHike.setNickName(name);
+        EnvData someData = new EnvData();
+        LocationPoints someCoordinates = new LocationPoints();
+        for (int i = 0; i < pointCount; i++) {
+            someCoordinates.addPoint(new Coordinates(-73.5 + i*0.00001, 45.5 + i*0.00002, 100 + i%7, START_TIME + i*1000L));
+            someData.updateTemp(20 + i%5);
+            someData.updateHumidity(50 + i%3);
+            someData.updatePressure(1000 + i%4);
+        }
+        return new SessionData(aHike, new StepCount(pointCount), someData, someCoordinates);
+    }
+
+    protected void tearDown() throws Exception{
+        pse.reset();
+        super.tearDown();
+    }
+}
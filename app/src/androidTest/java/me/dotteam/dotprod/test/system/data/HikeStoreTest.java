@@ -0,0 +1,613 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.EnvSample;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.EnvStatistic;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeDataDirector;
+import me.dotteam.dotprod.data.HikeStore;
+import me.dotteam.dotprod.data.HikeSummary;
+import me.dotteam.dotprod.data.InstrumentedHikeStore;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.MappedTrackLog;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.SessionEnvData;
+import me.dotteam.dotprod.data.SessionJournal;
+import me.dotteam.dotprod.data.StepCount;
+import me.dotteam.dotprod.data.StorageMetrics;
+import me.dotteam.dotprod.data.TrackChunk;
+import me.dotteam.dotprod.data.TrackCodec;
+import me.dotteam.dotprod.data.TrackConsumer;
+
+/**
+ * Scenarios every HikeStore must pass, run against each backend by its subclass
+ * Tests:
+ * - Insertion of SessionData
+ * - Deletion of SessionData
+ * - Reconstruction of SessionData from HikeID
+ * - Reconstruction of SessionData from Hike Object
+ * - Journaling of a session while it is recorded
+ * - Journal fed by a location thread and a sensor thread at once keeps every point
+ * - Journaled session saved whole when its hike could not be inserted
+ * - Recovery of an interrupted session, then backfill of its summary and cells
+ * - Recovery only deleting the track logs of the hikes it closed
+ * - Paging through the hike list
+ * - Streaming of every stored track
+ * - Summary written on save
+ * - Spatial index written on save and cleared on delete
+ * - Environmental series written on save and while journaling, read from the tier fitting the resolution
+ * - Deletion of several hikes at once
+ */
+public abstract class HikeStoreTest extends ApplicationTestCase<Application> {
+
+    public static final int TEST_SIZE=1000;
+
+    protected Hike aHike;
+    protected LocationPoints someCoordinates;
+    protected StepCount someSteps;
+    protected EnvStatistic statTemp;
+    protected EnvStatistic statHumidity;
+    protected EnvStatistic statPressure;
+    protected EnvData someData;
+    protected SessionData someSession;
+
+    protected HikeStore subject;
+
+    protected Random valueGenerator;
+    protected RenamingDelegatingContext testContext;
+
+    protected int id = -1;
+    protected int startTime = 0;
+    protected int endTime = 50;
+
+    public HikeStoreTest(){
+        super(Application.class);
+    }
+
+    /**
+     * Create the backend under test, empty
+     */
+    protected abstract HikeStore createStore();
+
+    /**
+     * Drop any session the backend keeps in memory, so the next load reads what was stored
+     */
+    protected void forgetCachedSessions(){
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+
+        //Create the Value generator
+        valueGenerator = new Random();
+        testContext = new RenamingDelegatingContext(getContext(),"test_");
+
+        aHike = new Hike(id,startTime,endTime);
+        statHumidity = new EnvStatistic();
+        statPressure = new EnvStatistic();
+        statTemp = new EnvStatistic();
+        someCoordinates = new LocationPoints();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            someCoordinates.addPoint(new Coordinates(
+                    valueGenerator.nextDouble(),
+                    valueGenerator.nextDouble(),
+                    valueGenerator.nextDouble()));
+        }
+        someSteps = new StepCount(TEST_SIZE);
+
+        statHumidity.insertSample(valueGenerator.nextDouble());
+        statPressure.insertSample(valueGenerator.nextDouble());
+        statTemp.insertSample(valueGenerator.nextDouble());
+
+        someData = new EnvData(statTemp,statHumidity,statPressure);
+
+        //Complete Construction
+        someSession = new SessionData(
+                aHike,
+                someSteps,
+                someData,
+                someCoordinates);
+
+        //Now for the test subject
+        subject = createStore();
+    }
+
+    public void testEmptyHikeListRetrieval() throws Exception{
+        List<Hike> emptyHikes = subject.getHikesList();
+        assertNull(emptyHikes);
+    }
+
+    public void testHikeListRetrieval() throws Exception{
+        testSessionSave();
+        List<Hike> hikeList = subject.getHikesList();
+        assertNotNull(hikeList);
+        assertEquals(hikeList.size(), 1);
+    }
+
+    public void testSessionSave() throws Exception{
+        assertTrue(subject.saveSession(someSession));
+        id = someSession.hikeID();
+        assertTrue(id > 0);
+        //A stored session cannot be stored twice
+        assertFalse(subject.saveSession(someSession));
+
+        assertEquals(subject.getHikesList().get(0).getUniqueID(), id);
+        assertEquals(subject.retrieveCoordinates(id).size(), TEST_SIZE);
+        assertTrue(subject.getOpenHikes().isEmpty());
+    }
+
+    public void testSessionLoadById() throws Exception{
+        testSessionSave();
+        SessionData retrieved = subject.loadHikeData(id);
+        equalityCheck(retrieved);
+        assertNull(subject.loadHikeData(id + 1));
+    }
+
+    public void testSessionLoadByObject() throws Exception{
+        testSessionSave();
+        SessionData retrieved = subject.loadHikeData(aHike);
+        equalityCheck(retrieved);
+    }
+
+    public void testSessionDelete() throws Exception{
+        testSessionSave();
+        assertTrue(subject.deleteSession(someSession));
+        testEmptyHikeListRetrieval();
+        assertNull(subject.loadHikeData(id));
+        assertNull(subject.retrieveCoordinates(id));
+    }
+
+    public void testSessionJournal() throws Exception{
+        Hike recordedHike = new Hike(-1,startTime,endTime);
+        id = subject.beginSession(recordedHike);
+        assertTrue(id > 0);
+        assertEquals(recordedHike.getUniqueID(), id);
+
+        //While recording, the hike is not listed
+        assertNull(subject.getHikesList());
+        assertEquals(subject.getOpenHikes().size(), 1);
+
+        //Append in uneven batches
+        List<Coordinates> allPoints = someCoordinates.getCoordinateList();
+        int sequence = 0;
+        int from = 0;
+        while (from < TEST_SIZE) {
+            int to = Math.min(TEST_SIZE, from + 1 + valueGenerator.nextInt(200));
+            sequence += subject.appendTrack(id, sequence, new ArrayList<>(allPoints.subList(from, to)));
+            subject.updateStatistics(id, someData, new StepCount(to));
+            from = to;
+        }
+
+        assertTrue(subject.finishSession(new SessionData(recordedHike, someSteps, someData, someCoordinates)));
+        assertEquals(subject.getOpenHikes().size(), 0);
+        assertEquals(subject.getHikesList().size(), 1);
+
+        forgetCachedSessions();
+        equalityCheck(subject.loadHikeData(id));
+    }
+
+    public void testJournalFromTwoThreads() throws Exception{
+        final int pointCount = 20000;
+        HikeDataDirector director = HikeDataDirector.getInstance(testContext);
+        director.setHikeStore(subject);
+        try {
+            Hike recordedHike = new Hike(-1,startTime,endTime);
+            final SessionJournal journal = director.openJournal(recordedHike);
+            //Sensor updates flush while locations are appended
+            final AtomicBoolean recording = new AtomicBoolean(true);
+            Thread sensorThread = new Thread(){
+                @Override
+                public void run(){
+                    while (recording.get()){
+                        journal.flush(someData, someSteps);
+                    }
+                }
+            };
+            sensorThread.start();
+            for (int i = 0; i < pointCount; i++) {
+                journal.append(new Coordinates(i*0.00001, -i*0.00001, 0, 1000 + i), someData, someSteps);
+            }
+            recording.set(false);
+            sensorThread.join();
+
+            assertTrue(journal.finish(new SessionData(recordedHike, someSteps, someData, new LocationPoints()), null).get());
+            id = recordedHike.getUniqueID();
+        }
+        finally {
+            director.setHikeStore(null);
+        }
+
+        List<Coordinates> stored = subject.retrieveCoordinates(id);
+        assertEquals(stored.size(), pointCount);
+        for (int i = 0; i < pointCount; i += 997) {
+            assertEquals(stored.get(i).getTime(), 1000L + i);
+        }
+    }
+
+    public void testUninsertedJournal() throws Exception{
+        //The store refuses to open the hike, every journal write is dropped
+        HikeStore failingStore = new InstrumentedHikeStore(subject, new StorageMetrics()){
+            @Override
+            public int beginSession(Hike startedHike) {
+                return -1;
+            }
+        };
+        HikeDataDirector director = HikeDataDirector.getInstance(testContext);
+        director.setHikeStore(failingStore);
+        SessionEnvData recorded = new SessionEnvData();
+        try {
+            Hike recordedHike = new Hike(-1,startTime,endTime);
+            SessionJournal journal = director.openJournal(recordedHike);
+            for (Coordinates point : someCoordinates.getCoordinateList()) {
+                recorded.updateTemp(20 + valueGenerator.nextDouble());
+                journal.append(point, recorded, someSteps);
+            }
+            assertEquals((int) journal.flush(recorded, someSteps).get(), 0);
+            recorded.updateTemp(20);
+
+            SessionData completedSession = new SessionData(recordedHike, someSteps, recorded, someCoordinates);
+            assertTrue(journal.finish(completedSession, null).get());
+            id = completedSession.hikeID();
+            assertTrue(id > 0);
+        }
+        finally {
+            director.setHikeStore(null);
+        }
+
+        assertTrue(subject.getOpenHikes().isEmpty());
+        assertEquals(subject.getHikesList().size(), 1);
+        assertEquals(subject.retrieveCoordinates(id).size(), TEST_SIZE);
+        forgetCachedSessions();
+        SessionData stored = subject.loadHikeData(id);
+        assertEquals(stored.getCurrentStats().getTemperature().getAvg(), recorded.getTemperature().getAvg(), 0.0001);
+        assertEquals(stored.getStepCount().getStepsTaken(), someSteps.getStepsTaken());
+        //Samples taken by the dropped writes are kept too
+        assertEquals(subject.loadSeries(id, EnvSeries.TEMPERATURE, 0, Long.MAX_VALUE, 0).size(), TEST_SIZE + 1);
+    }
+
+    public void testInterruptedSessionRecovery() throws Exception{
+        Hike recordedHike = new Hike(-1,startTime,endTime);
+        id = subject.beginSession(recordedHike);
+
+        List<Coordinates> recorded = new ArrayList<>();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            recorded.add(new Coordinates(valueGenerator.nextDouble(), valueGenerator.nextDouble(),
+                    valueGenerator.nextDouble(), 1000 + i));
+        }
+        subject.appendTrack(id, 0, recorded.subList(0, TEST_SIZE/2));
+
+        //Process killed here: the rest of the points only reached the log
+        assertEquals(subject.recoverTrack(id, recorded), TEST_SIZE - TEST_SIZE/2);
+        assertEquals(subject.recoverTrack(id, recorded), 0);
+        List<Hike> openHikes = subject.getOpenHikes();
+        assertEquals(openHikes.size(), 1);
+        assertEquals(subject.recoverHike(openHikes.get(0)), 1000 + TEST_SIZE - 1);
+
+        assertEquals(subject.getOpenHikes().size(), 0);
+        assertEquals(subject.getHikesList().size(), 1);
+        assertEquals(subject.retrieveCoordinates(id).size(), TEST_SIZE);
+
+        //Recovered hikes are summarized and indexed afterwards
+        assertNull(subject.loadSummary(id));
+        assertEquals(subject.backfillSummaries(), 1);
+        assertEquals(subject.backfillSummaries(), 0);
+        assertEquals(subject.loadSummary(id).getPointCount(), TEST_SIZE);
+        assertTrue(subject.findHikesInArea(0.1, 0.1, 0.9, 0.9).isEmpty());
+        assertEquals(subject.backfillCells(), 1);
+        assertEquals(subject.backfillCells(), 0);
+        assertEquals(subject.findHikesInArea(0.1, 0.1, 0.9, 0.9).size(), 1);
+    }
+
+    public void testRecoveryKeepsOtherLogs() throws Exception{
+        HikeDataDirector director = HikeDataDirector.getInstance(testContext);
+        director.setHikeStore(subject);
+        File interruptedLog = MappedTrackLog.fileFor(testContext, startTime);
+        File liveLog = MappedTrackLog.fileFor(testContext, startTime + 1);
+        try {
+            Hike interruptedHike = new Hike(-1,startTime,endTime);
+            id = subject.beginSession(interruptedHike);
+            MappedTrackLog log = MappedTrackLog.create(interruptedLog, startTime);
+            for (Coordinates point : someCoordinates.getCoordinateList()) {
+                log.append(point);
+            }
+            log.close();
+            //A journal opened after the recovery was queued, its hike not inserted yet
+            MappedTrackLog live = MappedTrackLog.create(liveLog, startTime + 1);
+
+            assertEquals(director.recoverUnfinishedHikes(), 1);
+            assertEquals(subject.retrieveCoordinates(id).size(), TEST_SIZE);
+            assertFalse(interruptedLog.exists());
+            assertTrue(liveLog.exists());
+            assertTrue(live.delete());
+        }
+        finally {
+            director.setHikeStore(null);
+            interruptedLog.delete();
+            liveLog.delete();
+        }
+    }
+
+    public void testHikePages() throws Exception{
+        final int hikeCount = 25;
+        final int pageSize = 10;
+        for (int i = 0; i < hikeCount; i++) {
+            //Several hikes share a start time, the ID breaks the tie
+            Hike pagedHike = new Hike(-1, 1000 + (i/3), 2000 + i);
+            assertTrue(subject.saveSession(new SessionData(pagedHike, someSteps, someData, new LocationPoints())));
+        }
+        //Open hikes are never listed
+        subject.beginSession(new Hike(-1, 5000, -1));
+
+        List<Hike> allPages = new ArrayList<>();
+        List<Hike> page = subject.getHikesPage(null, pageSize);
+        int pages = 0;
+        while (!page.isEmpty()){
+            assertTrue(page.size() <= pageSize);
+            allPages.addAll(page);
+            ++pages;
+            page = subject.getHikesPage(page.get(page.size()-1), pageSize);
+        }
+
+        assertEquals(pages, (hikeCount + pageSize - 1)/pageSize);
+        assertEquals(allPages.size(), hikeCount);
+        for (int i = 1; i < allPages.size(); i++) {
+            Hike previous = allPages.get(i-1);
+            Hike current = allPages.get(i);
+            assertTrue(previous.startTime() > current.startTime()
+                    || (previous.startTime() == current.startTime() && previous.getUniqueID() > current.getUniqueID()));
+        }
+    }
+
+    public void testTrackStreaming() throws Exception{
+        final int[] sizes = {2500, 1, TrackChunk.MAX_POINTS};
+        final int[] ids = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            LocationPoints track = new LocationPoints();
+            for (int j = 0; j < sizes[i]; j++) {
+                track.addPoint(new Coordinates(i, j, 0, j));
+            }
+            SessionData session = new SessionData(new Hike(-1, startTime, endTime), someSteps, someData, track);
+            assertTrue(subject.saveSession(session));
+            ids[i] = session.hikeID();
+        }
+
+        final List<Integer> started = new ArrayList<>();
+        final List<Integer> ended = new ArrayList<>();
+        final int[] streamed = new int[sizes.length];
+        final Object[] firstBuffer = new Object[1];
+        long total = subject.forEachTrack(new TrackConsumer() {
+            @Override
+            public void onTrackStart(int hikeID) {
+                started.add(hikeID);
+            }
+
+            @Override
+            public boolean onPoints(int hikeID, List<Coordinates> points) {
+                assertEquals((int) started.get(started.size()-1), hikeID);
+                assertTrue(points.size() <= TrackChunk.MAX_POINTS);
+                int index = started.size()-1;
+                for (Coordinates point : points) {
+                    //Points arrive in recorded order
+                    assertEquals(point.getTime(), (long) streamed[index]++);
+                }
+                //A single buffer is reused for every chunk
+                if(firstBuffer[0]==null){
+                    firstBuffer[0] = points;
+                }
+                assertSame(firstBuffer[0], points);
+                return true;
+            }
+
+            @Override
+            public void onTrackEnd(int hikeID) {
+                ended.add(hikeID);
+            }
+        });
+
+        assertEquals(total, 2500 + 1 + TrackChunk.MAX_POINTS);
+        assertEquals(started.size(), sizes.length);
+        assertEquals(ended, started);
+        for (int i = 0; i < sizes.length; i++) {
+            assertEquals((int) started.get(i), ids[i]);
+            assertEquals(streamed[i], sizes[i]);
+        }
+
+        //Stopping early still closes the current track
+        ended.clear();
+        total = subject.forEachTrack(new TrackConsumer() {
+            @Override
+            public void onTrackStart(int hikeID) {
+            }
+
+            @Override
+            public boolean onPoints(int hikeID, List<Coordinates> points) {
+                return false;
+            }
+
+            @Override
+            public void onTrackEnd(int hikeID) {
+                ended.add(hikeID);
+            }
+        });
+        assertEquals(total, TrackChunk.MAX_POINTS);
+        assertEquals(ended.size(), 1);
+
+        //A single track, through its hike
+        assertEquals(subject.forEachTrack(ids[0], new TrackConsumer() {
+            @Override
+            public void onTrackStart(int hikeID) {
+            }
+
+            @Override
+            public boolean onPoints(int hikeID, List<Coordinates> points) {
+                return true;
+            }
+
+            @Override
+            public void onTrackEnd(int hikeID) {
+            }
+        }), 2500);
+    }
+
+    public void testSummary() throws Exception{
+        testSessionSave();
+        HikeSummary expected = HikeSummary.of(someCoordinates.getCoordinateList());
+
+        forgetCachedSessions();
+        HikeSummary stored = subject.loadSummary(id);
+        assertNotNull(stored);
+        assertEquals(stored.getPointCount(), TEST_SIZE);
+        assertEquals(stored.getDistance(), expected.getDistance(), 1e-6);
+        assertEquals(subject.loadHikeData(id).getSummary().getDistance(), expected.getDistance(), 1e-6);
+        //Headers carry the summary without the points
+        SessionData header = subject.loadHikeHeader(id);
+        assertEquals(header.getSummary().getPointCount(), TEST_SIZE);
+    }
+
+    public void testSpatialIndex() throws Exception{
+        SessionData walkSession = saveWalk();
+        int walkID = walkSession.hikeID();
+
+        List<Hike> near = subject.findHikesNear(45.505, -73.595, 500);
+        assertEquals(near.size(), 1);
+        assertEquals(near.get(0).getUniqueID(), walkID);
+        //Along the gap, between two recorded points
+        assertEquals(subject.findHikesNear(45.515, -73.575, 500).size(), 1);
+        assertTrue(subject.findHikesNear(46.81, -71.21, 5000).isEmpty());
+        //Large areas are answered from coarse cells
+        assertEquals(subject.findHikesInArea(44, -75, 47, -72).size(), 1);
+        assertTrue(subject.findHikesInArea(30, -120, 35, -115).isEmpty());
+
+        assertTrue(subject.deleteHike(near.get(0)));
+        assertTrue(subject.findHikesNear(45.505, -73.595, 500).isEmpty());
+    }
+
+    public void testEnvSeries() throws Exception{
+        //Saved at once: every reading is kept
+        SessionEnvData recorded = new SessionEnvData();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            recorded.updateTemp(20 + valueGenerator.nextDouble());
+            recorded.updatePressure(1000 + valueGenerator.nextDouble());
+        }
+        SessionData recordedSession = new SessionData(new Hike(-1,startTime,endTime), someSteps, recorded, someCoordinates);
+        assertTrue(subject.saveSession(recordedSession));
+        int savedID = recordedSession.hikeID();
+
+        List<EnvSample> raw = subject.loadSeries(savedID, EnvSeries.TEMPERATURE, 0, Long.MAX_VALUE, 0);
+        assertEquals(raw.size(), TEST_SIZE);
+        assertEquals(subject.loadSeries(savedID, EnvSeries.PRESSURE, 0, Long.MAX_VALUE, 0).size(), TEST_SIZE);
+        assertTrue(subject.loadSeries(savedID, EnvSeries.HUMIDITY, 0, Long.MAX_VALUE, 0).isEmpty());
+        int aggregated = 0;
+        for (EnvSample sample : subject.loadSeries(savedID, EnvSeries.TEMPERATURE, 0, Long.MAX_VALUE, 60000)) {
+            aggregated += sample.getCount();
+        }
+        assertEquals(aggregated, TEST_SIZE);
+
+        //Journaled: samples arrive in batches over two hours, one a second
+        id = subject.beginSession(new Hike(-1,startTime,endTime));
+        EnvSeries humidity = new EnvSeries(EnvSeries.HUMIDITY);
+        //Aligned on a minute, like the tiers
+        final long start = 1446999960000L;
+        for (int minute = 0; minute < 120; minute++) {
+            for (int second = 0; second < 60; second++) {
+                humidity.addSample(start + (minute*60 + second)*1000L, 40 + minute*0.1);
+            }
+            if(minute%5==4) {
+                List<EnvSeries.Batch> batches = new ArrayList<>();
+                humidity.takePending(false, batches);
+                subject.appendSeries(id, batches);
+            }
+        }
+
+        //A ten minute window, at every resolution
+        long from = start + 30*60000L;
+        long to = start + 40*60000L - 1;
+        List<EnvSample> window = subject.loadSeries(id, EnvSeries.HUMIDITY, from, to, 0);
+        assertEquals(window.size(), 600);
+        assertEquals(window.get(0).getTime(), from);
+        assertEquals(subject.loadSeries(id, EnvSeries.HUMIDITY, from, to, 10000).size(), 60);
+        List<EnvSample> minutes = subject.loadSeries(id, EnvSeries.HUMIDITY, from, to, 60000);
+        assertEquals(minutes.size(), 10);
+        assertEquals(minutes.get(0).getCount(), 60);
+        assertEquals(minutes.get(0).getAvg(), 43.0, 0.001);
+
+        //Series go away with their hike
+        subject.deleteHike(new Hike(savedID, startTime, endTime));
+        assertTrue(subject.loadSeries(savedID, EnvSeries.TEMPERATURE, 0, Long.MAX_VALUE, 0).isEmpty());
+    }
+
+    public void testDeleteHikes() throws Exception{
+        List<Integer> savedIDs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SessionData session = new SessionData(new Hike(-1,startTime,endTime), someSteps, someData, someCoordinates);
+            assertTrue(subject.saveSession(session));
+            savedIDs.add(session.hikeID());
+        }
+
+        //Unknown IDs are ignored
+        List<Integer> toDelete = new ArrayList<>(savedIDs.subList(0, 2));
+        toDelete.add(-5);
+        toDelete.add(100000);
+        assertEquals(subject.deleteHikes(toDelete), 2);
+        assertEquals(subject.deleteHikes(toDelete), 0);
+
+        assertNull(subject.loadHikeData(savedIDs.get(0)));
+        assertNull(subject.retrieveCoordinates(savedIDs.get(1)));
+        assertNotNull(subject.loadHikeData(savedIDs.get(2)));
+
+        //Reclaiming always comes to an end
+        int steps = 0;
+        while (subject.reclaimSpace(4) > 0){
+            assertTrue(++steps < 10000);
+        }
+
+        assertTrue(subject.deleteHike(new Hike(savedIDs.get(2), startTime, endTime)));
+        testEmptyHikeListRetrieval();
+    }
+
+    /**
+     * Save a short walk in Montreal, then a gap of a few km without any fix
+     * @return The saved session
+     */
+    protected SessionData saveWalk(){
+        LocationPoints walk = new LocationPoints();
+        for (int i = 0; i < 100; i++) {
+            walk.addPoint(new Coordinates(-73.60 + i*0.0001, 45.50 + i*0.0001, 50));
+        }
+        walk.addPoint(new Coordinates(-73.55, 45.53, 50));
+        SessionData walkSession = new SessionData(new Hike(-1,startTime,endTime), someSteps, someData, walk);
+        assertTrue(subject.saveSession(walkSession));
+        return walkSession;
+    }
+
+    protected void equalityCheck(SessionData retrieved) throws Exception{
+        assertEquals(retrieved.getCurrentStats().getHumidity().getAvg(),statHumidity.getAvg());
+
+        assertEquals(retrieved.getCurrentStats().getPressure().getAvg(),statPressure.getAvg());
+
+        assertEquals(retrieved.getCurrentStats().getTemperature().getAvg(),statTemp.getAvg());
+
+        assertEquals(retrieved.getStepCount().getStepsTaken(),someSteps.getStepsTaken());
+
+        //Stored points keep the precision of the TrackCodec
+        for (int i = 0; i < TEST_SIZE; i++) {
+            Coordinates expected = someCoordinates.getCoordinateList().get(i);
+            Coordinates actual = retrieved.getGeoPoints().getCoordinateList().get(i);
+            assertEquals(actual.getLatitude(), expected.getLatitude(), 1/TrackCodec.DEGREE_SCALE);
+            assertEquals(actual.getLongitude(), expected.getLongitude(), 1/TrackCodec.DEGREE_SCALE);
+            assertEquals(actual.getAltitude(), expected.getAltitude(), 1/TrackCodec.ALTITUDE_SCALE);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.HikeSummary;
+
+/**
+ * Unit Test of the HikeSummary class
+ * Tests:
+ * - Haversine distance against known values
+ * - Elevation gain and loss ignore changes under the threshold
+ * - Moving time only counts intervals above the moving speed
+ * - Bounds of the track
+ */
+public class HikeSummaryTest extends ApplicationTestCase<Application> {
+
+    public HikeSummaryTest(){
+        super(Application.class);
+    }
+
+    public void testEmptyTrack() throws Exception{
+        HikeSummary subject = HikeSummary.of(null);
+        assertEquals(subject.getPointCount(), 0);
+        assertEquals(subject.getDistance(), 0.0);
+        assertFalse(subject.hasBounds());
+        assertEquals(subject.getAveragePace(), 0.0);
+    }
+
+    public void testDistance() throws Exception{
+        //One degree of latitude along a meridian
+        assertEquals(HikeSummary.distanceBetween(new Coordinates(0, 0, 0), new Coordinates(0, 1, 0)),
+                111195.0, 1.0);
+        //Montreal to Quebec City, about 233 km
+        assertEquals(HikeSummary.distanceBetween(new Coordinates(-73.5673, 45.5017, 0), new Coordinates(-71.2080, 46.8139, 0)),
+                233000.0, 1000.0);
+        assertEquals(HikeSummary.distanceBetween(new Coordinates(10, 10, 0), new Coordinates(10, 10, 500)), 0.0);
+    }
+
+    public void testElevation() throws Exception{
+        List<Coordinates> track = new ArrayList<>();
+        double[] altitudes = {100, 101, 102, 101, 105, 110, 109, 108, 104, 103, 100};
+        for (int i = 0; i < altitudes.length; i++) {
+            track.add(new Coordinates(0, 0, altitudes[i], 0));
+        }
+        HikeSummary subject = HikeSummary.of(track);
+
+        //Noise under 3 m is ignored: 100 -> 105 -> 110 climbs, 110 -> 104 -> 100 descends
+        assertEquals(subject.getElevationGain(), 10.0);
+        assertEquals(subject.getElevationLoss(), 10.0);
+        assertEquals(subject.getMinAltitude(), 100.0);
+        assertEquals(subject.getMaxAltitude(), 110.0);
+    }
+
+    public void testMovingTimeAndBounds() throws Exception{
+        List<Coordinates> track = new ArrayList<>();
+        //About 1.1 m per second north for 10 seconds, then standing still for 100 seconds
+        for (int i = 0; i <= 10; i++) {
+            track.add(new Coordinates(-73, 45 + i*0.00001, 0, 1000L*(i+1)));
+        }
+        for (int i = 1; i <= 10; i++) {
+            track.add(new Coordinates(-73, 45.0001, 0, 11000L + 10000L*i));
+        }
+        HikeSummary subject = HikeSummary.of(track);
+
+        assertEquals(subject.getPointCount(), 21);
+        assertEquals(subject.getMovingTime(), 10000);
+        assertEquals(subject.getDistance(), 11.1, 0.1);
+        assertEquals(subject.getAveragePace(), 1.11, 0.01);
+        assertEquals(subject.getMinLatitude(), 45.0);
+        assertEquals(subject.getMaxLatitude(), 45.0001, 1e-9);
+        assertEquals(subject.getMinLongitude(), -73.0);
+        assertEquals(subject.getMaxLongitude(), -73.0);
+    }
+}
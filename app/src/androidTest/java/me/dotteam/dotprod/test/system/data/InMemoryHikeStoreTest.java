@@ -0,0 +1,47 @@
+package me.dotteam.dotprod.test.system.data;
+
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeStore;
+import me.dotteam.dotprod.data.InMemoryHikeStore;
+import me.dotteam.dotprod.data.SessionData;
+
+/**
+ * Unit Test of the InMemoryHikeStore class, through the scenarios of {@link HikeStoreTest}
+ * Tests:
+ * - Sessions loaded or saved share no state with the stored values
+ * - hike_ids are not reused after a deletion, only after a reset
+ */
+public class InMemoryHikeStoreTest extends HikeStoreTest {
+
+    @Override
+    protected HikeStore createStore() {
+        return new InMemoryHikeStore();
+    }
+
+    public void testValuesAreCopied() throws Exception{
+        testSessionSave();
+        double savedTemperature = statTemp.getAvg();
+        //Changing what was saved or loaded does not reach the store
+        statTemp.insertSample(1000);
+        SessionData loaded = subject.loadHikeData(id);
+        assertEquals(loaded.getCurrentStats().getTemperature().getAvg(), savedTemperature);
+        loaded.getCurrentStats().updateTemp(-1000);
+        loaded.getGeoPoints().getCoordinateList().clear();
+
+        SessionData reloaded = subject.loadHikeData(id);
+        assertEquals(reloaded.getCurrentStats().getTemperature().getAvg(), savedTemperature);
+        assertEquals(reloaded.getGeoPoints().getCoordinateList().size(), TEST_SIZE);
+    }
+
+    public void testIdentifiers() throws Exception{
+        testSessionSave();
+        assertTrue(subject.deleteSession(someSession));
+        int nextID = subject.beginSession(new Hike(-1, startTime, -1));
+        assertTrue(nextID > id);
+
+        subject.reset();
+        assertNull(subject.getHikesList());
+        assertTrue(subject.getOpenHikes().isEmpty());
+        assertEquals(subject.beginSession(new Hike(-1, startTime, -1)), 1);
+    }
+}
@@ -0,0 +1,159 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.MappedTrackLog;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.SessionCache;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+
+/**
+ * Unit Test of the MappedTrackLog class
+ * Tests:
+ * - Points appended through a LocationPoints are read back from the mapped file, past its first growth
+ * - Sessions whose track is a view of a log are weighed without their off-heap points
+ * - A log left open, as by a killed process, can be opened again with all its points
+ * - Files that are not logs are refused
+ * - Points logged but never journaled are recovered into Persistent Storage
+ */
+public class MappedTrackLogTest extends ApplicationTestCase<Application> {
+
+    public static final long START_TIME=1447000000000L;
+
+    private File logFile;
+
+    public MappedTrackLogTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        logFile = MappedTrackLog.fileFor(getContext(), START_TIME);
+    }
+
+    public void testAppendAndRead() throws Exception{
+        MappedTrackLog subject = MappedTrackLog.create(logFile, START_TIME);
+        LocationPoints track = new LocationPoints(subject.asList());
+        int pointCount = MappedTrackLog.GROWTH_RECORDS + 100;
+        for (int i = 0; i < pointCount; i++) {
+            track.addPoint(pointAt(i));
+        }
+
+        List<Coordinates> points = track.getCoordinateList();
+        assertEquals(points.size(), pointCount);
+        assertEquals(subject.getStartTime(), START_TIME);
+        for (int i = 0; i < pointCount; i += 97) {
+            assertPoint(points.get(i), i);
+        }
+        assertPoint(points.get(pointCount-1), pointCount-1);
+
+        //A second view sees the same points
+        assertEquals(subject.asList().size(), pointCount);
+        assertTrue(subject.delete());
+        assertFalse(logFile.exists());
+        //Still readable once deleted
+        assertPoint(points.get(10), 10);
+    }
+
+    public void testWeighedOffHeap() throws Exception{
+        MappedTrackLog subject = MappedTrackLog.create(logFile, START_TIME);
+        for (int i = 0; i < 1000; i++) {
+            subject.append(pointAt(i));
+        }
+        assertTrue(MappedTrackLog.isMapped(subject.asList()));
+        assertFalse(MappedTrackLog.isMapped(new ArrayList<>(subject.asList())));
+
+        //Only the session itself counts against the cache, not its mapped points
+        SessionData mapped = new SessionData(new Hike(-1, START_TIME, -1), new StepCount(0), new EnvData(),
+                new LocationPoints(subject.asList()));
+        assertEquals(SessionCache.weightOf(mapped), SessionCache.BYTES_PER_SESSION);
+        SessionData copied = new SessionData(new Hike(-1, START_TIME, -1), new StepCount(0), new EnvData(),
+                new LocationPoints(new ArrayList<>(subject.asList())));
+        assertEquals(SessionCache.weightOf(copied), SessionCache.BYTES_PER_SESSION + 1000L*SessionCache.BYTES_PER_POINT);
+        assertTrue(subject.delete());
+    }
+
+    public void testReopen() throws Exception{
+        MappedTrackLog writer = MappedTrackLog.create(logFile, START_TIME);
+        for (int i = 0; i < 500; i++) {
+            writer.append(pointAt(i));
+        }
+
+        //Not closed, as if the process had been killed
+        MappedTrackLog reader = MappedTrackLog.open(logFile);
+        assertEquals(reader.size(), 500);
+        assertEquals(reader.getStartTime(), START_TIME);
+        assertPoint(reader.get(499), 499);
+        reader.close();
+        assertTrue(writer.delete());
+    }
+
+    public void testNotALog() throws Exception{
+        logFile.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(logFile);
+        out.write("Not a track log, but long enough for a header".getBytes("UTF-8"));
+        out.close();
+        try {
+            MappedTrackLog.open(logFile);
+            fail("A file that is not a log should be refused");
+        }
+        catch (IOException e){
+            //Expected
+        }
+        assertTrue(logFile.delete());
+    }
+
+    public void testRecoverTrack() throws Exception{
+        PersistentStorageEntity pse = new PersistentStorageEntity(new RenamingDelegatingContext(getContext(),"test_"));
+        pse.reset();
+        Hike openHike = new Hike(-1, START_TIME, -1);
+        int hikeID = pse.beginSession(openHike);
+
+        MappedTrackLog log = MappedTrackLog.create(logFile, START_TIME);
+        List<Coordinates> logged = log.asList();
+        for (int i = 0; i < 250; i++) {
+            logged.add(pointAt(i));
+        }
+        //Only the first batch reached the journal
+        pse.appendTrack(hikeID, 0, logged.subList(0, 100));
+
+        assertEquals(pse.recoverTrack(hikeID, MappedTrackLog.open(logFile).asList()), 150);
+        assertEquals(pse.recoverTrack(hikeID, logged), 0);
+        List<Coordinates> stored = pse.retrieveCoordinates(hikeID);
+        assertEquals(stored.size(), 250);
+        assertEquals(stored.get(249).getTime(), START_TIME + 249000);
+
+        assertTrue(log.delete());
+        pse.reset();
+    }
+
+    private static Coordinates pointAt(int i){
+        return new Coordinates(-73.5 + i*0.000001, 45.5 + i*0.000002, 100 + i%50, START_TIME + i*1000L);
+    }
+
+    private static void assertPoint(Coordinates point, int i){
+        Coordinates expected = pointAt(i);
+        assertEquals(point.getLatitude(), expected.getLatitude(), 0);
+        assertEquals(point.getLongitude(), expected.getLongitude(), 0);
+        assertEquals(point.getAltitude(), expected.getAltitude(), 0);
+        assertEquals(point.getTime(), expected.getTime());
+    }
+
+    protected void tearDown() throws Exception{
+        logFile.delete();
+        super.tearDown();
+    }
+}
@@ -0,0 +1,281 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.GpxImporter;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeExporter;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+
+/**
+ * Benchmark of the PersistentStorageEntity storage paths.
+ * Results are written to the log under the BENCH tag so they can be compared between runs.
+ * Measures:
+ * - Time to save a session against the number of recorded points
+ * - Cold open of a stored hike: the former six queries against the joined header query, with and without the track
+ * - Time to find the hikes near a location among thousands of stored hikes
+ * - Throughput of the GPX and TCX exports, for a long hike and for a large history
+ * - Throughput of the GPX import of a large multi-track file
+ */
+public class PersistentStorageBenchmarkTest extends ApplicationTestCase<Application> {
+
+    public static final String TAG="BENCH";
+
+    public static final int[] POINT_COUNTS={100, 1000, 10000, 50000};
+
+    public static final int OPEN_REPEATS=21;
+
+    public static final int NEARBY_HIKES=2000;
+    public static final int NEARBY_POINTS=200;
+    public static final int NEARBY_QUERIES=200;
+
+    public static final int EXPORT_LONG_POINTS=50000;
+    public static final int EXPORT_HIKES=1000;
+    public static final int EXPORT_POINTS=200;
+
+    public static final int IMPORT_HIKES=200;
+
+    private PersistentStorageEntity subject;
+    private RenamingDelegatingContext testContext;
+    private Random valueGenerator;
+
+    public PersistentStorageBenchmarkTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        valueGenerator = new Random(42);
+        testContext = new RenamingDelegatingContext(getContext(),"bench_");
+        subject = new PersistentStorageEntity(testContext);
+        subject.reset();
+    }
+
+    public void testSaveTimeAgainstPointCount() throws Exception{
+        for (int pointCount : POINT_COUNTS) {
+            SessionData session = buildSession(pointCount);
+
+            long start = System.nanoTime();
+            assertTrue(subject.saveSession(session));
+            long elapsedMillis = (System.nanoTime() - start)/1000000;
+
+            Log.i(TAG, String.format("saveSession %d points: %d ms (%.1f points/ms)",
+                    pointCount, elapsedMillis, pointCount/(double) Math.max(elapsedMillis,1)));
+
+            assertEquals(subject.retrieveCoordinates(session.hikeID()).size(), pointCount);
+        }
+    }
+
+    public void testColdOpenLatency() throws Exception{
+        SQLiteDatabase db = DBAssistant.getInstance(testContext).getReadableDatabase();
+        for (int pointCount : POINT_COUNTS) {
+            SessionData session = buildSession(pointCount);
+            assertTrue(subject.saveSession(session));
+            String[] idParam = new String[]{Integer.toString(session.hikeID())};
+
+            long[] separate = new long[OPEN_REPEATS];
+            long[] joined = new long[OPEN_REPEATS];
+            long[] header = new long[OPEN_REPEATS];
+            for (int i = 0; i < OPEN_REPEATS; i++) {
+                //Before: the hike, each statistic and the steps in queries of their own, then the track
+                long start = System.nanoTime();
+                readSingleRow(db, DBAssistant.QUERY_HIKE, idParam);
+                for (String table : new String[]{DBAssistant.ENVTEMP, DBAssistant.ENVHUMD, DBAssistant.ENVPRES}) {
+                    readSingleRow(db, "SELECT " + DBAssistant.MIN_COL + ", " + DBAssistant.AVG_COL + ", " + DBAssistant.MAX_COL
+                            + " FROM " + table + " WHERE " + DBAssistant.HIKE_ID + "=?", idParam);
+                }
+                readSingleRow(db, "SELECT " + DBAssistant.STEP_COUNT + " FROM " + DBAssistant.STEPS
+                        + " WHERE " + DBAssistant.HIKE_ID + "=?", idParam);
+                assertEquals(subject.retrieveCoordinates(session.hikeID()).size(), pointCount);
+                separate[i] = System.nanoTime() - start;
+
+                //After: one joined query, then the track
+                subject.getSessionCache().clear();
+                start = System.nanoTime();
+                assertEquals(subject.loadHikeData(session.hikeID()).getGeoPoints().getCoordinateList().size(), pointCount);
+                joined[i] = System.nanoTime() - start;
+
+                //What the results screen waits on before showing text: the track loads afterwards
+                subject.getSessionCache().clear();
+                start = System.nanoTime();
+                assertNotNull(subject.loadHikeHeader(session.hikeID()));
+                header[i] = System.nanoTime() - start;
+                subject.getSessionCache().clear();
+            }
+            Arrays.sort(separate);
+            Arrays.sort(joined);
+            Arrays.sort(header);
+            Log.i(TAG, String.format("Cold open of %d points, median: six queries %d us, joined %d us, header only %d us",
+                    pointCount, separate[OPEN_REPEATS/2]/1000, joined[OPEN_REPEATS/2]/1000, header[OPEN_REPEATS/2]/1000));
+        }
+    }
+
+    private static void readSingleRow(SQLiteDatabase db, String statement, String[] args){
+        Cursor cursor = db.rawQuery(statement, args);
+        assertTrue(cursor.moveToFirst());
+        for (int column = 0; column < cursor.getColumnCount(); column++) {
+            cursor.getString(column);
+        }
+        cursor.close();
+    }
+
+    public void testNearbyQueryTime() throws Exception{
+        //Hikes spread over about 200 km by 150 km
+        for (int i = 0; i < NEARBY_HIKES; i++) {
+            assertTrue(subject.saveSession(buildSession(NEARBY_POINTS,
+                    45 + valueGenerator.nextDouble()*2, -74 + valueGenerator.nextDouble()*2)));
+        }
+
+        long[] elapsed = new long[NEARBY_QUERIES];
+        int found = 0;
+        for (int i = 0; i < NEARBY_QUERIES; i++) {
+            double latitude = 45 + valueGenerator.nextDouble()*2;
+            double longitude = -74 + valueGenerator.nextDouble()*2;
+            long start = System.nanoTime();
+            found += subject.findHikesNear(latitude, longitude, 2000).size();
+            elapsed[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(elapsed);
+        long medianMicros = elapsed[NEARBY_QUERIES/2]/1000;
+
+        Log.i(TAG, String.format("findHikesNear among %d hikes: median %d us, slowest %d us, %.1f hikes per query",
+                NEARBY_HIKES, medianMicros, elapsed[NEARBY_QUERIES-1]/1000, found/(double) NEARBY_QUERIES));
+        assertTrue("Median query time " + medianMicros + " us", medianMicros < 1000);
+    }
+
+    public void testExportThroughput() throws Exception{
+        SessionData longHike = buildSession(EXPORT_LONG_POINTS);
+        assertTrue(subject.saveSession(longHike));
+        HikeExporter exporter = new HikeExporter(subject);
+
+        for (int format : new int[]{HikeExporter.FORMAT_GPX, HikeExporter.FORMAT_TCX}) {
+            CountingWriter out = new CountingWriter();
+            long start = System.nanoTime();
+            assertEquals(exporter.exportHike(longHike.hikeID(), out, format), EXPORT_LONG_POINTS);
+            logExport("exportHike " + HikeExporter.extensionOf(format), EXPORT_LONG_POINTS, out.mCharacters, start);
+        }
+
+        for (int i = 1; i < EXPORT_HIKES; i++) {
+            assertTrue(subject.saveSession(buildSession(EXPORT_POINTS)));
+        }
+        long totalPoints = EXPORT_LONG_POINTS + (EXPORT_HIKES-1)*(long) EXPORT_POINTS;
+
+        for (int format : new int[]{HikeExporter.FORMAT_GPX, HikeExporter.FORMAT_TCX}) {
+            Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+            long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+            CountingWriter out = new CountingWriter();
+            long start = System.nanoTime();
+            assertEquals(exporter.exportAll(out, format), totalPoints);
+            logExport("exportAll " + HikeExporter.extensionOf(format) + " of " + EXPORT_HIKES + " hikes",
+                    totalPoints, out.mCharacters, start);
+            runtime.gc();
+            Log.i(TAG, String.format("exportAll heap growth: %d KB",
+                    (runtime.totalMemory() - runtime.freeMemory() - usedBefore)/1024));
+        }
+    }
+
+    public void testImportThroughput() throws Exception{
+        assertTrue(subject.saveSession(buildSession(EXPORT_LONG_POINTS)));
+        for (int i = 1; i < IMPORT_HIKES; i++) {
+            assertTrue(subject.saveSession(buildSession(EXPORT_POINTS)));
+        }
+        long totalPoints = EXPORT_LONG_POINTS + (IMPORT_HIKES-1)*(long) EXPORT_POINTS;
+
+        File document = new File(getContext().getCacheDir(), "bench_import.gpx");
+        Writer out = new OutputStreamWriter(new FileOutputStream(document), "UTF-8");
+        assertEquals(new HikeExporter(subject).exportAll(out, HikeExporter.FORMAT_GPX), totalPoints);
+        out.close();
+        subject.reset();
+
+        InputStream in = new BufferedInputStream(new FileInputStream(document), HikeExporter.BUFFER_SIZE);
+        long start = System.nanoTime();
+        List<Integer> imported = new GpxImporter(subject).importGpx(in, document.length(), null);
+        long elapsedMillis = Math.max((System.nanoTime() - start)/1000000, 1);
+        in.close();
+
+        Log.i(TAG, String.format("importGpx of %d hikes, %d points: %d ms (%.1f points/ms, %.1f MB/s)",
+                IMPORT_HIKES, totalPoints, elapsedMillis, totalPoints/(double) elapsedMillis,
+                document.length()/(elapsedMillis*1000.0)));
+        assertEquals(imported.size(), IMPORT_HIKES);
+        assertTrue(document.delete());
+    }
+
+    private void logExport(String name, long points, long characters, long start){
+        long elapsedMillis = Math.max((System.nanoTime() - start)/1000000, 1);
+        Log.i(TAG, String.format("%s, %d points: %d ms (%.1f points/ms, %.1f MB/s)",
+                name, points, elapsedMillis, points/(double) elapsedMillis, characters/(elapsedMillis*1000.0)));
+    }
+
+    /**
+     * Destination discarding the document, so only the export itself is measured
+     */
+    private static class CountingWriter extends Writer {
+
+        private long mCharacters;
+
+        @Override
+        public void write(char[] buf, int offset, int count) {
+            mCharacters += count;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private SessionData buildSession(int pointCount){
+        return buildSession(pointCount, 45.5, -73.5);
+    }
+
+    private SessionData buildSession(int pointCount, double latitude, double longitude){
+        Hike aHike = new Hike();
+        aHike.start();
+        EnvData someData = new EnvData();
+        LocationPoints someCoordinates = new LocationPoints();
+        double altitude = 100;
+        long time = aHike.startTime();
+        for (int i = 0; i < pointCount; i++) {
+            longitude += (valueGenerator.nextDouble()-0.5)*0.0001;
+            latitude += (valueGenerator.nextDouble()-0.5)*0.0001;
+            altitude += valueGenerator.nextDouble()-0.5;
+            someCoordinates.addPoint(new Coordinates(longitude,latitude,altitude,time + i*1000L));
+            someData.updateTemp(20+valueGenerator.nextDouble());
+            someData.updateHumidity(50+valueGenerator.nextDouble());
+            someData.updatePressure(1000+valueGenerator.nextDouble());
+        }
+        aHike.end();
+        return new SessionData(aHike,new StepCount(pointCount),someData,someCoordinates);
+    }
+
+    protected void tearDown() throws Exception{
+        subject.reset();
+        super.tearDown();
+    }
+}
@@ -1,115 +1,54 @@
 package me.dotteam.dotprod.test.system.data;
 
-import android.app.Application;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.test.ApplicationTestCase;
 import android.test.RenamingDelegatingContext;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
-import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.DBAssistant;
-import me.dotteam.dotprod.data.EnvData;
-import me.dotteam.dotprod.data.EnvStatistic;
 import me.dotteam.dotprod.data.Hike;
-import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.HikeStore;
+import me.dotteam.dotprod.data.HikeSummary;
 import me.dotteam.dotprod.data.PersistentStorageEntity;
 import me.dotteam.dotprod.data.SessionData;
-import me.dotteam.dotprod.data.StepCount;
+import me.dotteam.dotprod.data.TrackChunk;
 
 /**
  * Unit test of PersistentStorageEntity class
- * This class is responsible for accessing the DB, so it verifies everything has been written
+ * This class is responsible for accessing the DB, so it verifies everything has been written.
+ * The scenarios shared with every backend are in {@link HikeStoreTest}
  * Test:
  * - Creation
- * - Insertion of SessionData
- * - Deletion of SessionData
- * - Reconstruction of SessionData from HikeID
- * - Reconstruction of SessionData from Hike Object
+ * - Insertion of SessionData, in every table
+ * - Journaling of a session replacing its statistics rather than accumulating them
+ * - Summary backfilled for older hikes
+ * - Spatial index backfilled for older hikes and cleared on delete
+ * - New databases created with incremental vacuum
+ * - Deletion of several hikes at once, and reclaiming the space they used
  */
-public class PersistentStorageEntityTest extends ApplicationTestCase<Application> {
+public class PersistentStorageEntityTest extends HikeStoreTest {
 
-    public static final int TEST_SIZE=1000;
+    private PersistentStorageEntity pse;
 
-    private Hike aHike;
-    private LocationPoints someCoordinates;
-    private StepCount someSteps;
-    private EnvStatistic statTemp;
-    private EnvStatistic statHumidity;
-    private EnvStatistic statPressure;
-    private EnvData someData;
-    private SessionData someSession;
-
-    private PersistentStorageEntity subject;
-
-    private Random valueGenerator;
-    private RenamingDelegatingContext testContext;
-
-    private int id = -1;
-    private int startTime = 0;
-    private int endTime = 50;
-
-    public PersistentStorageEntityTest(){
-        super(Application.class);
-    }
-
-    protected void setUp() throws Exception{
-        super.setUp();
-
-        //Create the Value generator
-        valueGenerator = new Random();
-        testContext = new RenamingDelegatingContext(getContext(),"test_");
-
-        aHike = new Hike(id,startTime,endTime);
-        statHumidity = new EnvStatistic();
-        statPressure = new EnvStatistic();
-        statTemp = new EnvStatistic();
-        someCoordinates = new LocationPoints();
-        for (int i = 0; i < TEST_SIZE; i++) {
-            someCoordinates.addPoint(new Coordinates(
-                    valueGenerator.nextDouble(),
-                    valueGenerator.nextDouble(),
-                    valueGenerator.nextDouble()));
-        }
-        someSteps = new StepCount(TEST_SIZE);
-
-        statHumidity.insertSample(valueGenerator.nextDouble());
-        statPressure.insertSample(valueGenerator.nextDouble());
-        statTemp.insertSample(valueGenerator.nextDouble());
-
-        someData = new EnvData(statTemp,statHumidity,statPressure);
-
-        //Complete Construction
-        someSession = new SessionData(
-                aHike,
-                someSteps,
-                someData,
-                someCoordinates);
-
-        //Now for the test subject
-        subject = new PersistentStorageEntity(testContext);
-    }
-
-    public void testEmptyHikeListRetrieval() throws Exception{
-        List<Hike> emptyHikes = subject.getHikesList();
-        assertNull(emptyHikes);
+    @Override
+    protected HikeStore createStore() {
+        pse = new PersistentStorageEntity(testContext);
+        return pse;
     }
 
-    public void testHikeListRetrieval() throws Exception{
-        testSessionSave();
-        List<Hike> hikeList = subject.getHikesList();
-        assertNotNull(hikeList);
-        assertEquals(hikeList.size(), 1);
+    @Override
+    protected void forgetCachedSessions() {
+        pse.getSessionCache().clear();
     }
 
+    @Override
     public void testSessionSave() throws Exception{
-        assertTrue(subject.saveSession(someSession));
-        id = someSession.hikeID();
+        super.testSessionSave();
         //The only way we can check if it was correctly written is if we retrieve it ourselves
-        SQLiteDatabase testDB = new DBAssistant(testContext).getReadableDatabase();
+        SQLiteDatabase testDB = DBAssistant.getInstance(testContext).getReadableDatabase();
         //We'll need to check each table here
         Cursor cursor = null;
         //Start with hikes
@@ -119,13 +58,16 @@ public class PersistentStorageEntityTest extends ApplicationTestCase<Application
         assertEquals(cursor.getInt(cursor.getColumnIndex("id")), id);
         cursor.close();
 
-        //Now Check location Points
-        cursor = testDB.query(DBAssistant.COORDS,null,null,null,null,null,null);
+        //Now Check location Points. These are packed in chunks
+        cursor = testDB.query(DBAssistant.TRACKS,null,null,null,null,null,DBAssistant.SEQUENCE_COL);
         assertTrue(cursor.moveToFirst());
-        assertEquals(cursor.getCount(), TEST_SIZE);
+        assertEquals(cursor.getCount(), (TEST_SIZE + TrackChunk.MAX_POINTS - 1) / TrackChunk.MAX_POINTS);
+        int storedPoints = 0;
         do {
             assertEquals(cursor.getInt(cursor.getColumnIndex(DBAssistant.HIKE_ID)), id);
+            storedPoints += cursor.getInt(cursor.getColumnIndex(DBAssistant.POINT_COUNT_COL));
         }while (cursor.moveToNext());
+        assertEquals(storedPoints, TEST_SIZE);
         cursor.close();
 
         //Now Check Stepcount
@@ -152,38 +94,104 @@ public class PersistentStorageEntityTest extends ApplicationTestCase<Application
         cursor.close();
     }
 
-    public void testSessionLoadById() throws Exception{
-        testSessionSave();
-        SessionData retrieved = subject.loadHikeData(id);
-        equalityCheck(retrieved);
-    }
+    @Override
+    public void testSessionJournal() throws Exception{
+        super.testSessionJournal();
 
-    public void testSessionLoadByObject() throws Exception{
-        testSessionSave();
-        SessionData retrieved = subject.loadHikeData(aHike);
-        equalityCheck(retrieved);
+        //Statistics were replaced, not accumulated
+        SQLiteDatabase testDB = DBAssistant.getInstance(testContext).getReadableDatabase();
+        Cursor cursor = testDB.query(DBAssistant.STEPS,null,null,null,null,null,null);
+        assertEquals(cursor.getCount(), 1);
+        cursor.close();
     }
 
-    public void testSessionDelete() throws Exception{
-        testSessionSave();
-        subject.deleteSession(someSession);
-        testEmptyHikeListRetrieval();
+    @Override
+    public void testSummary() throws Exception{
+        super.testSummary();
+        HikeSummary expected = HikeSummary.of(someCoordinates.getCoordinateList());
+
+        //Older hikes have no summary until the backfill runs
+        SQLiteDatabase testDB = DBAssistant.getInstance(testContext).getWritableDatabase();
+        testDB.delete(DBAssistant.SUMMARY, null, null);
+        forgetCachedSessions();
+        assertNull(subject.loadSummary(id));
+
+        assertEquals(subject.backfillSummaries(), 1);
+        assertEquals(subject.backfillSummaries(), 0);
+        HikeSummary backfilled = subject.loadSummary(id);
+        assertEquals(backfilled.getPointCount(), TEST_SIZE);
+        //Stored points are rounded to 1e-7 degrees, about a centimetre per point
+        assertEquals(backfilled.getDistance(), expected.getDistance(), TEST_SIZE*0.02);
+        assertEquals(backfilled.getMaxAltitude(), expected.getMaxAltitude(), 0.01);
     }
 
-    private void equalityCheck(SessionData retrieved) throws Exception{
-        assertEquals(retrieved.getCurrentStats().getHumidity().getAvg(),statHumidity.getAvg());
+    public void testSpatialIndexBackfill() throws Exception{
+        SessionData walkSession = saveWalk();
 
-        assertEquals(retrieved.getCurrentStats().getPressure().getAvg(),statPressure.getAvg());
+        //Older hikes are not indexed until the backfill runs
+        SQLiteDatabase testDB = DBAssistant.getInstance(testContext).getWritableDatabase();
+        testDB.delete(DBAssistant.CELLS, null, null);
+        assertTrue(subject.findHikesNear(45.505, -73.595, 500).isEmpty());
+        assertEquals(subject.backfillCells(), 1);
+        assertEquals(subject.backfillCells(), 0);
+        assertEquals(subject.findHikesNear(45.505, -73.595, 500).size(), 1);
 
-        assertEquals(retrieved.getCurrentStats().getTemperature().getAvg(),statTemp.getAvg());
-
-        assertEquals(retrieved.getStepCount().getStepsTaken(),someSteps.getStepsTaken());
+        assertTrue(subject.deleteSession(walkSession));
+        assertEquals(DatabaseUtils.queryNumEntries(testDB, DBAssistant.CELLS), 0);
+    }
 
-        for (int i = 0; i < TEST_SIZE; i++) {
-            assertEquals( retrieved.getGeoPoints().getCoordinateList().get(i).toString(),
-                    someCoordinates.getCoordinateList().get(i).toString());
+    @Override
+    public void testDeleteHikes() throws Exception{
+        //A new database is created with incremental vacuum, and still in WAL mode
+        RenamingDelegatingContext newContext = new RenamingDelegatingContext(getContext(),
+                "vacuum_" + System.currentTimeMillis() + "_");
+        DBAssistant newDBA = new DBAssistant(newContext);
+        try {
+            SQLiteDatabase newDB = newDBA.getWritableDatabase();
+            assertEquals(DatabaseUtils.longForQuery(newDB, DBAssistant.PRAGMA_AUTO_VACUUM, null),
+                    DBAssistant.AUTO_VACUUM_INCREMENTAL);
+            assertEquals(DatabaseUtils.stringForQuery(newDB, "PRAGMA journal_mode", null).toLowerCase(), "wal");
+        }
+        finally {
+            newDBA.close();
+            newContext.deleteDatabase(DBAssistant.DB_NAME);
         }
-    }
 
+        List<Integer> savedIDs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SessionData session = new SessionData(new Hike(-1,startTime,endTime), someSteps, someData, someCoordinates);
+            assertTrue(subject.saveSession(session));
+            savedIDs.add(session.hikeID());
+        }
+        SQLiteDatabase testDB = DBAssistant.getInstance(testContext).getWritableDatabase();
+        long pagesBefore = DatabaseUtils.longForQuery(testDB, "PRAGMA page_count", null);
+
+        //Unknown IDs are ignored
+        List<Integer> toDelete = new ArrayList<>(savedIDs.subList(0, 2));
+        toDelete.add(-5);
+        toDelete.add(100000);
+        assertEquals(subject.deleteHikes(toDelete), 2);
+        assertEquals(subject.deleteHikes(toDelete), 0);
+
+        //Nothing is left of the deleted hikes, in any table
+        for (int i = 1; i < DBAssistant.VALID_TABLES.length; i++) {
+            assertEquals(DBAssistant.VALID_TABLES[i], DatabaseUtils.longForQuery(testDB,
+                    "SELECT COUNT(*) FROM " + DBAssistant.VALID_TABLES[i] + " WHERE " + DBAssistant.HIKE_ID + "<>?",
+                    new String[]{savedIDs.get(2).toString()}), 0);
+        }
+        assertNull(subject.loadHikeData(savedIDs.get(0)));
+        assertNotNull(subject.loadHikeData(savedIDs.get(2)));
+
+        //Freed pages are given back a step at a time
+        assertTrue(pse.getFreePages() > 0);
+        int steps = 0;
+        while (subject.reclaimSpace(4) > 0){
+            assertTrue(++steps < 10000);
+        }
+        assertEquals(pse.getFreePages(), 0);
+        assertTrue(DatabaseUtils.longForQuery(testDB, "PRAGMA page_count", null) < pagesBefore);
 
+        assertTrue(subject.deleteHike(new Hike(savedIDs.get(2), startTime, endTime)));
+        testEmptyHikeListRetrieval();
+    }
 }
@@ -0,0 +1,84 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.QueryPlanInspector;
+
+/**
+ * Verification of the query plans used by the PersistentStorageEntity
+ * Test:
+ * - Full scans of an index are told apart from searches
+ * - Every lookup of hikes, by ID, page, cell, series or end time, searches an index
+ * - Bulk reads of the tracks are ordered by an index instead of a temporary sort
+ * - Pages of the hike list are read in index order
+ * - Spatial queries read ranges of the cell index
+ */
+public class QueryPlanTest extends ApplicationTestCase<Application> {
+
+    private RenamingDelegatingContext testContext;
+    private SQLiteDatabase testDB;
+
+    public QueryPlanTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        testContext = new RenamingDelegatingContext(getContext(),"test_");
+        testDB = DBAssistant.getInstance(testContext).getReadableDatabase();
+    }
+
+    public void testFullScans() throws Exception{
+        assertTrue(QueryPlanInspector.hasFullScan(Arrays.asList("SCAN hikes")));
+        assertTrue(QueryPlanInspector.hasFullScan(Arrays.asList("SCAN TABLE hikes")));
+        assertTrue(QueryPlanInspector.hasFullScan(Arrays.asList("SCAN hikes USING INDEX idx_hikes_startTime")));
+        assertTrue(QueryPlanInspector.hasFullScan(Arrays.asList("SCAN cells USING COVERING INDEX idx_cells")));
+        assertFalse(QueryPlanInspector.hasFullScan(Arrays.asList("SEARCH hikes USING INTEGER PRIMARY KEY (rowid=?)")));
+        assertFalse(QueryPlanInspector.hasFullScan(Arrays.asList("SEARCH tracks USING INDEX idx_tracks (hike_id=?)")));
+    }
+
+    public void testHikeLookupsUseIndexes() throws Exception{
+        List<String> offenders = new PersistentStorageEntity(testContext).findUnindexedStatements();
+        assertTrue("Statements scanning tables: " + offenders, offenders.isEmpty());
+    }
+
+    public void testHikePagesUseIndexOrder() throws Exception{
+        QueryPlanInspector inspector = new QueryPlanInspector(testDB);
+        List<List<String>> plans = new java.util.ArrayList<>();
+        plans.add(inspector.explain(DBAssistant.QUERY_HIKES_FIRST_PAGE, new String[]{"12"}));
+        plans.add(inspector.explain(DBAssistant.QUERY_HIKES_NEXT_PAGE, new String[]{"1000", "1000", "5", "12"}));
+        for (List<String> plan : plans) {
+            //The first page walks the index from its end, the next ones search it
+            assertTrue(plan.toString(), plan.toString().contains("idx_" + DBAssistant.HIKE + "_" + DBAssistant.HIKE_START));
+            for (String step : plan) {
+                assertFalse(plan.toString(), step.contains("TEMP B-TREE"));
+            }
+        }
+    }
+
+    public void testCellQueriesUseIndex() throws Exception{
+        String twoRanges = DBAssistant.CELL_RANGE + " OR " + DBAssistant.CELL_RANGE;
+        List<String> plan = new QueryPlanInspector(testDB).explain(
+                String.format(DBAssistant.QUERY_HIKES_IN_CELLS, twoRanges), new String[]{"1", "5", "10", "15"});
+        assertFalse(plan.toString(), QueryPlanInspector.hasFullScan(plan));
+        assertTrue(plan.toString(), plan.toString().contains("idx_" + DBAssistant.CELLS + "_" + DBAssistant.CELL_COL));
+    }
+
+    public void testTrackBulkReadUsesIndexOrder() throws Exception{
+        List<String> plan = new QueryPlanInspector(testDB).explain(DBAssistant.QUERY_ALL_TRACKS, null);
+        //Every track is read, through the index so the rows come out in order
+        assertTrue(plan.toString(), plan.toString().contains("idx_" + DBAssistant.TRACKS));
+        for (String step : plan) {
+            assertFalse(plan.toString(), step.contains("TEMP B-TREE"));
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.ApplicationTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.DBAssistant;
+import me.dotteam.dotprod.data.SchemaMigration;
+import me.dotteam.dotprod.data.StorageValues;
+
+/**
+ * Test harness of the DBAssistant migrations
+ * A large version 2 database is written directly, then opened through the DBAssistant.
+ * Test:
+ * - Every row survives the upgrade
+ * - Steps run in order and report their progress
+ * - Running the steps again from the current version does nothing
+ * Upgrade time is written to the log under the BENCH tag.
+ */
+public class SchemaMigrationTest extends ApplicationTestCase<Application> {
+
+    public static final int HIKES=200;
+    public static final int POINTS_PER_HIKE=1500;
+
+    private RenamingDelegatingContext testContext;
+
+    public SchemaMigrationTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        testContext = new RenamingDelegatingContext(getContext(),"migration_");
+        testContext.deleteDatabase(DBAssistant.DB_NAME);
+    }
+
+    public void testUpgradeLargeVersion2Database() throws Exception{
+        buildVersion2Database();
+
+        final List<Integer> stepsSeen = new ArrayList<>();
+        final long[] lastProgress = new long[2];
+        DBAssistant subject = new DBAssistant(testContext);
+        subject.setMigrationListener(new SchemaMigration.ProgressListener() {
+            @Override
+            public void onProgress(SchemaMigration step, long done, long total) {
+                if(stepsSeen.isEmpty() || stepsSeen.get(stepsSeen.size()-1)!=step.getVersion()){
+                    stepsSeen.add(step.getVersion());
+                }
+                lastProgress[0] = done;
+                lastProgress[1] = total;
+            }
+        });
+
+        long start = System.nanoTime();
+        SQLiteDatabase db = subject.getWritableDatabase();
+        long elapsedMillis = (System.nanoTime() - start)/1000000;
+        Log.i(PersistentStorageBenchmarkTest.TAG, String.format(
+                "Migration of %d hikes, %d coordinates from version 2: %d ms",
+                HIKES, HIKES*POINTS_PER_HIKE, elapsedMillis));
+
+        assertEquals(db.getVersion(), DBAssistant.SCHEME_VERSION);
+
+        //Only the coordinates step reports progress, and it covered every row
+        assertEquals(stepsSeen.size(), 1);
+        assertEquals((int) stepsSeen.get(0), 3);
+        assertEquals(lastProgress[0], (long) HIKES*POINTS_PER_HIKE);
+        assertEquals(lastProgress[1], (long) HIKES*POINTS_PER_HIKE);
+
+        //Row counts
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.HIKE), HIKES);
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.ENVTEMP), HIKES);
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.ENVHUMD), HIKES);
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.ENVPRES), HIKES);
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.STEPS), HIKES);
+        assertEquals(DatabaseUtils.queryNumEntries(db, DBAssistant.HIKE_NAME), HIKES);
+        assertEquals(DatabaseUtils.longForQuery(db,
+                "SELECT SUM(" + DBAssistant.POINT_COUNT_COL + ") FROM " + DBAssistant.TRACKS, null),
+                (long) HIKES*POINTS_PER_HIKE);
+        assertEquals(DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(DISTINCT " + DBAssistant.HIKE_ID + ") FROM " + DBAssistant.TRACKS, null),
+                HIKES);
+        assertEquals(DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name=?", new String[]{DBAssistant.COORDS}), 0);
+
+        //Already current: nothing to run
+        assertEquals(DBAssistant.runMigrations(db, DBAssistant.SCHEME_VERSION, DBAssistant.SCHEME_VERSION, null), 0);
+
+        subject.close();
+        testContext.deleteDatabase(DBAssistant.DB_NAME);
+    }
+
+    public void testMigrationsAreOrdered() throws Exception{
+        int previous = DBAssistant.OLDEST_MIGRATABLE_VERSION;
+        for (SchemaMigration step : DBAssistant.MIGRATIONS) {
+            assertEquals(step.toString(), step.getVersion(), previous + 1);
+            previous = step.getVersion();
+        }
+        assertEquals(previous, DBAssistant.SCHEME_VERSION);
+    }
+
+    /**
+     * Write a version 2 database, where every coordinate is a row, without going through the DBAssistant
+     */
+    private void buildVersion2Database(){
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(testContext.getDatabasePath(DBAssistant.DB_NAME), null);
+        db.execSQL(DBAssistant.SCHEME_CREATE_HIKES_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_COORDS_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_TEMPERATURE_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_HUMIDITY_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_PRESSURE_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_STEPS_TABLE);
+        db.execSQL(DBAssistant.SCHEME_CREATE_NAME_TABLE);
+
+        Random prng = new Random(3);
+        db.beginTransaction();
+        try {
+            for (int hike = 1; hike <= HIKES; hike++) {
+                ContentValues hikeRow = new ContentValues();
+                hikeRow.put("id", hike);
+                hikeRow.put(DBAssistant.HIKE_START, hike*10000L);
+                hikeRow.put(DBAssistant.HIKE_END, hike*10000L + 5000);
+                db.insert(DBAssistant.HIKE, null, hikeRow);
+
+                for (int i = 0; i < POINTS_PER_HIKE; i++) {
+                    db.insert(DBAssistant.COORDS, null, StorageValues.of(new Coordinates(
+                            prng.nextDouble(), prng.nextDouble(), prng.nextDouble()), hike));
+                }
+
+                for (String table : new String[]{DBAssistant.ENVTEMP, DBAssistant.ENVHUMD, DBAssistant.ENVPRES}) {
+                    ContentValues statistic = new ContentValues();
+                    statistic.put(DBAssistant.HIKE_ID, hike);
+                    statistic.put(DBAssistant.MIN_COL, prng.nextDouble());
+                    statistic.put(DBAssistant.AVG_COL, prng.nextDouble());
+                    statistic.put(DBAssistant.MAX_COL, prng.nextDouble());
+                    db.insert(table, null, statistic);
+                }
+
+                ContentValues steps = new ContentValues();
+                steps.put(DBAssistant.HIKE_ID, hike);
+                steps.put(DBAssistant.STEP_COUNT, prng.nextInt(20000));
+                db.insert(DBAssistant.STEPS, null, steps);
+
+                ContentValues name = new ContentValues();
+                name.put(DBAssistant.HIKE_ID, hike);
+                name.put(DBAssistant.NICKNAME, "Hike " + hike);
+                db.insert(DBAssistant.HIKE_NAME, null, name);
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+        db.setVersion(2);
+        db.close();
+    }
+}
@@ -0,0 +1,114 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.SessionCache;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StepCount;
+
+/**
+ * Unit Test of the SessionCache class.
+ * Tests:
+ * - Hit and miss counting
+ * - Eviction of the least recently used session
+ * - Bounding by estimated memory instead of number of sessions
+ * - Weighing a session again once its track is loaded
+ */
+public class SessionCacheTest extends ApplicationTestCase<Application> {
+
+    public static final int POINTS_PER_SESSION=1000;
+
+    private long sessionWeight;
+    private SessionCache subject;
+
+    public SessionCacheTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        sessionWeight = SessionCache.weightOf(buildSession(1, POINTS_PER_SESSION));
+        //Room for exactly three sessions
+        subject = new SessionCache(sessionWeight*3);
+    }
+
+    public void testHitsAndMisses() throws Exception{
+        assertNull(subject.get(1));
+        subject.put(1, buildSession(1, POINTS_PER_SESSION));
+        assertNotNull(subject.get(1));
+
+        assertEquals(subject.getHits(), 1);
+        assertEquals(subject.getMisses(), 1);
+    }
+
+    public void testLeastRecentlyUsedEviction() throws Exception{
+        subject.put(1, buildSession(1, POINTS_PER_SESSION));
+        subject.put(2, buildSession(2, POINTS_PER_SESSION));
+        subject.put(3, buildSession(3, POINTS_PER_SESSION));
+
+        //Touch the first one so the second becomes the eldest
+        assertNotNull(subject.get(1));
+        subject.put(4, buildSession(4, POINTS_PER_SESSION));
+
+        assertNotNull(subject.get(1));
+        assertNull(subject.get(2));
+        assertNotNull(subject.get(3));
+        assertNotNull(subject.get(4));
+        assertEquals(subject.getEvictions(), 1);
+        assertEquals(subject.getCurrentBytes(), sessionWeight*3);
+    }
+
+    public void testBoundedByWeight() throws Exception{
+        //A single large session pushes out all the small ones
+        subject.put(1, buildSession(1, POINTS_PER_SESSION));
+        subject.put(2, buildSession(2, POINTS_PER_SESSION));
+        subject.put(3, buildSession(3, POINTS_PER_SESSION*2));
+
+        assertEquals(subject.size(), 1);
+        assertNotNull(subject.get(3));
+
+        //Larger than the whole cache: never stored
+        subject.put(4, buildSession(4, POINTS_PER_SESSION*4));
+        assertNull(subject.get(4));
+        assertTrue(subject.getCurrentBytes() <= subject.getMaxBytes());
+    }
+
+    public void testReweighOnceLoaded() throws Exception{
+        subject.put(1, buildSession(1, POINTS_PER_SESSION));
+        subject.put(2, buildSession(2, POINTS_PER_SESSION));
+
+        //Without a summary, a session whose track is not loaded looks empty
+        final LocationPoints track = buildSession(3, POINTS_PER_SESSION*2).getGeoPoints();
+        SessionData lazy = new SessionData(new Hike(3, 0, 50), new StepCount(0), new EnvData(),
+                new SessionData.TrackLoader() {
+                    @Override
+                    public LocationPoints loadTrack() {
+                        subject.reweigh(3, track);
+                        return track;
+                    }
+                });
+        subject.put(3, lazy);
+        assertEquals(subject.size(), 3);
+        assertEquals(subject.getCurrentBytes(), sessionWeight*2 + SessionCache.BYTES_PER_SESSION);
+
+        //Once loaded, it pushes out the least recently used session
+        assertEquals(lazy.getGeoPoints(), track);
+        assertEquals(subject.getCurrentBytes(), sessionWeight + SessionCache.weightOf(lazy));
+        assertNull(subject.get(1));
+        assertNotNull(subject.get(3));
+        assertEquals(subject.getEvictions(), 1);
+    }
+
+    private SessionData buildSession(int id, int points){
+        LocationPoints someCoordinates = new LocationPoints();
+        for (int i = 0; i < points; i++) {
+            someCoordinates.addPoint(new Coordinates(i, i, i));
+        }
+        return new SessionData(new Hike(id, 0, 50), new StepCount(points), new EnvData(), someCoordinates);
+    }
+}
@@ -15,9 +15,11 @@ import me.dotteam.dotprod.data.DBAssistant;
 import me.dotteam.dotprod.data.EnvData;
 import me.dotteam.dotprod.data.EnvStatistic;
 import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeSummary;
 import me.dotteam.dotprod.data.LocationPoints;
 import me.dotteam.dotprod.data.SessionData;
 import me.dotteam.dotprod.data.StepCount;
+import me.dotteam.dotprod.data.StorageValues;
 
 /**
  * Unit Test for SessionData Class
@@ -26,6 +28,7 @@ import me.dotteam.dotprod.data.StepCount;
  * - Statistical Data Consistency
  * - Step Count Consistency
  * - Location Data Consistency
+ * - Lazy loading of the track, once and only when requested
  * - Serialization of Hike Data
  */
 public class SessionDataTest extends ApplicationTestCase<Application> {
@@ -123,11 +126,39 @@ public class SessionDataTest extends ApplicationTestCase<Application> {
         }
     }
 
+    public void testLazyTrack() throws Exception{
+        final int[] loads = new int[1];
+        SessionData lazy = new SessionData(aHike, someSteps, someData, new SessionData.TrackLoader() {
+            @Override
+            public LocationPoints loadTrack() {
+                ++loads[0];
+                return someLocation;
+            }
+        });
+        assertFalse(lazy.isSummaryLoaded());
+        lazy.setSummary(HikeSummary.of(someCoordinates));
+
+        //Everything but the track is there without loading it
+        assertFalse(lazy.isTrackLoaded());
+        assertTrue(lazy.isSummaryLoaded());
+        assertEquals(lazy.getCurrentStats(), someData);
+        assertEquals(lazy.getStepCount(), someSteps);
+        assertEquals(lazy.getSummary().getPointCount(), TEST_SIZE);
+        assertEquals(lazy.getPointCount(), TEST_SIZE);
+        lazy.toString();
+        assertEquals(loads[0], 0);
+
+        assertEquals(lazy.getGeoPoints(), someLocation);
+        assertEquals(lazy.getGeoPoints(), someLocation);
+        assertTrue(lazy.isTrackLoaded());
+        assertEquals(loads[0], 1);
+    }
+
     public void testHikeSerialization() throws Exception{
-        assertEquals(subject.hikeToStorage(),aHike.toStorage());
+        assertEquals(StorageValues.of(subject.getHike()),StorageValues.of(aHike));
     }
 
     public void testHikeNameSerialization() throws Exception{
-        assertEquals(subject.hikeNameToStorage(),aHike.nameToStorage());
+        assertEquals(StorageValues.nameOf(subject.getHike()),StorageValues.nameOf(aHike));
     }
 }
@@ -0,0 +1,145 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.dotteam.dotprod.data.StorageExecutor;
+
+/**
+ * Unit Test of the StorageExecutor class.
+ * Tests:
+ * - Reads with the same key in flight are coalesced into a single operation
+ * - Cancelling one caller of a coalesced read leaves the others their result
+ * - The read itself is only cancelled once every caller has cancelled
+ * - Cancelling and submitting the same key from different threads never deadlocks
+ */
+public class StorageExecutorTest extends ApplicationTestCase<Application> {
+
+    public static final String KEY="session:1";
+
+    private StorageExecutor subject;
+    private CountDownLatch release;
+    private AtomicInteger runs;
+    private AtomicBoolean interrupted;
+
+    public StorageExecutorTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        subject = new StorageExecutor();
+        release = new CountDownLatch(1);
+        runs = new AtomicInteger();
+        interrupted = new AtomicBoolean();
+    }
+
+    /**
+     * Read that blocks until released
+     */
+    private Callable<Integer> blockingRead(){
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                runs.incrementAndGet();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e){
+                    interrupted.set(true);
+                    throw e;
+                }
+                return 42;
+            }
+        };
+    }
+
+    public void testCoalesced() throws Exception{
+        Future<Integer> first = subject.submitRead(KEY, blockingRead(), null);
+        Future<Integer> second = subject.submitRead(KEY, blockingRead(), null);
+        release.countDown();
+        assertEquals((int) first.get(), 42);
+        assertEquals((int) second.get(), 42);
+        assertEquals(runs.get(), 1);
+    }
+
+    public void testCancelOneCaller() throws Exception{
+        Future<Integer> first = subject.submitRead(KEY, blockingRead(), null);
+        Future<Integer> second = subject.submitRead(KEY, blockingRead(), null);
+
+        assertTrue(first.cancel(true));
+        assertTrue(first.isCancelled());
+        assertTrue(first.isDone());
+        assertFalse(second.isCancelled());
+        try {
+            first.get();
+            fail("A cancelled caller should not get the result");
+        }
+        catch (CancellationException e){
+            //Expected
+        }
+
+        release.countDown();
+        assertEquals((int) second.get(1, TimeUnit.SECONDS), 42);
+        assertFalse(interrupted.get());
+        assertEquals(runs.get(), 1);
+    }
+
+    public void testCancelEveryCaller() throws Exception{
+        Future<Integer> first = subject.submitRead(KEY, blockingRead(), null);
+        Future<Integer> second = subject.submitRead(KEY, blockingRead(), null);
+        //Wait for the read to start, so cancelling interrupts it
+        while (runs.get()==0){
+            Thread.sleep(1);
+        }
+
+        assertTrue(first.cancel(true));
+        assertTrue(second.cancel(true));
+        assertFalse(second.cancel(true));
+
+        //A new caller starts a new read instead of joining the cancelled one
+        Future<Integer> third = subject.submitRead(KEY, blockingRead(), null);
+        release.countDown();
+        assertEquals((int) third.get(1, TimeUnit.SECONDS), 42);
+        assertTrue(interrupted.get());
+        assertEquals(runs.get(), 2);
+    }
+
+    public void testCancelWhileSubmitting() throws Exception{
+        final int rounds = 2000;
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(2);
+        Runnable cancelling = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        subject.submitRead(KEY, blockingRead(), null).cancel(true);
+                    }
+                }
+                catch (Throwable e){
+                    failed.set(true);
+                }
+                done.countDown();
+            }
+        };
+        new Thread(cancelling).start();
+        new Thread(cancelling).start();
+        assertTrue("Cancelling and submitting deadlocked", done.await(30, TimeUnit.SECONDS));
+        assertFalse(failed.get());
+    }
+
+    protected void tearDown() throws Exception{
+        release.countDown();
+        subject.shutdown();
+        super.tearDown();
+    }
+}
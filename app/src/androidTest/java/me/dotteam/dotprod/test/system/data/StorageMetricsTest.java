@@ -0,0 +1,118 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import me.dotteam.dotprod.data.InMemoryHikeStore;
+import me.dotteam.dotprod.data.InstrumentedHikeStore;
+import me.dotteam.dotprod.data.LatencyHistogram;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StorageMetrics;
+import me.dotteam.dotprod.data.SyntheticHike;
+
+/**
+ * Unit Test of the StorageMetrics, LatencyHistogram and InstrumentedHikeStore classes.
+ * Tests:
+ * - Latencies fall in the right bucket and percentiles are bounded by them
+ * - Nothing is measured while the metrics are disabled
+ * - Calls, rows and latencies are recorded per operation once enabled
+ * - Resetting forgets everything measured
+ */
+public class StorageMetricsTest extends ApplicationTestCase<Application> {
+
+    public static final int POINT_COUNT=2000;
+
+    private StorageMetrics metrics;
+    private InstrumentedHikeStore subject;
+
+    public StorageMetricsTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        metrics = new StorageMetrics();
+        subject = new InstrumentedHikeStore(new InMemoryHikeStore(), metrics);
+    }
+
+    public void testHistogram() throws Exception{
+        assertEquals(LatencyHistogram.bucketOf(500), 0);
+        assertEquals(LatencyHistogram.bucketOf(1000), 1);
+        assertEquals(LatencyHistogram.bucketOf(3000), 2);
+        assertEquals(LatencyHistogram.bucketOf(Long.MAX_VALUE), LatencyHistogram.BUCKETS - 1);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getPercentile(50), 0);
+        //90 fast calls of 100 microseconds, 10 slow ones of 50 milliseconds
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(50000000);
+        }
+        assertEquals(histogram.getCount(), 100);
+        assertEquals(histogram.getMax(), 50000000);
+        assertEquals(histogram.getMean(), (90*100000L + 10*50000000L)/100);
+        assertTrue(histogram.getPercentile(50) >= 100000 && histogram.getPercentile(50) < 200000);
+        assertTrue(histogram.getPercentile(90) < 200000);
+        assertEquals(histogram.getPercentile(99), 50000000);
+
+        histogram.reset();
+        assertEquals(histogram.getCount(), 0);
+        assertEquals(histogram.getMax(), 0);
+    }
+
+    public void testDisabled() throws Exception{
+        assertFalse(metrics.isEnabled());
+        SessionData session = SyntheticHike.session(POINT_COUNT, SyntheticHike.SEED);
+        assertTrue(subject.saveSession(session));
+        assertNotNull(subject.loadHikeData(session.getHike().getUniqueID()));
+        for (StorageMetrics.Operation operation : metrics.getOperations()) {
+            assertEquals(operation.getLatency().getCount(), 0);
+            assertEquals(operation.getRowsWritten(), 0);
+        }
+    }
+
+    public void testEnabled() throws Exception{
+        metrics.setEnabled(true);
+        SessionData session = SyntheticHike.session(POINT_COUNT, SyntheticHike.SEED);
+        assertTrue(subject.saveSession(session));
+        int hikeID = session.getHike().getUniqueID();
+        subject.loadHikeData(hikeID);
+        subject.loadHikeData(hikeID);
+        subject.getHikesList();
+        assertEquals(subject.deleteHikes(Collections.singletonList(hikeID)), 1);
+
+        StorageMetrics.Operation save = metrics.operation("saveSession");
+        assertEquals(save.getLatency().getCount(), 1);
+        assertEquals(save.getRowsWritten(), POINT_COUNT);
+        assertTrue(save.getLatency().getMax() > 0);
+
+        StorageMetrics.Operation load = metrics.operation("loadHikeData");
+        assertEquals(load.getLatency().getCount(), 2);
+        assertEquals(load.getRowsRead(), 2);
+        assertTrue(load.getLatency().getPercentile(50) <= load.getLatency().getMax());
+
+        assertEquals(metrics.operation("getHikesList").getRowsRead(), 1);
+        assertEquals(metrics.operation("deleteHike").getRowsWritten(), 1);
+        assertEquals(metrics.operation("loadSeries").getLatency().getCount(), 0);
+
+        StringWriter report = new StringWriter();
+        metrics.dump(report);
+        assertTrue(report.toString().contains("saveSession"));
+        assertTrue(report.toString().contains("loadHikeData"));
+        assertFalse(report.toString().contains("loadSeries"));
+    }
+
+    public void testReset() throws Exception{
+        metrics.setEnabled(true);
+        subject.getHikesList();
+        assertEquals(metrics.operation("getHikesList").getLatency().getCount(), 1);
+        metrics.reset();
+        assertEquals(metrics.operation("getHikesList").getLatency().getCount(), 0);
+        assertTrue(metrics.isEnabled());
+    }
+}
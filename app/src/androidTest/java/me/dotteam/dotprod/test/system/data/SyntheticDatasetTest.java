@@ -0,0 +1,168 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvSample;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.Hike;
+import me.dotteam.dotprod.data.HikeSummary;
+import me.dotteam.dotprod.data.InMemoryHikeStore;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.SyntheticDataset;
+import me.dotteam.dotprod.data.SyntheticHike;
+
+/**
+ * Unit Test of the SyntheticHike and SyntheticDataset classes.
+ * Tests:
+ * - The same seed gives the same hike, another seed a different one
+ * - Generated hikes are plausible: pace, timestamps, steps and readings following the altitude
+ * - Filling a store with several hikes through the journal
+ * - Cancelling a generation keeps the hikes already written and nothing else
+ */
+public class SyntheticDatasetTest extends ApplicationTestCase<Application> {
+
+    public static final int HIKE_COUNT=3;
+    public static final int POINT_COUNT=5000;
+
+    private InMemoryHikeStore store;
+    private SyntheticDataset subject;
+
+    public SyntheticDatasetTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        store = new InMemoryHikeStore();
+        subject = new SyntheticDataset(store);
+    }
+
+    public void testReproducible() throws Exception{
+        List<Coordinates> first = SyntheticHike.track(POINT_COUNT, SyntheticHike.SEED);
+        List<Coordinates> again = SyntheticHike.track(POINT_COUNT, SyntheticHike.SEED);
+        List<Coordinates> other = SyntheticHike.track(POINT_COUNT, SyntheticHike.SEED + 1);
+        assertEquals(first.size(), POINT_COUNT);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(first.get(i).getLatitude(), again.get(i).getLatitude());
+            assertEquals(first.get(i).getLongitude(), again.get(i).getLongitude());
+            assertEquals(first.get(i).getAltitude(), again.get(i).getAltitude());
+            assertEquals(first.get(i).getTime(), again.get(i).getTime());
+        }
+        assertFalse(first.get(POINT_COUNT - 1).getLatitude()==other.get(POINT_COUNT - 1).getLatitude());
+    }
+
+    public void testPlausible() throws Exception{
+        SessionData session = SyntheticHike.session(POINT_COUNT, SyntheticHike.SEED);
+        List<Coordinates> points = session.getGeoPoints().getCoordinateList();
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(points.get(i).getTime(), SyntheticHike.START_TIME + i*SyntheticHike.INTERVAL);
+        }
+        assertEquals(session.hikeStartTime(), SyntheticHike.START_TIME);
+        assertEquals(session.hikeEndTime(), points.get(POINT_COUNT - 1).getTime());
+        assertTrue(session.isValid());
+
+        //Walking pace, allowing for rests
+        HikeSummary summary = session.getSummary();
+        double pace = summary.getDistance()/(POINT_COUNT*SyntheticHike.INTERVAL/1000);
+        assertTrue(pace > SyntheticHike.WALKING_SPEED/2 && pace < SyntheticHike.WALKING_SPEED*1.5);
+        double steps = session.getStepCount().getStepsTaken();
+        assertEquals(steps, summary.getDistance()/SyntheticHike.STRIDE, steps*0.2);
+
+        //Colder and lower pressure higher up
+        SyntheticHike hike = new SyntheticHike(SyntheticHike.SEED);
+        Coordinates low = null;
+        Coordinates high = null;
+        double[] lowReadings = new double[3];
+        double[] highReadings = new double[3];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            Coordinates point = hike.nextPoint();
+            if(low==null || point.getAltitude()<low.getAltitude()){
+                low = point;
+                readAll(hike, lowReadings);
+            }
+            if(high==null || point.getAltitude()>high.getAltitude()){
+                high = point;
+                readAll(hike, highReadings);
+            }
+        }
+        if(high.getAltitude() - low.getAltitude() > 100){
+            assertTrue(highReadings[EnvSeries.TEMPERATURE] < lowReadings[EnvSeries.TEMPERATURE]);
+            assertTrue(highReadings[EnvSeries.PRESSURE] < lowReadings[EnvSeries.PRESSURE]);
+        }
+    }
+
+    private static void readAll(SyntheticHike hike, double[] into){
+        into[EnvSeries.TEMPERATURE] = hike.getReading(EnvSeries.TEMPERATURE);
+        into[EnvSeries.HUMIDITY] = hike.getReading(EnvSeries.HUMIDITY);
+        into[EnvSeries.PRESSURE] = hike.getReading(EnvSeries.PRESSURE);
+    }
+
+    public void testFill() throws Exception{
+        final long[] lastProgress = new long[1];
+        List<Integer> generated = subject.fill(HIKE_COUNT, POINT_COUNT, SyntheticHike.SEED,
+                new SyntheticDataset.Listener() {
+                    @Override
+                    public void onProgress(long pointsWritten, long totalPoints) {
+                        assertTrue(pointsWritten > lastProgress[0]);
+                        assertEquals(totalPoints, (long) HIKE_COUNT*POINT_COUNT);
+                        lastProgress[0] = pointsWritten;
+                    }
+
+                    @Override
+                    public void onHikeGenerated(int hikeID, long pointCount) {
+                        assertEquals(pointCount, POINT_COUNT);
+                    }
+                });
+        assertEquals(generated.size(), HIKE_COUNT);
+        assertEquals(lastProgress[0], (long) HIKE_COUNT*POINT_COUNT);
+        assertEquals(store.getHikesList().size(), HIKE_COUNT);
+        assertTrue(store.getOpenHikes().isEmpty());
+
+        for (int k = 0; k < HIKE_COUNT; k++) {
+            int hikeID = generated.get(k);
+            SessionData loaded = store.loadHikeData(hikeID);
+            assertEquals(loaded.hikeStartTime(), SyntheticHike.START_TIME + k*SyntheticDataset.HIKE_SPACING);
+            assertEquals(loaded.getGeoPoints().getCoordinateList().size(), POINT_COUNT);
+            assertEquals(store.loadSummary(hikeID).getPointCount(), POINT_COUNT);
+            assertTrue(loaded.getCurrentStats().isValid());
+            assertTrue(loaded.getStepCount().getStepsTaken() > 0);
+
+            //Same hike as generated in memory from the same seed
+            Coordinates expected = SyntheticHike.track(POINT_COUNT, SyntheticHike.SEED + k).get(POINT_COUNT - 1);
+            Coordinates stored = store.retrieveCoordinates(hikeID).get(POINT_COUNT - 1);
+            assertEquals(stored.getLatitude(), expected.getLatitude(), 1e-6);
+            assertEquals(stored.getLongitude(), expected.getLongitude(), 1e-6);
+
+            List<EnvSample> temperatures = store.loadSeries(hikeID, EnvSeries.TEMPERATURE,
+                    loaded.hikeStartTime(), loaded.hikeEndTime(), 0);
+            assertEquals(temperatures.size(), POINT_COUNT);
+        }
+    }
+
+    public void testCancel() throws Exception{
+        List<Integer> generated = subject.fill(HIKE_COUNT, POINT_COUNT, SyntheticHike.SEED,
+                new SyntheticDataset.Listener() {
+                    @Override
+                    public void onProgress(long pointsWritten, long totalPoints) {
+                        //In the middle of the second hike
+                        if(pointsWritten > POINT_COUNT){
+                            subject.cancel();
+                        }
+                    }
+
+                    @Override
+                    public void onHikeGenerated(int hikeID, long pointCount) {
+                    }
+                });
+        assertTrue(subject.isCancelled());
+        assertEquals(generated.size(), 1);
+        List<Hike> stored = store.getHikesList();
+        assertEquals(stored.size(), 1);
+        assertEquals(stored.get(0).getUniqueID(), (int) generated.get(0));
+        assertTrue(store.getOpenHikes().isEmpty());
+    }
+}
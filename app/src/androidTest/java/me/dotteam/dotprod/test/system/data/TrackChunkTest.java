@@ -0,0 +1,92 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.TrackChunk;
+import me.dotteam.dotprod.data.TrackCodec;
+
+/**
+ * Unit Test of the TrackChunk class.
+ * Tests:
+ * - Packing and unpacking a range of points in every encoding
+ * - Splitting a track into chunks
+ */
+public class TrackChunkTest extends ApplicationTestCase<Application> {
+
+    public static final int TEST_SIZE=2*TrackChunk.MAX_POINTS+10;
+
+    private Random valueGenerator;
+    private List<Coordinates> coordinatesList;
+
+    public TrackChunkTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        valueGenerator = new Random();
+
+        coordinatesList = new ArrayList<>();
+        for (int i = 0; i < TEST_SIZE; i++) {
+            coordinatesList.add(new Coordinates(
+                    valueGenerator.nextDouble(),
+                    valueGenerator.nextDouble(),
+                    valueGenerator.nextDouble(),
+                    valueGenerator.nextLong()));
+        }
+    }
+
+    public void testPackUnpackRaw() throws Exception{
+        TrackChunk subject = TrackChunk.pack(3, coordinatesList, 5, 15, TrackChunk.ENCODING_RAW);
+        assertEquals(subject.getSequence(), 3);
+        assertEquals(subject.getPointCount(), 10);
+
+        List<Coordinates> unpacked = subject.unpack();
+        assertEquals(unpacked.size(), 10);
+        for (int i = 0; i < unpacked.size(); i++) {
+            Coordinates expected = coordinatesList.get(i+5);
+            assertEquals(unpacked.get(i).getLongitude(), expected.getLongitude());
+            assertEquals(unpacked.get(i).getLatitude(), expected.getLatitude());
+            assertEquals(unpacked.get(i).getAltitude(), expected.getAltitude());
+            assertEquals(unpacked.get(i).getTime(), expected.getTime());
+        }
+    }
+
+    public void testPackUnpackDelta() throws Exception{
+        TrackChunk subject = TrackChunk.pack(3, coordinatesList, 5, 15);
+        assertEquals(subject.getEncoding(), TrackChunk.ENCODING_DELTA);
+        assertEquals(subject.getPointCount(), 10);
+
+        List<Coordinates> unpacked = subject.unpack();
+        assertEquals(unpacked.size(), 10);
+        for (int i = 0; i < unpacked.size(); i++) {
+            Coordinates expected = coordinatesList.get(i+5);
+            assertEquals(unpacked.get(i).getLongitude(), expected.getLongitude(), 1/TrackCodec.DEGREE_SCALE);
+            assertEquals(unpacked.get(i).getLatitude(), expected.getLatitude(), 1/TrackCodec.DEGREE_SCALE);
+            assertEquals(unpacked.get(i).getAltitude(), expected.getAltitude(), 1/TrackCodec.ALTITUDE_SCALE);
+            assertEquals(unpacked.get(i).getTime(), expected.getTime());
+        }
+    }
+
+    public void testSplit() throws Exception{
+        List<TrackChunk> chunks = TrackChunk.split(coordinatesList, 0);
+        assertEquals(chunks.size(), 3);
+
+        List<Coordinates> unpacked = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            assertEquals(chunks.get(i).getSequence(), i);
+            chunks.get(i).unpack(unpacked);
+        }
+        assertEquals(unpacked.size(), TEST_SIZE);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            assertEquals(unpacked.get(i).getLongitude(), coordinatesList.get(i).getLongitude(), 1/TrackCodec.DEGREE_SCALE);
+            assertEquals(unpacked.get(i).getTime(), coordinatesList.get(i).getTime());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package me.dotteam.dotprod.test.system.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.TrackChunk;
+import me.dotteam.dotprod.data.TrackCodec;
+
+/**
+ * Unit Test of the TrackCodec class.
+ * Tests:
+ * - Round trip of random tracks, including extreme values
+ * - Stability of the encoding once points are at codec resolution
+ * - Size and throughput against the raw encoding (written to the log under the BENCH tag)
+ */
+public class TrackCodecTest extends ApplicationTestCase<Application> {
+
+    public static final int FUZZ_ROUNDS=200;
+    public static final int BENCH_SIZE=100000;
+
+    private Random valueGenerator;
+
+    public TrackCodecTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        valueGenerator = new Random();
+    }
+
+    public void testEmptyTrack() throws Exception{
+        LocationPoints decoded = TrackCodec.decode(TrackCodec.encode(new LocationPoints()));
+        assertEquals(decoded.getCoordinateList().size(), 0);
+    }
+
+    public void testRoundTripFuzz() throws Exception{
+        for (int round = 0; round < FUZZ_ROUNDS; round++) {
+            long seed = valueGenerator.nextLong();
+            LocationPoints original = randomTrack(new Random(seed), 1+valueGenerator.nextInt(3000));
+
+            byte[] encoded = TrackCodec.encode(original);
+            LocationPoints decoded = TrackCodec.decode(encoded);
+
+            List<Coordinates> expected = original.getCoordinateList();
+            List<Coordinates> actual = decoded.getCoordinateList();
+            assertEquals("Seed "+seed, actual.size(), expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("Seed "+seed, actual.get(i).getLongitude(), expected.get(i).getLongitude(), 0.5/TrackCodec.DEGREE_SCALE);
+                assertEquals("Seed "+seed, actual.get(i).getLatitude(), expected.get(i).getLatitude(), 0.5/TrackCodec.DEGREE_SCALE);
+                assertEquals("Seed "+seed, actual.get(i).getAltitude(), expected.get(i).getAltitude(), 0.5/TrackCodec.ALTITUDE_SCALE);
+                assertEquals("Seed "+seed, actual.get(i).getTime(), expected.get(i).getTime());
+            }
+
+            //Once at codec resolution, encoding again must be lossless
+            assertTrue("Seed "+seed, Arrays.equals(TrackCodec.encode(decoded), encoded));
+        }
+    }
+
+    public void testCompressionAndThroughput() throws Exception{
+        LocationPoints track = randomWalk(new Random(7), BENCH_SIZE);
+        List<Coordinates> points = track.getCoordinateList();
+
+        long start = System.nanoTime();
+        byte[] delta = TrackCodec.encode(points, 0, points.size());
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TrackCodec.decode(delta, points.size(), new java.util.ArrayList<Coordinates>(points.size()));
+        long decodeNanos = System.nanoTime() - start;
+
+        int rawSize = points.size()*TrackChunk.RAW_POINT_SIZE;
+        Log.i(PersistentStorageBenchmarkTest.TAG, String.format(
+                "TrackCodec %d points: %d bytes (raw %d, %.1fx smaller), encode %.1f points/ms, decode %.1f points/ms",
+                points.size(), delta.length, rawSize, rawSize/(double) delta.length,
+                points.size()/(encodeNanos/1e6), points.size()/(decodeNanos/1e6)));
+
+        assertTrue(delta.length*5 <= rawSize);
+    }
+
+    /**
+     * Track with arbitrary jumps between points, including the extremes of every field
+     */
+    private LocationPoints randomTrack(Random prng, int size){
+        LocationPoints track = new LocationPoints();
+        for (int i = 0; i < size; i++) {
+            if(prng.nextInt(10)==0){
+                track.addPoint(new Coordinates(
+                        prng.nextBoolean() ? 180 : -180,
+                        prng.nextBoolean() ? 90 : -90,
+                        prng.nextBoolean() ? 8848.86 : -430.5,
+                        prng.nextBoolean() ? Long.MAX_VALUE : 0));
+            }
+            else {
+                track.addPoint(new Coordinates(
+                        prng.nextDouble()*360-180,
+                        prng.nextDouble()*180-90,
+                        prng.nextDouble()*10000-500,
+                        prng.nextLong()));
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Realistic track: small movements, gentle elevation change and a fix every second
+     */
+    private LocationPoints randomWalk(Random prng, int size){
+        LocationPoints track = new LocationPoints();
+        double longitude = -73.5;
+        double latitude = 45.5;
+        double altitude = 100;
+        long time = 1447000000000L;
+        for (int i = 0; i < size; i++) {
+            longitude += (prng.nextDouble()-0.5)*0.0001;
+            latitude += (prng.nextDouble()-0.5)*0.0001;
+            altitude += prng.nextDouble()-0.5;
+            time += 1000;
+            track.addPoint(new Coordinates(longitude,latitude,altitude,time));
+        }
+        return track;
+    }
+}
@@ -0,0 +1,63 @@
+package me.dotteam.dotprod.test.system.hw;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import me.dotteam.dotprod.hw.StepDetector;
+
+/**
+ * Unit Test of the StepDetector class.
+ * Tests:
+ * - Gravity alone is not a step
+ * - Detection of a shake
+ * - Cooldown after a detected step
+ */
+public class StepDetectorTest extends ApplicationTestCase<Application> {
+
+    public static final int SAMPLE_PERIOD=200;
+
+    private static final float[] RESTING = new float[]{0, 0, 9.81f};
+    private static final float[] SHAKEN = new float[]{10, 0, 9.81f};
+
+    private StepDetector subject;
+
+    public StepDetectorTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        subject = new StepDetector(SAMPLE_PERIOD);
+    }
+
+    public void testGravity() throws Exception{
+        for (int i = 0; i < 100; i++) {
+            assertFalse(subject.onAcceleration(RESTING));
+        }
+        assertEquals(subject.getStepsTaken(), 0.0, 0);
+    }
+
+    public void testShake() throws Exception{
+        assertFalse(subject.onAcceleration(RESTING));
+        assertTrue(subject.onAcceleration(SHAKEN));
+        assertEquals(subject.getStepsTaken(), 1.0, 0);
+    }
+
+    public void testCooldown() throws Exception{
+        subject.onAcceleration(RESTING);
+        assertTrue(subject.onAcceleration(SHAKEN));
+
+        //Readings during the cooldown are ignored, however strong
+        int ignored = (StepDetector.ACC_EVENT_COOLDOWN_MS + SAMPLE_PERIOD - 1)/SAMPLE_PERIOD;
+        float[] reading = SHAKEN;
+        for (int i = 0; i < ignored; i++) {
+            reading = (reading==SHAKEN) ? RESTING : SHAKEN;
+            assertFalse(subject.onAcceleration(reading));
+        }
+        assertEquals(subject.getStepsTaken(), 1.0, 0);
+
+        //Then the next shake counts again
+        assertTrue(subject.onAcceleration((reading==SHAKEN) ? RESTING : SHAKEN));
+        assertEquals(subject.getStepsTaken(), 2.0, 0);
+    }
+}
@@ -0,0 +1,69 @@
+package me.dotteam.dotprod.test.system.loc;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.Random;
+
+import me.dotteam.dotprod.loc.AltitudeFilter;
+
+/**
+ * Unit Test of the AltitudeFilter class.
+ * Tests:
+ * - Filtering of a single altitude
+ * - Filtering of a sequence, consistent with single altitudes
+ * - Convergence to a constant altitude
+ * - Distance adjusted for the change in altitude
+ */
+public class AltitudeFilterTest extends ApplicationTestCase<Application> {
+
+    public static final int TEST_SIZE=50;
+
+    private double[] altitudes;
+
+    public AltitudeFilterTest(){
+        super(Application.class);
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        Random valueGenerator = new Random();
+        altitudes = new double[TEST_SIZE];
+        for (int i = 0; i < TEST_SIZE; i++) {
+            altitudes[i] = valueGenerator.nextDouble()*1000;
+        }
+    }
+
+    public void testSmooth() throws Exception{
+        assertEquals(AltitudeFilter.smooth(100, 100), 100, 0);
+        assertEquals(AltitudeFilter.smooth(100, 200), 100 + AltitudeFilter.FILTER_ALPHA*100, 1e-9);
+    }
+
+    public void testSequence() throws Exception{
+        double[] filtered = AltitudeFilter.lowpassFilter(altitudes);
+        assertEquals(filtered.length, altitudes.length);
+        assertEquals(filtered[0], altitudes[0], 0);
+        for (int i = 1; i < TEST_SIZE; i++) {
+            assertEquals(filtered[i], AltitudeFilter.smooth(filtered[i-1], altitudes[i]), 0);
+        }
+    }
+
+    public void testConvergence() throws Exception{
+        double[] constant = new double[TEST_SIZE];
+        constant[0] = 0;
+        for (int i = 1; i < TEST_SIZE; i++) {
+            constant[i] = 500;
+        }
+        double[] filtered = AltitudeFilter.lowpassFilter(constant);
+        for (int i = 2; i < TEST_SIZE; i++) {
+            assertTrue(filtered[i] > filtered[i-1]);
+        }
+        assertEquals(filtered[TEST_SIZE-1], 500, 0.01);
+    }
+
+    public void testAdjustedDistance() throws Exception{
+        assertEquals(AltitudeFilter.adjustedDistance(3, 4), 5, 1e-9);
+        assertEquals(AltitudeFilter.adjustedDistance(10, 0), 10, 0);
+        assertEquals(AltitudeFilter.adjustedDistance(10, -5), AltitudeFilter.adjustedDistance(10, 5), 0);
+    }
+}
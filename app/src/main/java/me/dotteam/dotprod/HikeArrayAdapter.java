@@ -3,6 +3,7 @@ package me.dotteam.dotprod;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.gesture.GestureOverlayView;
+import android.graphics.drawable.ColorDrawable;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -22,16 +23,19 @@ import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.PolylineOptions;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.Hike;
 import me.dotteam.dotprod.data.HikeDataDirector;
 import me.dotteam.dotprod.data.LocationPoints;
-import me.dotteam.dotprod.data.PersistentStorageEntity;
+import me.dotteam.dotprod.data.StorageExecutor;
 
 /**
  * Created by foxtrot on 16/11/15.
@@ -59,7 +63,16 @@ public class HikeArrayAdapter extends ArrayAdapter<Hike>  {
      */
     Map<Integer, LocationPoints> mLoadedLocationPoints;
 
-    private PersistentStorageEntity mPSE;
+    /**
+     * Reference to the HikeDataDirector, used to load the coordinates of every hike off the UI thread
+     */
+    private HikeDataDirector mHDD;
+
+    /**
+     * Unique IDs of the hikes selected by the user, shown with a tint
+     */
+    private Set<Integer> mSelectedIds = new HashSet<>();
+    private ColorDrawable mSelectedTint;
 
     /**
      * Default Constructor
@@ -71,7 +84,44 @@ public class HikeArrayAdapter extends ArrayAdapter<Hike>  {
         mContext = context;
         mMapCallbacks = new HashMap<>();
 
-        mPSE = new PersistentStorageEntity(context);
+        mHDD = HikeDataDirector.getInstance(context);
+        mSelectedTint = new ColorDrawable(context.getResources().getColor(R.color.selected_tint));
+    }
+
+    /**
+     * Select a hike, or unselect it if it already was
+     * @param hike The hike to toggle
+     * @return True if the hike is now selected
+     */
+    public boolean toggleSelection(Hike hike){
+        boolean selected = mSelectedIds.add(hike.getUniqueID());
+        if(!selected){
+            mSelectedIds.remove(hike.getUniqueID());
+        }
+        notifyDataSetChanged();
+        return selected;
+    }
+
+    /**
+     * @return The selected hikes, in the order they are displayed
+     */
+    public List<Hike> getSelectedHikes(){
+        List<Hike> selected = new ArrayList<>(mSelectedIds.size());
+        for (int i = 0; i < getCount(); i++) {
+            if(mSelectedIds.contains(getItem(i).getUniqueID())){
+                selected.add(getItem(i));
+            }
+        }
+        return selected;
+    }
+
+    public int getSelectedCount(){
+        return mSelectedIds.size();
+    }
+
+    public void clearSelection(){
+        mSelectedIds.clear();
+        notifyDataSetChanged();
     }
 
     @Override
@@ -151,18 +201,35 @@ public class HikeArrayAdapter extends ArrayAdapter<Hike>  {
         // Set Hike duration
         hikeDuration.setText(hike.elapsedTime());
 
+        // Tint the hike if it is selected
+        overlayView.setForeground(mSelectedIds.contains(id) ? mSelectedTint : null);
+
+        // Remember which hike this (possibly recycled) view shows
+        holder.mHikeId = id;
+
         // Get callback object
         MapReady mapReadyCallback = mMapCallbacks.get(id);
 
         if (mapReadyCallback == null) {
-            //Make a new object and retrieve the list of coordinates from the PSE
-            mapReadyCallback = new MapReady(id);
-            mapReadyCallback.mCoordinatesList = mPSE.retrieveCoordinates(id);
-            mMapCallbacks.put(id, mapReadyCallback);
+            //Make a new object and retrieve the list of coordinates in the background
+            final MapReady newCallback = new MapReady(id);
+            final MapViewHolder loadingHolder = holder;
+            mMapCallbacks.put(id, newCallback);
+            mHDD.retrieveCoordinatesAsync(id, new StorageExecutor.Callback<List<Coordinates>>() {
+                @Override
+                public void onResult(List<Coordinates> result) {
+                    newCallback.mCoordinatesList = result;
+                    // Only draw if the view was not recycled for another hike in the meantime
+                    if (newCallback.mHikeId.equals(loadingHolder.mHikeId)) {
+                        loadingHolder.mMapView.getMapAsync(newCallback);
+                    }
+                }
+            });
+        }
+        else {
+            // Create GoogleMap object and pass callback
+            holder.mMapView.getMapAsync(mapReadyCallback);
         }
-
-        // Create GoogleMap object and pass callback
-        holder.mMapView.getMapAsync(mapReadyCallback);
 
         // Return View
         return convertView;
@@ -175,6 +242,7 @@ public class HikeArrayAdapter extends ArrayAdapter<Hike>  {
      */
     public static class MapViewHolder {
         public MapView mMapView;
+        public Integer mHikeId;
     }
 
     /**
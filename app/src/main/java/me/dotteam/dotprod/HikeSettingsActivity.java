@@ -7,6 +7,7 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.graphics.Typeface;
 import android.media.Ringtone;
 import android.media.RingtoneManager;
 import android.net.Uri;
@@ -27,17 +28,21 @@ import android.view.MenuItem;
 import android.support.v4.app.NavUtils;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.HorizontalScrollView;
 import android.widget.LinearLayout;
+import android.widget.ScrollView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.List;
 import java.util.Locale;
 
 import me.dotteam.dotprod.data.HikeDataDirector;
+import me.dotteam.dotprod.data.StorageMetrics;
 
 
 /**
@@ -493,6 +498,69 @@ public class HikeSettingsActivity extends PreferenceActivity {
                     return false;
                 }
             });
+
+            findPreference(HikeDataDirector.PREF_STORAGE_METRICS).setOnPreferenceChangeListener(
+                    new Preference.OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+                    StorageMetrics.getInstance().setEnabled((Boolean) newValue);
+                    return true;
+                }
+            });
+
+            findPreference("storage_metrics_show").setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    showStorageMetrics();
+                    return false;
+                }
+            });
+        }
+
+        private void showStorageMetrics(){
+            TextView metricsView = new TextView(getActivity());
+            metricsView.setTypeface(Typeface.MONOSPACE);
+            metricsView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+            metricsView.setHorizontallyScrolling(true);
+            metricsView.setText(StorageMetrics.getInstance().toString());
+            ScrollView scrollView = new ScrollView(getActivity());
+            HorizontalScrollView wideView = new HorizontalScrollView(getActivity());
+            wideView.addView(metricsView);
+            scrollView.addView(wideView);
+
+            AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+            builder.setPositiveButton("Dump to File", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    File destination = new File(getActivity().getExternalFilesDir(null),
+                            "storage-metrics-" + System.currentTimeMillis() + ".txt");
+                    if(HikeDataDirector.getInstance(getActivity()).dumpStorageMetrics(destination)){
+                        Toast.makeText(getActivity(), "Metrics written to " + destination, Toast.LENGTH_LONG).show();
+                    }
+                    else{
+                        Toast.makeText(getActivity(), "Could not write the metrics", Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
+
+            builder.setNeutralButton("Reset", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    StorageMetrics.getInstance().reset();
+                }
+            });
+
+            builder.setNegativeButton("Close", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    //Nothing to do
+                }
+            });
+            builder.setView(scrollView);
+            builder.setTitle("Storage Metrics");
+            AlertDialog metricsAlert = builder.create();
+            metricsAlert.setCancelable(true);
+            metricsAlert.show();
         }
     }
 
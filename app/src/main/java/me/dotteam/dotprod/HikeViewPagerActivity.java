@@ -26,8 +26,10 @@ import com.google.android.gms.maps.UiSettings;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.PolylineOptions;
 
+import java.util.List;
+
+import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.HikeDataDirector;
-import me.dotteam.dotprod.data.LocationPoints;
 import me.dotteam.dotprod.hw.HikeHardwareManager;
 import me.dotteam.dotprod.loc.HikeLocationEntity;
 import me.dotteam.dotprod.loc.HikeLocationListener;
@@ -101,7 +103,6 @@ public class HikeViewPagerActivity extends FragmentActivity implements HikeLocat
     private float mDistanceTravelled = 0;
     private int mStepCount = 0;
     private Location mLocation;
-    private LocationPoints mLocationPoints;
 
     /**
      * Reference to HikeHardwareManager
@@ -193,9 +194,6 @@ public class HikeViewPagerActivity extends FragmentActivity implements HikeLocat
         // Get HLE reference and add listener
         mHLE = HikeLocationEntity.getInstance(this);
 
-        // New LocationPoints object to save coordinates
-        mLocationPoints = new LocationPoints();
-
         // Add Listener to HLE
         mHLE.addListener(this);
 
@@ -301,6 +299,16 @@ public class HikeViewPagerActivity extends FragmentActivity implements HikeLocat
         mMapPolylineOptions = new PolylineOptions();
         mMapReady = true;
 
+        // Draw what was recorded before the map was ready, read from the service's track log
+        List<Coordinates> liveTrack = mHDD.getLiveTrack();
+        if (liveTrack != null && !liveTrack.isEmpty()) {
+            for (int i = 0; i < liveTrack.size(); i++) {
+                Coordinates point = liveTrack.get(i);
+                mMapPolylineOptions.add(new LatLng(point.getLatitude(), point.getLongitude()));
+            }
+            mMap.addPolyline(mMapPolylineOptions);
+        }
+
         // Set Maps Settings
         UiSettings mapSettings = mMap.getUiSettings();
         mapSettings.setTiltGesturesEnabled(false);
@@ -44,6 +44,11 @@ public class HomeActivity extends AppCompatActivity{
         setOnClickListeners();
         Thread.setDefaultUncaughtExceptionHandler(new ExceptionHandler(this));
 
+        //Close any hike left open by a recording that was interrupted, then summarize and index hikes that need it
+        HikeDataDirector.getInstance(this).recoverUnfinishedHikesAsync(null);
+        HikeDataDirector.getInstance(this).backfillSummariesAsync(null);
+        HikeDataDirector.getInstance(this).backfillSpatialIndexAsync(null);
+
         //Optimize loading of the bitmap
         BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
         decodeOptions.inScaled = true;
@@ -4,11 +4,13 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.view.ActionMode;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.Adapter;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
@@ -16,11 +18,14 @@ import android.widget.Button;
 import android.widget.TextView;
 import android.widget.GridView;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 import me.dotteam.dotprod.data.Hike;
 import me.dotteam.dotprod.data.HikeDataDirector;
+import me.dotteam.dotprod.data.HikePageSource;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StorageExecutor;
 
 /**
  * Activity which displays list of past hikes and allows the user to select a past hike
@@ -37,47 +42,125 @@ public class PastHikesActivity extends AppCompatActivity {
         public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
             Log.d(TAG, "onItemClick");
 
-            //Tell the HDD to load the current element
-            mHDD.retrieveSessionFromHike((Hike) parent.getItemAtPosition(position));
+            //While selecting, a click adds or removes the hike from the selection
+            if(mSelectionMode!=null){
+                toggleSelection((Hike) parent.getItemAtPosition(position));
+                return;
+            }
 
-            //Load the new activity.
-            Intent targetIntent = new Intent(PastHikesActivity.this,PastStatisticsActivity.class);
-            targetIntent.putExtra("id",((Hike) parent.getItemAtPosition(position)).getUniqueID());
-            startActivity(targetIntent);
+            //Tell the HDD to load the current element, then load the new activity.
+            final int hikeID = ((Hike) parent.getItemAtPosition(position)).getUniqueID();
+            mHDD.retrieveSessionFromHikeAsync(hikeID, new StorageExecutor.Callback<SessionData>() {
+                @Override
+                public void onResult(SessionData result) {
+                    if(result==null || isFinishing()){
+                        return;
+                    }
+                    Intent targetIntent = new Intent(PastHikesActivity.this,PastStatisticsActivity.class);
+                    targetIntent.putExtra("id",hikeID);
+                    startActivity(targetIntent);
+                }
+            });
         }
     }
 
+    /**
+     * A long click starts selecting hikes, so several can be deleted at once
+     */
     private class PastHikeLongClickListener implements AdapterView.OnItemLongClickListener{
         @Override
         public boolean onItemLongClick(final AdapterView<?> parent, final View view, final int position, long id) {
             Log.d("PastHikes", "onItemLongClick Called!");
-            AlertDialog.Builder builder = new AlertDialog.Builder(PastHikesActivity.this);
-            builder.setPositiveButton("Delete", new DialogInterface.OnClickListener() {
-                @Override
-                public void onClick(DialogInterface dialog, int which) {
-                    //Delete the hike!
-                    mHDD.deleteStoredHike((Hike) parent.getItemAtPosition(position));
-                    HikeArrayAdapter hikeList = (HikeArrayAdapter) parent.getAdapter();
-                    if(hikeList!=null){
-                        hikeList.remove((Hike) parent.getItemAtPosition(position));
-                        hikeList.notifyDataSetChanged();
-                    }
-                }
-            });
+            if(mSelectionMode==null){
+                mSelectionMode = startSupportActionMode(new SelectionModeCallback());
+            }
+            toggleSelection((Hike) parent.getItemAtPosition(position));
+            return true;
+        }
+    }
 
-            builder.setNegativeButton("Keep", new DialogInterface.OnClickListener() {
-                @Override
-                public void onClick(DialogInterface dialog, int which) {
-                    //Keep the hike.
-                }
-            });
-            builder.setMessage("This will delete the selected hike. Are you sure you want to continue?");
-            builder.setTitle("Delete Hike");
-            AlertDialog deleteAlert = builder.create();
-            deleteAlert.setCancelable(true);
-            deleteAlert.show();
+    /**
+     * Action bar shown while hikes are selected, offering to delete them
+     */
+    private class SelectionModeCallback implements ActionMode.Callback {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_past_hikes_selection, menu);
             return true;
         }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if(item.getItemId()==R.id.action_delete_hikes){
+                confirmDeleteSelection();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            mSelectionMode = null;
+            if(mHikeAdapter!=null){
+                mHikeAdapter.clearSelection();
+            }
+        }
+    }
+
+    /**
+     * Add a hike to the selection or remove it, leaving selection mode once nothing is selected
+     */
+    private void toggleSelection(Hike hike){
+        mHikeAdapter.toggleSelection(hike);
+        int selected = mHikeAdapter.getSelectedCount();
+        if(selected==0){
+            mSelectionMode.finish();
+        }
+        else {
+            mSelectionMode.setTitle(selected + " selected");
+        }
+    }
+
+    /**
+     * Ask before deleting the selected hikes
+     */
+    private void confirmDeleteSelection(){
+        final List<Hike> selectedHikes = mHikeAdapter.getSelectedHikes();
+        AlertDialog.Builder builder = new AlertDialog.Builder(PastHikesActivity.this);
+        builder.setPositiveButton("Delete", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                //Delete the hikes, all in one go! They are removed from the list right away,
+                //storage catches up in the background
+                mHDD.deleteStoredHikesAsync(selectedHikes, null);
+                for (Hike selectedHike : selectedHikes) {
+                    mHikeAdapter.remove(selectedHike);
+                }
+                mHikeAdapter.notifyDataSetChanged();
+                if(mSelectionMode!=null){
+                    mSelectionMode.finish();
+                }
+            }
+        });
+
+        builder.setNegativeButton("Keep", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                //Keep the hikes.
+            }
+        });
+        builder.setMessage(selectedHikes.size()==1
+                ? "This will delete the selected hike. Are you sure you want to continue?"
+                : "This will delete the " + selectedHikes.size() + " selected hikes. Are you sure you want to continue?");
+        builder.setTitle("Delete Hikes");
+        AlertDialog deleteAlert = builder.create();
+        deleteAlert.setCancelable(true);
+        deleteAlert.show();
     }
 
     /**
@@ -86,6 +169,17 @@ public class PastHikesActivity extends AppCompatActivity {
     private HikeDataDirector mHDD;
     private Button mbuttonDone;
 
+    /**
+     * Source of the stored hikes, a page at a time
+     */
+    private HikePageSource mHikePages;
+    private HikeArrayAdapter mHikeAdapter;
+
+    /**
+     * Action mode shown while hikes are selected, null otherwise
+     */
+    private ActionMode mSelectionMode;
+
     /**
      * Reference to GridView
      */
@@ -112,26 +206,9 @@ public class PastHikesActivity extends AppCompatActivity {
         // Get referenece to HikeDataDirector
         mHDD = HikeDataDirector.getInstance(this);
 
-        // Get all saved hikes and reverse the list
-        List<Hike> storedHikes = mHDD.getAllStoredHikes();
-        if (storedHikes != null && storedHikes.size() > 1) {
-            Collections.reverse(storedHikes);
-        }
-
-        if(storedHikes!=null) {
-            // Create adapter for GridView
-            ArrayAdapter<Hike> listOfHikes = new HikeArrayAdapter(this, storedHikes);
-            // Assign adapter to GridView
-            pastHikes.setAdapter(listOfHikes);
-            // Assign onClickListener to GridView
-            pastHikes.setOnItemClickListener(new PastHikeOnClickListener());
-            pastHikes.setOnItemLongClickListener(new PastHikeLongClickListener());
-            Runtime.getRuntime().gc();
-            System.gc();
-        }
-        else{
-            titleText.setText(titleText.getText().toString()+"\n No Hikes to Display");
-        }
+        // Get the most recent hikes in the background, then show them. More are loaded when scrolling
+        mHikePages = new HikePageSource(mHDD, HikePageSource.DEFAULT_PAGE_SIZE);
+        mHikePages.loadNextPage(new HikePageListener());
 
         mbuttonDone.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -141,6 +218,54 @@ public class PastHikesActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Fill the GridView with the first page of stored hikes, then grow it with the following ones
+     */
+    private class HikePageListener implements HikePageSource.PageListener {
+        @Override
+        public void onPageLoaded(List<Hike> page, boolean isFirstPage) {
+            if(isFinishing()){
+                return;
+            }
+
+            if(isFirstPage){
+                if(page!=null && !page.isEmpty()) {
+                    // Create adapter for GridView. It keeps its own list so later pages can be added
+                    mHikeAdapter = new HikeArrayAdapter(PastHikesActivity.this, new ArrayList<>(page));
+                    // Assign adapter to GridView
+                    pastHikes.setAdapter(mHikeAdapter);
+                    // Assign onClickListener to GridView
+                    pastHikes.setOnItemClickListener(new PastHikeOnClickListener());
+                    pastHikes.setOnItemLongClickListener(new PastHikeLongClickListener());
+                    pastHikes.setOnScrollListener(new PastHikeScrollListener());
+                }
+                else{
+                    titleText.setText(titleText.getText().toString()+"\n No Hikes to Display");
+                }
+            }
+            else if(page!=null && mHikeAdapter!=null){
+                mHikeAdapter.addAll(page);
+            }
+        }
+    }
+
+    /**
+     * Requests the next page of hikes when the user scrolls close to the end of the GridView
+     */
+    private class PastHikeScrollListener implements AbsListView.OnScrollListener {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            //Start loading while about half a page is still left to show
+            if(firstVisibleItem + visibleItemCount >= totalItemCount - mHikePages.getPageSize()/2){
+                mHikePages.loadNextPage(new HikePageListener());
+            }
+        }
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -11,6 +11,7 @@ import android.widget.TextView;
 
 import me.dotteam.dotprod.data.HikeDataDirector;
 import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StorageExecutor;
 
 /**
  * Created by foxtrot on 16/11/15.
@@ -23,11 +24,6 @@ public class PastStatisticsActivity extends ResultsActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        int hikeID=-1;
-        if(getIntent().hasExtra("id")){
-            hikeID = getIntent().getIntExtra("id",1);
-            HikeDataDirector.getInstance(this).retrieveSessionFromHike(hikeID);
-        }
         super.onCreate(savedInstanceState);
 //        setContentView(R.layout.activity_results);
 //        mHDD = HikeDataDirector.getInstance(this);
@@ -50,4 +46,27 @@ public class PastStatisticsActivity extends ResultsActivity {
         });
     }
 
+    /**
+     * The list normally loads the hike before opening this screen. Only load it, off the main thread, if it did not
+     */
+    @Override
+    protected void loadResults() {
+        final HikeDataDirector hdd = HikeDataDirector.getInstance(this);
+        SessionData loadedSession = hdd.getSessionData();
+        int hikeID = getIntent().getIntExtra("id",1);
+        if(!getIntent().hasExtra("id") || (loadedSession!=null && loadedSession.hikeID()==hikeID)){
+            setupResults();
+            return;
+        }
+        hdd.retrieveSessionFromHikeAsync(hikeID, new StorageExecutor.Callback<SessionData>() {
+            @Override
+            public void onResult(SessionData result) {
+                if(result==null || isFinishing()){
+                    return;
+                }
+                setupResults();
+            }
+        });
+    }
+
 }
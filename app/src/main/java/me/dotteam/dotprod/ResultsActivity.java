@@ -3,7 +3,6 @@ package me.dotteam.dotprod;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.BitmapFactory;
-import android.location.Location;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
@@ -45,7 +44,10 @@ import java.util.List;
 import me.dotteam.dotprod.data.Coordinates;
 import me.dotteam.dotprod.data.EnvStatistic;
 import me.dotteam.dotprod.data.HikeDataDirector;
+import me.dotteam.dotprod.data.HikeSummary;
+import me.dotteam.dotprod.data.LocationPoints;
 import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StorageExecutor;
 
 public class ResultsActivity extends AppCompatActivity implements OnMapReadyCallback {
     private final String TAG = "ResultsActivity";
@@ -60,6 +62,7 @@ public class ResultsActivity extends AppCompatActivity implements OnMapReadyCall
     protected List<Coordinates> mCoordinatesList;
     protected List<Double> mInstPaceList;
     protected double mDistanceTraveled;
+    protected HikeSummary mSummary;
 
     protected GoogleMap mMap;
 
@@ -118,39 +121,63 @@ public class ResultsActivity extends AppCompatActivity implements OnMapReadyCall
             }
         });
         mHDD=HikeDataDirector.getInstance(this);
+        loadResults();
+    }
+
+    /**
+     * Obtain the session to show, then build the results from it.
+     * The session just collected is already loaded, so the results are built right away
+     */
+    protected void loadResults(){
+        setupResults();
+    }
+
+    /**
+     * Build the results of the current session of the {@link HikeDataDirector}. Must run on the main thread
+     */
+    protected void setupResults(){
+        final SessionData session = mHDD.getSessionData();
+        setupEnvReadingsLayout();
+
+        // Distance and pace come from the stored summary instead of walking every point.
+        // Hikes stored without one only have it once their track is loaded below
+        final boolean summaryLoaded = session.isSummaryLoaded();
+        if(summaryLoaded){
+            setupSummaryLayout(session.getSummary());
+        }
 
-        mCoordinatesList = mHDD.getSessionData().getGeoPoints().getCoordinateList();
+        // The track of a stored hike is only read now: the text above shows while it loads
+        mHDD.retrieveGeoPointsAsync(session, new StorageExecutor.Callback<LocationPoints>() {
+            @Override
+            public void onResult(LocationPoints result) {
+                if(isFinishing() || result==null){
+                    return;
+                }
+                if(!summaryLoaded){
+                    setupSummaryLayout(session.getSummary());
+                }
+                mCoordinatesList = result.getCoordinateList();
+                setupTrackLayout();
+            }
+        });
+    }
 
+    private void setupSummaryLayout(HikeSummary summary){
+        mSummary = summary;
+        mDistanceTraveled = mSummary.getDistance();
+        setupOtherInfoLayout();
+    }
 
+    protected void setupTrackLayout(){
         //Setup all the charts!
         if (mCoordinatesList != null && mCoordinatesList.size() != 0) {
             setupMap();
             setupAltitudeChart();
 
-            mDistanceTraveled = 0;
             mInstPaceList = new ArrayList<>();
-
-            for (int i = 1; i < mCoordinatesList.size(); i++) {
-                // Get previous location
-                double prevLatitude = mCoordinatesList.get(i - 1).getLatitude();
-                double prevLongitude = mCoordinatesList.get(i - 1).getLongitude();
-                double currLatitude = mCoordinatesList.get(i).getLatitude();
-                double currLongitude = mCoordinatesList.get(i).getLongitude();
-
-                // Array to store distance result
-                float distanceResults[] = new float[3];
-
-                // Get distance current location and last known location
-                Location.distanceBetween(prevLatitude, prevLongitude, currLatitude, currLongitude, distanceResults);
-
-                mDistanceTraveled += distanceResults[0];
-            }
             // Note: Removed since we could not implement on time. Eventually this will be added
             //setupInstPaceChart();
         }
-
-        setupEnvReadingsLayout();
-        setupOtherInfoLayout();
     }
 
     protected void setupMap(){
@@ -397,7 +424,11 @@ public class ResultsActivity extends AppCompatActivity implements OnMapReadyCall
         mTextAvgPaceContainer.addView(textAvgPace);
 
         TextView textAvgPaceVal = new TextView(this);
-        double average_pace = mDistanceTraveled / hikeDuration;
+        //Hikes recorded without fix times have no moving time. Fall back to the whole duration
+        double average_pace = mSummary.getAveragePace();
+        if(average_pace<=0){
+            average_pace = mDistanceTraveled / hikeDuration;
+        }
         textAvgPaceVal.setText(String.format("%.3f m/s (%.3f km/h)", average_pace, average_pace * 3.6));
         textAvgPaceVal.setTextColor(getResources().getColor(R.color.hike_blue_grey));
         mTextAvgPaceContainer.addView(textAvgPaceVal);
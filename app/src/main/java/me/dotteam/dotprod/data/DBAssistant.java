@@ -1,13 +1,23 @@
 package me.dotteam.dotprod.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 /**
  * Class in charge of interacting with Android to use the OS-provided SQLite3 Database
+ * The database runs in Write-Ahead Logging mode: the single SQLiteDatabase handle serializes writes on
+ * its primary connection while reads outside a transaction use a pool of read-only connections
+ * (sized by the platform, usually 4), so they never wait behind a write.
  */
 public class DBAssistant extends SQLiteOpenHelper {
 
@@ -19,12 +29,16 @@ public class DBAssistant extends SQLiteOpenHelper {
 
     public static final String HIKE_ID="hike_id";
 
-    public static final String COORDS="hike_coordinates";
+    public static final String COORDS="hike_coordinates"; //Only kept to migrate from version 2
+    public static final String TRACKS="hike_tracks";
     public static final String ENVTEMP="temperature";
     public static final String ENVPRES="pressure";
     public static final String ENVHUMD="humidity";
     public static final String STEPS="steps";
     public static final String HIKE_NAME ="hike_name";
+    public static final String SUMMARY="hike_summary";
+    public static final String CELLS="hike_cells";
+    public static final String SERIES="env_series";
 
     public static final String MIN_COL="min";
     public static final String AVG_COL="avg";
@@ -34,6 +48,32 @@ public class DBAssistant extends SQLiteOpenHelper {
     public static final String LAT_COL="latitude";
     public static final String ALT_COL="altitude";
 
+    public static final String SEQUENCE_COL="sequence";
+    public static final String ENCODING_COL="encoding";
+    public static final String POINT_COUNT_COL="point_count";
+    public static final String POINTS_COL="points";
+
+    public static final String DISTANCE_COL="distance";
+    public static final String GAIN_COL="elevation_gain";
+    public static final String LOSS_COL="elevation_loss";
+    public static final String MIN_ALT_COL="min_altitude";
+    public static final String MAX_ALT_COL="max_altitude";
+    public static final String MIN_LAT_COL="min_latitude";
+    public static final String MAX_LAT_COL="max_latitude";
+    public static final String MIN_LONG_COL="min_longitude";
+    public static final String MAX_LONG_COL="max_longitude";
+    public static final String MOVING_TIME_COL="moving_time";
+    public static final String PACE_COL="average_pace";
+
+    public static final String CELL_COL="cell";
+
+    public static final String SENSOR_COL="sensor";
+    public static final String TIER_COL="tier";
+    public static final String START_TIME_COL="start_time";
+    public static final String END_TIME_COL="end_time";
+    public static final String SAMPLE_COUNT_COL="sample_count";
+    public static final String SAMPLES_COL="samples";
+
     public static final String STEP_COUNT="count";
 
     public static final String NICKNAME="nickname";
@@ -43,43 +83,280 @@ public class DBAssistant extends SQLiteOpenHelper {
     public static final String SCHEME_CREATE_HUMIDITY_TABLE="CREATE TABLE "+ENVHUMD+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+MIN_COL+" REAL NOT NULL, "+AVG_COL+" REAL NOT NULL, "+MAX_COL+" REAL NOT NULL); ";
     public static final String SCHEME_CREATE_PRESSURE_TABLE="CREATE TABLE "+ENVPRES+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+MIN_COL+" REAL NOT NULL, "+AVG_COL+" REAL NOT NULL, "+MAX_COL+" REAL NOT NULL); ";
     public static final String SCHEME_CREATE_COORDS_TABLE="CREATE TABLE "+COORDS+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+LONG_COL+" REAL NOT NULL, "+LAT_COL+" REAL NOT NULL, "+ALT_COL+" REAL); ";
+    public static final String SCHEME_CREATE_TRACKS_TABLE="CREATE TABLE "+TRACKS+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+SEQUENCE_COL+" INTEGER NOT NULL, "+ENCODING_COL+" INTEGER NOT NULL, "+POINT_COUNT_COL+" INTEGER NOT NULL, "+POINTS_COL+" BLOB NOT NULL); ";
     public static final String SCHEME_CREATE_STEPS_TABLE="CREATE TABLE "+STEPS+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+STEP_COUNT+" INTEGER)";
+    public static final String SCHEME_CREATE_SUMMARY_TABLE="CREATE TABLE "+SUMMARY+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "
+            +POINT_COUNT_COL+" INTEGER NOT NULL, "+DISTANCE_COL+" REAL NOT NULL, "+GAIN_COL+" REAL NOT NULL, "+LOSS_COL+" REAL NOT NULL, "
+            +MIN_ALT_COL+" REAL, "+MAX_ALT_COL+" REAL, "+MIN_LAT_COL+" REAL, "+MAX_LAT_COL+" REAL, "+MIN_LONG_COL+" REAL, "+MAX_LONG_COL+" REAL, "
+            +MOVING_TIME_COL+" INTEGER NOT NULL, "+PACE_COL+" REAL NOT NULL)";
+    public static final String SCHEME_CREATE_CELLS_TABLE="CREATE TABLE "+CELLS+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+CELL_COL+" INTEGER NOT NULL)";
+    public static final String SCHEME_CREATE_SERIES_TABLE="CREATE TABLE "+SERIES+" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "
+            +SENSOR_COL+" INTEGER NOT NULL, "+TIER_COL+" INTEGER NOT NULL, "+START_TIME_COL+" INTEGER NOT NULL, "+END_TIME_COL+" INTEGER NOT NULL, "
+            +SAMPLE_COUNT_COL+" INTEGER NOT NULL, "+SAMPLES_COL+" BLOB NOT NULL)";
     public static final String SCHEME_CREATE_NAME_TABLE="CREATE TABLE "+ HIKE_NAME +" (id INTEGER PRIMARY KEY AUTOINCREMENT, "+HIKE_ID+" INTEGER REFERENCES "+HIKE+" (id) NOT NULL, "+NICKNAME+" TEXT)";
 
     public static final String[] VALID_TABLES= {
             HIKE, //First table is this one. When iterating, remember that this table has 'id', NOT "hike_id"
-            COORDS,
+            TRACKS,
             ENVHUMD,
             ENVPRES,
             ENVTEMP,
             STEPS,
-            HIKE_NAME
+            HIKE_NAME,
+            SUMMARY,
+            CELLS,
+            SERIES
     };
 
     public static final String[] SCHEME_CREATE = {
             SCHEME_CREATE_HIKES_TABLE,
-            SCHEME_CREATE_COORDS_TABLE,
+            SCHEME_CREATE_TRACKS_TABLE,
             SCHEME_CREATE_TEMPERATURE_TABLE,
             SCHEME_CREATE_HUMIDITY_TABLE,
             SCHEME_CREATE_PRESSURE_TABLE,
             SCHEME_CREATE_STEPS_TABLE,
-            SCHEME_CREATE_NAME_TABLE
+            SCHEME_CREATE_NAME_TABLE,
+            SCHEME_CREATE_SUMMARY_TABLE,
+            SCHEME_CREATE_CELLS_TABLE,
+            SCHEME_CREATE_SERIES_TABLE
+    };
+
+    //Indexes on every hike_id. Statistics tables include their values so lookups never touch the table
+    public static final String SCHEME_INDEX_TRACKS="CREATE INDEX IF NOT EXISTS idx_"+TRACKS+" ON "+TRACKS+" ("+HIKE_ID+", "+SEQUENCE_COL+")";
+    public static final String SCHEME_INDEX_TEMPERATURE="CREATE INDEX IF NOT EXISTS idx_"+ENVTEMP+" ON "+ENVTEMP+" ("+HIKE_ID+", "+MIN_COL+", "+AVG_COL+", "+MAX_COL+")";
+    public static final String SCHEME_INDEX_HUMIDITY="CREATE INDEX IF NOT EXISTS idx_"+ENVHUMD+" ON "+ENVHUMD+" ("+HIKE_ID+", "+MIN_COL+", "+AVG_COL+", "+MAX_COL+")";
+    public static final String SCHEME_INDEX_PRESSURE="CREATE INDEX IF NOT EXISTS idx_"+ENVPRES+" ON "+ENVPRES+" ("+HIKE_ID+", "+MIN_COL+", "+AVG_COL+", "+MAX_COL+")";
+    public static final String SCHEME_INDEX_STEPS="CREATE INDEX IF NOT EXISTS idx_"+STEPS+" ON "+STEPS+" ("+HIKE_ID+", "+STEP_COUNT+")";
+    public static final String SCHEME_INDEX_SUMMARY="CREATE INDEX IF NOT EXISTS idx_"+SUMMARY+" ON "+SUMMARY+" ("+HIKE_ID+")";
+    public static final String SCHEME_INDEX_HIKE_START="CREATE INDEX IF NOT EXISTS idx_"+HIKE+"_"+HIKE_START+" ON "+HIKE+" ("+HIKE_START+", id)";
+    //Open hikes are found by their end time when recovering
+    public static final String SCHEME_INDEX_HIKE_END="CREATE INDEX IF NOT EXISTS idx_"+HIKE+"_"+HIKE_END+" ON "+HIKE+" ("+HIKE_END+")";
+    //Cells are looked up by ranges of keys, and the hike_id is read from the index alone
+    public static final String SCHEME_INDEX_CELLS="CREATE INDEX IF NOT EXISTS idx_"+CELLS+"_"+CELL_COL+" ON "+CELLS+" ("+CELL_COL+", "+HIKE_ID+")";
+    public static final String SCHEME_INDEX_CELLS_HIKE="CREATE INDEX IF NOT EXISTS idx_"+CELLS+" ON "+CELLS+" ("+HIKE_ID+")";
+    //Series rows of a sensor and tier are read in time order
+    public static final String SCHEME_INDEX_SERIES="CREATE INDEX IF NOT EXISTS idx_"+SERIES+" ON "+SERIES+" ("+HIKE_ID+", "+SENSOR_COL+", "+TIER_COL+", "+START_TIME_COL+")";
+    public static final String SCHEME_INDEX_NAME="CREATE INDEX IF NOT EXISTS idx_"+HIKE_NAME+" ON "+HIKE_NAME+" ("+HIKE_ID+", "+NICKNAME+")";
+
+    //Indexes added by version 4. Later indexes belong to the migration creating their table
+    public static final String[] SCHEME_HIKE_ID_INDEXES = {
+            SCHEME_INDEX_TRACKS,
+            SCHEME_INDEX_TEMPERATURE,
+            SCHEME_INDEX_HUMIDITY,
+            SCHEME_INDEX_PRESSURE,
+            SCHEME_INDEX_STEPS,
+            SCHEME_INDEX_NAME
+    };
+
+    public static final String[] SCHEME_INDEXES = {
+            SCHEME_INDEX_TRACKS,
+            SCHEME_INDEX_TEMPERATURE,
+            SCHEME_INDEX_HUMIDITY,
+            SCHEME_INDEX_PRESSURE,
+            SCHEME_INDEX_STEPS,
+            SCHEME_INDEX_NAME,
+            SCHEME_INDEX_HIKE_START,
+            SCHEME_INDEX_HIKE_END,
+            SCHEME_INDEX_SUMMARY,
+            SCHEME_INDEX_CELLS,
+            SCHEME_INDEX_CELLS_HIKE,
+            SCHEME_INDEX_SERIES
     };
 
+    //Statements issued by the PersistentStorageEntity
+    //Hikes still being recorded, or interrupted before they could be finished, have this end time
+    public static final long OPEN_END_TIME=-1;
+
+    public static final String QUERY_ALL_HIKES="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE+" WHERE "+HIKE_END+"<>"+OPEN_END_TIME+" ORDER BY id";
+    //Keyset pages of finished hikes, most recent first. The next page starts after the last hike of the previous one
+    public static final String QUERY_HIKES_FIRST_PAGE="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE
+            +" WHERE "+HIKE_END+"<>"+OPEN_END_TIME
+            +" ORDER BY "+HIKE_START+" DESC, id DESC LIMIT ?";
+    public static final String QUERY_HIKES_NEXT_PAGE="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE
+            +" WHERE "+HIKE_END+"<>"+OPEN_END_TIME+" AND "+HIKE_START+"<=? AND ("+HIKE_START+"<? OR id<?)"
+            +" ORDER BY "+HIKE_START+" DESC, id DESC LIMIT ?";
+    public static final String QUERY_OPEN_HIKES="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE+" WHERE "+HIKE_END+"="+OPEN_END_TIME+" ORDER BY id";
+    public static final String QUERY_HIKE="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE+" WHERE id=?";
+    public static final String QUERY_SESSION="SELECT h."+HIKE_START+", h."+HIKE_END+", "
+            +"t."+MIN_COL+", t."+AVG_COL+", t."+MAX_COL+", "
+            +"u."+MIN_COL+", u."+AVG_COL+", u."+MAX_COL+", "
+            +"p."+MIN_COL+", p."+AVG_COL+", p."+MAX_COL+", "
+            +"s."+STEP_COUNT+", n."+NICKNAME+", "
+            +"m."+POINT_COUNT_COL+", m."+DISTANCE_COL+", m."+GAIN_COL+", m."+LOSS_COL+", "
+            +"m."+MIN_ALT_COL+", m."+MAX_ALT_COL+", m."+MIN_LAT_COL+", m."+MAX_LAT_COL+", "
+            +"m."+MIN_LONG_COL+", m."+MAX_LONG_COL+", m."+MOVING_TIME_COL
+            +" FROM "+HIKE+" h"
+            +" LEFT JOIN "+ENVTEMP+" t ON t."+HIKE_ID+"=h.id"
+            +" LEFT JOIN "+ENVHUMD+" u ON u."+HIKE_ID+"=h.id"
+            +" LEFT JOIN "+ENVPRES+" p ON p."+HIKE_ID+"=h.id"
+            +" LEFT JOIN "+STEPS+" s ON s."+HIKE_ID+"=h.id"
+            +" LEFT JOIN "+HIKE_NAME+" n ON n."+HIKE_ID+"=h.id"
+            +" LEFT JOIN "+SUMMARY+" m ON m."+HIKE_ID+"=h.id"
+            +" WHERE h.id=?";
+    //Column positions in QUERY_SESSION
+    public static final int SESSION_START=0;
+    public static final int SESSION_END=1;
+    public static final int SESSION_TEMPERATURE=2;
+    public static final int SESSION_HUMIDITY=5;
+    public static final int SESSION_PRESSURE=8;
+    public static final int SESSION_STEPS=11;
+    public static final int SESSION_NICKNAME=12;
+    public static final int SESSION_SUMMARY=13;
+    public static final String QUERY_SUMMARY="SELECT "+POINT_COUNT_COL+", "+DISTANCE_COL+", "+GAIN_COL+", "+LOSS_COL+", "
+            +MIN_ALT_COL+", "+MAX_ALT_COL+", "+MIN_LAT_COL+", "+MAX_LAT_COL+", "+MIN_LONG_COL+", "+MAX_LONG_COL+", "+MOVING_TIME_COL
+            +" FROM "+SUMMARY+" WHERE "+HIKE_ID+"=?";
+    public static final String QUERY_HIKES_WITHOUT_SUMMARY="SELECT h.id FROM "+HIKE+" h"
+            +" LEFT JOIN "+SUMMARY+" m ON m."+HIKE_ID+"=h.id"
+            +" WHERE m."+HIKE_ID+" IS NULL AND h."+HIKE_END+"<>"+OPEN_END_TIME+" ORDER BY h.id";
+    public static final String QUERY_HIKES_WITHOUT_CELLS="SELECT h.id FROM "+HIKE+" h"
+            +" WHERE h."+HIKE_END+"<>"+OPEN_END_TIME
+            +" AND NOT EXISTS (SELECT 1 FROM "+CELLS+" c WHERE c."+HIKE_ID+"=h.id)"
+            +" AND EXISTS (SELECT 1 FROM "+TRACKS+" k WHERE k."+HIKE_ID+"=h.id) ORDER BY h.id";
+    //Hikes going through any of a list of cell ranges. Each range is one "cell BETWEEN ? AND ?" term
+    public static final String QUERY_HIKES_IN_CELLS="SELECT id, "+HIKE_START+", "+HIKE_END+" FROM "+HIKE
+            +" WHERE id IN (SELECT "+HIKE_ID+" FROM "+CELLS+" WHERE %s) ORDER BY id";
+    public static final String CELL_RANGE=CELL_COL+" BETWEEN ? AND ?";
+    //Rows of one sensor and tier overlapping a time range
+    public static final String QUERY_SERIES="SELECT "+SAMPLE_COUNT_COL+", "+SAMPLES_COL+" FROM "+SERIES
+            +" WHERE "+HIKE_ID+"=? AND "+SENSOR_COL+"=? AND "+TIER_COL+"=? AND "+START_TIME_COL+"<=? AND "+END_TIME_COL+">=?"
+            +" ORDER BY "+START_TIME_COL;
+    public static final String QUERY_TRACK="SELECT "+SEQUENCE_COL+", "+ENCODING_COL+", "+POINT_COUNT_COL+", "+POINTS_COL+" FROM "+TRACKS+" WHERE "+HIKE_ID+"=? ORDER BY "+SEQUENCE_COL;
+    public static final String QUERY_LAST_CHUNK="SELECT "+SEQUENCE_COL+", "+ENCODING_COL+", "+POINT_COUNT_COL+", "+POINTS_COL+" FROM "+TRACKS+" WHERE "+HIKE_ID+"=? ORDER BY "+SEQUENCE_COL+" DESC LIMIT 1";
+    //Next sequence number and number of stored points of a track
+    public static final String QUERY_TRACK_EXTENT="SELECT IFNULL(MAX("+SEQUENCE_COL+")+1,0), IFNULL(SUM("+POINT_COUNT_COL+"),0) FROM "+TRACKS+" WHERE "+HIKE_ID+"=?";
+    public static final String QUERY_ALL_TRACKS="SELECT "+HIKE_ID+", "+SEQUENCE_COL+", "+ENCODING_COL+", "+POINT_COUNT_COL+", "+POINTS_COL+" FROM "+TRACKS+" ORDER BY "+HIKE_ID+", "+SEQUENCE_COL;
+    public static final String DELETE_BY_HIKE="DELETE FROM %s WHERE "+HIKE_ID+"=?";
+    public static final String DELETE_HIKE="DELETE FROM "+HIKE+" WHERE id=?";
+    public static final String UPDATE_HIKE_END="UPDATE "+HIKE+" SET "+HIKE_END+"=? WHERE id=?";
+
+    public static final String SCHEME_INSERT_SERIES="INSERT INTO "+SERIES+" ("+HIKE_ID+", "+SENSOR_COL+", "+TIER_COL+", "+START_TIME_COL+", "+END_TIME_COL+", "+SAMPLE_COUNT_COL+", "+SAMPLES_COL+") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    public static final String SCHEME_INSERT_CELL="INSERT INTO "+CELLS+" ("+HIKE_ID+", "+CELL_COL+") VALUES (?, ?)";
+    public static final String SCHEME_INSERT_TRACK_CHUNK="INSERT INTO "+TRACKS+" ("+HIKE_ID+", "+SEQUENCE_COL+", "+ENCODING_COL+", "+POINT_COUNT_COL+", "+POINTS_COL+") VALUES (?, ?, ?, ?, ?)";
+
     public static final String SCHEME_DESTROY="DROP TABLE IF EXISTS ";
 
-    public static final int SCHEME_VERSION=2; //Update scheme version to add stepCount
+    //Space reclamation. Deleted rows leave free pages, given back to the file system a few at a time
+    public static final String PRAGMA_AUTO_VACUUM="PRAGMA auto_vacuum";
+    public static final String PRAGMA_SET_INCREMENTAL_VACUUM="PRAGMA auto_vacuum=INCREMENTAL";
+    public static final String PRAGMA_INCREMENTAL_VACUUM="PRAGMA incremental_vacuum(%d)";
+    public static final String PRAGMA_FREE_PAGES="PRAGMA freelist_count";
+    public static final String VACUUM="VACUUM";
+    public static final long AUTO_VACUUM_INCREMENTAL=2;
+
+    public static final int SCHEME_VERSION=9; //Update scheme version to index the end time of hikes
+
+    /**
+     * Oldest version that can be migrated. Anything older is destroyed and recreated
+     */
+    public static final int OLDEST_MIGRATABLE_VERSION=2;
+
+    /**
+     * Number of rows copied between progress reports in migrations rewriting a table
+     */
+    public static final int MIGRATION_BATCH=10000;
+
+    /**
+     * Every step of the scheme evolution since {@link #OLDEST_MIGRATABLE_VERSION}, in order
+     */
+    public static final SchemaMigration[] MIGRATIONS = {
+            new SchemaMigration(3, "Pack hike coordinates into track chunks") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    migrateCoordinatesToTracks(db, this, listener);
+                }
+            },
+            new SchemaMigration(4, "Index every hike_id") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    for (String index : SCHEME_HIKE_ID_INDEXES) {
+                        db.execSQL(index);
+                    }
+                }
+            },
+            new SchemaMigration(5, "Index hike start times for paging") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    db.execSQL(SCHEME_INDEX_HIKE_START);
+                }
+            },
+            new SchemaMigration(6, "Add the hike summary table") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    //Existing hikes are summarized afterwards, see PersistentStorageEntity.backfillSummaries()
+                    db.execSQL(SCHEME_CREATE_SUMMARY_TABLE);
+                    db.execSQL(SCHEME_INDEX_SUMMARY);
+                }
+            },
+            new SchemaMigration(7, "Add the spatial index of tracks") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    //Existing hikes are indexed afterwards, see PersistentStorageEntity.backfillCells()
+                    db.execSQL(SCHEME_CREATE_CELLS_TABLE);
+                    db.execSQL(SCHEME_INDEX_CELLS);
+                    db.execSQL(SCHEME_INDEX_CELLS_HIKE);
+                }
+            },
+            new SchemaMigration(8, "Add the environmental time series") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    //Earlier hikes only kept their statistics, they have no series
+                    db.execSQL(SCHEME_CREATE_SERIES_TABLE);
+                    db.execSQL(SCHEME_INDEX_SERIES);
+                }
+            },
+            new SchemaMigration(9, "Index hike end times to find open hikes") {
+                @Override
+                public void migrate(SQLiteDatabase db, ProgressListener listener) {
+                    db.execSQL(SCHEME_INDEX_HIKE_END);
+                }
+            }
+    };
 
     public static final String TAG ="HikeDBA";
 
+    /**
+     * Shared instances, by database file. Several helpers on one file would each hold their own connections
+     */
+    private static final Map<String,DBAssistant> sInstances = new HashMap<>();
+
+    private SchemaMigration.ProgressListener mMigrationListener;
+
+    /**
+     * Obtain the instance shared by everyone using the database of a context
+     * @param currentContext Context deciding where the database is stored
+     * @return The shared DBAssistant
+     */
+    public static synchronized DBAssistant getInstance(Context currentContext) {
+        String path = currentContext.getDatabasePath(DB_NAME).getAbsolutePath();
+        DBAssistant instance = sInstances.get(path);
+        if(instance==null){
+            instance = new DBAssistant(currentContext);
+            sInstances.put(path, instance);
+        }
+        return instance;
+    }
 
     /**
-     * Default constructor
+     * Default constructor. Prefer {@link #getInstance(Context)}, so connections are shared
      */
     public DBAssistant(Context currentContext) {
         super(currentContext, DB_NAME, null, SCHEME_VERSION);
     }
 
+    /**
+     * Method called when the database is opened, before it is created or upgraded.
+     * New databases use incremental vacuum. Existing ones only switch to it after a VACUUM,
+     * see {@link PersistentStorageEntity#reclaimSpace(int)}.
+     * Write-Ahead Logging is only enabled afterwards: auto_vacuum cannot be changed on a database
+     * already in WAL mode, so the connection must not be opened with it.
+     * @param sqlDB Android's Database Handle
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase sqlDB) {
+        sqlDB.execSQL(PRAGMA_SET_INCREMENTAL_VACUUM);
+        sqlDB.enableWriteAheadLogging();
+    }
+
     /**
      * Method called when creating the database scheme if inexistent
      * @param sqlDB Android's Database Handle
@@ -89,27 +366,159 @@ public class DBAssistant extends SQLiteOpenHelper {
         for (int i = 0; i < SCHEME_CREATE.length; i++) {
             sqlDB.execSQL(SCHEME_CREATE[i]);
         }
+        createIndexes(sqlDB);
+    }
+
+    /**
+     * Statements looking up a hike or its rows, such as loading or deleting a hike, or paging through the list.
+     * Every one of them must be answered through an index, which {@link QueryPlanInspector} can verify.
+     * Statements reading every hike or track are not included: {@link #QUERY_ALL_HIKES}, {@link #QUERY_ALL_TRACKS},
+     * the backfills, and {@link #QUERY_HIKES_FIRST_PAGE}, which walks the start time index from its end until its limit.
+     * @return The statements, whose parameters are all integers
+     */
+    public static List<String> hikeLookupStatements(){
+        List<String> statements = new ArrayList<>();
+        statements.add(QUERY_HIKE);
+        statements.add(QUERY_SESSION);
+        statements.add(QUERY_TRACK);
+        statements.add(QUERY_LAST_CHUNK);
+        statements.add(QUERY_TRACK_EXTENT);
+        statements.add(QUERY_SUMMARY);
+        statements.add(QUERY_SERIES);
+        statements.add(QUERY_HIKES_NEXT_PAGE);
+        statements.add(QUERY_OPEN_HIKES);
+        statements.add(String.format(QUERY_HIKES_IN_CELLS, CELL_RANGE + " OR " + CELL_RANGE));
+        statements.add(UPDATE_HIKE_END);
+        for (int i = 1; i < VALID_TABLES.length; i++) {
+            statements.add(String.format(DELETE_BY_HIKE, VALID_TABLES[i]));
+        }
+        statements.add(DELETE_HIKE);
+        return statements;
+    }
+
+    /**
+     * Set the listener receiving the progress of the migrations. Must be set before the database is first opened
+     * @param listener Listener to report progress to. May be null
+     */
+    public void setMigrationListener(SchemaMigration.ProgressListener listener){
+        mMigrationListener = listener;
     }
 
     /**
      * Method called when upgrading scheme version
+     * Versions prior to {@link #OLDEST_MIGRATABLE_VERSION} are destroyed and recreated.
+     * Later versions run every step of {@link #MIGRATIONS} they are missing, keeping all data.
      * @param sqlDB Android's Database Handle
      * @param prev old version of database to replace
      * @param curr current schema version, defined by SCHEME_VERSION.
      */
     public void onUpgrade(SQLiteDatabase sqlDB, int prev, int curr) {
-        Log.w(TAG, String.format("Updating DB from version %s to %s. Will destroy previous", prev, curr));
+        if(prev<OLDEST_MIGRATABLE_VERSION){
+            Log.w(TAG, String.format("Updating DB from version %s to %s. Will destroy previous", prev, curr));
+            destroy(sqlDB);
+            onCreate(sqlDB);
+            return;
+        }
+
+        Log.w(TAG, String.format("Migrating DB from version %s to %s", prev, curr));
+        runMigrations(sqlDB, prev, curr, mMigrationListener);
+    }
+
+    /**
+     * Run the steps of {@link #MIGRATIONS} going from one version to another, each one in a transaction.
+     * When called by Android, the whole upgrade is also inside a transaction: if any step fails,
+     * the database stays at its previous version and the upgrade is attempted again on the next start.
+     * @param sqlDB Android's Database Handle
+     * @param prev Version the database is at
+     * @param curr Version to reach
+     * @param listener Listener to report progress to. May be null
+     * @return Number of steps run
+     */
+    public static int runMigrations(SQLiteDatabase sqlDB, int prev, int curr, SchemaMigration.ProgressListener listener){
+        int stepsRun = 0;
+        for (SchemaMigration step : MIGRATIONS) {
+            if(step.getVersion()<=prev || step.getVersion()>curr){
+                continue;
+            }
+            Log.d(TAG, step.toString());
+            sqlDB.beginTransaction();
+            try {
+                step.migrate(sqlDB, listener);
+                sqlDB.setTransactionSuccessful();
+            }
+            finally {
+                sqlDB.endTransaction();
+            }
+            ++stepsRun;
+        }
+        return stepsRun;
+    }
+
+    /**
+     * Create every index of the current scheme
+     * @param sqlDB Android's Database Handle
+     */
+    private static void createIndexes(SQLiteDatabase sqlDB){
+        for (int i = 0; i < SCHEME_INDEXES.length; i++) {
+            sqlDB.execSQL(SCHEME_INDEXES[i]);
+        }
+    }
+
+    /**
+     * Drop every table known to any version of the scheme
+     * @param sqlDB Android's Database Handle
+     */
+    private void destroy(SQLiteDatabase sqlDB){
         sqlDB.execSQL(SCHEME_DESTROY + COORDS);
+        sqlDB.execSQL(SCHEME_DESTROY + TRACKS);
         sqlDB.execSQL(SCHEME_DESTROY + ENVPRES);
         sqlDB.execSQL(SCHEME_DESTROY + ENVTEMP);
         sqlDB.execSQL(SCHEME_DESTROY + ENVHUMD);
         sqlDB.execSQL(SCHEME_DESTROY + STEPS);
         sqlDB.execSQL(SCHEME_DESTROY + HIKE_NAME);
+        sqlDB.execSQL(SCHEME_DESTROY + SUMMARY);
+        sqlDB.execSQL(SCHEME_DESTROY + CELLS);
+        sqlDB.execSQL(SCHEME_DESTROY + SERIES);
 
         sqlDB.execSQL(SCHEME_DESTROY + HIKE);
+    }
 
-        onCreate(sqlDB);
+    /**
+     * Version 3: Move the one-row-per-point hike_coordinates table into packed hike_tracks chunks
+     * @param sqlDB Android's Database Handle
+     */
+    private static void migrateCoordinatesToTracks(SQLiteDatabase sqlDB, SchemaMigration step,
+                                                   SchemaMigration.ProgressListener listener){
+        sqlDB.execSQL(SCHEME_CREATE_TRACKS_TABLE);
 
+        long totalPoints = DatabaseUtils.queryNumEntries(sqlDB, COORDS);
+        step.report(listener, 0, totalPoints);
+
+        Cursor cursor = sqlDB.query(COORDS, new String[]{HIKE_ID, LONG_COL, LAT_COL, ALT_COL},
+                null, null, null, null, HIKE_ID + ", id");
+        List<Coordinates> pending = new ArrayList<>(TrackChunk.MAX_POINTS);
+        int currentHike = -1;
+        int sequence = 0;
+        int migratedPoints = 0;
+        while (cursor.moveToNext()){
+            int hikeID = cursor.getInt(0);
+            if(hikeID!=currentHike || pending.size()==TrackChunk.MAX_POINTS){
+                PersistentStorageEntity.insertTrack(sqlDB, currentHike, sequence, pending);
+                sequence = (hikeID==currentHike) ? sequence+1 : 0;
+                currentHike = hikeID;
+                pending.clear();
+            }
+            pending.add(new Coordinates(cursor.getDouble(1), cursor.getDouble(2), cursor.getDouble(3)));
+            if(++migratedPoints % MIGRATION_BATCH == 0){
+                step.report(listener, migratedPoints, totalPoints);
+            }
+        }
+        PersistentStorageEntity.insertTrack(sqlDB, currentHike, sequence, pending);
+        cursor.close();
+        step.report(listener, migratedPoints, totalPoints);
+
+        sqlDB.execSQL(SCHEME_DESTROY + COORDS);
+        Log.d(TAG, "Migrated "+migratedPoints+" coordinates to "+TRACKS);
     }
 
 }
\ No newline at end of file
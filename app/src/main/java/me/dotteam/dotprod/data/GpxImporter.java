@@ -0,0 +1,421 @@
+package me.dotteam.dotprod.data;
+
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Importer of GPX documents into Persistent Storage, one hike per trk element.
+ * The document is read with a pull parser and never held in memory: points are written through the
+ * journal in transactions of {@link #BATCH_POINTS}, while the summary and spatial index of the hike
+ * are computed from them on the way. A hike is only kept once its trk is completely imported,
+ * so a cancelled or malformed import leaves no partial hike behind.
+ * Environmental statistics are read from the extensions written by {@link GpxTrackWriter},
+ * and air temperatures recorded with each point, such as Garmin's atemp, are kept as a time series.
+ */
+public class GpxImporter {
+
+    private static final String TAG="GpxImporter";
+
+    /**
+     * Points written per transaction. A multiple of {@link TrackChunk#MAX_POINTS} so no chunk is left partly filled
+     */
+    public static final int BATCH_POINTS=4*TrackChunk.MAX_POINTS;
+
+    /**
+     * Name of the per point air temperature extension
+     */
+    public static final String AIR_TEMPERATURE="atemp";
+
+    /**
+     * Interface definition for the callbacks of an import, called on the importing thread
+     */
+    public interface Listener {
+
+        /**
+         * Method called after every batch of points written
+         * @param bytesRead Bytes of the document read so far
+         * @param totalBytes Size of the document, or -1 if unknown
+         */
+        void onProgress(long bytesRead, long totalBytes);
+
+        /**
+         * Method called once a hike is completely imported
+         * @param hikeID The hike_id given to the hike
+         * @param pointCount Number of points of the hike
+         */
+        void onHikeImported(int hikeID, long pointCount);
+    }
+
+    private final HikeStore mPSE;
+    private final Calendar mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private volatile boolean mCancelled;
+
+    //State of the trk being imported
+    private Hike mHike;
+    private String mName;
+    private long mLastTime;
+    private EnvData mStatistics;
+    private EnvSeries mTemperatures;
+    private int mSteps;
+    private HikeSummary mSummary;
+    private HikeCellIndex mCells;
+    private List<Coordinates> mBatch;
+    private int mNextSequence;
+    private long mPointCount;
+
+    /**
+     * Default constructor
+     * @param pse Persistent Storage to write the hikes to
+     */
+    public GpxImporter(HikeStore pse) {
+        mPSE = pse;
+    }
+
+    /**
+     * Stop the import. The hike being imported is discarded, those already imported are kept.
+     * Interrupting the importing thread has the same effect. Can be called from any thread
+     */
+    public void cancel(){
+        mCancelled = true;
+    }
+
+    public boolean isCancelled(){
+        return mCancelled;
+    }
+
+    /**
+     * Import every track of a GPX document
+     * @param in The document. Read to the end, or until cancelled, but not closed
+     * @param totalBytes Size of the document, for progress, or -1 if unknown
+     * @param listener Receiver of the progress. May be null
+     * @return The hike_id of every imported hike, in document order
+     * @throws IOException If the document could not be read
+     * @throws XmlPullParserException If the document is not well formed. Hikes before the error are kept
+     */
+    public List<Integer> importGpx(InputStream in, long totalBytes, Listener listener)
+            throws IOException, XmlPullParserException {
+        CountingInputStream countingIn = new CountingInputStream(in);
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(countingIn, null);
+
+        List<Integer> imported = new ArrayList<>();
+        double latitude = 0;
+        double longitude = 0;
+        double altitude = 0;
+        long time = 0;
+        double airTemperature = Double.NaN;
+
+        try {
+            int event;
+            while ((event = parser.next())!=XmlPullParser.END_DOCUMENT){
+                if(mCancelled || Thread.currentThread().isInterrupted()){
+                    mCancelled = true;
+                    break;
+                }
+
+                String name = parser.getName();
+                if(event==XmlPullParser.START_TAG){
+                    if(name.equals("trk")){
+                        startTrack();
+                    }
+                    //Waypoints and routes are not hikes, only what is inside a trk is read
+                    else if(mHike==null){
+                        continue;
+                    }
+                    else if(name.equals("trkpt")){
+                        latitude = parseDouble(parser.getAttributeValue(null, "lat"), Double.NaN);
+                        longitude = parseDouble(parser.getAttributeValue(null, "lon"), Double.NaN);
+                        altitude = 0;
+                        time = 0;
+                        airTemperature = Double.NaN;
+                    }
+                    else if(name.equals("ele")){
+                        altitude = parseDouble(parser.nextText(), 0);
+                    }
+                    else if(name.equals("time")){
+                        time = parseTime(parser.nextText());
+                    }
+                    else if(name.equals(AIR_TEMPERATURE)){
+                        airTemperature = parseDouble(parser.nextText(), Double.NaN);
+                    }
+                    else if(name.equals("name") && parser.getDepth()==3){
+                        mName = parser.nextText().trim();
+                    }
+                    else if(GpxTrackWriter.EXTENSIONS_NAMESPACE.equals(parser.getNamespace())){
+                        readExtension(parser);
+                    }
+                }
+                else if(event==XmlPullParser.END_TAG && mHike!=null){
+                    if(name.equals("trkpt")){
+                        if(!Double.isNaN(latitude) && !Double.isNaN(longitude)){
+                            addPoint(new Coordinates(longitude, latitude, altitude, time), airTemperature,
+                                    countingIn, totalBytes, listener);
+                        }
+                    }
+                    else if(name.equals("trk")){
+                        int hikeID = finishTrack();
+                        if(hikeID>0){
+                            imported.add(hikeID);
+                            if(listener!=null){
+                                listener.onHikeImported(hikeID, mPointCount);
+                                listener.onProgress(countingIn.mCount, totalBytes);
+                            }
+                        }
+                        mHike = null;
+                    }
+                }
+            }
+        }
+        finally {
+            //Cancelled, or stopped by an error, in the middle of a trk
+            discardTrack();
+        }
+        Log.d(TAG, "Imported " + imported.size() + " hikes" + (mCancelled ? ", cancelled" : ""));
+        return imported;
+    }
+
+    /**
+     * Reset the state for a new trk
+     */
+    private void startTrack(){
+        discardTrack();
+        mHike = new Hike();
+        mName = null;
+        mLastTime = 0;
+        mStatistics = new EnvData();
+        mTemperatures = new EnvSeries(EnvSeries.TEMPERATURE);
+        mSteps = 0;
+        mSummary = new HikeSummary();
+        mCells = new HikeCellIndex();
+        mBatch = new ArrayList<>(BATCH_POINTS);
+        mNextSequence = 0;
+        mPointCount = 0;
+    }
+
+    /**
+     * Queue a point of the current trk, writing the batch once full
+     */
+    private void addPoint(Coordinates point, double airTemperature, CountingInputStream in, long totalBytes,
+                          Listener listener){
+        mBatch.add(point);
+        mPointCount++;
+        if(point.getTime()>0){
+            mLastTime = point.getTime();
+        }
+        if(!Double.isNaN(airTemperature)){
+            mStatistics.updateTemp(airTemperature);
+            if(point.getTime()>0){
+                mTemperatures.addSample(point.getTime(), airTemperature);
+            }
+        }
+        if(mBatch.size()>=BATCH_POINTS){
+            writeBatch();
+            if(listener!=null){
+                listener.onProgress(in.mCount, totalBytes);
+            }
+        }
+    }
+
+    /**
+     * Write the queued points of the current trk in one transaction.
+     * The hike is inserted, still open, along with the first batch
+     */
+    private void writeBatch(){
+        if(mBatch.isEmpty()){
+            return;
+        }
+        if(mHike.getUniqueID()<1){
+            long startTime = mBatch.get(0).getTime();
+            mHike = new Hike(-1, startTime>0 ? startTime : System.currentTimeMillis(), -1);
+            if(mName!=null && !mName.isEmpty()){
+                mHike.setNickName(mName);
+            }
+            if(mPSE.beginSession(mHike)<1){
+                throw new IllegalStateException("Could not insert the imported hike");
+            }
+        }
+        mNextSequence += mPSE.appendTrack(mHike.getUniqueID(), mNextSequence, mBatch);
+        writeTemperatures(false);
+        mSummary.addPoints(mBatch);
+        mCells.addPoints(mBatch);
+        mBatch.clear();
+    }
+
+    /**
+     * Write the rest of the current trk and close its hike
+     * @return The hike_id of the hike, or -1 if the trk had no points
+     */
+    private int finishTrack(){
+        writeBatch();
+        if(mHike.getUniqueID()<1){
+            return -1;
+        }
+
+        Hike finishedHike = new Hike(mHike.getUniqueID(), mHike.startTime(),
+                Math.max(mLastTime, mHike.startTime()));
+        finishedHike.setNickName(mHike.getNickName());
+        writeTemperatures(true);
+
+        SessionData session = new SessionData(finishedHike, new StepCount(mSteps), mStatistics, new LocationPoints());
+        session.setSummary(mSummary);
+        mPSE.finishSession(session, mCells);
+        mHike = null;
+        return finishedHike.getUniqueID();
+    }
+
+    /**
+     * Write the air temperatures of the points written so far
+     * @param closeIntervals True at the end of the trk, so the intervals still open are aggregated too
+     */
+    private void writeTemperatures(boolean closeIntervals){
+        List<EnvSeries.Batch> batches = new ArrayList<>();
+        mTemperatures.takePending(closeIntervals, batches);
+        mPSE.appendSeries(mHike.getUniqueID(), batches);
+    }
+
+    /**
+     * Remove the hike of a trk left unfinished, if any of it was written
+     */
+    private void discardTrack(){
+        if(mHike!=null && mHike.getUniqueID()>0){
+            mPSE.deleteHikes(Collections.singletonList(mHike.getUniqueID()));
+            Log.w(TAG, "Discarded the unfinished hike " + mHike.getUniqueID());
+        }
+        mHike = null;
+    }
+
+    /**
+     * Read an element of the {@link GpxTrackWriter#EXTENSIONS_NAMESPACE} namespace
+     */
+    private void readExtension(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String name = parser.getName();
+        if(name.equals(GpxTrackWriter.STEPS)){
+            mSteps = (int) parseDouble(parser.nextText(), 0);
+            return;
+        }
+
+        EnvStatistic statistic;
+        if(name.equals(GpxTrackWriter.TEMPERATURE)){
+            statistic = mStatistics.getTemperature();
+        }
+        else if(name.equals(GpxTrackWriter.HUMIDITY)){
+            statistic = mStatistics.getHumidity();
+        }
+        else if(name.equals(GpxTrackWriter.PRESSURE)){
+            statistic = mStatistics.getPressure();
+        }
+        else {
+            return;
+        }
+        //Same order as when read from the DB: max and min first, so avg ends up as the latest value
+        statistic.insertSample(parseDouble(parser.getAttributeValue(null, "max"), 0));
+        statistic.insertSample(parseDouble(parser.getAttributeValue(null, "min"), 0));
+        statistic.insertSample(parseDouble(parser.getAttributeValue(null, "avg"), 0));
+    }
+
+    private static double parseDouble(String text, double fallback){
+        if(text==null){
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException e){
+            return fallback;
+        }
+    }
+
+    /**
+     * Parse an ISO 8601 date and time, such as 2015-11-08T16:26:40Z, 2015-11-08T16:26:40.250Z
+     * or 2015-11-08T11:26:40-05:00
+     * @return Milliseconds since epoch, or 0 if it could not be parsed
+     */
+    long parseTime(String text){
+        text = text.trim();
+        if(text.length()<19){
+            return 0;
+        }
+        try {
+            mCalendar.clear();
+            mCalendar.set(
+                    Integer.parseInt(text.substring(0, 4)),
+                    Integer.parseInt(text.substring(5, 7)) - 1,
+                    Integer.parseInt(text.substring(8, 10)),
+                    Integer.parseInt(text.substring(11, 13)),
+                    Integer.parseInt(text.substring(14, 16)),
+                    Integer.parseInt(text.substring(17, 19)));
+            long time = mCalendar.getTimeInMillis();
+
+            int position = 19;
+            if(position<text.length() && text.charAt(position)=='.'){
+                int end = position + 1;
+                while (end<text.length() && Character.isDigit(text.charAt(end))){
+                    end++;
+                }
+                //Only milliseconds are kept
+                String fraction = (text.substring(position + 1, end) + "00").substring(0, 3);
+                time += Integer.parseInt(fraction);
+                position = end;
+            }
+            if(position + 6<=text.length() && (text.charAt(position)=='+' || text.charAt(position)=='-')){
+                int offset = Integer.parseInt(text.substring(position + 1, position + 3))*60
+                        + Integer.parseInt(text.substring(position + 4, position + 6));
+                time -= (text.charAt(position)=='+' ? 1 : -1)*offset*60000L;
+            }
+            return time;
+        }
+        catch (NumberFormatException e){
+            return 0;
+        }
+    }
+
+    /**
+     * Stream counting the bytes read, for progress
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if(read>=0){
+                mCount++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if(read>0){
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
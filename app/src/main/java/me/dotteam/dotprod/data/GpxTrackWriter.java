@@ -0,0 +1,112 @@
+package me.dotteam.dotprod.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of GPX 1.1 documents, with one trk element per hike.
+ * The environmental statistics and step count of a hike are kept in the extensions of its trk,
+ * under the {@link #EXTENSIONS_NAMESPACE} namespace, so they can be imported back.
+ */
+public class GpxTrackWriter extends TrackFormatWriter {
+
+    public static final String GPX_NAMESPACE="http://www.topografix.com/GPX/1/1";
+    public static final String EXTENSIONS_NAMESPACE="http://dotteam.me/dothike/gpx/1";
+
+    /**
+     * Names of the extension elements, read back by the importer
+     */
+    public static final String TEMPERATURE="temperature";
+    public static final String HUMIDITY="humidity";
+    public static final String PRESSURE="pressure";
+    public static final String STEPS="steps";
+
+    /**
+     * Default constructor
+     * @param out Destination of the document. Should be buffered, as it is written a few characters at a time
+     */
+    public GpxTrackWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void beginDocument() throws IOException {
+        mOut.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        mOut.write("<gpx version=\"1.1\" creator=\".Hike\" xmlns=\"" + GPX_NAMESPACE
+                + "\" xmlns:hike=\"" + EXTENSIONS_NAMESPACE + "\">\n");
+        mOut.write("<metadata><time>");
+        writeTime(System.currentTimeMillis());
+        mOut.write("</time></metadata>\n");
+    }
+
+    @Override
+    public void beginTrack(SessionData session) throws IOException {
+        mOut.write("<trk><name>");
+        writeEscaped(nameOf(session));
+        mOut.write("</name>\n");
+
+        EnvData statistics = session.getCurrentStats();
+        StepCount steps = session.getStepCount();
+        if(statistics!=null || steps!=null){
+            mOut.write("<extensions>");
+            if(statistics!=null){
+                writeStatistic(TEMPERATURE, statistics.getTemperature());
+                writeStatistic(HUMIDITY, statistics.getHumidity());
+                writeStatistic(PRESSURE, statistics.getPressure());
+            }
+            if(steps!=null){
+                mOut.write("<hike:" + STEPS + ">");
+                writeLong(steps.getStepsTaken(), 1);
+                mOut.write("</hike:" + STEPS + ">");
+            }
+            mOut.write("</extensions>\n");
+        }
+        mOut.write("<trkseg>\n");
+    }
+
+    @Override
+    public boolean writePoint(Coordinates point) throws IOException {
+        mOut.write("<trkpt lat=\"");
+        writeDecimal(point.getLatitude(), COORDINATE_DIGITS);
+        mOut.write("\" lon=\"");
+        writeDecimal(point.getLongitude(), COORDINATE_DIGITS);
+        mOut.write("\"><ele>");
+        writeDecimal(point.getAltitude(), METRE_DIGITS);
+        mOut.write("</ele>");
+        //Points recorded before timestamps were kept have none
+        if(point.getTime()>0){
+            mOut.write("<time>");
+            writeTime(point.getTime());
+            mOut.write("</time>");
+        }
+        mOut.write("</trkpt>\n");
+        return true;
+    }
+
+    @Override
+    public void endTrack() throws IOException {
+        mOut.write("</trkseg></trk>\n");
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        mOut.write("</gpx>\n");
+        mOut.flush();
+    }
+
+    /**
+     * Write a statistic as an empty element with min, avg and max attributes. Nothing is written if it was not measured
+     */
+    private void writeStatistic(String name, EnvStatistic statistic) throws IOException {
+        if(statistic==null || !statistic.isValid()){
+            return;
+        }
+        mOut.write("<hike:" + name + " min=\"");
+        writeDecimal(statistic.getMin(), METRE_DIGITS);
+        mOut.write("\" avg=\"");
+        writeDecimal(statistic.getAvg(), METRE_DIGITS);
+        mOut.write("\" max=\"");
+        writeDecimal(statistic.getMax(), METRE_DIGITS);
+        mOut.write("\"/>");
+    }
+}
@@ -3,11 +3,25 @@ package me.dotteam.dotprod.data;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 
 /**
@@ -17,16 +31,36 @@ public class HikeDataDirector {
 
     private final static String TAG ="Hike_HDD";
 
+    /**
+     * Key of the setting enabling the {@link StorageMetrics}
+     */
+    public final static String PREF_STORAGE_METRICS="storage_metrics";
+
     private static HikeDataDirector mInstance;
     private Context mCreateContext;
-    private PersistentStorageEntity mPSE;
+    private HikeStore mPSE;
     private boolean mPauseCollection = false;
 
+    /**
+     * Runs the asynchronous variants of the storage methods off the calling thread
+     */
+    private StorageExecutor mStorageExecutor;
+
+    /**
+     * Gives back the space freed by deletions once storage is idle
+     */
+    private SpaceReclaimer mSpaceReclaimer;
+
+    /**
+     * Journal of the hike being recorded, if any
+     */
+    private SessionJournal mJournal;
+
     /**
      * Reference to the SessionData object currently in memory
      * This may correspond to a recently generated entity OR a loaded object from Persistent Storage
      */
-    private SessionData mSessionData;
+    private volatile SessionData mSessionData;
 
     /**
      * Reference to a lightweight service for background data collection
@@ -48,10 +82,43 @@ public class HikeDataDirector {
 //        mPSE = new PersistentStorageEntity(); //Defer creation of a persistent storage manager.
     }
 
-    private void checkOrSetPSE(){
+    private synchronized void checkOrSetPSE(){
         if(mPSE==null){
-            mPSE = new PersistentStorageEntity(mCreateContext);
+            PersistentStorageEntity pse = new PersistentStorageEntity(mCreateContext);
+            StorageMetrics metrics = StorageMetrics.getInstance();
+            metrics.setEnabled(PreferenceManager.getDefaultSharedPreferences(mCreateContext)
+                    .getBoolean(PREF_STORAGE_METRICS, false));
+            metrics.watchCache(pse.getSessionCache());
+            mPSE = new InstrumentedHikeStore(pse, metrics);
+        }
+    }
+
+    /**
+     * Replace the storage of the hikes, SQLite by default, for example by an {@link InMemoryHikeStore} in tests.
+     * Should be called before any hike is recorded or requested
+     * @param store The storage to use from now on, or null to go back to the default one
+     */
+    public synchronized void setHikeStore(HikeStore store){
+        if(mSpaceReclaimer!=null){
+            mSpaceReclaimer.cancel();
+            mSpaceReclaimer = null;
+        }
+        mPSE = store;
+    }
+
+    private synchronized SpaceReclaimer getSpaceReclaimer(){
+        if(mSpaceReclaimer==null){
+            checkOrSetPSE();
+            mSpaceReclaimer = new SpaceReclaimer(getStorageExecutor(), mPSE);
         }
+        return mSpaceReclaimer;
+    }
+
+    private synchronized StorageExecutor getStorageExecutor(){
+        if(mStorageExecutor==null){
+            mStorageExecutor = new StorageExecutor();
+        }
+        return mStorageExecutor;
     }
 
     /**
@@ -106,9 +173,224 @@ public class HikeDataDirector {
             Log.d(TAG,"Data received!");
             Log.e(TAG, "receiveDataFromService " + collectedData.toString());
 
-            //Hotfix for losing data: Save data as soon as it's received
-            storeCollectedStatistics();
+            if(mJournal!=null){
+                //Most of the hike is already on disk, only finish it
+                mJournal.finish(collectedData, null);
+                mJournal=null;
+            }
+            else {
+                //Hotfix for losing data: Save data as soon as it's received
+                storeCollectedStatisticsAsync(null);
+            }
+        }
+    }
+
+    /**
+     * Start journaling a hike that is being recorded. Its data is written in batches while it goes on,
+     * and {@link #receiveDataFromService(Service, SessionData)} only finishes it.
+     * The points are also logged to a {@link MappedTrackLog}, see {@link SessionJournal#getTrackLog()}.
+     * @param startedHike The hike being recorded, already started
+     * @return The journal the recorded data must be appended to
+     */
+    public SessionJournal openJournal(Hike startedHike){
+        checkOrSetPSE();
+        MappedTrackLog trackLog = null;
+        try {
+            trackLog = MappedTrackLog.create(
+                    MappedTrackLog.fileFor(mCreateContext, startedHike.startTime()), startedHike.startTime());
+        }
+        catch (IOException e){
+            Log.e(TAG, "Could not create the track log, recording on the heap", e);
+        }
+        mJournal = new SessionJournal(getStorageExecutor(), mPSE, startedHike, trackLog);
+        return mJournal;
+    }
+
+    /**
+     * Obtain the track of the hike being recorded, read from its {@link MappedTrackLog} without copying
+     * @return The live view of the recorded points, or null if not recording or the log could not be created
+     */
+    public List<Coordinates> getLiveTrack(){
+        SessionJournal journal = mJournal;
+        if(journal==null || journal.getTrackLog()==null){
+            return null;
+        }
+        return journal.getTrackLog().asList();
+    }
+
+    /**
+     * Close every hike left open by a recording that was interrupted, for example by the process being killed.
+     * Must not be called while collecting data.
+     * @return Number of hikes recovered
+     */
+    public int recoverUnfinishedHikes(){
+        checkOrSetPSE();
+        List<Hike> openHikes = mPSE.getOpenHikes();
+        for (Hike openHike : openHikes) {
+            //The log holds the points recorded after the last journal write
+            File logFile = MappedTrackLog.fileFor(mCreateContext, openHike.startTime());
+            if(logFile.exists()){
+                try {
+                    MappedTrackLog trackLog = MappedTrackLog.open(logFile);
+                    int recovered = mPSE.recoverTrack(openHike.getUniqueID(), trackLog.asList());
+                    trackLog.close();
+                    Log.d(TAG, "Recovered " + recovered + " logged points of hike " + openHike.getUniqueID());
+                }
+                catch (IOException e){
+                    Log.e(TAG, "Could not read the track log " + logFile, e);
+                }
+            }
+            mPSE.recoverHike(openHike);
+
+            //Only the logs of the recovered hikes: a journal opened since this was queued has its own
+            if(logFile.exists() && !logFile.delete()){
+                Log.w(TAG, "Could not delete the track log " + logFile);
+            }
         }
+        return openHikes.size();
+    }
+
+    /**
+     * Compute the summary of stored hikes that do not have one yet
+     * @return Number of hikes summarized
+     */
+    public int backfillSummaries(){
+        checkOrSetPSE();
+        return mPSE.backfillSummaries();
+    }
+
+    /**
+     * Asynchronous variant of {@link #backfillSummaries()}. Runs after any pending write
+     * @param callback Receives the number of hikes summarized on the main thread. May be null
+     * @return Future holding the number of hikes summarized
+     */
+    public Future<Integer> backfillSummariesAsync(StorageExecutor.Callback<Integer> callback){
+        return getStorageExecutor().submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return backfillSummaries();
+            }
+        }, callback);
+    }
+
+    /**
+     * Add the stored hikes that are not in the spatial index yet
+     * @return Number of hikes indexed
+     */
+    public int backfillSpatialIndex(){
+        checkOrSetPSE();
+        return mPSE.backfillCells();
+    }
+
+    /**
+     * Asynchronous variant of {@link #backfillSpatialIndex()}. Runs after any pending write
+     * @param callback Receives the number of hikes indexed on the main thread. May be null
+     * @return Future holding the number of hikes indexed
+     */
+    public Future<Integer> backfillSpatialIndexAsync(StorageExecutor.Callback<Integer> callback){
+        return getStorageExecutor().submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return backfillSpatialIndex();
+            }
+        }, callback);
+    }
+
+    /**
+     * Obtain the recorded samples of a sensor over part of a stored hike, for charting
+     * @param hikeID The hike_id of the hike
+     * @param sensor One of {@link EnvSeries#TEMPERATURE}, {@link EnvSeries#HUMIDITY} or {@link EnvSeries#PRESSURE}
+     * @param fromTime Start of the time range, in Milliseconds since epoch
+     * @param toTime End of the time range, in Milliseconds since epoch
+     * @param resolution Time between two points of the chart, in Milliseconds. Picks the tier read
+     * @return The samples in the range, in time order
+     */
+    public List<EnvSample> retrieveEnvSeries(int hikeID, int sensor, long fromTime, long toTime, long resolution){
+        checkOrSetPSE();
+        return mPSE.loadSeries(hikeID, sensor, fromTime, toTime, resolution);
+    }
+
+    /**
+     * Asynchronous variant of {@link #retrieveEnvSeries(int, int, long, long, long)}
+     * @param callback Receives the samples on the main thread. May be null
+     * @return Future holding the samples
+     */
+    public Future<List<EnvSample>> retrieveEnvSeriesAsync(final int hikeID, final int sensor, final long fromTime,
+                                                          final long toTime, final long resolution,
+                                                          StorageExecutor.Callback<List<EnvSample>> callback){
+        return getStorageExecutor().submitRead(new Callable<List<EnvSample>>() {
+            @Override
+            public List<EnvSample> call() throws Exception {
+                return retrieveEnvSeries(hikeID, sensor, fromTime, toTime, resolution);
+            }
+        }, callback);
+    }
+
+    /**
+     * Obtain the stored hikes whose track goes through an area, in the order they were stored
+     * @param minLatitude South edge of the area, in degrees
+     * @param minLongitude West edge of the area, in degrees
+     * @param maxLatitude North edge of the area, in degrees
+     * @param maxLongitude East edge of the area, in degrees
+     * @return The hikes found, empty if none
+     */
+    public List<Hike> findHikesInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude){
+        checkOrSetPSE();
+        return mPSE.findHikesInArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    /**
+     * Obtain the stored hikes whose track goes near a location, in the order they were stored
+     * @param latitude Latitude of the location, in degrees
+     * @param longitude Longitude of the location, in degrees
+     * @param radius Distance from the location, in metres
+     * @return The hikes found, empty if none
+     */
+    public List<Hike> findHikesNear(double latitude, double longitude, double radius){
+        checkOrSetPSE();
+        return mPSE.findHikesNear(latitude, longitude, radius);
+    }
+
+    /**
+     * Asynchronous variant of {@link #findHikesNear(double, double, double)}
+     * @param callback Receives the hikes found on the main thread. May be null
+     * @return Future holding the hikes found
+     */
+    public Future<List<Hike>> findHikesNearAsync(final double latitude, final double longitude, final double radius,
+                                                 StorageExecutor.Callback<List<Hike>> callback){
+        return getStorageExecutor().submitRead(new Callable<List<Hike>>() {
+            @Override
+            public List<Hike> call() throws Exception {
+                return findHikesNear(latitude, longitude, radius);
+            }
+        }, callback);
+    }
+
+    /**
+     * Obtain the summary of a stored hike without loading its points
+     * @param hikeID The hike_id of the hike
+     * @return The summary, or null if the hike has none yet
+     */
+    public HikeSummary retrieveSummary(int hikeID){
+        checkOrSetPSE();
+        return mPSE.loadSummary(hikeID);
+    }
+
+    /**
+     * Asynchronous variant of {@link #recoverUnfinishedHikes()}. Does nothing while collecting data
+     * @param callback Receives the number of hikes recovered on the main thread. May be null
+     * @return Future holding the number of hikes recovered, null if collecting data
+     */
+    public Future<Integer> recoverUnfinishedHikesAsync(StorageExecutor.Callback<Integer> callback){
+        if(mIsCollectingData || mJournal!=null){
+            return null;
+        }
+        return getStorageExecutor().submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return recoverUnfinishedHikes();
+            }
+        }, callback);
     }
 
     /**
@@ -120,11 +402,69 @@ public class HikeDataDirector {
         return mPSE.saveSession(mSessionData);
     }
 
+    /**
+     * Asynchronous variant of {@link #storeCollectedStatistics()}
+     * @param callback Receives the success of the operation on the main thread. May be null
+     * @return Future holding the success of the operation
+     */
+    public Future<Boolean> storeCollectedStatisticsAsync(StorageExecutor.Callback<Boolean> callback){
+        final SessionData toStore = mSessionData;
+        return getStorageExecutor().submitWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                checkOrSetPSE();
+                return mPSE.saveSession(toStore);
+            }
+        }, callback);
+    }
+
     public List<Hike> getAllStoredHikes(){
         checkOrSetPSE();
         return mPSE.getHikesList();
     }
 
+    /**
+     * Asynchronous variant of {@link #getAllStoredHikes()}
+     * @param callback Receives the list of hikes on the main thread. May be null
+     * @return Future holding the list of hikes
+     */
+    public Future<List<Hike>> getAllStoredHikesAsync(StorageExecutor.Callback<List<Hike>> callback){
+        return getStorageExecutor().submitRead("hikes", new Callable<List<Hike>>() {
+            @Override
+            public List<Hike> call() throws Exception {
+                return getAllStoredHikes();
+            }
+        }, callback);
+    }
+
+    /**
+     * Obtain one page of the stored hikes, most recent first
+     * @param lastHike The last hike of the previous page, or null for the first page
+     * @param pageSize Maximum number of hikes in the page
+     * @return The hikes of the page. Empty once there are no more
+     */
+    public List<Hike> getStoredHikesPage(Hike lastHike, int pageSize){
+        checkOrSetPSE();
+        return mPSE.getHikesPage(lastHike, pageSize);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getStoredHikesPage(Hike, int)}
+     * @param lastHike The last hike of the previous page, or null for the first page
+     * @param pageSize Maximum number of hikes in the page
+     * @param callback Receives the page on the main thread. May be null
+     * @return Future holding the page
+     */
+    public Future<List<Hike>> getStoredHikesPageAsync(final Hike lastHike, final int pageSize,
+                                                      StorageExecutor.Callback<List<Hike>> callback){
+        return getStorageExecutor().submitRead(new Callable<List<Hike>>() {
+            @Override
+            public List<Hike> call() throws Exception {
+                return getStoredHikesPage(lastHike, pageSize);
+            }
+        }, callback);
+    }
+
     public boolean retrieveSessionFromHike(Hike selectedHike){
         checkOrSetPSE();
         mSessionData = mPSE.loadHikeData(selectedHike);
@@ -149,14 +489,272 @@ public class HikeDataDirector {
         }
     }
 
-    public Map<Integer,LocationPoints> bulkLoadCoordinates(){
+    /**
+     * Asynchronous variant of {@link #retrieveSessionFromHike(int)}.
+     * Loads of a hike already in progress are shared instead of being repeated.
+     * The loaded session becomes the current one on the main thread, just before the callback.
+     * @param hikeID The hike_id of the session to load
+     * @param callback Receives the loaded session, or null if not found, on the main thread. May be null
+     * @return Future holding the loaded session
+     */
+    public Future<SessionData> retrieveSessionFromHikeAsync(final int hikeID,
+                                                           final StorageExecutor.Callback<SessionData> callback){
+        //Loads of different hikes run side by side: each returns its own session, which only becomes
+        //the current one on the main thread
+        return getStorageExecutor().submitRead("session:" + hikeID, new Callable<SessionData>() {
+            @Override
+            public SessionData call() throws Exception {
+                checkOrSetPSE();
+                return mPSE.loadHikeData(hikeID);
+            }
+        }, new StorageExecutor.Callback<SessionData>() {
+            @Override
+            public void onResult(SessionData result) {
+                if(result!=null){
+                    mSessionData = result;
+                    mDataIsHistoric = true;
+                }
+                if(callback!=null){
+                    callback.onResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Obtain the track of a session, loading it off the main thread if it was not loaded yet.
+     * The rest of the session is available as soon as it is retrieved, so callers can show it meanwhile.
+     * Requests for a session whose track is already loading share the same load.
+     * The summary of the session is ready without loading anything once the callback runs
+     * @param session A session, such as the one from {@link #getSessionData()}
+     * @param callback Receives the points on the main thread once they are ready. May be null
+     * @return Future holding the points
+     */
+    public Future<LocationPoints> retrieveGeoPointsAsync(final SessionData session,
+                                                         StorageExecutor.Callback<LocationPoints> callback){
+        return getStorageExecutor().submitRead(session, new Callable<LocationPoints>() {
+            @Override
+            public LocationPoints call() throws Exception {
+                LocationPoints points = session.getGeoPoints();
+                //Sessions stored without a summary compute it from the points. Do it here rather than on the main thread
+                session.getSummary();
+                return points;
+            }
+        }, callback);
+    }
+
+    /**
+     * Retrieve only the coordinates of a stored hike, without making it the current session
+     * @param hikeID The hike_id of the track to load
+     * @param callback Receives the coordinates, or null if none, on the main thread. May be null
+     * @return Future holding the coordinates
+     */
+    public Future<List<Coordinates>> retrieveCoordinatesAsync(final int hikeID, StorageExecutor.Callback<List<Coordinates>> callback){
+        return getStorageExecutor().submitRead("coordinates:" + hikeID, new Callable<List<Coordinates>>() {
+            @Override
+            public List<Coordinates> call() throws Exception {
+                checkOrSetPSE();
+                return mPSE.retrieveCoordinates(hikeID);
+            }
+        }, callback);
+    }
+
+    /**
+     * Stream the tracks of every stored hike to a consumer, one chunk at a time
+     * @param consumer Receiver of the tracks. Must not keep the point lists it is handed
+     * @return Number of points streamed
+     */
+    public long streamAllTracks(TrackConsumer consumer){
+        checkOrSetPSE();
+        return mPSE.forEachTrack(consumer);
+    }
+
+    /**
+     * Export a stored hike to a GPX or TCX file, streaming its track
+     * @param hikeID The hike_id of the hike
+     * @param destination The file to write, replaced if it exists
+     * @param format {@link HikeExporter#FORMAT_GPX} or {@link HikeExporter#FORMAT_TCX}
+     * @return Number of points exported, -1 if the hike does not exist or the file could not be written
+     */
+    public long exportStoredHike(int hikeID, File destination, int format){
         checkOrSetPSE();
-        return mPSE.loadMaps();
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(destination), "UTF-8");
+            return new HikeExporter(mPSE).exportHike(hikeID, out, format);
+        }
+        catch (IOException e){
+            Log.e(TAG, "Could not export hike " + hikeID + " to " + destination, e);
+            return -1;
+        }
+        finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #exportStoredHike(int, File, int)}
+     * @param callback Receives the number of points exported on the main thread. May be null
+     * @return Future holding the number of points exported
+     */
+    public Future<Long> exportStoredHikeAsync(final int hikeID, final File destination, final int format,
+                                              StorageExecutor.Callback<Long> callback){
+        return getStorageExecutor().submitRead(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return exportStoredHike(hikeID, destination, format);
+            }
+        }, callback);
     }
 
-    public boolean canBulkLoadCoordinates(){
+    /**
+     * Export every finished hike to a single GPX or TCX file, a page of hikes and a chunk of points at a time
+     * @param destination The file to write, replaced if it exists
+     * @param format {@link HikeExporter#FORMAT_GPX} or {@link HikeExporter#FORMAT_TCX}
+     * @return Number of points exported, -1 if the file could not be written
+     */
+    public long exportAllStoredHikes(File destination, int format){
         checkOrSetPSE();
-        return mPSE.hasCoordinatesCached();
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(destination), "UTF-8");
+            return new HikeExporter(mPSE).exportAll(out, format);
+        }
+        catch (IOException e){
+            Log.e(TAG, "Could not export hikes to " + destination, e);
+            return -1;
+        }
+        finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Write the metrics of the storage gathered so far to a text file
+     * @param destination The file to write, replaced if it exists
+     * @return True if written, false otherwise
+     */
+    public boolean dumpStorageMetrics(File destination){
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(destination), "UTF-8");
+            StorageMetrics.getInstance().dump(out);
+            return true;
+        }
+        catch (IOException e){
+            Log.e(TAG, "Could not dump the storage metrics to " + destination, e);
+            return false;
+        }
+        finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #exportAllStoredHikes(File, int)}
+     * @param callback Receives the number of points exported on the main thread. May be null
+     * @return Future holding the number of points exported
+     */
+    public Future<Long> exportAllStoredHikesAsync(final File destination, final int format,
+                                                  StorageExecutor.Callback<Long> callback){
+        return getStorageExecutor().submitRead(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return exportAllStoredHikes(destination, format);
+            }
+        }, callback);
+    }
+
+    /**
+     * Import every track of a GPX file as a stored hike
+     * @param source The GPX file
+     * @param listener Receiver of the progress, called on the importing thread. May be null
+     * @return The hike_id of every imported hike, empty if none could be imported
+     */
+    public List<Integer> importGpx(File source, GpxImporter.Listener listener){
+        checkOrSetPSE();
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(source), HikeExporter.BUFFER_SIZE);
+            return new GpxImporter(mPSE).importGpx(in, source.length(), listener);
+        }
+        catch (IOException | XmlPullParserException e){
+            Log.e(TAG, "Could not import " + source, e);
+            return new ArrayList<>();
+        }
+        finally {
+            if(in!=null){
+                try {
+                    in.close();
+                }
+                catch (IOException e){
+                    Log.w(TAG, "Could not close the imported file", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #importGpx(File, GpxImporter.Listener)}.
+     * Cancelling the returned Future with interruption stops the import, keeping the hikes already imported
+     * @param listener Receiver of the progress, called on the main thread. May be null
+     * @param callback Receives the hike_id of every imported hike on the main thread. May be null
+     * @return Future holding the hike_id of every imported hike
+     */
+    public Future<List<Integer>> importGpxAsync(final File source, GpxImporter.Listener listener,
+                                                StorageExecutor.Callback<List<Integer>> callback){
+        final GpxImporter.Listener mainThreadListener = listener!=null ? new MainThreadImportListener(listener) : null;
+        return getStorageExecutor().submitWrite(new Callable<List<Integer>>() {
+            @Override
+            public List<Integer> call() throws Exception {
+                return importGpx(source, mainThreadListener);
+            }
+        }, callback);
+    }
+
+    /**
+     * Listener handing the progress of an import over to the main thread
+     */
+    private static class MainThreadImportListener implements GpxImporter.Listener {
+
+        private final GpxImporter.Listener mListener;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        MainThreadImportListener(GpxImporter.Listener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onProgress(final long bytesRead, final long totalBytes) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onProgress(bytesRead, totalBytes);
+                }
+            });
+        }
+
+        @Override
+        public void onHikeImported(final int hikeID, final long pointCount) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onHikeImported(hikeID, pointCount);
+                }
+            });
+        }
+    }
+
+    private static void closeQuietly(Writer out){
+        if(out==null){
+            return;
+        }
+        try {
+            out.close();
+        }
+        catch (IOException e){
+            Log.w(TAG, "Could not close the export file", e);
+        }
     }
 
     public void setPauseStatus(boolean b){
@@ -172,38 +770,14 @@ public class HikeDataDirector {
         Thread backgroundCheck = new Thread(){
             @Override
             public void run(){
-                Random randy = new Random();
-                Hike mockHike = new Hike();
-                EnvData mockStats = new EnvData();
-                LocationPoints mockGeo = new LocationPoints();
-                float lastHeight=0;
-
-                //Start the hike
-                mockHike.start();
-                for (int i=0; i<100; ++i) {
-                    mockStats.updateHumidity(randy.nextFloat());
-                    mockStats.updateTemp(randy.nextFloat());
-                    mockStats.updatePressure(randy.nextFloat());
-                    lastHeight += randy.nextFloat();
-                    mockGeo.addPoint(new Coordinates(randy.nextFloat(), randy.nextFloat(), lastHeight));
-                }
-                mockHike.end();
-                //End the Hike
-
-                //Dump the values in the database
-                if(mPSE==null){
-                    mPSE=new PersistentStorageEntity(mCreateContext);
-//                    mPSE.reset();
-                }
-                if(mPSE.saveSession(new SessionData(mockHike, new StepCount(99), mockStats,mockGeo))){
+                //A new hike every time, not one of the reproducible datasets
+                List<Integer> generated = generateHikes(1, 100, System.nanoTime(), null);
+                if(!generated.isEmpty()){
                     Log.d("HDD", "Save Successful");
 
                     //If the save was successful, call them back for a load.
-                    List<Hike> storedHikes = mPSE.getHikesList();
-                    for (Hike loadedHike :storedHikes) {
-                        if(loadedHike.startTime==mockHike.startTime){
-                            Log.d("HDD", "Load Successful");
-                        }
+                    if(mPSE.loadHikeData(generated.get(0))!=null){
+                        Log.d("HDD", "Load Successful");
                     }
                 }
                 else{
@@ -214,12 +788,27 @@ public class HikeDataDirector {
         backgroundCheck.start();
     }
 
+    /**
+     * Fill Persistent Storage with synthetic hikes, for scale and load testing. See {@link SyntheticDataset}
+     * @param hikeCount Number of hikes
+     * @param pointCount Number of points of every hike
+     * @param seed Seed of the dataset. The same seed always gives the same hikes
+     * @param listener Receiver of the progress, called on the generating thread. May be null
+     * @return The hike_id of every hike written
+     */
+    public List<Integer> generateHikes(int hikeCount, int pointCount, long seed, SyntheticDataset.Listener listener){
+        checkOrSetPSE();
+        return new SyntheticDataset(mPSE).fill(hikeCount, pointCount, seed, listener);
+    }
+
     public boolean deleteCurrentSessionData(){
         checkOrSetPSE();
         if(mSessionData!=null){
             boolean retVal =  mPSE.deleteSession(mSessionData);
-            if(retVal)
-                mSessionData=null;
+            if(retVal) {
+                mSessionData = null;
+                getSpaceReclaimer().schedule();
+            }
             return retVal;
         }
         else{
@@ -229,7 +818,60 @@ public class HikeDataDirector {
 
     public boolean deleteStoredHike(Hike aHike){
         checkOrSetPSE();
-        return mPSE.deleteHike(aHike);
+        boolean deleted = mPSE.deleteHike(aHike);
+        if(deleted){
+            getSpaceReclaimer().schedule();
+        }
+        return deleted;
+    }
+
+    /**
+     * Asynchronous variant of {@link #deleteStoredHike(Hike)}
+     * @param aHike The hike to delete
+     * @param callback Receives the success of the operation on the main thread. May be null
+     * @return Future holding the success of the operation
+     */
+    public Future<Boolean> deleteStoredHikeAsync(final Hike aHike, StorageExecutor.Callback<Boolean> callback){
+        return getStorageExecutor().submitWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return deleteStoredHike(aHike);
+            }
+        }, callback);
+    }
+
+    /**
+     * Delete several stored hikes at once. Either all of them are deleted or none is
+     * @param hikes The hikes to delete
+     * @return Number of hikes deleted
+     */
+    public int deleteStoredHikes(List<Hike> hikes){
+        checkOrSetPSE();
+        List<Integer> hikeIDs = new ArrayList<>(hikes.size());
+        for (Hike hike : hikes) {
+            hikeIDs.add(hike.getUniqueID());
+        }
+        int deleted = mPSE.deleteHikes(hikeIDs);
+        if(deleted>0){
+            getSpaceReclaimer().schedule();
+        }
+        return deleted;
+    }
+
+    /**
+     * Asynchronous variant of {@link #deleteStoredHikes(List)}
+     * @param hikes The hikes to delete
+     * @param callback Receives the number of hikes deleted on the main thread. May be null
+     * @return Future holding the number of hikes deleted
+     */
+    public Future<Integer> deleteStoredHikesAsync(List<Hike> hikes, StorageExecutor.Callback<Integer> callback){
+        final List<Hike> toDelete = new ArrayList<>(hikes);
+        return getStorageExecutor().submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return deleteStoredHikes(toDelete);
+            }
+        }, callback);
     }
 
     public void deleteAllData(){
@@ -0,0 +1,189 @@
+package me.dotteam.dotprod.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Exporter of stored hikes to GPX 1.1 or TCX documents.
+ * Tracks are read from Persistent Storage a chunk at a time and every point is written as soon as it is
+ * decoded, and the history is walked a page of hikes at a time, so memory does not grow with
+ * the number of points or hikes exported.
+ */
+public class HikeExporter {
+
+    public static final int FORMAT_GPX=0;
+    public static final int FORMAT_TCX=1;
+
+    /**
+     * Size of the buffer put in front of unbuffered destinations, in characters
+     */
+    public static final int BUFFER_SIZE=64*1024;
+
+    /**
+     * Number of hikes read at once when exporting the whole history
+     */
+    public static final int PAGE_SIZE=50;
+
+    private final HikeStore mPSE;
+
+    /**
+     * Default constructor
+     * @param pse Persistent Storage to read the hikes from
+     */
+    public HikeExporter(HikeStore pse) {
+        mPSE = pse;
+    }
+
+    /**
+     * Obtain the usual file extension of a format
+     * @param format {@link #FORMAT_GPX} or {@link #FORMAT_TCX}
+     * @return The extension, without the dot
+     */
+    public static String extensionOf(int format){
+        return format==FORMAT_TCX ? "tcx" : "gpx";
+    }
+
+    /**
+     * Build the writer of a format
+     * @param format {@link #FORMAT_GPX} or {@link #FORMAT_TCX}
+     * @param out Destination of the document. Wrapped in a BufferedWriter unless it already is one
+     * @return The writer
+     */
+    public static TrackFormatWriter writerFor(int format, Writer out){
+        if(!(out instanceof BufferedWriter)){
+            out = new BufferedWriter(out, BUFFER_SIZE);
+        }
+        if(format==FORMAT_TCX){
+            return new TcxTrackWriter(out);
+        }
+        return new GpxTrackWriter(out);
+    }
+
+    /**
+     * Export a session already in memory, such as the one just recorded
+     * @param session The session to export
+     * @param out Destination of the document. Flushed but not closed
+     * @param format {@link #FORMAT_GPX} or {@link #FORMAT_TCX}
+     * @return Number of points exported
+     */
+    public static long exportSession(SessionData session, Writer out, int format) throws IOException {
+        TrackFormatWriter writer = writerFor(format, out);
+        writer.beginDocument();
+        writer.beginTrack(session);
+        long exportedPoints = 0;
+        List<Coordinates> points = session.getGeoPoints()!=null ? session.getGeoPoints().getCoordinateList() : null;
+        if(points!=null){
+            for (Coordinates point : points) {
+                if(writer.writePoint(point)){
+                    exportedPoints++;
+                }
+            }
+        }
+        writer.endTrack();
+        writer.endDocument();
+        return exportedPoints;
+    }
+
+    /**
+     * Export a stored hike, streaming its track from Persistent Storage
+     * @param hikeID The hike_id of the hike
+     * @param out Destination of the document. Flushed but not closed
+     * @param format {@link #FORMAT_GPX} or {@link #FORMAT_TCX}
+     * @return Number of points exported, -1 if the hike does not exist.
+     * Lower than the stored count if the format could not hold some points
+     */
+    public long exportHike(int hikeID, Writer out, int format) throws IOException {
+        SessionData header = mPSE.loadHikeHeader(hikeID);
+        if(header==null){
+            return -1;
+        }
+        TrackFormatWriter writer = writerFor(format, out);
+        writer.beginDocument();
+        long exportedPoints = exportTrack(header, writer);
+        writer.endDocument();
+        return exportedPoints;
+    }
+
+    /**
+     * Export every finished hike into a single document, most recent first
+     * @param out Destination of the document. Flushed but not closed
+     * @param format {@link #FORMAT_GPX} or {@link #FORMAT_TCX}
+     * @return Number of points exported
+     */
+    public long exportAll(Writer out, int format) throws IOException {
+        TrackFormatWriter writer = writerFor(format, out);
+        writer.beginDocument();
+        long exportedPoints = 0;
+        Hike lastHike = null;
+        List<Hike> page;
+        while (!(page = mPSE.getHikesPage(lastHike, PAGE_SIZE)).isEmpty()){
+            for (Hike hike : page) {
+                SessionData header = mPSE.loadHikeHeader(hike.getUniqueID());
+                if(header!=null){
+                    exportedPoints += exportTrack(header, writer);
+                }
+            }
+            lastHike = page.get(page.size() - 1);
+        }
+        writer.endDocument();
+        return exportedPoints;
+    }
+
+    /**
+     * Write a stored hike and stream its points into the open document
+     * @param header The hike, without its points
+     * @param writer Writer of the document
+     * @return Number of points exported
+     */
+    private long exportTrack(SessionData header, TrackFormatWriter writer) throws IOException {
+        writer.beginTrack(header);
+        PointWriter pointWriter = new PointWriter(writer);
+        mPSE.forEachTrack(header.hikeID(), pointWriter);
+        if(pointWriter.mError!=null){
+            throw pointWriter.mError;
+        }
+        writer.endTrack();
+        return pointWriter.mWrittenPoints;
+    }
+
+    /**
+     * Consumer handing every streamed point to a writer and counting those written. Stops streaming at the
+     * first write error, which is kept to be thrown once the cursor is closed.
+     */
+    private static class PointWriter implements TrackConsumer {
+
+        private final TrackFormatWriter mWriter;
+        private IOException mError;
+        private long mWrittenPoints;
+
+        PointWriter(TrackFormatWriter writer) {
+            mWriter = writer;
+        }
+
+        @Override
+        public void onTrackStart(int hikeID) {
+        }
+
+        @Override
+        public boolean onPoints(int hikeID, List<Coordinates> points) {
+            try {
+                for (int i = 0; i < points.size(); i++) {
+                    if(mWriter.writePoint(points.get(i))){
+                        mWrittenPoints++;
+                    }
+                }
+                return true;
+            }
+            catch (IOException e){
+                mError = e;
+                return false;
+            }
+        }
+
+        @Override
+        public void onTrackEnd(int hikeID) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * Source of the stored hikes, one page at a time and most recent first.
+ * Each page continues after the last hike of the previous one (keyset paging), so showing the first
+ * screen costs the same whatever the size of the history.
+ * Must be used from the main thread.
+ */
+public class HikePageSource {
+
+    public static final int DEFAULT_PAGE_SIZE=12;
+
+    /**
+     * Listener for loaded pages
+     */
+    public interface PageListener {
+        /**
+         * Method called on the main thread once a page is loaded
+         * @param page The hikes of the page. Empty if there were no more
+         * @param isFirstPage True for the first page of the source
+         */
+        void onPageLoaded(List<Hike> page, boolean isFirstPage);
+    }
+
+    private final HikeDataDirector mHDD;
+    private final int mPageSize;
+
+    private Hike mLastHike=null;
+    private boolean mLoading=false;
+    private boolean mExhausted=false;
+
+    /**
+     * Default constructor
+     * @param hdd The HikeDataDirector reading the pages
+     * @param pageSize Number of hikes per page
+     */
+    public HikePageSource(HikeDataDirector hdd, int pageSize) {
+        mHDD = hdd;
+        mPageSize = pageSize;
+    }
+
+    /**
+     * Request the next page, unless one is already loading or every hike was already returned
+     * @param listener Receives the page on the main thread
+     * @return True if a page was requested
+     */
+    public boolean loadNextPage(final PageListener listener){
+        if(mLoading || mExhausted){
+            return false;
+        }
+        mLoading = true;
+        final boolean isFirstPage = (mLastHike==null);
+        mHDD.getStoredHikesPageAsync(mLastHike, mPageSize, new StorageExecutor.Callback<List<Hike>>() {
+            @Override
+            public void onResult(List<Hike> page) {
+                mLoading = false;
+                if(page==null || page.size()<mPageSize){
+                    mExhausted = true;
+                }
+                if(page!=null && !page.isEmpty()){
+                    mLastHike = page.get(page.size()-1);
+                }
+                listener.onPageLoaded(page, isFirstPage);
+            }
+        });
+        return true;
+    }
+
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    public boolean isExhausted() {
+        return mExhausted;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+}
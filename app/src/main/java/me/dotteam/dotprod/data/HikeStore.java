@@ -0,0 +1,225 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * Storage of the recorded hikes, as used by the {@link HikeDataDirector}.
+ * {@link PersistentStorageEntity} keeps them in SQLite, {@link InMemoryHikeStore} on the heap,
+ * so storage changes can be tested and benchmarked off-device.
+ * Hikes still being recorded are open until finished (see {@link #beginSession(Hike)}), and only
+ * finished hikes are listed, paged, streamed by the bulk methods or found by location.
+ */
+public interface HikeStore {
+
+    /**
+     * Obtain every finished hike, in the order they were stored
+     * @return The hikes, or null if there are none
+     */
+    List<Hike> getHikesList();
+
+    /**
+     * Obtain one page of the finished hikes, most recent first
+     * @param lastHike The last hike of the previous page, or null for the first page
+     * @param pageSize Maximum number of hikes in the page
+     * @return The hikes of the page. Empty once there are no more
+     */
+    List<Hike> getHikesPage(Hike lastHike, int pageSize);
+
+    /**
+     * Stream every stored track to a consumer, ordered by hike and a chunk at a time
+     * @param consumer Receiver of the tracks
+     * @return Number of points streamed
+     */
+    long forEachTrack(TrackConsumer consumer);
+
+    /**
+     * Stream the track of a single hike to a consumer, a chunk at a time
+     * @param hikeID The hike_id of the track
+     * @param consumer Receiver of the track. Not called at all if the hike has no points
+     * @return Number of points streamed
+     */
+    long forEachTrack(int hikeID, TrackConsumer consumer);
+
+    /**
+     * Load a whole session. Its track is read the first time {@link SessionData#getGeoPoints()} is called
+     * @param specificHike The hike of the session, used in the returned SessionData
+     * @return The session, null if not found
+     */
+    SessionData loadHikeData(Hike specificHike);
+
+    /**
+     * Load a whole session. Its track is read the first time {@link SessionData#getGeoPoints()} is called
+     * @param hikeID The hike_id of the session
+     * @return The session, null if not found
+     */
+    SessionData loadHikeData(int hikeID);
+
+    /**
+     * Load a session without its points, for callers streaming the track through {@link #forEachTrack(int, TrackConsumer)}
+     * @param hikeID The hike_id of the session
+     * @return The session with an empty track, null if not found
+     */
+    SessionData loadHikeHeader(int hikeID);
+
+    /**
+     * Obtain the summary of a hike without reading its points
+     * @param hikeID The hike_id of the hike
+     * @return The summary, or null if the hike has none yet
+     */
+    HikeSummary loadSummary(int hikeID);
+
+    /**
+     * Summarize every finished hike that has no summary, such as recovered ones
+     * @return Number of hikes summarized
+     */
+    int backfillSummaries();
+
+    /**
+     * Add every finished hike missing from the spatial index, such as recovered ones
+     * @return Number of hikes indexed
+     */
+    int backfillCells();
+
+    /**
+     * Find the finished hikes whose track goes through an area, at the resolution of {@link HikeCellIndex}
+     * @param minLatitude South edge of the area, in degrees
+     * @param minLongitude West edge of the area, in degrees
+     * @param maxLatitude North edge of the area, in degrees
+     * @param maxLongitude East edge of the area, in degrees
+     * @return The hikes found in the order they were stored, empty if none
+     */
+    List<Hike> findHikesInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude);
+
+    /**
+     * Find the finished hikes whose track goes near a location, at the resolution of {@link HikeCellIndex}
+     * @param latitude Latitude of the location, in degrees
+     * @param longitude Longitude of the location, in degrees
+     * @param radius Distance from the location, in metres
+     * @return The hikes found in the order they were stored, empty if none
+     */
+    List<Hike> findHikesNear(double latitude, double longitude, double radius);
+
+    /**
+     * Read the whole track of a hike
+     * @param hikeID The hike_id of the track
+     * @return The points in recorded order, null if the hike has none
+     */
+    List<Coordinates> retrieveCoordinates(int hikeID);
+
+    /**
+     * Store a complete session at once. The session receives its hike_id
+     * @param givenSession The session to store, not stored yet
+     * @return True if stored, false otherwise
+     */
+    boolean saveSession(SessionData givenSession);
+
+    /**
+     * Read the samples of a sensor over a time range, from the tier fitting the resolution
+     * @param hikeID The hike_id of the hike
+     * @param sensor One of {@link EnvSeries#TEMPERATURE}, {@link EnvSeries#HUMIDITY} or {@link EnvSeries#PRESSURE}
+     * @param fromTime Start of the time range, in Milliseconds since epoch
+     * @param toTime End of the time range, in Milliseconds since epoch
+     * @param resolution Time between two points of the chart, in Milliseconds. 0 for every raw sample
+     * @return The samples in the range, in time order. Empty if none were recorded
+     */
+    List<EnvSample> loadSeries(int hikeID, int sensor, long fromTime, long toTime, long resolution);
+
+    /**
+     * Journal: Store a hike starting to be recorded, as open, so its data can be appended while it goes on
+     * @param startedHike The hike being recorded. It receives its hike_id
+     * @return The assigned hike_id, or -1 if it could not be stored
+     */
+    int beginSession(Hike startedHike);
+
+    /**
+     * Journal: Append recorded points to a hike
+     * @param hikeID The hike_id of the hike
+     * @param firstSequence Sequence number of the first chunk written
+     * @param newCoordinates The points recorded since the last append
+     * @return Number of chunks written, so the caller knows the next sequence number
+     */
+    int appendTrack(int hikeID, int firstSequence, List<Coordinates> newCoordinates);
+
+    /**
+     * Journal: Replace the statistics and step count of a hike
+     * @param hikeID The hike_id of the hike
+     * @param statistics The environmental statistics recorded so far
+     * @param steps The steps taken so far
+     */
+    void updateStatistics(int hikeID, EnvData statistics, StepCount steps);
+
+    /**
+     * Journal: Append environmental samples to a hike
+     * @param hikeID The hike_id of the hike
+     * @param batches The samples, by sensor and tier
+     * @return Number of packed rows written
+     */
+    int appendSeries(int hikeID, List<EnvSeries.Batch> batches);
+
+    /**
+     * Journal: Close a hike whose track was appended, from the complete session
+     * @param givenSession The session, with the hike_id from {@link #beginSession(Hike)}
+     * @return True if the hike was found and finished, false otherwise
+     */
+    boolean finishSession(SessionData givenSession);
+
+    /**
+     * Journal: Close a hike whose points were appended without being kept in memory
+     * @param givenSession The session, with its summary set from the appended points
+     * @param cells The cells of the appended points
+     * @return True if the hike was found and finished, false otherwise
+     */
+    boolean finishSession(SessionData givenSession, HikeCellIndex cells);
+
+    /**
+     * Recovery: Obtain the hikes started but never finished
+     * @return The open hikes, empty if none
+     */
+    List<Hike> getOpenHikes();
+
+    /**
+     * Recovery: Append the points of an open hike that were logged but never appended
+     * @param hikeID The hike_id of an open hike
+     * @param loggedPoints Every point recorded for the hike
+     * @return Number of points appended
+     */
+    int recoverTrack(int hikeID, List<Coordinates> loggedPoints);
+
+    /**
+     * Recovery: Close an open hike with what was stored, ending it at its last point
+     * @param openHike A hike obtained through {@link #getOpenHikes()}
+     * @return The end time given to the hike
+     */
+    long recoverHike(Hike openHike);
+
+    /**
+     * Delete the hike of a session and everything associated to it
+     * @return True if deleted, false otherwise
+     */
+    boolean deleteSession(SessionData givenSession);
+
+    /**
+     * Delete a hike and everything associated to it
+     * @return True if deleted, false otherwise
+     */
+    boolean deleteHike(Hike givenHike);
+
+    /**
+     * Delete several hikes at once: either all of them are gone or none is
+     * @param hikeIDs The hike_id of every hike to delete
+     * @return Number of hikes deleted. Unknown IDs are ignored
+     */
+    int deleteHikes(List<Integer> hikeIDs);
+
+    /**
+     * Give the space freed by deletions back, a little at a time
+     * @param maxPages Maximum number of pages to give back
+     * @return Number of free pages left, 0 once nothing is left to reclaim
+     */
+    long reclaimSpace(int maxPages);
+
+    /**
+     * Delete every stored hike. ALL DATA IS LOST.
+     */
+    void reset();
+}
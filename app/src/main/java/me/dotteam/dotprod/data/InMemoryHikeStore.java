@@ -0,0 +1,594 @@
+package me.dotteam.dotprod.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@link HikeStore} keeping every hike on the heap, for tests and JVM benchmarks.
+ * It mirrors {@link PersistentStorageEntity}: tracks are packed in {@link TrackChunk}s and samples with
+ * {@link EnvSeriesCodec}, hike_ids are never reused until {@link #reset()}, open hikes are left out of
+ * the same lists and values are copied in and out, so callers never share state with the store.
+ * Nothing outlives the process. Every method holds the store lock, consumers of
+ * {@link #forEachTrack(TrackConsumer)} included.
+ */
+public class InMemoryHikeStore implements HikeStore {
+
+    /**
+     * Everything stored for one hike, the equivalent of its rows in every table
+     */
+    private static class StoredHike {
+        final int id;
+        final long startTime;
+        long endTime;
+        String nickName;
+        EnvStatistic temperature;
+        EnvStatistic humidity;
+        EnvStatistic pressure;
+        StepCount steps;
+        HikeSummary summary;
+        final Set<Long> cells = new HashSet<>();
+        final TreeMap<Integer, TrackChunk> track = new TreeMap<>();
+        final List<SeriesRow> series = new ArrayList<>();
+
+        StoredHike(int id, long startTime, long endTime) {
+            this.id = id;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        boolean isOpen(){
+            return endTime==DBAssistant.OPEN_END_TIME;
+        }
+
+        Hike toHike(){
+            return new Hike(id, startTime, endTime);
+        }
+    }
+
+    /**
+     * Packed samples of one sensor and tier, the equivalent of an env_series row
+     */
+    private static class SeriesRow {
+        final int sensor;
+        final int tier;
+        final long startTime;
+        final long endTime;
+        final int sampleCount;
+        final byte[] samples;
+
+        SeriesRow(int sensor, int tier, long startTime, long endTime, int sampleCount, byte[] samples) {
+            this.sensor = sensor;
+            this.tier = tier;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.sampleCount = sampleCount;
+            this.samples = samples;
+        }
+    }
+
+    private static final Comparator<SeriesRow> BY_START_TIME = new Comparator<SeriesRow>() {
+        @Override
+        public int compare(SeriesRow lhs, SeriesRow rhs) {
+            return lhs.startTime<rhs.startTime ? -1 : (lhs.startTime==rhs.startTime ? 0 : 1);
+        }
+    };
+
+    private final TreeMap<Integer, StoredHike> mHikes = new TreeMap<>();
+    private int mNextID = 1;
+
+    @Override
+    public synchronized List<Hike> getHikesList() {
+        List<Hike> allHikes = null;
+        for (StoredHike stored : mHikes.values()) {
+            if(stored.isOpen()){
+                continue;
+            }
+            if(allHikes==null){
+                allHikes = new ArrayList<>();
+            }
+            allHikes.add(stored.toHike());
+        }
+        return allHikes;
+    }
+
+    @Override
+    public synchronized List<Hike> getHikesPage(Hike lastHike, int pageSize) {
+        //Most recent first, ties broken by the highest hike_id, as the start time index does
+        List<StoredHike> finished = new ArrayList<>(mHikes.size());
+        for (StoredHike stored : mHikes.descendingMap().values()) {
+            if(!stored.isOpen()){
+                finished.add(stored);
+            }
+        }
+        Collections.sort(finished, new Comparator<StoredHike>() {
+            @Override
+            public int compare(StoredHike lhs, StoredHike rhs) {
+                return lhs.startTime>rhs.startTime ? -1 : (lhs.startTime==rhs.startTime ? 0 : 1);
+            }
+        });
+
+        List<Hike> page = new ArrayList<>(pageSize);
+        for (StoredHike stored : finished) {
+            if(page.size()==pageSize){
+                break;
+            }
+            boolean afterLast = lastHike==null
+                    || stored.startTime<lastHike.startTime()
+                    || (stored.startTime==lastHike.startTime() && stored.id<lastHike.getUniqueID());
+            if(afterLast){
+                page.add(stored.toHike());
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized long forEachTrack(TrackConsumer consumer) {
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        long streamedPoints = 0;
+        for (StoredHike stored : mHikes.values()) {
+            if(stored.track.isEmpty()){
+                continue;
+            }
+            consumer.onTrackStart(stored.id);
+            boolean keepStreaming = true;
+            for (TrackChunk chunk : stored.track.values()) {
+                buffer.clear();
+                chunk.unpack(buffer);
+                streamedPoints += buffer.size();
+                if(!consumer.onPoints(stored.id, buffer)){
+                    keepStreaming = false;
+                    break;
+                }
+            }
+            consumer.onTrackEnd(stored.id);
+            if(!keepStreaming){
+                break;
+            }
+        }
+        return streamedPoints;
+    }
+
+    @Override
+    public synchronized long forEachTrack(int hikeID, TrackConsumer consumer) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null || stored.track.isEmpty()){
+            return 0;
+        }
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        long streamedPoints = 0;
+        consumer.onTrackStart(hikeID);
+        for (TrackChunk chunk : stored.track.values()) {
+            buffer.clear();
+            chunk.unpack(buffer);
+            streamedPoints += buffer.size();
+            if(!consumer.onPoints(hikeID, buffer)){
+                break;
+            }
+        }
+        consumer.onTrackEnd(hikeID);
+        return streamedPoints;
+    }
+
+    @Override
+    public SessionData loadHikeData(Hike specificHike) {
+        return loadSession(specificHike.getUniqueID(), specificHike, true);
+    }
+
+    @Override
+    public SessionData loadHikeData(int hikeID) {
+        return loadSession(hikeID, null, true);
+    }
+
+    @Override
+    public SessionData loadHikeHeader(int hikeID) {
+        return loadSession(hikeID, null, false);
+    }
+
+    /**
+     * Build a session from the stored values, as {@link PersistentStorageEntity} does from its rows
+     * @param hikeID The hike_id of the session
+     * @param knownHike The Hike object to use in the SessionData, or null to build it
+     * @param withTrack False to leave the track empty, true to read it on first access
+     * @return The session, null if not found
+     */
+    private synchronized SessionData loadSession(final int hikeID, Hike knownHike, boolean withTrack){
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null){
+            return null;
+        }
+
+        Hike loadedHike = knownHike!=null ? knownHike : stored.toHike();
+        if(stored.nickName!=null){
+            loadedHike.setNickName(stored.nickName);
+        }
+        EnvData statistics = new EnvData(copyOf(stored.temperature), copyOf(stored.humidity), copyOf(stored.pressure));
+        StepCount steps = stored.steps!=null ? new StepCount(stored.steps.getStepsTaken()) : null;
+        SessionData loadedSession;
+        if(withTrack){
+            loadedSession = new SessionData(loadedHike, steps, statistics, new SessionData.TrackLoader() {
+                @Override
+                public LocationPoints loadTrack() {
+                    return new LocationPoints(retrieveCoordinates(hikeID));
+                }
+            });
+        }
+        else{
+            loadedSession = new SessionData(loadedHike, steps, statistics, new LocationPoints());
+        }
+        if(stored.summary!=null){
+            loadedSession.setSummary(copyOf(stored.summary));
+        }
+        return loadedSession;
+    }
+
+    @Override
+    public synchronized HikeSummary loadSummary(int hikeID) {
+        StoredHike stored = mHikes.get(hikeID);
+        return stored!=null ? copyOf(stored.summary) : null;
+    }
+
+    @Override
+    public synchronized int backfillSummaries() {
+        int summarized = 0;
+        for (StoredHike stored : mHikes.values()) {
+            if(stored.isOpen() || stored.summary!=null){
+                continue;
+            }
+            HikeSummary summary = new HikeSummary();
+            for (TrackChunk chunk : stored.track.values()) {
+                summary.addPoints(chunk.unpack());
+            }
+            stored.summary = summary;
+            ++summarized;
+        }
+        return summarized;
+    }
+
+    @Override
+    public synchronized int backfillCells() {
+        int indexed = 0;
+        for (StoredHike stored : mHikes.values()) {
+            if(stored.isOpen() || !stored.cells.isEmpty() || stored.track.isEmpty()){
+                continue;
+            }
+            HikeCellIndex cells = new HikeCellIndex();
+            for (TrackChunk chunk : stored.track.values()) {
+                cells.addPoints(chunk.unpack());
+            }
+            stored.cells.addAll(cells.getCells());
+            ++indexed;
+        }
+        return indexed;
+    }
+
+    @Override
+    public List<Hike> findHikesInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        return findHikesInCells(HikeCellIndex.rangesOf(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
+
+    @Override
+    public List<Hike> findHikesNear(double latitude, double longitude, double radius) {
+        return findHikesInCells(HikeCellIndex.rangesNear(latitude, longitude, radius));
+    }
+
+    /**
+     * Scan the cells of every finished hike for one inside the ranges
+     * @param ranges Pairs of cell keys from {@link HikeCellIndex}
+     */
+    private synchronized List<Hike> findHikesInCells(List<long[]> ranges){
+        List<Hike> found = new ArrayList<>();
+        for (StoredHike stored : mHikes.values()) {
+            if(!stored.isOpen() && inRanges(stored.cells, ranges)){
+                found.add(stored.toHike());
+            }
+        }
+        return found;
+    }
+
+    private static boolean inRanges(Set<Long> cells, List<long[]> ranges){
+        for (long cell : cells) {
+            for (long[] range : ranges) {
+                if(cell>=range[0] && cell<=range[1]){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized List<Coordinates> retrieveCoordinates(int hikeID) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null || stored.track.isEmpty()){
+            return null;
+        }
+        List<Coordinates> retrievedList = new ArrayList<>(stored.track.size()*TrackChunk.MAX_POINTS);
+        for (TrackChunk chunk : stored.track.values()) {
+            chunk.unpack(retrievedList);
+        }
+        return retrievedList;
+    }
+
+    @Override
+    public synchronized boolean saveSession(SessionData givenSession) {
+        if(givenSession==null || givenSession.hikeID()>0){
+            return false;
+        }
+
+        StoredHike stored = new StoredHike(mNextID++, givenSession.hikeStartTime(), givenSession.hikeEndTime());
+        givenSession.setHikeID(stored.id);
+        mHikes.put(stored.id, stored);
+
+        writeStatistics(stored, givenSession.getCurrentStats(), givenSession.getStepCount());
+        stored.nickName = givenSession.hikeNickName();
+        List<Coordinates> points = givenSession.getGeoPoints().getCoordinateList();
+        writeTrack(stored, 0, points);
+        stored.summary = copyOf(givenSession.getSummary());
+        stored.cells.addAll(HikeCellIndex.of(points).getCells());
+        writeSeries(stored, givenSession.getCurrentStats().takePendingSamples(true));
+        return true;
+    }
+
+    @Override
+    public synchronized List<EnvSample> loadSeries(int hikeID, int sensor, long fromTime, long toTime, long resolution) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null){
+            return new ArrayList<>(0);
+        }
+        int tier = EnvSeries.tierFor(resolution);
+        //Aggregates starting less than one interval before the range still cover part of it
+        long firstTime = fromTime - Math.max(EnvSeries.TIER_INTERVALS[tier] - 1, 0);
+
+        List<SeriesRow> rows = new ArrayList<>();
+        for (SeriesRow row : stored.series) {
+            if(row.sensor==sensor && row.tier==tier && row.startTime<=toTime && row.endTime>=firstTime){
+                rows.add(row);
+            }
+        }
+        Collections.sort(rows, BY_START_TIME);
+
+        List<EnvSample> decoded = new ArrayList<>();
+        for (SeriesRow row : rows) {
+            EnvSeriesCodec.decode(tier, row.samples, row.sampleCount, decoded);
+        }
+
+        List<EnvSample> inRange = new ArrayList<>(decoded.size());
+        for (EnvSample sample : decoded) {
+            //Keeps the aggregates starting within one interval before fromTime, and raw samples from fromTime on
+            if(sample.getTime()>=firstTime && sample.getTime()<=toTime){
+                inRange.add(sample);
+            }
+        }
+        return inRange;
+    }
+
+    @Override
+    public synchronized int beginSession(Hike startedHike) {
+        if(startedHike==null || startedHike.getUniqueID()>0){
+            return -1;
+        }
+        StoredHike stored = new StoredHike(mNextID++, startedHike.startTime(), DBAssistant.OPEN_END_TIME);
+        stored.nickName = startedHike.getNickName();
+        mHikes.put(stored.id, stored);
+        startedHike.setUniqueID(stored.id);
+        return stored.id;
+    }
+
+    @Override
+    public synchronized int appendTrack(int hikeID, int firstSequence, List<Coordinates> newCoordinates) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null){
+            return 0;
+        }
+        return writeTrack(stored, firstSequence, newCoordinates);
+    }
+
+    @Override
+    public synchronized void updateStatistics(int hikeID, EnvData statistics, StepCount steps) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored!=null){
+            writeStatistics(stored, statistics, steps);
+        }
+    }
+
+    @Override
+    public synchronized int appendSeries(int hikeID, List<EnvSeries.Batch> batches) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null){
+            return 0;
+        }
+        return writeSeries(stored, batches);
+    }
+
+    @Override
+    public boolean finishSession(SessionData givenSession) {
+        if(givenSession==null){
+            return false;
+        }
+        LocationPoints points = givenSession.getGeoPoints();
+        return closeSession(givenSession, HikeCellIndex.of(points!=null ? points.getCoordinateList() : null));
+    }
+
+    @Override
+    public boolean finishSession(SessionData givenSession, HikeCellIndex cells) {
+        return givenSession!=null && closeSession(givenSession, cells);
+    }
+
+    /**
+     * Store everything but the track of a hike being finished
+     * @return True if the hike was found and finished, false otherwise
+     */
+    private synchronized boolean closeSession(SessionData givenSession, HikeCellIndex cells){
+        StoredHike stored = mHikes.get(givenSession.hikeID());
+        if(stored==null){
+            return false;
+        }
+        stored.endTime = givenSession.hikeEndTime();
+        stored.nickName = givenSession.hikeNickName();
+        writeStatistics(stored, givenSession.getCurrentStats(), givenSession.getStepCount());
+        stored.summary = copyOf(givenSession.getSummary());
+        stored.cells.clear();
+        stored.cells.addAll(cells.getCells());
+        //Samples recorded since the last append, and the intervals still open
+        writeSeries(stored, givenSession.getCurrentStats().takePendingSamples(true));
+        return true;
+    }
+
+    @Override
+    public synchronized List<Hike> getOpenHikes() {
+        List<Hike> openHikes = new ArrayList<>();
+        for (StoredHike stored : mHikes.values()) {
+            if(stored.isOpen()){
+                openHikes.add(stored.toHike());
+            }
+        }
+        return openHikes;
+    }
+
+    @Override
+    public synchronized int recoverTrack(int hikeID, List<Coordinates> loggedPoints) {
+        StoredHike stored = mHikes.get(hikeID);
+        if(stored==null){
+            return 0;
+        }
+        int storedPoints = 0;
+        for (TrackChunk chunk : stored.track.values()) {
+            storedPoints += chunk.getPointCount();
+        }
+        if(loggedPoints.size()<=storedPoints){
+            return 0;
+        }
+        int nextSequence = stored.track.isEmpty() ? 0 : stored.track.lastKey() + 1;
+        writeTrack(stored, nextSequence, loggedPoints.subList(storedPoints, loggedPoints.size()));
+        return loggedPoints.size() - storedPoints;
+    }
+
+    @Override
+    public synchronized long recoverHike(Hike openHike) {
+        long recoveredEnd = openHike.startTime();
+        StoredHike stored = mHikes.get(openHike.getUniqueID());
+        if(stored==null){
+            return recoveredEnd;
+        }
+        if(!stored.track.isEmpty()){
+            List<Coordinates> lastPoints = stored.track.lastEntry().getValue().unpack();
+            long lastTime = lastPoints.isEmpty() ? 0 : lastPoints.get(lastPoints.size()-1).getTime();
+            if(lastTime>recoveredEnd){
+                recoveredEnd = lastTime;
+            }
+        }
+        stored.endTime = recoveredEnd;
+        return recoveredEnd;
+    }
+
+    @Override
+    public boolean deleteSession(SessionData givenSession) {
+        return givenSession.hikeID()>0 && deleteHikes(Collections.singletonList(givenSession.hikeID()))==1;
+    }
+
+    @Override
+    public boolean deleteHike(Hike givenHike) {
+        return givenHike.getUniqueID()>0 && deleteHikes(Collections.singletonList(givenHike.getUniqueID()))==1;
+    }
+
+    @Override
+    public synchronized int deleteHikes(List<Integer> hikeIDs) {
+        int deleted = 0;
+        for (int hikeID : hikeIDs) {
+            if(mHikes.remove(hikeID)!=null){
+                ++deleted;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Deleted hikes are left to the garbage collector, there is nothing to give back
+     * @return Always 0
+     */
+    @Override
+    public long reclaimSpace(int maxPages) {
+        return 0;
+    }
+
+    @Override
+    public synchronized void reset() {
+        mHikes.clear();
+        mNextID = 1;
+    }
+
+    /**
+     * @return Number of hikes stored, open ones included
+     */
+    public synchronized int size(){
+        return mHikes.size();
+    }
+
+    /**
+     * Pack points as chunks of a track, replacing chunks with the same sequence number
+     * @return Number of chunks written
+     */
+    private static int writeTrack(StoredHike stored, int firstSequence, List<Coordinates> points){
+        if(points==null || points.isEmpty()){
+            return 0;
+        }
+        List<TrackChunk> chunks = TrackChunk.split(points, firstSequence);
+        for (TrackChunk chunk : chunks) {
+            stored.track.put(chunk.getSequence(), chunk);
+        }
+        return chunks.size();
+    }
+
+    /**
+     * Pack samples as rows of at most {@link EnvSeries#MAX_SAMPLES}
+     * @return Number of rows written
+     */
+    private static int writeSeries(StoredHike stored, List<EnvSeries.Batch> batches){
+        if(batches==null){
+            return 0;
+        }
+        int rows = 0;
+        for (EnvSeries.Batch batch : batches) {
+            for (int from = 0; from < batch.samples.size(); from += EnvSeries.MAX_SAMPLES) {
+                int to = Math.min(batch.samples.size(), from + EnvSeries.MAX_SAMPLES);
+                stored.series.add(new SeriesRow(batch.sensor, batch.tier,
+                        batch.samples.get(from).getTime(), batch.samples.get(to-1).getTime(), to-from,
+                        EnvSeriesCodec.encode(batch.tier, batch.samples, from, to)));
+                ++rows;
+            }
+        }
+        return rows;
+    }
+
+    private static void writeStatistics(StoredHike stored, EnvData statistics, StepCount steps){
+        stored.temperature = copyOf(statistics.getTemperature());
+        stored.humidity = copyOf(statistics.getHumidity());
+        stored.pressure = copyOf(statistics.getPressure());
+        stored.steps = steps!=null ? new StepCount(steps.getStepsTaken()) : null;
+    }
+
+    private static EnvStatistic copyOf(EnvStatistic statistic){
+        return statistic!=null ? new EnvStatistic(statistic) : null;
+    }
+
+    private static HikeSummary copyOf(HikeSummary summary){
+        if(summary==null){
+            return null;
+        }
+        if(summary.getPointCount()==0){
+            return new HikeSummary();
+        }
+        return new HikeSummary(summary.getPointCount(), summary.getDistance(),
+                summary.getElevationGain(), summary.getElevationLoss(),
+                summary.getMinAltitude(), summary.getMaxAltitude(),
+                summary.getMinLatitude(), summary.getMaxLatitude(),
+                summary.getMinLongitude(), summary.getMaxLongitude(),
+                summary.getMovingTime());
+    }
+}
@@ -0,0 +1,396 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * {@link HikeStore} timing every call to another store into {@link StorageMetrics}.
+ * Rows are counted in what each operation deals with: hikes for the lists, loaded sessions and deletions,
+ * points for the tracks and saved sessions, samples for the series. Sessions load their track on first access,
+ * so it is not part of {@link #loadHikeData(int)}. While the metrics are disabled calls go straight through.
+ */
+public class InstrumentedHikeStore implements HikeStore {
+
+    private final HikeStore mStore;
+    private final StorageMetrics mMetrics;
+
+    private final StorageMetrics.Operation mGetHikesList;
+    private final StorageMetrics.Operation mGetHikesPage;
+    private final StorageMetrics.Operation mForEachTrack;
+    private final StorageMetrics.Operation mLoadHikeData;
+    private final StorageMetrics.Operation mLoadHikeHeader;
+    private final StorageMetrics.Operation mLoadSummary;
+    private final StorageMetrics.Operation mBackfill;
+    private final StorageMetrics.Operation mFindHikes;
+    private final StorageMetrics.Operation mRetrieveCoordinates;
+    private final StorageMetrics.Operation mSaveSession;
+    private final StorageMetrics.Operation mLoadSeries;
+    private final StorageMetrics.Operation mBeginSession;
+    private final StorageMetrics.Operation mAppendTrack;
+    private final StorageMetrics.Operation mUpdateStatistics;
+    private final StorageMetrics.Operation mAppendSeries;
+    private final StorageMetrics.Operation mFinishSession;
+    private final StorageMetrics.Operation mRecover;
+    private final StorageMetrics.Operation mDeleteHike;
+    private final StorageMetrics.Operation mReclaimSpace;
+
+    /**
+     * Default constructor
+     * @param store The store to time
+     * @param metrics Registry receiving the timings
+     */
+    public InstrumentedHikeStore(HikeStore store, StorageMetrics metrics) {
+        mStore = store;
+        mMetrics = metrics;
+        mGetHikesList = metrics.operation("getHikesList");
+        mGetHikesPage = metrics.operation("getHikesPage");
+        mForEachTrack = metrics.operation("forEachTrack");
+        mLoadHikeData = metrics.operation("loadHikeData");
+        mLoadHikeHeader = metrics.operation("loadHikeHeader");
+        mLoadSummary = metrics.operation("loadSummary");
+        mBackfill = metrics.operation("backfill");
+        mFindHikes = metrics.operation("findHikes");
+        mRetrieveCoordinates = metrics.operation("retrieveCoordinates");
+        mSaveSession = metrics.operation("saveSession");
+        mLoadSeries = metrics.operation("loadSeries");
+        mBeginSession = metrics.operation("beginSession");
+        mAppendTrack = metrics.operation("appendTrack");
+        mUpdateStatistics = metrics.operation("updateStatistics");
+        mAppendSeries = metrics.operation("appendSeries");
+        mFinishSession = metrics.operation("finishSession");
+        mRecover = metrics.operation("recover");
+        mDeleteHike = metrics.operation("deleteHike");
+        mReclaimSpace = metrics.operation("reclaimSpace");
+    }
+
+    /**
+     * @return The store being timed
+     */
+    public HikeStore getStore() {
+        return mStore;
+    }
+
+    private static int sizeOf(List<?> list){
+        return list!=null ? list.size() : 0;
+    }
+
+    private static int samplesOf(List<EnvSeries.Batch> batches){
+        int samples = 0;
+        for (EnvSeries.Batch batch : batches) {
+            samples += batch.samples.size();
+        }
+        return samples;
+    }
+
+    @Override
+    public List<Hike> getHikesList() {
+        if(!mMetrics.isEnabled()){
+            return mStore.getHikesList();
+        }
+        long start = mMetrics.start();
+        List<Hike> hikes = mStore.getHikesList();
+        mGetHikesList.record(start, sizeOf(hikes), 0);
+        return hikes;
+    }
+
+    @Override
+    public List<Hike> getHikesPage(Hike lastHike, int pageSize) {
+        if(!mMetrics.isEnabled()){
+            return mStore.getHikesPage(lastHike, pageSize);
+        }
+        long start = mMetrics.start();
+        List<Hike> hikes = mStore.getHikesPage(lastHike, pageSize);
+        mGetHikesPage.record(start, sizeOf(hikes), 0);
+        return hikes;
+    }
+
+    @Override
+    public long forEachTrack(TrackConsumer consumer) {
+        if(!mMetrics.isEnabled()){
+            return mStore.forEachTrack(consumer);
+        }
+        long start = mMetrics.start();
+        long points = mStore.forEachTrack(consumer);
+        mForEachTrack.record(start, points, 0);
+        return points;
+    }
+
+    @Override
+    public long forEachTrack(int hikeID, TrackConsumer consumer) {
+        if(!mMetrics.isEnabled()){
+            return mStore.forEachTrack(hikeID, consumer);
+        }
+        long start = mMetrics.start();
+        long points = mStore.forEachTrack(hikeID, consumer);
+        mForEachTrack.record(start, points, 0);
+        return points;
+    }
+
+    @Override
+    public SessionData loadHikeData(Hike specificHike) {
+        if(!mMetrics.isEnabled()){
+            return mStore.loadHikeData(specificHike);
+        }
+        long start = mMetrics.start();
+        SessionData session = mStore.loadHikeData(specificHike);
+        mLoadHikeData.record(start, session!=null ? 1 : 0, 0);
+        return session;
+    }
+
+    @Override
+    public SessionData loadHikeData(int hikeID) {
+        if(!mMetrics.isEnabled()){
+            return mStore.loadHikeData(hikeID);
+        }
+        long start = mMetrics.start();
+        SessionData session = mStore.loadHikeData(hikeID);
+        mLoadHikeData.record(start, session!=null ? 1 : 0, 0);
+        return session;
+    }
+
+    @Override
+    public SessionData loadHikeHeader(int hikeID) {
+        if(!mMetrics.isEnabled()){
+            return mStore.loadHikeHeader(hikeID);
+        }
+        long start = mMetrics.start();
+        SessionData session = mStore.loadHikeHeader(hikeID);
+        mLoadHikeHeader.record(start, session!=null ? 1 : 0, 0);
+        return session;
+    }
+
+    @Override
+    public HikeSummary loadSummary(int hikeID) {
+        if(!mMetrics.isEnabled()){
+            return mStore.loadSummary(hikeID);
+        }
+        long start = mMetrics.start();
+        HikeSummary summary = mStore.loadSummary(hikeID);
+        mLoadSummary.record(start, summary!=null ? 1 : 0, 0);
+        return summary;
+    }
+
+    @Override
+    public int backfillSummaries() {
+        if(!mMetrics.isEnabled()){
+            return mStore.backfillSummaries();
+        }
+        long start = mMetrics.start();
+        int hikes = mStore.backfillSummaries();
+        mBackfill.record(start, 0, hikes);
+        return hikes;
+    }
+
+    @Override
+    public int backfillCells() {
+        if(!mMetrics.isEnabled()){
+            return mStore.backfillCells();
+        }
+        long start = mMetrics.start();
+        int hikes = mStore.backfillCells();
+        mBackfill.record(start, 0, hikes);
+        return hikes;
+    }
+
+    @Override
+    public List<Hike> findHikesInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        if(!mMetrics.isEnabled()){
+            return mStore.findHikesInArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+        long start = mMetrics.start();
+        List<Hike> hikes = mStore.findHikesInArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        mFindHikes.record(start, sizeOf(hikes), 0);
+        return hikes;
+    }
+
+    @Override
+    public List<Hike> findHikesNear(double latitude, double longitude, double radius) {
+        if(!mMetrics.isEnabled()){
+            return mStore.findHikesNear(latitude, longitude, radius);
+        }
+        long start = mMetrics.start();
+        List<Hike> hikes = mStore.findHikesNear(latitude, longitude, radius);
+        mFindHikes.record(start, sizeOf(hikes), 0);
+        return hikes;
+    }
+
+    @Override
+    public List<Coordinates> retrieveCoordinates(int hikeID) {
+        if(!mMetrics.isEnabled()){
+            return mStore.retrieveCoordinates(hikeID);
+        }
+        long start = mMetrics.start();
+        List<Coordinates> points = mStore.retrieveCoordinates(hikeID);
+        mRetrieveCoordinates.record(start, sizeOf(points), 0);
+        return points;
+    }
+
+    @Override
+    public boolean saveSession(SessionData givenSession) {
+        if(!mMetrics.isEnabled()){
+            return mStore.saveSession(givenSession);
+        }
+        long start = mMetrics.start();
+        boolean saved = mStore.saveSession(givenSession);
+        mSaveSession.record(start, 0, saved ? givenSession.getPointCount() : 0);
+        return saved;
+    }
+
+    @Override
+    public List<EnvSample> loadSeries(int hikeID, int sensor, long fromTime, long toTime, long resolution) {
+        if(!mMetrics.isEnabled()){
+            return mStore.loadSeries(hikeID, sensor, fromTime, toTime, resolution);
+        }
+        long start = mMetrics.start();
+        List<EnvSample> samples = mStore.loadSeries(hikeID, sensor, fromTime, toTime, resolution);
+        mLoadSeries.record(start, sizeOf(samples), 0);
+        return samples;
+    }
+
+    @Override
+    public int beginSession(Hike startedHike) {
+        if(!mMetrics.isEnabled()){
+            return mStore.beginSession(startedHike);
+        }
+        long start = mMetrics.start();
+        int hikeID = mStore.beginSession(startedHike);
+        mBeginSession.record(start, 0, hikeID>0 ? 1 : 0);
+        return hikeID;
+    }
+
+    @Override
+    public int appendTrack(int hikeID, int firstSequence, List<Coordinates> newCoordinates) {
+        if(!mMetrics.isEnabled()){
+            return mStore.appendTrack(hikeID, firstSequence, newCoordinates);
+        }
+        long start = mMetrics.start();
+        int chunks = mStore.appendTrack(hikeID, firstSequence, newCoordinates);
+        mAppendTrack.record(start, 0, sizeOf(newCoordinates));
+        return chunks;
+    }
+
+    @Override
+    public void updateStatistics(int hikeID, EnvData statistics, StepCount steps) {
+        if(!mMetrics.isEnabled()){
+            mStore.updateStatistics(hikeID, statistics, steps);
+            return;
+        }
+        long start = mMetrics.start();
+        mStore.updateStatistics(hikeID, statistics, steps);
+        mUpdateStatistics.record(start, 0, 1);
+    }
+
+    @Override
+    public int appendSeries(int hikeID, List<EnvSeries.Batch> batches) {
+        if(!mMetrics.isEnabled()){
+            return mStore.appendSeries(hikeID, batches);
+        }
+        long start = mMetrics.start();
+        int rows = mStore.appendSeries(hikeID, batches);
+        mAppendSeries.record(start, 0, samplesOf(batches));
+        return rows;
+    }
+
+    @Override
+    public boolean finishSession(SessionData givenSession) {
+        if(!mMetrics.isEnabled()){
+            return mStore.finishSession(givenSession);
+        }
+        long start = mMetrics.start();
+        boolean finished = mStore.finishSession(givenSession);
+        mFinishSession.record(start, 0, finished ? 1 : 0);
+        return finished;
+    }
+
+    @Override
+    public boolean finishSession(SessionData givenSession, HikeCellIndex cells) {
+        if(!mMetrics.isEnabled()){
+            return mStore.finishSession(givenSession, cells);
+        }
+        long start = mMetrics.start();
+        boolean finished = mStore.finishSession(givenSession, cells);
+        mFinishSession.record(start, 0, finished ? 1 : 0);
+        return finished;
+    }
+
+    @Override
+    public List<Hike> getOpenHikes() {
+        if(!mMetrics.isEnabled()){
+            return mStore.getOpenHikes();
+        }
+        long start = mMetrics.start();
+        List<Hike> hikes = mStore.getOpenHikes();
+        mRecover.record(start, sizeOf(hikes), 0);
+        return hikes;
+    }
+
+    @Override
+    public int recoverTrack(int hikeID, List<Coordinates> loggedPoints) {
+        if(!mMetrics.isEnabled()){
+            return mStore.recoverTrack(hikeID, loggedPoints);
+        }
+        long start = mMetrics.start();
+        int points = mStore.recoverTrack(hikeID, loggedPoints);
+        mRecover.record(start, 0, points);
+        return points;
+    }
+
+    @Override
+    public long recoverHike(Hike openHike) {
+        if(!mMetrics.isEnabled()){
+            return mStore.recoverHike(openHike);
+        }
+        long start = mMetrics.start();
+        long endTime = mStore.recoverHike(openHike);
+        mRecover.record(start, 0, 1);
+        return endTime;
+    }
+
+    @Override
+    public boolean deleteSession(SessionData givenSession) {
+        if(!mMetrics.isEnabled()){
+            return mStore.deleteSession(givenSession);
+        }
+        long start = mMetrics.start();
+        boolean deleted = mStore.deleteSession(givenSession);
+        mDeleteHike.record(start, 0, deleted ? 1 : 0);
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteHike(Hike givenHike) {
+        if(!mMetrics.isEnabled()){
+            return mStore.deleteHike(givenHike);
+        }
+        long start = mMetrics.start();
+        boolean deleted = mStore.deleteHike(givenHike);
+        mDeleteHike.record(start, 0, deleted ? 1 : 0);
+        return deleted;
+    }
+
+    @Override
+    public int deleteHikes(List<Integer> hikeIDs) {
+        if(!mMetrics.isEnabled()){
+            return mStore.deleteHikes(hikeIDs);
+        }
+        long start = mMetrics.start();
+        int deleted = mStore.deleteHikes(hikeIDs);
+        mDeleteHike.record(start, 0, deleted);
+        return deleted;
+    }
+
+    @Override
+    public long reclaimSpace(int maxPages) {
+        if(!mMetrics.isEnabled()){
+            return mStore.reclaimSpace(maxPages);
+        }
+        long start = mMetrics.start();
+        long pagesLeft = mStore.reclaimSpace(maxPages);
+        mReclaimSpace.record(start, 0, 0);
+        return pagesLeft;
+    }
+
+    @Override
+    public void reset() {
+        mStore.reset();
+    }
+}
@@ -0,0 +1,118 @@
+package me.dotteam.dotprod.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with buckets growing by powers of two, from a microsecond to over an hour.
+ * Recording never locks nor allocates, so it can be called from every storage thread at once.
+ * Percentiles are only known to the bucket, and reported as its upper bound.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket i holds the latencies from 2^(i-1) up to 2^i microseconds. The first one holds everything under a microsecond
+     */
+    public static final int BUCKETS=33;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    /**
+     * Add a latency to the histogram
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos){
+        if(nanos<0){
+            nanos = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(nanos));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos>max && !mMaxNanos.compareAndSet(max, nanos)){
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * Obtain the bucket holding a latency
+     * @param nanos The latency in nanoseconds
+     * @return Index of the bucket
+     */
+    public static int bucketOf(long nanos){
+        long micros = nanos/1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * @param bucket Index of the bucket
+     * @return The largest latency the bucket holds, in nanoseconds
+     */
+    public static long upperBoundOf(int bucket){
+        return (1L << bucket)*1000;
+    }
+
+    public long getCount(){
+        return mCount.get();
+    }
+
+    /**
+     * @return Mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMean(){
+        long count = mCount.get();
+        return count>0 ? mTotalNanos.get()/count : 0;
+    }
+
+    /**
+     * @return Largest latency recorded, in nanoseconds
+     */
+    public long getMax(){
+        return mMaxNanos.get();
+    }
+
+    /**
+     * Obtain a percentile of the recorded latencies
+     * @param percentile Between 0 and 100
+     * @return Upper bound of the bucket holding the percentile, in nanoseconds. Never more than the maximum
+     */
+    public long getPercentile(double percentile){
+        long count = mCount.get();
+        if(count==0){
+            return 0;
+        }
+        long rank = (long) Math.ceil(count*percentile/100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mBuckets.get(i);
+            if(seen>=rank && seen>0){
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @param bucket Index of the bucket
+     * @return Number of latencies recorded in the bucket
+     */
+    public long getBucketCount(int bucket){
+        return mBuckets.get(bucket);
+    }
+
+    /**
+     * Forget every latency recorded
+     */
+    public void reset(){
+        for (int i = 0; i < BUCKETS; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+}
@@ -0,0 +1,265 @@
+package me.dotteam.dotprod.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only log of the track being recorded, kept in a memory-mapped file of the app storage.
+ * Points are fixed-width records, so the track takes no heap while recording, and the list returned by
+ * {@link #asList()} reads them straight from the mapped region instead of copying them.
+ * The record count in the header is only updated once a record is complete, so the log left behind
+ * by a killed process is still readable, see {@link HikeDataDirector#recoverUnfinishedHikes()}.
+ * The file lives in the page cache: it outlives the process, not a power loss, which the journal covers.
+ *
+ * A single thread appends, any thread reads.
+ */
+public class MappedTrackLog {
+
+    private static final String TAG="TrackLog";
+
+    /**
+     * Directory of the logs, inside the app files directory
+     */
+    public static final String DIRECTORY="tracks";
+
+    public static final int MAGIC=0x484b4c47;
+    public static final int VERSION=1;
+
+    /**
+     * Header: magic, version, record count and start time, padded to a record
+     */
+    public static final int HEADER_SIZE=32;
+
+    /**
+     * Record: latitude, longitude, altitude and time, 8 bytes each
+     */
+    public static final int RECORD_SIZE=32;
+
+    /**
+     * Records the file grows by once full. 16384 records are 512 KB, about 4.5 hours at one fix a second
+     */
+    public static final int GROWTH_RECORDS=16384;
+
+    private static final int VERSION_OFFSET=4;
+    private static final int COUNT_OFFSET=8;
+    private static final int START_TIME_OFFSET=16;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private volatile MappedByteBuffer mBuffer;
+    private volatile int mCount;
+    private int mCapacity;
+
+    private MappedTrackLog(File file, boolean create) throws IOException {
+        mFile = file;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        if(create){
+            mChannel.truncate(0);
+            map(GROWTH_RECORDS);
+        }
+        else if(mChannel.size()<HEADER_SIZE){
+            close();
+            throw new IOException(file + " is not a track log");
+        }
+        else {
+            //Only what exists, an existing file is not grown until appended to
+            map((int) ((mChannel.size() - HEADER_SIZE)/RECORD_SIZE));
+        }
+    }
+
+    /**
+     * Create the log of a hike starting to be recorded, replacing any previous one
+     * @param file The file of the log, see {@link #fileFor(Context, long)}
+     * @param startTime Start time of the hike, in Milliseconds since epoch
+     * @return The empty log
+     * @throws IOException If the file could not be created or mapped
+     */
+    public static MappedTrackLog create(File file, long startTime) throws IOException {
+        File directory = file.getParentFile();
+        if(directory!=null && !directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("Could not create " + directory);
+        }
+        MappedTrackLog log = new MappedTrackLog(file, true);
+        log.mBuffer.putInt(0, MAGIC);
+        log.mBuffer.putInt(VERSION_OFFSET, VERSION);
+        log.mBuffer.putLong(START_TIME_OFFSET, startTime);
+        log.mBuffer.putLong(COUNT_OFFSET, 0);
+        return log;
+    }
+
+    /**
+     * Open a log left behind, for example by an interrupted recording
+     * @param file The file of the log
+     * @return The log, with the points whose record was complete
+     * @throws IOException If the file could not be mapped or is not a track log
+     */
+    public static MappedTrackLog open(File file) throws IOException {
+        MappedTrackLog log = new MappedTrackLog(file, false);
+        if(log.mBuffer.getInt(0)!=MAGIC || log.mBuffer.getInt(VERSION_OFFSET)!=VERSION){
+            log.close();
+            throw new IOException(file + " is not a track log");
+        }
+        //A process killed while growing the file can leave fewer records than counted
+        log.mCount = (int) Math.min(log.mBuffer.getLong(COUNT_OFFSET), log.mCapacity);
+        return log;
+    }
+
+    /**
+     * Obtain the file of the log of a hike
+     * @param context Context to find the app files directory
+     * @param startTime Start time of the hike, in Milliseconds since epoch
+     * @return The file, which may not exist
+     */
+    public static File fileFor(Context context, long startTime){
+        return new File(directoryOf(context), startTime + ".log");
+    }
+
+    /**
+     * Obtain the directory holding the logs
+     * @param context Context to find the app files directory
+     * @return The directory, which may not exist
+     */
+    public static File directoryOf(Context context){
+        return new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Map the header and a number of records, growing the file if needed
+     */
+    private void map(int capacity) throws IOException {
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity*RECORD_SIZE);
+        mCapacity = capacity;
+    }
+
+    /**
+     * Append a point. Only the recording thread may call this
+     * @param point The point to append
+     * @throws IOException If the file could not grow
+     */
+    public void append(Coordinates point) throws IOException {
+        int count = mCount;
+        if(count==mCapacity){
+            map(mCapacity + GROWTH_RECORDS);
+        }
+        MappedByteBuffer buffer = mBuffer;
+        int offset = HEADER_SIZE + count*RECORD_SIZE;
+        buffer.putDouble(offset, point.getLatitude());
+        buffer.putDouble(offset + 8, point.getLongitude());
+        buffer.putDouble(offset + 16, point.getAltitude());
+        buffer.putLong(offset + 24, point.getTime());
+        //Counted once complete, so a reader never sees a partial record
+        buffer.putLong(COUNT_OFFSET, count + 1);
+        mCount = count + 1;
+    }
+
+    /**
+     * Read a point from the mapped region
+     * @param index Position of the point, from 0 to {@link #size()}-1
+     * @return A new Coordinates object holding the point
+     */
+    public Coordinates get(int index){
+        if(index<0 || index>=mCount){
+            throw new IndexOutOfBoundsException("Point " + index + " of " + mCount);
+        }
+        MappedByteBuffer buffer = mBuffer;
+        int offset = HEADER_SIZE + index*RECORD_SIZE;
+        return new Coordinates(
+                buffer.getDouble(offset + 8),
+                buffer.getDouble(offset),
+                buffer.getDouble(offset + 16),
+                buffer.getLong(offset + 24));
+    }
+
+    public int size(){
+        return mCount;
+    }
+
+    public long getStartTime(){
+        return mBuffer.getLong(START_TIME_OFFSET);
+    }
+
+    public File getFile(){
+        return mFile;
+    }
+
+    /**
+     * Obtain a live view of the log. It grows as points are appended, and adding to it appends to the log.
+     * Nothing is copied: every point read is decoded from the mapped region
+     * @return The view, usable in a {@link LocationPoints}
+     */
+    public List<Coordinates> asList(){
+        return new PointList();
+    }
+
+    /**
+     * Tell whether a list of points is a view of a log, whose points are off the heap
+     * @param points The list to check. May be null
+     * @return True if the list was obtained from {@link #asList()}
+     */
+    public static boolean isMapped(List<Coordinates> points){
+        return points instanceof PointList;
+    }
+
+    /**
+     * Close the file. The points stay readable until the log is no longer referenced,
+     * but no more can be appended
+     */
+    public void close(){
+        try {
+            mChannel.close();
+            mRandomAccessFile.close();
+        }
+        catch (IOException e){
+            Log.w(TAG, "Could not close " + mFile, e);
+        }
+    }
+
+    /**
+     * Close the log and delete its file, once its points are safely in Persistent Storage.
+     * The points stay readable until the log is no longer referenced
+     * @return True if the file was deleted
+     */
+    public boolean delete(){
+        close();
+        return mFile.delete();
+    }
+
+    /**
+     * Live view of the log
+     */
+    private class PointList extends AbstractList<Coordinates> implements RandomAccess {
+
+        @Override
+        public Coordinates get(int index) {
+            return MappedTrackLog.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return mCount;
+        }
+
+        @Override
+        public boolean add(Coordinates point) {
+            try {
+                append(point);
+                return true;
+            }
+            catch (IOException e){
+                Log.e(TAG, "Could not append to " + mFile, e);
+                return false;
+            }
+        }
+    }
+}
@@ -4,31 +4,19 @@ package me.dotteam.dotprod.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Class to handle Persistent Storage of Data structures defined in the application
+ * Class to handle Persistent Storage of Data structures defined in the application, in SQLite
  */
-public class PersistentStorageEntity {
-
-    public class CacheMap<K,V> extends LinkedHashMap<K,V>{
-        private int cacheMapSize=3;
-        public CacheMap(int size){
-            cacheMapSize = size;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            return (super.size() <= cacheMapSize);
-        }
-    }
+public class PersistentStorageEntity implements HikeStore {
 
     private final String TAG="PSE";
 
@@ -36,28 +24,23 @@ public class PersistentStorageEntity {
     private DBAssistant mProvider;
     private SQLiteDatabase mDB;
 
-    private LinkedHashMap<Integer,SessionData> cachedObjects;
-    private int cacheCapacity=5; //Quite a lot
+    /**
+     * Upper bound for the memory used by cached sessions
+     */
+    public static final long MAX_CACHE_BYTES=16*1024*1024;
 
-    private Map<Integer,LocationPoints> mLoadedLocationPoints;
-    private boolean mMapsLoaded=false;
+    private SessionCache cachedObjects;
 
     /**
      * Default constructor
      */
     public PersistentStorageEntity(Context currentContext) {
         mCreateContext = currentContext;
-        mProvider = new DBAssistant(mCreateContext);
+        //Every entity shares one handle. Its writes are serialized while reads run in parallel
+        mProvider = DBAssistant.getInstance(mCreateContext);
         mDB=mProvider.getWritableDatabase();
-        cachedObjects = new CacheMap<>(cacheCapacity);
-        Thread offload = new Thread(){
-            @Override
-            public void run(){
-                mLoadedLocationPoints = loadMaps();
-            }
-        };
-//        offload.start();
-
+        //Never take more than an eighth of the heap
+        cachedObjects = new SessionCache(Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory()/8));
     }
 
     /**
@@ -65,13 +48,14 @@ public class PersistentStorageEntity {
      * load any other object from persistent storage in order to guarantee a non-null instance is returned
      * @return List of stored Hike Objects
      */
+    @Override
     public List<Hike> getHikesList() {
 
         //Create a New Hikes List.
         List <Hike> allHikes = null;
 
         //Query and keep an index on the columns
-        Cursor cursor = mDB.query(DBAssistant.HIKE, null, null, null, null, null, "id");
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_ALL_HIKES, null);
         int idColumn = cursor.getColumnIndex("id");
         int startTimeColumn = cursor.getColumnIndex(DBAssistant.HIKE_START);
         int endTimeColumn = cursor.getColumnIndex(DBAssistant.HIKE_END);
@@ -95,51 +79,104 @@ public class PersistentStorageEntity {
         return allHikes;
     }
 
-    public Map<Integer,LocationPoints> loadMaps(){
-//        if(mMapsLoaded){
-//            return mLoadedLocationPoints;
-//        }
-
-        Cursor cursor = mDB.query(DBAssistant.COORDS, null, null, null, DBAssistant.HIKE_ID, null, null);
-        Map<Integer,LocationPoints> retVal = null;
-
-        if(cursor.getCount()>0){
-            retVal = new HashMap<>(cursor.getCount());
-            Log.e(TAG, "loadMaps LOADING ALL COORDS "+cursor.getCount());
-            int altColumn = cursor.getColumnIndex(DBAssistant.ALT_COL);
-            int latColumn = cursor.getColumnIndex(DBAssistant.LAT_COL);
-            int longColumn = cursor.getColumnIndex(DBAssistant.LONG_COL);
-            int hikeColumn = cursor.getColumnIndex(DBAssistant.HIKE_ID);
-
-
-            cursor.moveToFirst();
-            do{
-
-                //Get the Hike ID
-                int setHikeID = cursor.getInt(hikeColumn);
+    /**
+     * Method to retrieve one page of the finished hikes, most recent first.
+     * Pages are found through the start time index, so the cost does not depend on the number of stored hikes.
+     * @param lastHike The last hike of the previous page, or null for the first page
+     * @param pageSize Maximum number of hikes in the page
+     * @return The hikes of the page. Empty once there are no more
+     */
+    @Override
+    public List<Hike> getHikesPage(Hike lastHike, int pageSize){
+        Cursor cursor;
+        if(lastHike==null){
+            cursor = mDB.rawQuery(DBAssistant.QUERY_HIKES_FIRST_PAGE, new String[]{Integer.toString(pageSize)});
+        }
+        else{
+            String start = Long.toString(lastHike.startTime());
+            cursor = mDB.rawQuery(DBAssistant.QUERY_HIKES_NEXT_PAGE, new String[]{
+                    start, start, Integer.toString(lastHike.getUniqueID()), Integer.toString(pageSize)});
+        }
 
-                Log.d(TAG, "loadMaps Hike number "+setHikeID);
+        List<Hike> page = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()){
+            page.add(new Hike(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2)));
+        }
+        cursor.close();
+        return page;
+    }
 
-                List<Coordinates> setList = new ArrayList<>();
-                while(!cursor.isAfterLast() && setHikeID == cursor.getInt(hikeColumn)){
-                    setList.add(new Coordinates(
-                            cursor.getDouble(longColumn),
-                            cursor.getDouble(latColumn),
-                            cursor.getDouble(altColumn)
-                    ));
-                    cursor.moveToNext();
+    /**
+     * Stream every stored track to a consumer, in a single scan ordered by hike and sequence.
+     * Only one chunk of points is decoded at a time and its list is reused,
+     * so memory does not grow with the number of stored points.
+     * @param consumer Receiver of the tracks
+     * @return Number of points streamed
+     */
+    @Override
+    public long forEachTrack(TrackConsumer consumer){
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_ALL_TRACKS, null);
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        long streamedPoints = 0;
+        int currentHike = -1;
+        try {
+            while (cursor.moveToNext()){
+                int hikeID = cursor.getInt(0);
+                if(hikeID!=currentHike){
+                    if(currentHike!=-1){
+                        consumer.onTrackEnd(currentHike);
+                    }
+                    currentHike = hikeID;
+                    consumer.onTrackStart(hikeID);
                 }
 
-                //If we break out of the loop, it means we need to save
-                retVal.put(setHikeID, new LocationPoints(setList));
-
-            }while(!cursor.isAfterLast());
+                buffer.clear();
+                readChunk(cursor, 1).unpack(buffer);
+                streamedPoints += buffer.size();
+                if(!consumer.onPoints(hikeID, buffer)){
+                    break;
+                }
+            }
+            if(currentHike!=-1){
+                consumer.onTrackEnd(currentHike);
+            }
         }
+        finally {
+            cursor.close();
+        }
+        return streamedPoints;
+    }
 
-        cursor.close();
-        mMapsLoaded = true;
-        mLoadedLocationPoints = retVal;
-        return retVal;
+    /**
+     * Stream the track of a single hike to a consumer, a chunk at a time, through the hike and sequence index
+     * @param hikeID The hike_id of the track
+     * @param consumer Receiver of the track. Not called at all if the hike has no points
+     * @return Number of points streamed
+     */
+    @Override
+    public long forEachTrack(int hikeID, TrackConsumer consumer){
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_TRACK, new String[]{Integer.toString(hikeID)});
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        long streamedPoints = 0;
+        try {
+            if(cursor.getCount()<1){
+                return 0;
+            }
+            consumer.onTrackStart(hikeID);
+            while (cursor.moveToNext()){
+                buffer.clear();
+                readChunk(cursor, 0).unpack(buffer);
+                streamedPoints += buffer.size();
+                if(!consumer.onPoints(hikeID, buffer)){
+                    break;
+                }
+            }
+            consumer.onTrackEnd(hikeID);
+        }
+        finally {
+            cursor.close();
+        }
+        return streamedPoints;
     }
 
     /**
@@ -147,42 +184,9 @@ public class PersistentStorageEntity {
      * @param specificHike the HikeObject that defines the SessionData
      * @return a SessionData object with the indicators that it was in the DB
      */
+    @Override
     public SessionData loadHikeData(Hike specificHike) {
-        int hikeID = specificHike.getUniqueID();
-        if(hikeID<1){
-            return null;
-        }
-
-        //Check if Cached
-        if(cachedObjects.containsKey(hikeID)){
-            return cachedObjects.get(hikeID);
-        }
-
-        //Already got hike, so...
-        //Get EnvData
-        EnvData retrievedStatistics = new EnvData(
-                retrieveEnvDataTable(DBAssistant.ENVTEMP,hikeID),
-                retrieveEnvDataTable(DBAssistant.ENVHUMD,hikeID),
-                retrieveEnvDataTable(DBAssistant.ENVPRES,hikeID));
-
-        //Get GeoPoints
-        LocationPoints retrievedPoints = null;
-//        if(mMapsLoaded){
-//            retrievedPoints = mLoadedLocationPoints.get(hikeID);
-//        }
-//        else {
-            retrievedPoints = new LocationPoints(retrieveCoordinates(hikeID));
-//        }
-        //And finally, get steps
-        StepCount retrievedStepCount = retrieveSteps(hikeID);
-
-        if(retrievedPoints!=null && retrievedStatistics!=null){
-            return new SessionData(specificHike,retrievedStepCount,retrievedStatistics,retrievedPoints);
-        }
-        else{
-            Log.d(TAG,"DID NOT FIND IN DB");
-            return null;
-        }
+        return loadSession(specificHike.getUniqueID(), specificHike, true);
     }
 
     /**
@@ -191,189 +195,806 @@ public class PersistentStorageEntity {
      * @param hikeID The hike_id value used in the database
      * @return a SessionData object with the indicators that it was in the DB, null otherwise.
      */
+    @Override
     public SessionData loadHikeData(int hikeID) {
+        return loadSession(hikeID, null, true);
+    }
+
+    /**
+     * Method to retrieve a {@link SessionData} object without its points, for callers that stream
+     * the track separately through {@link #forEachTrack(int, TrackConsumer)}.
+     * A session already cached is returned with its points.
+     * @param hikeID The hike_id value used in the database
+     * @return a SessionData object with an empty track, null if not found
+     */
+    @Override
+    public SessionData loadHikeHeader(int hikeID) {
+        return loadSession(hikeID, null, false);
+    }
+
+    /**
+     * Load a session using two queries: one joining the hike with its statistics, steps and name,
+     * and a second one reading the packed track, deferred until the points are first requested.
+     * @param hikeID The hike_id value used in the database
+     * @param knownHike The Hike object to use in the SessionData, or null to build it from the DB
+     * @param withTrack False to skip the second query and leave the track empty. Such sessions are not cached
+     * @return a SessionData object with the indicators that it was in the DB, null otherwise.
+     */
+    private SessionData loadSession(final int hikeID, Hike knownHike, boolean withTrack){
         //Check if Valid
         if(hikeID<1){
             return null;
         }
 
         //Check if Cached
-        if(cachedObjects.containsKey(hikeID)){
-            return cachedObjects.get(hikeID);
+        SessionData cached = cachedObjects.get(hikeID);
+        if(cached!=null){
+            return cached;
         }
 
-        //First, load the Hike
-        Cursor cursor = mDB.query(DBAssistant.HIKE,null,"id=?",
-                new String[]{Integer.toString(hikeID)},null,null,null);
-        if(cursor.getCount()<1){
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_SESSION, new String[]{Integer.toString(hikeID)});
+        if(!cursor.moveToFirst()){
+            cursor.close();
+            Log.d(TAG,"DID NOT FIND IN DB");
             return null;
         }
-        cursor.moveToFirst();
-        Hike loadedHike = new Hike(hikeID,
-                cursor.getLong(cursor.getColumnIndex(DBAssistant.HIKE_START)),
-                cursor.getLong(cursor.getColumnIndex(DBAssistant.HIKE_END)));
+
+        Hike loadedHike = knownHike;
+        if(loadedHike==null){
+            loadedHike = new Hike(hikeID,
+                    cursor.getLong(DBAssistant.SESSION_START),
+                    cursor.getLong(DBAssistant.SESSION_END));
+        }
+        if(!cursor.isNull(DBAssistant.SESSION_NICKNAME)){
+            loadedHike.setNickName(cursor.getString(DBAssistant.SESSION_NICKNAME));
+        }
+
+        EnvData retrievedStatistics = new EnvData(
+                readStatistic(cursor, DBAssistant.SESSION_TEMPERATURE),
+                readStatistic(cursor, DBAssistant.SESSION_HUMIDITY),
+                readStatistic(cursor, DBAssistant.SESSION_PRESSURE));
+
+        StepCount retrievedStepCount = null;
+        if(!cursor.isNull(DBAssistant.SESSION_STEPS)){
+            retrievedStepCount = new StepCount(cursor.getInt(DBAssistant.SESSION_STEPS));
+        }
+        HikeSummary retrievedSummary = readSummary(cursor, DBAssistant.SESSION_SUMMARY);
         cursor.close();
 
-        //Then delegate the rest...
-        return loadHikeData(loadedHike);
+        //Then read the track once it is needed
+        SessionData loadedSession;
+        if(withTrack){
+            loadedSession = new SessionData(loadedHike, retrievedStepCount, retrievedStatistics,
+                    new SessionData.TrackLoader() {
+                        @Override
+                        public LocationPoints loadTrack() {
+                            LocationPoints track = new LocationPoints(retrieveCoordinates(hikeID));
+                            //Sessions without a stored summary were cached as if they had no point
+                            cachedObjects.reweigh(hikeID, track);
+                            return track;
+                        }
+                    });
+        }
+        else{
+            loadedSession = new SessionData(loadedHike,retrievedStepCount,retrievedStatistics,new LocationPoints());
+        }
+        if(retrievedSummary!=null){
+            loadedSession.setSummary(retrievedSummary);
+        }
+        if(withTrack){
+            cachedObjects.put(hikeID, loadedSession);
+        }
+        return loadedSession;
     }
 
-    private EnvStatistic retrieveEnvDataTable(String tableName, int uniqueID){
-        EnvStatistic retrievedValue = new EnvStatistic();
-        //Get the data
-        Cursor cursor = mDB.query(tableName,null,DBAssistant.HIKE_ID+"=?",
-                new String[]{Integer.toString(uniqueID)}, null, null, null);
-        //Check at least an element was returned
-        if(cursor.getCount()<1){
+    /**
+     * Rebuild an {@link EnvStatistic} from the min, avg and max columns of a joined query
+     * @param cursor Cursor positioned on the row
+     * @param firstColumn Index of the min column. avg and max must follow it
+     * @return The statistic, or null if the hike has no row for it
+     */
+    private EnvStatistic readStatistic(Cursor cursor, int firstColumn){
+        if(cursor.isNull(firstColumn)){
             return null;
         }
-        cursor.moveToFirst();
+        EnvStatistic retrievedValue = new EnvStatistic();
         //Now, Put in order:
         //First put MAX
-        retrievedValue.insertSample(cursor.getDouble(cursor.getColumnIndex(DBAssistant.MAX_COL)));
+        retrievedValue.insertSample(cursor.getDouble(firstColumn+2));
         //Then put MIN
-        retrievedValue.insertSample(cursor.getDouble(cursor.getColumnIndex(DBAssistant.MIN_COL)));
+        retrievedValue.insertSample(cursor.getDouble(firstColumn));
         //Then insert Avg (AKA the last recorded value)
-        retrievedValue.insertSample(cursor.getDouble(cursor.getColumnIndex(DBAssistant.AVG_COL)));
+        retrievedValue.insertSample(cursor.getDouble(firstColumn+1));
+        return retrievedValue;
+    }
+
+    /**
+     * Rebuild a {@link HikeSummary} from the columns of {@link DBAssistant#QUERY_SUMMARY}
+     * @param cursor Cursor positioned on the row
+     * @param firstColumn Index of the point count column. The other columns must follow it in order
+     * @return The summary, or null if the hike has none
+     */
+    private HikeSummary readSummary(Cursor cursor, int firstColumn){
+        if(cursor.isNull(firstColumn)){
+            return null;
+        }
+        int pointCount = cursor.getInt(firstColumn);
+        if(pointCount==0){
+            return new HikeSummary();
+        }
+        return new HikeSummary(
+                pointCount,
+                cursor.getDouble(firstColumn+1),
+                cursor.getDouble(firstColumn+2),
+                cursor.getDouble(firstColumn+3),
+                cursor.getDouble(firstColumn+4),
+                cursor.getDouble(firstColumn+5),
+                cursor.getDouble(firstColumn+6),
+                cursor.getDouble(firstColumn+7),
+                cursor.getDouble(firstColumn+8),
+                cursor.getDouble(firstColumn+9),
+                cursor.getLong(firstColumn+10));
+    }
+
+    /**
+     * Method to retrieve the summary of a stored hike, without reading its points
+     * @param hikeID The hike_id value used in the database
+     * @return The summary, or null if the hike has none yet
+     */
+    @Override
+    public HikeSummary loadSummary(int hikeID){
+        SessionData cached = cachedObjects.get(hikeID);
+        if(cached!=null){
+            return cached.getSummary();
+        }
 
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_SUMMARY, new String[]{Integer.toString(hikeID)});
+        HikeSummary retVal = null;
+        if(cursor.moveToFirst()){
+            retVal = readSummary(cursor, 0);
+        }
         cursor.close();
+        return retVal;
+    }
 
-        return retrievedValue;
+    /**
+     * Compute and store the summary of every finished hike that does not have one,
+     * such as hikes saved before summaries existed or recovered after an interruption.
+     * Tracks are read a chunk at a time and each hike is written in its own transaction.
+     * @return Number of hikes summarized
+     */
+    @Override
+    public int backfillSummaries(){
+        List<Integer> pending = new ArrayList<>();
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_HIKES_WITHOUT_SUMMARY, null);
+        while (cursor.moveToNext()){
+            pending.add(cursor.getInt(0));
+        }
+        cursor.close();
+
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        for (int hikeID : pending) {
+            HikeSummary summary = new HikeSummary();
+            cursor = mDB.rawQuery(DBAssistant.QUERY_TRACK, new String[]{Integer.toString(hikeID)});
+            while (cursor.moveToNext()){
+                buffer.clear();
+                readChunk(cursor, 0).unpack(buffer);
+                summary.addPoints(buffer);
+            }
+            cursor.close();
+
+            mDB.beginTransactionNonExclusive();
+            try {
+                writeSummary(hikeID, summary);
+                mDB.setTransactionSuccessful();
+            }
+            finally {
+                mDB.endTransaction();
+            }
+        }
+        if(!pending.isEmpty()){
+            Log.d(TAG, "Summarized "+pending.size()+" stored hikes");
+        }
+        return pending.size();
+    }
+
+    /**
+     * Index the track of every finished hike that is not in the spatial index,
+     * such as hikes saved before the index existed or recovered after an interruption.
+     * Tracks are read a chunk at a time and each hike is written in its own transaction.
+     * @return Number of hikes indexed
+     */
+    @Override
+    public int backfillCells(){
+        List<Integer> pending = new ArrayList<>();
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_HIKES_WITHOUT_CELLS, null);
+        while (cursor.moveToNext()){
+            pending.add(cursor.getInt(0));
+        }
+        cursor.close();
+
+        List<Coordinates> buffer = new ArrayList<>(TrackChunk.MAX_POINTS);
+        for (int hikeID : pending) {
+            HikeCellIndex cells = new HikeCellIndex();
+            cursor = mDB.rawQuery(DBAssistant.QUERY_TRACK, new String[]{Integer.toString(hikeID)});
+            while (cursor.moveToNext()){
+                buffer.clear();
+                readChunk(cursor, 0).unpack(buffer);
+                cells.addPoints(buffer);
+            }
+            cursor.close();
+
+            mDB.beginTransactionNonExclusive();
+            try {
+                writeCells(hikeID, cells);
+                mDB.setTransactionSuccessful();
+            }
+            finally {
+                mDB.endTransaction();
+            }
+        }
+        if(!pending.isEmpty()){
+            Log.d(TAG, "Indexed "+pending.size()+" stored hikes");
+        }
+        return pending.size();
+    }
+
+    /**
+     * Method to find the finished hikes whose track goes through an area, in the order they were stored.
+     * Answered by the spatial index alone, at the resolution of its cells: a hike passing
+     * within one cell of the area may be included.
+     * @param minLatitude South edge of the area, in degrees
+     * @param minLongitude West edge of the area, in degrees
+     * @param maxLatitude North edge of the area, in degrees
+     * @param maxLongitude East edge of the area, in degrees
+     * @return The hikes found, empty if none
+     */
+    @Override
+    public List<Hike> findHikesInArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude){
+        return findHikesInCells(HikeCellIndex.rangesOf(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
+
+    /**
+     * Method to find the finished hikes whose track goes near a location, in the order they were stored
+     * @param latitude Latitude of the location, in degrees
+     * @param longitude Longitude of the location, in degrees
+     * @param radius Distance from the location, in metres
+     * @return The hikes found, empty if none
+     */
+    @Override
+    public List<Hike> findHikesNear(double latitude, double longitude, double radius){
+        return findHikesInCells(HikeCellIndex.rangesNear(latitude, longitude, radius));
+    }
+
+    /**
+     * Run {@link DBAssistant#QUERY_HIKES_IN_CELLS} with one range term per row of cells
+     * @param ranges Pairs of cell keys from {@link HikeCellIndex}
+     */
+    private List<Hike> findHikesInCells(List<long[]> ranges){
+        StringBuilder terms = new StringBuilder();
+        String[] args = new String[ranges.size()*2];
+        for (int i = 0; i < ranges.size(); i++) {
+            if(i>0){
+                terms.append(" OR ");
+            }
+            terms.append(DBAssistant.CELL_RANGE);
+            args[2*i] = Long.toString(ranges.get(i)[0]);
+            args[2*i+1] = Long.toString(ranges.get(i)[1]);
+        }
+
+        Cursor cursor = mDB.rawQuery(String.format(DBAssistant.QUERY_HIKES_IN_CELLS, terms), args);
+        List<Hike> found = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()){
+            if(cursor.getLong(2)!=DBAssistant.OPEN_END_TIME) {
+                found.add(new Hike(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2)));
+            }
+        }
+        cursor.close();
+        return found;
+    }
+
+    private static HikeCellIndex cellsOf(SessionData session){
+        LocationPoints points = session.getGeoPoints();
+        return HikeCellIndex.of(points!=null ? points.getCoordinateList() : null);
+    }
+
+    /**
+     * Replace the cells of a hike in the spatial index. Should be called inside a transaction.
+     */
+    private void writeCells(int hikeID, HikeCellIndex cells){
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.CELLS),
+                new String[]{String.valueOf(hikeID)});
+        SQLiteStatement insertStatement = mDB.compileStatement(DBAssistant.SCHEME_INSERT_CELL);
+        try {
+            for (long cell : cells.getCells()) {
+                insertStatement.bindLong(1, hikeID);
+                insertStatement.bindLong(2, cell);
+                insertStatement.executeInsert();
+            }
+        }
+        finally {
+            insertStatement.close();
+        }
+    }
+
+    /**
+     * Replace the summary of a hike. Should be called inside a transaction.
+     */
+    private void writeSummary(int hikeID, HikeSummary summary){
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.SUMMARY),
+                new String[]{String.valueOf(hikeID)});
+        mDB.insert(DBAssistant.SUMMARY,null,StorageValues.of(summary,hikeID));
     }
 
+    @Override
     public List<Coordinates> retrieveCoordinates(int uniqueID){
 
         List<Coordinates> retrievedList = null;
-        Cursor cursor = mDB.query(DBAssistant.COORDS,null,DBAssistant.HIKE_ID+"=?",
-                new String[]{Integer.toString(uniqueID)},null,null,DBAssistant.HIKE_ID);
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_TRACK, new String[]{Integer.toString(uniqueID)});
         if (cursor.getCount() <1){
+            cursor.close();
             return null;
         }
-        retrievedList =new ArrayList<>(cursor.getCount());
-        cursor.moveToFirst();
-        int latColumn = cursor.getColumnIndex(DBAssistant.LAT_COL);
-        int longColumn = cursor.getColumnIndex(DBAssistant.LONG_COL);
-        int altColumn = cursor.getColumnIndex(DBAssistant.ALT_COL);
-
-        do {
-            retrievedList.add(
-                    new Coordinates(cursor.getDouble(longColumn),
-                            cursor.getDouble(latColumn),
-                            cursor.getDouble(altColumn))
-            );
-        }while (cursor.moveToNext());
+        //Worst case size, avoids growing the list while unpacking
+        retrievedList =new ArrayList<>(cursor.getCount()*TrackChunk.MAX_POINTS);
+        while (cursor.moveToNext()) {
+            readChunk(cursor, 0).unpack(retrievedList);
+        }
 
         cursor.close();
 
         return retrievedList;
     }
 
-    private StepCount retrieveSteps(int uniqueID){
-        StepCount retrievedSteps = null;
-        Cursor cursor = mDB.query(DBAssistant.STEPS,null,DBAssistant.HIKE_ID+"=?",
-                new String[]{Integer.toString(uniqueID)},null,null,DBAssistant.HIKE_ID);
-        if (cursor.getCount()>0){
-            cursor.moveToFirst();
-            retrievedSteps = new StepCount(cursor.getInt(cursor.getColumnIndex(DBAssistant.STEP_COUNT)));
-        }
-        return retrievedSteps;
+    /**
+     * Build the {@link TrackChunk} the cursor is currently pointing to
+     * @param cursor Cursor over the hike_tracks table
+     * @param firstColumn Index of the sequence column. encoding, point_count and points must follow it
+     * @return The chunk, still packed
+     */
+    private TrackChunk readChunk(Cursor cursor, int firstColumn){
+        byte[] data = cursor.getBlob(firstColumn+3);
+        StorageMetrics.countBytesRead(data.length);
+        return new TrackChunk(
+                cursor.getInt(firstColumn),
+                cursor.getInt(firstColumn+1),
+                cursor.getInt(firstColumn+2),
+                data);
     }
 
     /**
      * Send a {@link SessionData} object to be stored in the database
+     * The whole session is written in a single transaction.
      * @param givenSession the SessionData object to be stored
      * @return True if successfully stored, false otherwise
      */
+    @Override
     public boolean saveSession(SessionData givenSession) {
-        mDB = mProvider.getWritableDatabase();
-
         if(givenSession==null || givenSession.hikeID()>0){
             Log.e(TAG, "Given a null SessionData. Cannot Proceed to Storage");
             return false;
         }
 
-        //Get the hike as contentValue and insert it into the DB
-        mDB.insert(DBAssistant.HIKE,null,givenSession.hikeToStorage());
+        boolean saved = false;
+
+        mDB.beginTransactionNonExclusive();
+        try {
+            //Get the hike as contentValue and insert it into the DB. The returned row is its hike ID
+            long insertedRow = mDB.insert(DBAssistant.HIKE,null,StorageValues.of(givenSession.getHike()));
+            if(insertedRow<1){
+                Log.e(TAG, "Could not insert the Hike. Aborting storage");
+                return false;
+            }
+            int assignedID = (int) insertedRow;
+
+            //Modify the Hike ID of the original object
+            givenSession.setHikeID(assignedID);
+
+            //Insert all EnvStatistics
+            mDB.insert(DBAssistant.ENVTEMP,null,StorageValues.of(givenSession.getCurrentStats().getTemperature(),assignedID));
+            mDB.insert(DBAssistant.ENVHUMD,null,StorageValues.of(givenSession.getCurrentStats().getHumidity(),assignedID));
+            mDB.insert(DBAssistant.ENVPRES,null,StorageValues.of(givenSession.getCurrentStats().getPressure(),assignedID));
+            //Insert Step Count
+            mDB.insert(DBAssistant.STEPS,null,StorageValues.of(givenSession.getStepCount(),assignedID));
+            //If there's a name, save it
+            mDB.insert(DBAssistant.HIKE_NAME,null,StorageValues.nameOf(givenSession.getHike()));
+
+            //Continue insertion of objects with the associated ID.
+            insertTrack(mDB, assignedID, 0, givenSession.getGeoPoints().getCoordinateList());
+            //Summarize the track once, so it never needs to be read again to be displayed
+            mDB.insert(DBAssistant.SUMMARY,null,StorageValues.of(givenSession.getSummary(),assignedID));
+            writeCells(assignedID, cellsOf(givenSession));
+            //Every recorded sample, at full resolution and downsampled
+            insertSeries(mDB, assignedID, givenSession.getCurrentStats().takePendingSamples(true));
+
+            mDB.setTransactionSuccessful();
+            saved = true;
+        }
+        finally {
+            mDB.endTransaction();
+        }
+
+        //Cache it
+        cachedObjects.put(givenSession.hikeID(),givenSession);
+
+        return saved;
+    }
+
+    /**
+     * Insert a hike's track as packed {@link TrackChunk} rows, reusing a single compiled statement.
+     * Should be called inside a transaction. A track of tens of thousands of points is only a few dozen rows,
+     * so the transaction is short and does not yield to other threads while it is written.
+     * @param db Database to write to
+     * @param hikeID The hike_id the coordinates belong to
+     * @param firstSequence Sequence number of the first chunk written
+     * @param allCoordinates The coordinates to insert, in recorded order
+     * @return Number of chunks written
+     */
+    static int insertTrack(SQLiteDatabase db, int hikeID, int firstSequence, List<Coordinates> allCoordinates){
+        if(allCoordinates==null || allCoordinates.isEmpty()){
+            return 0;
+        }
+
+        List<TrackChunk> chunks = TrackChunk.split(allCoordinates, firstSequence);
+        SQLiteStatement insertStatement = db.compileStatement(DBAssistant.SCHEME_INSERT_TRACK_CHUNK);
+        try {
+            for (TrackChunk chunk : chunks) {
+                insertStatement.bindLong(1, hikeID);
+                insertStatement.bindLong(2, chunk.getSequence());
+                insertStatement.bindLong(3, chunk.getEncoding());
+                insertStatement.bindLong(4, chunk.getPointCount());
+                insertStatement.bindBlob(5, chunk.getData());
+                StorageMetrics.countBytesWritten(chunk.getData().length);
+                insertStatement.executeInsert();
+            }
+        }
+        finally {
+            insertStatement.close();
+        }
+        return chunks.size();
+    }
+
+    /**
+     * Insert environmental samples as packed rows of at most {@link EnvSeries#MAX_SAMPLES},
+     * reusing a single compiled statement. Should be called inside a transaction.
+     * @param db Database to write to
+     * @param hikeID The hike_id the samples belong to
+     * @param batches The samples to insert, by sensor and tier
+     * @return Number of rows written
+     */
+    static int insertSeries(SQLiteDatabase db, int hikeID, List<EnvSeries.Batch> batches){
+        if(batches==null || batches.isEmpty()){
+            return 0;
+        }
+
+        int rows = 0;
+        SQLiteStatement insertStatement = db.compileStatement(DBAssistant.SCHEME_INSERT_SERIES);
+        try {
+            for (EnvSeries.Batch batch : batches) {
+                for (int from = 0; from < batch.samples.size(); from += EnvSeries.MAX_SAMPLES) {
+                    int to = Math.min(batch.samples.size(), from + EnvSeries.MAX_SAMPLES);
+                    insertStatement.bindLong(1, hikeID);
+                    insertStatement.bindLong(2, batch.sensor);
+                    insertStatement.bindLong(3, batch.tier);
+                    insertStatement.bindLong(4, batch.samples.get(from).getTime());
+                    insertStatement.bindLong(5, batch.samples.get(to-1).getTime());
+                    insertStatement.bindLong(6, to-from);
+                    byte[] packed = EnvSeriesCodec.encode(batch.tier, batch.samples, from, to);
+                    insertStatement.bindBlob(7, packed);
+                    StorageMetrics.countBytesWritten(packed.length);
+                    insertStatement.executeInsert();
+                    ++rows;
+                }
+            }
+        }
+        finally {
+            insertStatement.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Method to retrieve the time series of a sensor, read from the tier that fits the requested resolution
+     * @param hikeID The hike_id of the hike
+     * @param sensor One of {@link EnvSeries#TEMPERATURE}, {@link EnvSeries#HUMIDITY} or {@link EnvSeries#PRESSURE}
+     * @param fromTime Start of the time range, in Milliseconds since epoch
+     * @param toTime End of the time range, in Milliseconds since epoch
+     * @param resolution Time between two points of the chart, in Milliseconds. 0 for every raw sample
+     * @return The samples in the range, in time order. Empty if none were recorded
+     */
+    @Override
+    public List<EnvSample> loadSeries(int hikeID, int sensor, long fromTime, long toTime, long resolution){
+        int tier = EnvSeries.tierFor(resolution);
+        //Aggregates starting less than one interval before the range still cover part of it
+        long firstTime = fromTime - Math.max(EnvSeries.TIER_INTERVALS[tier] - 1, 0);
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_SERIES, new String[]{
+                Integer.toString(hikeID), Integer.toString(sensor), Integer.toString(tier),
+                Long.toString(toTime), Long.toString(firstTime)});
+
+        List<EnvSample> decoded = new ArrayList<>();
+        while (cursor.moveToNext()){
+            byte[] packed = cursor.getBlob(1);
+            StorageMetrics.countBytesRead(packed.length);
+            EnvSeriesCodec.decode(tier, packed, cursor.getInt(0), decoded);
+        }
+        cursor.close();
+
+        List<EnvSample> inRange = new ArrayList<>(decoded.size());
+        for (EnvSample sample : decoded) {
+            //Keeps the aggregates starting within one interval before fromTime, and raw samples from fromTime on
+            if(sample.getTime()>=firstTime && sample.getTime()<=toTime){
+                inRange.add(sample);
+            }
+        }
+        return inRange;
+    }
 
-        mDB = mProvider.getReadableDatabase();
+    /**
+     * Journal: Insert a hike that is starting to be recorded, so its data can be appended while it goes on.
+     * The hike is stored as open (see {@link DBAssistant#OPEN_END_TIME}) until {@link #finishSession(SessionData)}
+     * @param startedHike The hike being recorded. It receives its unique ID
+     * @return The assigned hike ID, or -1 if it could not be inserted
+     */
+    @Override
+    public int beginSession(Hike startedHike){
+        if(startedHike==null || startedHike.getUniqueID()>0){
+            Log.e(TAG, "Given a null or already stored Hike. Cannot begin a session");
+            return -1;
+        }
+
+        mDB.beginTransactionNonExclusive();
+        try {
+            ContentValues openHike = StorageValues.of(startedHike);
+            openHike.put(DBAssistant.HIKE_END, DBAssistant.OPEN_END_TIME);
+            long insertedRow = mDB.insert(DBAssistant.HIKE,null,openHike);
+            if(insertedRow<1){
+                Log.e(TAG, "Could not insert the open Hike");
+                return -1;
+            }
+            startedHike.setUniqueID((int) insertedRow);
+            mDB.insert(DBAssistant.HIKE_NAME,null,StorageValues.nameOf(startedHike));
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+        }
+        return startedHike.getUniqueID();
+    }
+
+    /**
+     * Journal: Append recorded coordinates to an open hike
+     * @param hikeID The hike_id returned by {@link #beginSession(Hike)}
+     * @param firstSequence Sequence number of the first chunk written
+     * @param newCoordinates The coordinates recorded since the last append
+     * @return Number of chunks written, so the caller knows the next sequence number
+     */
+    @Override
+    public int appendTrack(int hikeID, int firstSequence, List<Coordinates> newCoordinates){
+        int written;
+        mDB.beginTransactionNonExclusive();
+        try {
+            written = insertTrack(mDB, hikeID, firstSequence, newCoordinates);
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+        }
+        return written;
+    }
 
-        //After inserting, query the DB to retrieve its assigned hike ID
-        Cursor cursor = mDB.query(DBAssistant.HIKE,null,null,
-                null,null,null,"id");
+    /**
+     * Journal: Replace the statistics and step count of a hike with the latest ones
+     * @param hikeID The hike_id the values belong to
+     * @param statistics The environmental statistics recorded so far
+     * @param steps The steps taken so far
+     */
+    @Override
+    public void updateStatistics(int hikeID, EnvData statistics, StepCount steps){
+        mDB.beginTransactionNonExclusive();
+        try {
+            writeStatistics(hikeID, statistics, steps);
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+        }
+    }
 
-        cursor.moveToLast();
-        Log.w(TAG,"Statement returned "+cursor.getColumnCount()+" "+cursor.getCount());
-        int assignedID = cursor.getInt(cursor.getColumnIndex("id"));
+    /**
+     * Journal: Append the environmental samples recorded since the last append
+     * @param hikeID The hike_id the samples belong to
+     * @param batches The samples, by sensor and tier
+     * @return Number of rows written
+     */
+    @Override
+    public int appendSeries(int hikeID, List<EnvSeries.Batch> batches){
+        if(batches.isEmpty()){
+            return 0;
+        }
+        int written;
+        mDB.beginTransactionNonExclusive();
+        try {
+            written = insertSeries(mDB, hikeID, batches);
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+        }
+        return written;
+    }
 
-        //Modify the Hike ID of the original object
-        givenSession.setHikeID(assignedID);
+    /**
+     * Journal: Close a hike whose track was appended while recording.
+     * Only the end time, name, statistics, step count, summary, cells and remaining samples are written,
+     * the track is already on disk.
+     * @param givenSession The session returned by the collection, with the ID from {@link #beginSession(Hike)}
+     * @return True if the hike was found and finished, false otherwise
+     */
+    @Override
+    public boolean finishSession(SessionData givenSession){
+        if(givenSession==null || !closeSession(givenSession, cellsOf(givenSession))){
+            return false;
+        }
 
         //Cache it
-        cachedObjects.put(assignedID,givenSession);
-
-        //Insertion done in O(1) time
-        //Insert all EnvStatistics
-        mDB.insert(DBAssistant.ENVTEMP,null,givenSession.getCurrentStats().getSerializedTemp(assignedID));
-        mDB.insert(DBAssistant.ENVHUMD,null,givenSession.getCurrentStats().getSerializedHumidity(assignedID));
-        mDB.insert(DBAssistant.ENVPRES,null,givenSession.getCurrentStats().getSerializedPressure(assignedID));
-        //Insert Step Count
-        mDB.insert(DBAssistant.STEPS,null,givenSession.getStepCount().toStorage(assignedID));
-        //If there's a name, save it
-        mDB.insert(DBAssistant.HIKE_NAME,null,givenSession.hikeNameToStorage()); //TODO: Change later. All hike data should be inserted in one-shot
-
-        //Insertion takes O(n). This is a HUGE bottleneck actually and we have no way of optimizing it...
-        //Continue insertion of objects with the associated ID.
-        List<Coordinates> allCoordinates =givenSession.getGeoPoints().getCoordinateList();
-        int length = allCoordinates.size();
-        for(int i=0; i<allCoordinates.size();++i) {
-            mDB.insert(DBAssistant.COORDS, null,allCoordinates.get(i).toStorage(assignedID));
-        }
-
-        //save to cache
-//        mLoadedLocationPoints.put(assignedID,givenSession.getGeoPoints());
-
-        //CHANGE if operation fails at any point!
+        cachedObjects.put(givenSession.hikeID(), givenSession);
         return true;
     }
 
     /**
-     * Deletes all information associated to a SessionData object
-     * @param givenSession the SessionData object to be deleted
-     * @return True if successfully deleted, false otherwise
+     * Journal: Close a hike whose points were appended without being kept in memory, such as an imported one.
+     * The session is not cached, as it does not hold the track.
+     * @param givenSession The session with the ID from {@link #beginSession(Hike)}.
+     *                     Its summary must have been set from the appended points
+     * @param cells The cells of the appended points
+     * @return True if the hike was found and finished, false otherwise
      */
-    public boolean deleteSession(SessionData givenSession){
-        mDB = mProvider.getWritableDatabase();
+    @Override
+    public boolean finishSession(SessionData givenSession, HikeCellIndex cells){
+        if(givenSession==null || !closeSession(givenSession, cells)){
+            return false;
+        }
+        cachedObjects.remove(givenSession.hikeID());
+        return true;
+    }
 
-        //Check if Cached and remove
-        if(cachedObjects.containsKey(givenSession.hikeID())){
-            cachedObjects.remove(givenSession.hikeID());
+    /**
+     * Write everything but the track of a hike being finished, in a single transaction
+     * @param givenSession The session to finish
+     * @param cells The cells of its track
+     * @return True if the hike was found and finished, false otherwise
+     */
+    private boolean closeSession(SessionData givenSession, HikeCellIndex cells){
+        if(givenSession.hikeID()<1){
+            Log.e(TAG, "Given a null or unstored SessionData. Cannot finish it");
+            return false;
         }
 
-        if(givenSession.hikeID()>0){
-            //Verify the ID is in the DB
-            Cursor cursor = mDB.query(DBAssistant.HIKE,null,"id=?",
-                    new String[]{Integer.toString(givenSession.hikeID())},null,null,null);
-            if(cursor.getCount()!=1){
-                //DB is inconsistent in this case, or the Hike was not saved.
+        int hikeID = givenSession.hikeID();
+        String[] idParam = new String[]{String.valueOf(hikeID)};
+        mDB.beginTransactionNonExclusive();
+        try {
+            SQLiteStatement endStatement = mDB.compileStatement(DBAssistant.UPDATE_HIKE_END);
+            endStatement.bindLong(1, givenSession.hikeEndTime());
+            endStatement.bindLong(2, hikeID);
+            int updated = endStatement.executeUpdateDelete();
+            endStatement.close();
+            if(updated!=1){
+                Log.e(TAG, "Hike "+hikeID+" is not in the DB. Cannot finish it");
                 return false;
             }
 
-            //Now we send this to all tables for deletion
-            String[] idParam= new String[]{String.valueOf(givenSession.hikeID())};
+            mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.HIKE_NAME), idParam);
+            mDB.insert(DBAssistant.HIKE_NAME,null,StorageValues.nameOf(givenSession.getHike()));
+            writeStatistics(hikeID, givenSession.getCurrentStats(), givenSession.getStepCount());
+            writeSummary(hikeID, givenSession.getSummary());
+            writeCells(hikeID, cells);
+            //Samples recorded since the last append, and the intervals still open
+            insertSeries(mDB, hikeID, givenSession.getCurrentStats().takePendingSamples(true));
 
-            //Delete from all tables
-            for (int i = 1; i < DBAssistant.VALID_TABLES.length ; i++) {
-                mDB.delete(DBAssistant.VALID_TABLES[i],
-                        DBAssistant.HIKE_ID+"=?",
-                        idParam);
-            }
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+        }
+        return true;
+    }
+
+    /**
+     * Replace the rows of every statistics table of a hike. Should be called inside a transaction.
+     */
+    private void writeStatistics(int hikeID, EnvData statistics, StepCount steps){
+        String[] idParam = new String[]{String.valueOf(hikeID)};
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.ENVTEMP), idParam);
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.ENVHUMD), idParam);
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.ENVPRES), idParam);
+        mDB.execSQL(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.STEPS), idParam);
+
+        mDB.insert(DBAssistant.ENVTEMP,null,StorageValues.of(statistics.getTemperature(),hikeID));
+        mDB.insert(DBAssistant.ENVHUMD,null,StorageValues.of(statistics.getHumidity(),hikeID));
+        mDB.insert(DBAssistant.ENVPRES,null,StorageValues.of(statistics.getPressure(),hikeID));
+        mDB.insert(DBAssistant.STEPS,null,StorageValues.of(steps,hikeID));
+    }
 
-            //Finally, delete from hikes
-            mDB.delete(DBAssistant.HIKE,"id=?",idParam);
-            return true;
+    /**
+     * Recovery: Obtain the hikes that were started but never finished, for example because the
+     * application was killed while recording
+     * @return List of open Hike objects, empty if there are none
+     */
+    @Override
+    public List<Hike> getOpenHikes(){
+        List<Hike> openHikes = new ArrayList<>();
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_OPEN_HIKES, null);
+        while (cursor.moveToNext()){
+            openHikes.add(new Hike(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2)));
         }
+        cursor.close();
+        return openHikes;
+    }
 
-        return false;
+    /**
+     * Recovery: Append the points of an interrupted hike that were logged but never journaled
+     * @param hikeID The hike_id of an open hike
+     * @param loggedPoints Every point recorded for the hike, such as a {@link MappedTrackLog}
+     * @return Number of points appended
+     */
+    @Override
+    public int recoverTrack(int hikeID, List<Coordinates> loggedPoints){
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_TRACK_EXTENT, new String[]{Integer.toString(hikeID)});
+        int nextSequence = 0;
+        int storedPoints = 0;
+        if(cursor.moveToFirst()){
+            nextSequence = cursor.getInt(0);
+            storedPoints = cursor.getInt(1);
+        }
+        cursor.close();
+
+        if(loggedPoints.size()<=storedPoints){
+            return 0;
+        }
+        appendTrack(hikeID, nextSequence, loggedPoints.subList(storedPoints, loggedPoints.size()));
+        return loggedPoints.size() - storedPoints;
+    }
+
+    /**
+     * Recovery: Close an interrupted hike with what reached the disk.
+     * Its end time becomes the time of its last stored point, or its start time if it has none.
+     * @param openHike A hike obtained through {@link #getOpenHikes()}
+     * @return The end time given to the hike
+     */
+    @Override
+    public long recoverHike(Hike openHike){
+        long recoveredEnd = openHike.startTime();
+        Cursor cursor = mDB.rawQuery(DBAssistant.QUERY_LAST_CHUNK,
+                new String[]{Integer.toString(openHike.getUniqueID())});
+        if(cursor.moveToFirst()){
+            List<Coordinates> lastPoints = readChunk(cursor, 0).unpack();
+            long lastTime = lastPoints.isEmpty() ? 0 : lastPoints.get(lastPoints.size()-1).getTime();
+            if(lastTime>recoveredEnd){
+                recoveredEnd = lastTime;
+            }
+        }
+        cursor.close();
+
+        SQLiteStatement endStatement = mDB.compileStatement(DBAssistant.UPDATE_HIKE_END);
+        endStatement.bindLong(1, recoveredEnd);
+        endStatement.bindLong(2, openHike.getUniqueID());
+        endStatement.executeUpdateDelete();
+        endStatement.close();
+
+        cachedObjects.remove(openHike.getUniqueID());
+        Log.w(TAG, "Recovered interrupted hike "+openHike.getUniqueID());
+        return recoveredEnd;
+    }
+
+    /**
+     * Deletes all information associated to a SessionData object
+     * @param givenSession the SessionData object to be deleted
+     * @return True if successfully deleted, false otherwise
+     */
+    @Override
+    public boolean deleteSession(SessionData givenSession){
+        return givenSession.hikeID()>0 && deleteHikes(Collections.singletonList(givenSession.hikeID()))==1;
     }
 
     /**
@@ -382,51 +1003,115 @@ public class PersistentStorageEntity {
      * @param givenHike The hike to delete
      * @return True if successfully deleted, false otherwise
      */
+    @Override
     public boolean deleteHike(Hike givenHike){
-        mDB = mProvider.getWritableDatabase();
+        return givenHike.getUniqueID()>0 && deleteHikes(Collections.singletonList(givenHike.getUniqueID()))==1;
+    }
 
-        //Check if Cached and remove
-        if(cachedObjects.containsKey(givenHike.getUniqueID())){
-            cachedObjects.remove(givenHike.getUniqueID());
+    /**
+     * Delete several hikes and everything associated to them, in a single transaction:
+     * either all of them are gone or none is. Each table gets one compiled statement, run for every hike.
+     * The freed pages stay in the file until {@link #reclaimSpace(int)} gives them back.
+     * @param hikeIDs The hike_id of every hike to delete
+     * @return Number of hikes deleted. IDs not in the DB are ignored
+     */
+    @Override
+    public int deleteHikes(List<Integer> hikeIDs){
+        for (int hikeID : hikeIDs) {
+            cachedObjects.remove(hikeID);
         }
 
-        if(givenHike.getUniqueID()>0){
-            //Verify the ID is in the DB
-            Cursor cursor = mDB.query(DBAssistant.HIKE,null,"id=?",
-                    new String[]{Integer.toString(givenHike.getUniqueID())},null,null,null);
-            if(cursor.getCount()!=1){
-                //DB is inconsistent in this case, or the Hike was not saved.
-                return false;
+        int deleted = 0;
+        List<SQLiteStatement> statements = new ArrayList<>(DBAssistant.VALID_TABLES.length);
+        mDB.beginTransactionNonExclusive();
+        try {
+            //First table is the hikes one, it is deleted through its 'id'
+            SQLiteStatement deleteHike = mDB.compileStatement(DBAssistant.DELETE_HIKE);
+            statements.add(deleteHike);
+            for (int i = 1; i < DBAssistant.VALID_TABLES.length ; i++) {
+                statements.add(mDB.compileStatement(String.format(DBAssistant.DELETE_BY_HIKE, DBAssistant.VALID_TABLES[i])));
             }
 
-            //Now we send this to all tables for deletion
-            String[] idParam= new String[]{String.valueOf(givenHike.getUniqueID())};
-
-            //Delete from all tables
-            for (int i = 1; i < DBAssistant.VALID_TABLES.length ; i++) {
-                mDB.delete(DBAssistant.VALID_TABLES[i],
-                        DBAssistant.HIKE_ID+"=?",
-                        idParam);
+            for (int hikeID : hikeIDs) {
+                deleteHike.bindLong(1, hikeID);
+                if(deleteHike.executeUpdateDelete()!=1){
+                    //Not saved, or already deleted
+                    continue;
+                }
+                for (int i = 1; i < statements.size(); i++) {
+                    statements.get(i).bindLong(1, hikeID);
+                    statements.get(i).executeUpdateDelete();
+                }
+                ++deleted;
             }
+            mDB.setTransactionSuccessful();
+        }
+        finally {
+            mDB.endTransaction();
+            for (SQLiteStatement statement : statements) {
+                statement.close();
+            }
+        }
+        return deleted;
+    }
 
-            //Finally, delete from hikes
-            mDB.delete(DBAssistant.HIKE,"id=?",idParam);
-            return true;
+    /**
+     * Give freed pages back to the file system, a few at a time so other writes are not held up.
+     * Databases created before incremental vacuum was enabled are converted by a full VACUUM the first time.
+     * Must not be called inside a transaction.
+     * @param maxPages Maximum number of pages to give back
+     * @return Number of free pages left in the file
+     */
+    @Override
+    public long reclaimSpace(int maxPages){
+        if(getFreePages()==0){
+            return 0;
+        }
+
+        if(DatabaseUtils.longForQuery(mDB, DBAssistant.PRAGMA_AUTO_VACUUM, null)!=DBAssistant.AUTO_VACUUM_INCREMENTAL){
+            Log.w(TAG, "Converting the DB to incremental vacuum");
+            mDB.execSQL(DBAssistant.VACUUM);
+        }
+        else {
+            //Pages are given back while stepping through the pragma
+            Cursor cursor = mDB.rawQuery(String.format(DBAssistant.PRAGMA_INCREMENTAL_VACUUM, maxPages), null);
+            cursor.getCount();
+            cursor.close();
         }
+        return getFreePages();
+    }
 
-        return false;
+    /**
+     * @return Number of unused pages in the database file
+     */
+    public long getFreePages(){
+        return DatabaseUtils.longForQuery(mDB, DBAssistant.PRAGMA_FREE_PAGES, null);
     }
 
     /**
      * Request a complete deletion of any stored data
      * WARNING: This entirely eliminates and recreates the database. ALL DATA IS LOST.
      */
+    @Override
     public void reset(){
+        cachedObjects.clear();
         mProvider.onUpgrade(mDB,-1,DBAssistant.SCHEME_VERSION);
     }
 
-    public boolean hasCoordinatesCached(){
-        return mMapsLoaded;
+    /**
+     * Diagnostic to verify every statement looking up a single hike is answered through an index
+     * @return The statements falling back to a full table scan. Empty if none does
+     */
+    public List<String> findUnindexedStatements(){
+        return new QueryPlanInspector(mDB).findFullScans(DBAssistant.hikeLookupStatements());
+    }
+
+    /**
+     * Obtain the session cache, mostly to read its hit, miss and eviction counters
+     * @return The cache used by this entity
+     */
+    public SessionCache getSessionCache(){
+        return cachedObjects;
     }
 
 }
\ No newline at end of file
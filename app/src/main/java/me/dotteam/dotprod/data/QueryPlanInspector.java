@@ -0,0 +1,91 @@
+package me.dotteam.dotprod.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Diagnostic tool that asks SQLite how it would run a statement using EXPLAIN QUERY PLAN.
+ * Used to verify the statements issued by {@link PersistentStorageEntity} are answered through
+ * indexes instead of scanning tables whose size grows with the whole hiking history.
+ */
+public class QueryPlanInspector {
+
+    private static final String TAG="QPI";
+
+    private SQLiteDatabase mDB;
+
+    /**
+     * Default constructor
+     * @param db Database the statements are run against
+     */
+    public QueryPlanInspector(SQLiteDatabase db) {
+        mDB = db;
+    }
+
+    /**
+     * Obtain the plan SQLite would use for a statement
+     * @param statement The statement to explain
+     * @param args Values bound to the statement's parameters
+     * @return One line per step of the plan
+     */
+    public List<String> explain(String statement, String[] args){
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = mDB.rawQuery("EXPLAIN QUERY PLAN " + statement, args);
+        int detailColumn = cursor.getColumnIndex("detail");
+        while (cursor.moveToNext()){
+            plan.add(cursor.getString(detailColumn));
+        }
+        cursor.close();
+        return plan;
+    }
+
+    /**
+     * Check if a plan reads a whole table or index. Only searches, by an index or the rowid, are lookups:
+     * "SCAN x USING INDEX i" still reads every entry of the index
+     * @param plan Plan obtained through {@link #explain(String, String[])}
+     * @return True if any step is a full scan
+     */
+    public static boolean hasFullScan(List<String> plan){
+        for (String step : plan) {
+            //Older SQLite versions write "SCAN TABLE x", newer ones "SCAN x"
+            if(step.startsWith("SCAN") && !step.contains("USING INTEGER PRIMARY KEY")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Explain every statement looking up hikes and report those falling back to a scan
+     * @param statements Statements whose parameters are all integers, such as hike IDs
+     * @return The statements that scan a table or index, empty if all of them search indexes
+     */
+    public List<String> findFullScans(List<String> statements){
+        List<String> offenders = new ArrayList<>();
+        for (String statement : statements) {
+            String[] params = new String[countParameters(statement)];
+            Arrays.fill(params, "1");
+            List<String> plan = explain(statement, params);
+            if(hasFullScan(plan)){
+                Log.w(TAG, "Full scan in \"" + statement + "\": " + plan);
+                offenders.add(statement);
+            }
+        }
+        return offenders;
+    }
+
+    private static int countParameters(String statement){
+        int count = 0;
+        for (int i = 0; i < statement.length(); i++) {
+            if(statement.charAt(i)=='?'){
+                ++count;
+            }
+        }
+        return count;
+    }
+}
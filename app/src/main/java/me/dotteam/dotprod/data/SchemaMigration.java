@@ -0,0 +1,66 @@
+package me.dotteam.dotprod.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A single step of the database scheme evolution, bringing it from the previous version to {@link #getVersion()}.
+ * Steps are listed in {@link DBAssistant#MIGRATIONS} and run in order, each one in its own transaction,
+ * so a failing step never leaves a half migrated table behind.
+ * Steps rewriting large tables should work in batches and report their progress after each one.
+ */
+public abstract class SchemaMigration {
+
+    /**
+     * Listener for the progress of the migrations, for example to show it on screen
+     */
+    public interface ProgressListener {
+        /**
+         * Method called whenever a step makes progress
+         * @param step The step running
+         * @param done Units of work done so far, such as rows copied
+         * @param total Units of work in the step. 0 if unknown
+         */
+        void onProgress(SchemaMigration step, long done, long total);
+    }
+
+    private final int mVersion;
+    private final String mDescription;
+
+    /**
+     * Default constructor
+     * @param version Scheme version the database is at once the step is done
+     * @param description Short description of the change, for logs and progress reporting
+     */
+    protected SchemaMigration(int version, String description) {
+        mVersion = version;
+        mDescription = description;
+    }
+
+    /**
+     * Apply the step. Called inside a transaction
+     * @param db Android's Database Handle
+     * @param listener Listener to report progress to. May be null
+     */
+    public abstract void migrate(SQLiteDatabase db, ProgressListener listener);
+
+    /**
+     * Report progress to a listener, if there is one
+     */
+    protected void report(ProgressListener listener, long done, long total){
+        if(listener!=null){
+            listener.onProgress(this, done, total);
+        }
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    public String getDescription() {
+        return mDescription;
+    }
+
+    public String toString(){
+        return String.format("Migration to version %s: %s", mVersion, mDescription);
+    }
+}
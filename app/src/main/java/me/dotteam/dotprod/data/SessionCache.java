@@ -0,0 +1,190 @@
+package me.dotteam.dotprod.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least Recently Used cache of loaded {@link SessionData} objects, keyed by hike ID.
+ * The cache is bounded by the estimated memory used by the sessions rather than by their number,
+ * since a single hike can hold tens of thousands of points.
+ */
+public class SessionCache {
+
+    /**
+     * Estimated heap used by a single {@link Coordinates} and its reference in the list
+     */
+    public static final int BYTES_PER_POINT=48;
+
+    /**
+     * Estimated heap used by a session without any point: Hike, EnvData, StepCount and wrappers
+     */
+    public static final int BYTES_PER_SESSION=512;
+
+    private final long maxBytes;
+    private long currentBytes=0;
+
+    private long hits=0;
+    private long misses=0;
+    private long evictions=0;
+
+    /**
+     * Sessions in access order: the eldest entry is the least recently used
+     */
+    private final LinkedHashMap<Integer,SessionData> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Default constructor
+     * @param maxBytes Maximum estimated memory the cached sessions may use
+     */
+    public SessionCache(long maxBytes) {
+        this.maxBytes=maxBytes;
+    }
+
+    /**
+     * Weight of every cached session, as estimated when it was added
+     */
+    private final Map<Integer,Long> weights = new HashMap<>();
+
+    /**
+     * Estimate the memory used by a session. A session whose track is not loaded yet is weighed
+     * by the point count of its summary, without loading it, and should be weighed again
+     * with {@link #reweigh(int, LocationPoints)} once its track is loaded.
+     * The points of a track read from a {@link MappedTrackLog} are off the heap and not counted
+     * @param session The session to weigh
+     * @return Estimated size in bytes
+     */
+    public static long weightOf(SessionData session){
+        if(session.isTrackLoaded()){
+            return weightOf(session.getGeoPoints());
+        }
+        return BYTES_PER_SESSION + (long) session.getPointCount()*BYTES_PER_POINT;
+    }
+
+    /**
+     * Estimate the memory used by a session holding a track
+     * @param track The loaded track of the session. May be null
+     * @return Estimated size in bytes
+     */
+    public static long weightOf(LocationPoints track){
+        List<Coordinates> points = track!=null ? track.getCoordinateList() : null;
+        if(points==null || MappedTrackLog.isMapped(points)){
+            return BYTES_PER_SESSION;
+        }
+        return BYTES_PER_SESSION + (long) points.size()*BYTES_PER_POINT;
+    }
+
+    /**
+     * Obtain a cached session, marking it as the most recently used
+     * @param hikeID The hike ID of the session
+     * @return The session, or null if it is not cached
+     */
+    public synchronized SessionData get(int hikeID){
+        SessionData retVal = sessions.get(hikeID);
+        if(retVal!=null){
+            ++hits;
+        }
+        else{
+            ++misses;
+        }
+        return retVal;
+    }
+
+    /**
+     * Add a session to the cache, evicting the least recently used ones until it fits.
+     * Sessions larger than the whole cache are not stored.
+     * @param hikeID The hike ID of the session
+     * @param session The session to cache
+     */
+    public synchronized void put(int hikeID, SessionData session){
+        remove(hikeID);
+
+        insert(hikeID, session, weightOf(session));
+    }
+
+    /**
+     * Weigh a cached session again once its track is loaded, as it was only weighed by its summary.
+     * The session becomes the most recently used, and is dropped if it no longer fits.
+     * Only reads the track given, so it may be called while the session is loading it
+     * @param hikeID The hike ID of the session
+     * @param track The track just loaded
+     */
+    public synchronized void reweigh(int hikeID, LocationPoints track){
+        SessionData session = sessions.remove(hikeID);
+        if(session==null){
+            return;
+        }
+        currentBytes -= weights.remove(hikeID);
+        insert(hikeID, session, weightOf(track));
+    }
+
+    /**
+     * Add a session not in the cache, evicting the least recently used ones until it fits
+     */
+    private void insert(int hikeID, SessionData session, long weight){
+        if(weight>maxBytes){
+            return;
+        }
+
+        Iterator<Map.Entry<Integer,SessionData>> eldest = sessions.entrySet().iterator();
+        while (currentBytes+weight>maxBytes && eldest.hasNext()){
+            currentBytes -= weights.remove(eldest.next().getKey());
+            eldest.remove();
+            ++evictions;
+        }
+
+        sessions.put(hikeID, session);
+        weights.put(hikeID, weight);
+        currentBytes += weight;
+    }
+
+    /**
+     * Remove a session from the cache
+     * @param hikeID The hike ID of the session
+     */
+    public synchronized void remove(int hikeID){
+        if(sessions.remove(hikeID)!=null){
+            currentBytes -= weights.remove(hikeID);
+        }
+    }
+
+    /**
+     * Remove all sessions from the cache. Counters are kept
+     */
+    public synchronized void clear(){
+        sessions.clear();
+        weights.clear();
+        currentBytes=0;
+    }
+
+    public synchronized int size(){
+        return sessions.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String toString(){
+        return String.format("Session Cache: %s sessions, %s/%s bytes, %s hits, %s misses, %s evictions",
+                sessions.size(), currentBytes, maxBytes, hits, misses, evictions);
+    }
+}
@@ -41,6 +41,7 @@ public class SessionCollectionService extends Service implements SensorListenerI
     private LocationPoints recordedCoordinates;
     private Hike currentHike;
     private HikeDataDirector mHDD;
+    private SessionJournal mJournal;
     class TimeUpdate extends Thread{
 
         private Context mainContext;
@@ -85,11 +86,15 @@ public class SessionCollectionService extends Service implements SensorListenerI
     @Override
     public void onCreate(){
         //Initialize objects
-        recordedData = new EnvData();
-        recordedCoordinates = new LocationPoints();
+        //Keeps every timestamped sample until the journal writes it
+        recordedData = new SessionEnvData();
         currentHike = new Hike();
         currentHike.start();
         mHDD = HikeDataDirector.getInstance(this);
+        mJournal = mHDD.openJournal(currentHike);
+        //Keep the track in the mapped log rather than on the heap when possible
+        MappedTrackLog trackLog = mJournal.getTrackLog();
+        recordedCoordinates = trackLog!=null ? new LocationPoints(trackLog.asList()) : new LocationPoints();
 
         mNotifier = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         notificationID = this.getApplicationInfo().uid;
@@ -180,6 +185,7 @@ public class SessionCollectionService extends Service implements SensorListenerI
                     stepCount = value;
                 }
             }
+            mJournal.flushIfStale(recordedData, new StepCount(stepCount));
 
         }
     }
@@ -193,10 +199,14 @@ public class SessionCollectionService extends Service implements SensorListenerI
         // TODO: Save distance traveled
         //Store the new point in our recorded coordinates list
         Log.d(TAG, "onLocationChanged Added "+location.toString());
-        this.recordedCoordinates.addPoint(new Coordinates(
+        Coordinates newPoint = new Coordinates(
                 location.getLongitude(),
                 location.getLatitude(),
-                location.getAltitude()
-        ));
+                location.getAltitude(),
+                location.getTime()
+        );
+        this.recordedCoordinates.addPoint(newPoint);
+        //Also journal it, so it survives the process being killed
+        mJournal.append(newPoint, recordedData, new StepCount(stepCount));
     }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package me.dotteam.dotprod.data;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only journal of a hike being recorded.
+ * The hike is inserted in Persistent Storage as soon as it starts. Coordinates are then appended in
+ * small batches, and the statistics and environmental samples written with them, so a killed process
+ * only loses the last batch.
+ * Every write goes through the {@link StorageExecutor} writer thread, in the order it was requested.
+ * Points and sensor updates may arrive on different threads: requesting a write is synchronized.
+ * Interrupted hikes are closed on the next start by {@link HikeDataDirector#recoverUnfinishedHikes()}.
+ * The track is also kept in a {@link MappedTrackLog}, which holds every point, including those of the batch
+ * not yet written. It is deleted once the hike is finished.
+ */
+public class SessionJournal {
+
+    private static final String TAG="Journal";
+
+    /**
+     * Number of recorded points that triggers a write
+     */
+    public static final int FLUSH_POINTS=120;
+
+    /**
+     * Maximum time between writes while samples keep arriving, in milliseconds
+     */
+    public static final long FLUSH_INTERVAL_MS=30000;
+
+    private final StorageExecutor mExecutor;
+    private final HikeStore mPSE;
+    private final Hike mHike;
+    private final MappedTrackLog mTrackLog;
+
+    /**
+     * Points recorded since the last flush. Guarded by the journal: locations and sensor updates
+     * arrive on different threads
+     */
+    private List<Coordinates> mPendingPoints = new ArrayList<>(FLUSH_POINTS);
+    private long mLastFlush;
+
+    /**
+     * Sequence number of the next chunk. Only touched by the writer thread
+     */
+    private int mNextSequence=0;
+    private boolean mFinished=false;
+
+    /**
+     * Samples of the writes dropped because the hike was never inserted. Only touched by the writer thread
+     */
+    private final List<EnvSeries.Batch> mDroppedSamples = new ArrayList<>();
+
+    /**
+     * Default constructor. Use {@link HikeDataDirector#openJournal(Hike)} to obtain an instance
+     * @param executor Executor whose writer thread applies the journal
+     * @param pse Persistent Storage the hike is written to
+     * @param startedHike The hike being recorded. It receives its unique ID once inserted
+     * @param trackLog The log of the recorded points, or null if it could not be created
+     */
+    SessionJournal(StorageExecutor executor, HikeStore pse, final Hike startedHike,
+                   MappedTrackLog trackLog) {
+        mExecutor = executor;
+        mPSE = pse;
+        mHike = startedHike;
+        mTrackLog = trackLog;
+        mLastFlush = SystemClock.elapsedRealtime();
+
+        mExecutor.submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mPSE.beginSession(mHike);
+            }
+        }, null);
+    }
+
+    /**
+     * Record a new point. A write is queued once enough points or time accumulated
+     * @param point The newly recorded coordinates
+     * @param statistics The statistics, written along with the points
+     * @param steps The steps taken so far
+     */
+    public synchronized void append(Coordinates point, EnvData statistics, StepCount steps){
+        mPendingPoints.add(point);
+        if(mPendingPoints.size()>=FLUSH_POINTS){
+            flush(statistics, steps);
+        }
+        else {
+            flushIfStale(statistics, steps);
+        }
+    }
+
+    /**
+     * Queue a write if nothing was written for {@link #FLUSH_INTERVAL_MS}.
+     * Lets sensor updates reach the disk even when no location is received.
+     * @param statistics The statistics recorded so far
+     * @param steps The steps taken so far
+     */
+    public synchronized void flushIfStale(EnvData statistics, StepCount steps){
+        if(SystemClock.elapsedRealtime()-mLastFlush>=FLUSH_INTERVAL_MS){
+            flush(statistics, steps);
+        }
+    }
+
+    /**
+     * Queue a write of the pending points and the latest statistics
+     * @param statistics The statistics recorded so far
+     * @param steps The steps taken so far
+     * @return Future holding the number of chunks written
+     */
+    public synchronized Future<Integer> flush(EnvData statistics, StepCount steps){
+        //Hand over copies, recording keeps going while the writer works
+        final List<Coordinates> points = mPendingPoints;
+        final EnvData statisticsSnapshot = statistics.snapshot();
+        final StepCount stepsSnapshot = new StepCount(steps.getStepsTaken());
+        final List<EnvSeries.Batch> samples = statistics.takePendingSamples(false);
+        mPendingPoints = new ArrayList<>(FLUSH_POINTS);
+        mLastFlush = SystemClock.elapsedRealtime();
+
+        return mExecutor.submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return write(points, samples, statisticsSnapshot, stepsSnapshot);
+            }
+        }, null);
+    }
+
+    /**
+     * Queue the final write: the pending points and the finished session.
+     * The track written so far is not written again.
+     * If the hike was never inserted, the whole session is saved instead, track included.
+     * @param completedSession The session handed over by the collection. Its hike must be the journaled one
+     * @param callback Receives the success of the operation on the main thread. May be null
+     * @return Future holding the success of the operation
+     */
+    public synchronized Future<Boolean> finish(final SessionData completedSession, StorageExecutor.Callback<Boolean> callback){
+        final List<Coordinates> points = mPendingPoints;
+        mPendingPoints = new ArrayList<>(0);
+
+        return mExecutor.submitWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                if(mHike.getUniqueID()<1){
+                    Log.w(TAG, "The hike was never inserted. Saving the whole session");
+                    mFinished = mPSE.saveSession(completedSession);
+                    if(mFinished){
+                        mPSE.appendSeries(completedSession.hikeID(), mDroppedSamples);
+                        mDroppedSamples.clear();
+                        if(mTrackLog!=null){
+                            mTrackLog.delete();
+                        }
+                    }
+                    return mFinished;
+                }
+                if(!points.isEmpty()){
+                    mNextSequence += mPSE.appendTrack(mHike.getUniqueID(), mNextSequence, points);
+                }
+                mFinished = mPSE.finishSession(completedSession);
+                if(mFinished && mTrackLog!=null){
+                    //The points are in the DB, the mapping stays readable for the finished session
+                    mTrackLog.delete();
+                }
+                return mFinished;
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs on the writer thread
+     */
+    private int write(List<Coordinates> points, List<EnvSeries.Batch> samples, EnvData statistics, StepCount steps){
+        if(mFinished){
+            Log.w(TAG, "Dropping a journal write for a finished hike");
+            return 0;
+        }
+        if(mHike.getUniqueID()<1){
+            //The points are kept by the session, the samples were taken out of it
+            Log.w(TAG, "Dropping a journal write for a hike that was never inserted");
+            mDroppedSamples.addAll(samples);
+            return 0;
+        }
+        int written = mPSE.appendTrack(mHike.getUniqueID(), mNextSequence, points);
+        mNextSequence += written;
+        mPSE.appendSeries(mHike.getUniqueID(), samples);
+        mPSE.updateStatistics(mHike.getUniqueID(), statistics, steps);
+        return written;
+    }
+
+    public Hike getHike() {
+        return mHike;
+    }
+
+    /**
+     * Obtain the log of the recorded points, whose list view can back the live track
+     * @return The log, or null if it could not be created
+     */
+    public MappedTrackLog getTrackLog() {
+        return mTrackLog;
+    }
+}
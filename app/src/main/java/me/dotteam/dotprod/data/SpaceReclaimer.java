@@ -0,0 +1,86 @@
+package me.dotteam.dotprod.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Scheduler giving the pages freed by deletions back to the file system once storage is idle.
+ * Each request restarts a countdown of {@link #IDLE_DELAY_MS}. When it runs out, pages are reclaimed
+ * in small steps queued on the {@link StorageExecutor} writer thread, so writes requested in the
+ * meantime are never held up by more than one step and the UI thread never waits.
+ */
+public class SpaceReclaimer {
+
+    private static final String TAG="Reclaimer";
+
+    /**
+     * Time without a new request before reclaiming starts, in milliseconds
+     */
+    public static final long IDLE_DELAY_MS=10000;
+
+    /**
+     * Time between two steps, in milliseconds. Lets other work reach the writer thread
+     */
+    public static final long STEP_DELAY_MS=200;
+
+    /**
+     * Pages given back by each step. 128 pages are 512 KB with the default page size
+     */
+    public static final int PAGES_PER_STEP=128;
+
+    private final StorageExecutor mExecutor;
+    private final HikeStore mPSE;
+    private final Handler mMainHandler;
+
+    private final Runnable mStep = new Runnable() {
+        @Override
+        public void run() {
+            mExecutor.submitWrite(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return mPSE.reclaimSpace(PAGES_PER_STEP);
+                }
+            }, new StorageExecutor.Callback<Long>() {
+                @Override
+                public void onResult(Long freePages) {
+                    if(freePages!=null && freePages>0){
+                        mMainHandler.postDelayed(mStep, STEP_DELAY_MS);
+                    }
+                    else {
+                        Log.d(TAG, "Free pages reclaimed");
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Default constructor
+     * @param executor Executor whose writer thread runs the steps
+     * @param pse Persistent Storage to reclaim space from
+     */
+    public SpaceReclaimer(StorageExecutor executor, HikeStore pse) {
+        mExecutor = executor;
+        mPSE = pse;
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Request the free pages to be reclaimed once storage has been idle for {@link #IDLE_DELAY_MS}.
+     * Can be called from any thread
+     */
+    public void schedule(){
+        mMainHandler.removeCallbacks(mStep);
+        mMainHandler.postDelayed(mStep, IDLE_DELAY_MS);
+    }
+
+    /**
+     * Stop reclaiming. Any step already queued still runs
+     */
+    public void cancel(){
+        mMainHandler.removeCallbacks(mStep);
+    }
+}
@@ -0,0 +1,309 @@
+package me.dotteam.dotprod.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for Persistent Storage operations, so they never run on the calling (usually UI) thread.
+ * Writes go through a single thread, so they are applied in the order they were requested.
+ * Reads run on a small pool, and identical reads already in flight are coalesced into a single task.
+ * Results are delivered to {@link Callback} objects on the main thread.
+ */
+public class StorageExecutor {
+
+    /**
+     * Listener for the result of an asynchronous storage operation
+     * @param <T> Type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Method called on the main thread once the operation completes
+         * @param result The result of the operation. null if it failed
+         */
+        void onResult(T result);
+    }
+
+    private static final String TAG="StorageExec";
+
+    public static final int READER_THREADS=2;
+
+    private final ExecutorService mWriter;
+    private final ExecutorService mReaders;
+    private final Handler mMainHandler;
+
+    /**
+     * Reads currently queued or running, by key
+     */
+    private final Map<Object,StorageTask<?>> mInFlightReads = new HashMap<>();
+
+    /**
+     * Default constructor
+     */
+    public StorageExecutor() {
+        mWriter = Executors.newSingleThreadExecutor(new NamedThreadFactory("HikeStorageWriter"));
+        mReaders = Executors.newFixedThreadPool(READER_THREADS, new NamedThreadFactory("HikeStorageReader"));
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Queue an operation that modifies Persistent Storage
+     * @param operation The operation to run
+     * @param callback Listener for the result. May be null
+     * @return Future that can be used to wait for the result off the main thread
+     */
+    public <T> Future<T> submitWrite(Callable<T> operation, Callback<T> callback){
+        StorageTask<T> task = new StorageTask<>(null, operation);
+        task.addCallback(callback);
+        mWriter.execute(task);
+        return task;
+    }
+
+    /**
+     * Queue an operation that only reads Persistent Storage
+     * @param operation The operation to run
+     * @param callback Listener for the result. May be null
+     * @return Future that can be used to wait for the result off the main thread
+     */
+    public <T> Future<T> submitRead(Callable<T> operation, Callback<T> callback){
+        StorageTask<T> task = new StorageTask<>(null, operation);
+        task.addCallback(callback);
+        mReaders.execute(task);
+        return task;
+    }
+
+    /**
+     * Queue a read identified by a key. If a read with the same key is already in flight,
+     * no new operation is queued and the callback receives the result of the existing one.
+     * Every caller gets a Future of its own: cancelling it only drops that caller, and the shared
+     * read is cancelled once all of its callers have cancelled.
+     * @param key Identifies the read, for example the hike ID being loaded
+     * @param operation The operation to run
+     * @param callback Listener for the result. May be null
+     * @return Future that can be used to wait for the result off the main thread
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> submitRead(Object key, Callable<T> operation, Callback<T> callback){
+        StorageTask<T> task;
+        boolean isNew = false;
+        synchronized (mInFlightReads){
+            task = (StorageTask<T>) mInFlightReads.get(key);
+            if(task==null || !task.addCaller(callback)){
+                task = new StorageTask<>(key, operation);
+                task.addCaller(callback);
+                mInFlightReads.put(key, task);
+                isNew = true;
+            }
+        }
+        if(isNew){
+            mReaders.execute(task);
+        }
+        return new SharedRead<>(task, callback);
+    }
+
+    /**
+     * Stop accepting operations. Those already queued still complete
+     */
+    public void shutdown(){
+        mWriter.shutdown();
+        mReaders.shutdown();
+    }
+
+    /**
+     * Task that remembers its listeners and hands them the result on the main thread
+     */
+    private class StorageTask<T> extends FutureTask<T> {
+        private final Object mKey;
+        private final List<Callback<T>> mCallbacks = new ArrayList<>(1);
+        private boolean mDelivered = false;
+
+        /**
+         * Callers of a keyed read that have not cancelled
+         */
+        private int mCallers = 0;
+
+        /**
+         * Every caller cancelled: the read is about to be cancelled and takes no new callers
+         */
+        private boolean mAbandoned = false;
+
+        StorageTask(Object key, Callable<T> operation) {
+            super(operation);
+            mKey = key;
+        }
+
+        /**
+         * @return False if the result was already delivered and the callback was not added
+         */
+        synchronized boolean addCallback(Callback<T> callback){
+            if(mDelivered){
+                return false;
+            }
+            if(callback!=null){
+                mCallbacks.add(callback);
+            }
+            return true;
+        }
+
+        /**
+         * Add a caller to a keyed read
+         * @return False if the read is already delivered or cancelled and the caller was not added
+         */
+        synchronized boolean addCaller(Callback<T> callback){
+            if(mAbandoned || isCancelled() || !addCallback(callback)){
+                return false;
+            }
+            ++mCallers;
+            return true;
+        }
+
+        /**
+         * Remove a caller that cancelled. Once the last one is removed the read takes no new callers,
+         * and must be cancelled by the caller, outside of the lock of the task:
+         * cancelling runs {@link #done()}, which locks the reads in flight
+         * @param callback The callback the caller was added with
+         * @return True if it was the last caller
+         */
+        synchronized boolean removeCaller(Callback<T> callback){
+            if(callback!=null){
+                mCallbacks.remove(callback);
+            }
+            if(--mCallers==0){
+                mAbandoned = true;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void done() {
+            if(mKey!=null){
+                synchronized (mInFlightReads){
+                    if(mInFlightReads.get(mKey)==this){
+                        mInFlightReads.remove(mKey);
+                    }
+                }
+            }
+
+            T result = null;
+            try {
+                result = get();
+            }
+            catch (Exception e){
+                Log.e(TAG, "Storage operation failed", e);
+            }
+
+            final List<Callback<T>> callbacks;
+            synchronized (this){
+                mDelivered = true;
+                callbacks = new ArrayList<>(mCallbacks);
+            }
+            if(callbacks.isEmpty()){
+                return;
+            }
+
+            final T finalResult = result;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Callback<T> callback : callbacks) {
+                        callback.onResult(finalResult);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Future of one caller of a keyed read, which may share its {@link StorageTask} with others
+     */
+    private static class SharedRead<T> implements Future<T> {
+        private final StorageTask<T> mTask;
+        private final Callback<T> mCallback;
+        private boolean mCancelled = false;
+
+        SharedRead(StorageTask<T> task, Callback<T> callback) {
+            mTask = task;
+            mCallback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean wasLast;
+            synchronized (mTask){
+                if(mCancelled || mTask.isDone()){
+                    return false;
+                }
+                mCancelled = true;
+                wasLast = mTask.removeCaller(mCallback);
+            }
+            if(wasLast){
+                mTask.cancel(mayInterruptIfRunning);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (mTask){
+                return mCancelled;
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return isCancelled() || mTask.isDone();
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            if(isCancelled()){
+                throw new CancellationException();
+            }
+            return mTask.get();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if(isCancelled()){
+                throw new CancellationException();
+            }
+            return mTask.get(timeout, unit);
+        }
+    }
+
+    /**
+     * Names the storage threads so they are easy to spot when profiling
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.getAndIncrement());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
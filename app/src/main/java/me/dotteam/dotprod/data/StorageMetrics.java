@@ -0,0 +1,275 @@
+package me.dotteam.dotprod.data;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the metrics of the storage layer: the latency of every operation, the rows and bytes it
+ * read and wrote, and the hit rate of the session cache.
+ * Operations are timed by {@link InstrumentedHikeStore}. Bytes are counted where blobs are encoded and decoded,
+ * and attributed to the operation running on the same thread.
+ * Nothing is measured while the registry is disabled, which is the default, so it costs a single volatile read.
+ */
+public class StorageMetrics {
+
+    private static final String TAG="StorageMetrics";
+
+    private static StorageMetrics mInstance;
+
+    /**
+     * Bytes read and written by the operation running on each thread
+     */
+    private static final ThreadLocal<long[]> sThreadBytes = new ThreadLocal<long[]>(){
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    private volatile boolean mEnabled;
+    private volatile long mSince = System.currentTimeMillis();
+    private final Map<String, Operation> mOperations = new TreeMap<>();
+
+    private SessionCache mCache;
+    private long mCacheHitsBase;
+    private long mCacheMissesBase;
+
+    /**
+     * Metrics of a single operation of the store
+     */
+    public static class Operation {
+
+        private final String mName;
+        private final LatencyHistogram mLatency = new LatencyHistogram();
+        private final AtomicLong mRowsRead = new AtomicLong();
+        private final AtomicLong mRowsWritten = new AtomicLong();
+        private final AtomicLong mBytesRead = new AtomicLong();
+        private final AtomicLong mBytesWritten = new AtomicLong();
+
+        Operation(String name) {
+            mName = name;
+        }
+
+        /**
+         * Record a call of the operation that just returned
+         * @param start Value returned by {@link StorageMetrics#start()} before the call
+         * @param rowsRead Hikes, points or samples read by the call
+         * @param rowsWritten Hikes, points or samples written by the call
+         */
+        public void record(long start, long rowsRead, long rowsWritten){
+            mLatency.record(System.nanoTime() - start);
+            mRowsRead.addAndGet(rowsRead);
+            mRowsWritten.addAndGet(rowsWritten);
+            long[] bytes = sThreadBytes.get();
+            mBytesRead.addAndGet(bytes[0]);
+            mBytesWritten.addAndGet(bytes[1]);
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public LatencyHistogram getLatency() {
+            return mLatency;
+        }
+
+        public long getRowsRead() {
+            return mRowsRead.get();
+        }
+
+        public long getRowsWritten() {
+            return mRowsWritten.get();
+        }
+
+        public long getBytesRead() {
+            return mBytesRead.get();
+        }
+
+        public long getBytesWritten() {
+            return mBytesWritten.get();
+        }
+
+        void reset(){
+            mLatency.reset();
+            mRowsRead.set(0);
+            mRowsWritten.set(0);
+            mBytesRead.set(0);
+            mBytesWritten.set(0);
+        }
+    }
+
+    /**
+     * Static method to obtain the registry of the application
+     * @return Reference to the StorageMetrics instance
+     */
+    public static synchronized StorageMetrics getInstance(){
+        if(mInstance==null){
+            mInstance = new StorageMetrics();
+        }
+        return mInstance;
+    }
+
+    /**
+     * Constructor of a registry of its own, such as in tests. The application should use {@link #getInstance()}
+     */
+    public StorageMetrics() {
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Start or stop measuring. The metrics gathered so far are kept
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Obtain the metrics of an operation, registering it the first time
+     * @param name Name of the operation, such as the method of the store
+     */
+    public synchronized Operation operation(String name){
+        Operation operation = mOperations.get(name);
+        if(operation==null){
+            operation = new Operation(name);
+            mOperations.put(name, operation);
+        }
+        return operation;
+    }
+
+    /**
+     * @return The metrics of every registered operation, by name
+     */
+    public synchronized List<Operation> getOperations(){
+        return new ArrayList<>(mOperations.values());
+    }
+
+    /**
+     * Report the hit rate of a session cache along with the operations
+     * @param cache The cache, or null to stop reporting one
+     */
+    public synchronized void watchCache(SessionCache cache){
+        mCache = cache;
+        mCacheHitsBase = cache!=null ? cache.getHits() : 0;
+        mCacheMissesBase = cache!=null ? cache.getMisses() : 0;
+    }
+
+    /**
+     * @return Hits of the watched cache since the metrics were reset
+     */
+    public synchronized long getCacheHits(){
+        return mCache!=null ? mCache.getHits() - mCacheHitsBase : 0;
+    }
+
+    /**
+     * @return Misses of the watched cache since the metrics were reset
+     */
+    public synchronized long getCacheMisses(){
+        return mCache!=null ? mCache.getMisses() - mCacheMissesBase : 0;
+    }
+
+    /**
+     * Mark the start of a timed call on this thread
+     * @return The start time, to give to {@link Operation#record(long, long, long)}
+     */
+    public long start(){
+        long[] bytes = sThreadBytes.get();
+        bytes[0] = 0;
+        bytes[1] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Count bytes read from storage by the operation running on this thread
+     */
+    public static void countBytesRead(long bytes){
+        StorageMetrics metrics = mInstance;
+        if(metrics!=null && metrics.mEnabled){
+            sThreadBytes.get()[0] += bytes;
+        }
+    }
+
+    /**
+     * Count bytes written to storage by the operation running on this thread
+     */
+    public static void countBytesWritten(long bytes){
+        StorageMetrics metrics = mInstance;
+        if(metrics!=null && metrics.mEnabled){
+            sThreadBytes.get()[1] += bytes;
+        }
+    }
+
+    /**
+     * Forget every metric gathered so far
+     */
+    public synchronized void reset(){
+        for (Operation operation : mOperations.values()) {
+            operation.reset();
+        }
+        watchCache(mCache);
+        mSince = System.currentTimeMillis();
+    }
+
+    /**
+     * Write every metric as a table, one operation per line
+     * @param out Destination of the metrics. Not closed
+     * @throws IOException If the metrics could not be written
+     */
+    public void dump(Writer out) throws IOException {
+        out.write(String.format("Storage metrics since %s%s\n", new Date(mSince), mEnabled ? "" : " (disabled)"));
+        out.write(String.format("%-20s %8s %9s %9s %9s %9s %9s %10s %10s %11s %11s\n",
+                "operation", "calls", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "rows in", "rows out", "bytes in", "bytes out"));
+        for (Operation operation : getOperations()) {
+            LatencyHistogram latency = operation.getLatency();
+            if(latency.getCount()==0){
+                continue;
+            }
+            out.write(String.format("%-20s %8d %9.3f %9.3f %9.3f %9.3f %9.3f %10d %10d %11d %11d\n",
+                    operation.getName(),
+                    latency.getCount(),
+                    toMillis(latency.getMean()),
+                    toMillis(latency.getPercentile(50)),
+                    toMillis(latency.getPercentile(90)),
+                    toMillis(latency.getPercentile(99)),
+                    toMillis(latency.getMax()),
+                    operation.getRowsRead(),
+                    operation.getRowsWritten(),
+                    operation.getBytesRead(),
+                    operation.getBytesWritten()));
+        }
+
+        long hits = getCacheHits();
+        long misses = getCacheMisses();
+        if(hits + misses>0){
+            out.write(String.format("Session cache: %d hits, %d misses, %.1f%% hit rate\n",
+                    hits, misses, 100.0*hits/(hits + misses)));
+        }
+        out.flush();
+    }
+
+    private static double toMillis(long nanos){
+        return nanos/(double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public String toString(){
+        StringWriter out = new StringWriter();
+        try {
+            dump(out);
+        }
+        catch (IOException e){
+            //Not thrown by a StringWriter
+        }
+        return out.toString();
+    }
+}
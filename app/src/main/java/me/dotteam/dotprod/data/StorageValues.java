@@ -0,0 +1,99 @@
+package me.dotteam.dotprod.data;
+
+import android.content.ContentValues;
+
+/**
+ * Conversion of the hike-core data structures into the rows written to Persistent Storage.
+ * The data structures themselves know nothing about Android or the database columns
+ */
+public final class StorageValues {
+
+    private StorageValues(){}
+
+    /**
+     * Method to obtain an object representing the Hike Session instance to be used for storage
+     * @return ContentValues object with correct Key (String) to Value pairings
+     */
+    public static ContentValues of(Hike hike) {
+        ContentValues retVal = new ContentValues();
+        retVal.put(DBAssistant.HIKE_START,hike.startTime());
+        retVal.put(DBAssistant.HIKE_END,hike.endTime());
+        return retVal;
+    }
+
+    /**
+     * Method to obtain the nickname of a Hike to be used for storage
+     * @return ContentValues object with correct Key (String) to Value pairings
+     */
+    public static ContentValues nameOf(Hike hike){
+        ContentValues retVal = new ContentValues(2);
+        retVal.put(DBAssistant.HIKE_ID,hike.getUniqueID());
+        retVal.put(DBAssistant.NICKNAME,hike.getNickName());
+        return retVal;
+    }
+
+    /**
+     * Method to obtain an object representing the Coordinates instance to be used for storage
+     * @param ID The hike the point belongs to
+     * @return ContentValues object with correct Key (String) to Value pairings
+     */
+    public static ContentValues of(Coordinates point, int ID) {
+        ContentValues retVal = new ContentValues();
+        retVal.put(DBAssistant.HIKE_ID,ID);
+        retVal.put(DBAssistant.LONG_COL,point.getLongitude());
+        retVal.put(DBAssistant.LAT_COL,point.getLatitude());
+        retVal.put(DBAssistant.ALT_COL,point.getAltitude());
+        return retVal;
+    }
+
+    /**
+     * Method to obtain the object of the Environmental Statistic to be used for storage
+     * @param ID The hike the statistic belongs to
+     * @return ContentValues object with correct key-value pairs
+     */
+    public static ContentValues of(EnvStatistic statistic, int ID) {
+        ContentValues retVal = new ContentValues();
+        retVal.put(DBAssistant.HIKE_ID,ID);
+        retVal.put(DBAssistant.MIN_COL,statistic.getMin());
+        retVal.put(DBAssistant.AVG_COL,statistic.getAvg());
+        retVal.put(DBAssistant.MAX_COL,statistic.getMax());
+        return retVal;
+    }
+
+    /**
+     * @param ID The hike the steps were taken in
+     * @return ContentValues object with correct key-value pairs
+     */
+    public static ContentValues of(StepCount steps, int ID){
+        ContentValues retVal = new ContentValues();
+        retVal.put(DBAssistant.HIKE_ID,ID);
+        retVal.put(DBAssistant.STEP_COUNT,steps.getStepsTaken());
+        return retVal;
+    }
+
+    /**
+     * Method to obtain the object of the summary to be used for storage
+     * @param ID The hike the summary belongs to
+     * @return ContentValues object with correct key-value pairs
+     */
+    public static ContentValues of(HikeSummary summary, int ID) {
+        ContentValues retVal = new ContentValues();
+        retVal.put(DBAssistant.HIKE_ID,ID);
+        retVal.put(DBAssistant.POINT_COUNT_COL,summary.getPointCount());
+        retVal.put(DBAssistant.DISTANCE_COL,summary.getDistance());
+        retVal.put(DBAssistant.GAIN_COL,summary.getElevationGain());
+        retVal.put(DBAssistant.LOSS_COL,summary.getElevationLoss());
+        //Without points there are no bounds. The columns stay NULL
+        if(summary.getPointCount()>0) {
+            retVal.put(DBAssistant.MIN_ALT_COL, summary.getMinAltitude());
+            retVal.put(DBAssistant.MAX_ALT_COL, summary.getMaxAltitude());
+            retVal.put(DBAssistant.MIN_LAT_COL, summary.getMinLatitude());
+            retVal.put(DBAssistant.MAX_LAT_COL, summary.getMaxLatitude());
+            retVal.put(DBAssistant.MIN_LONG_COL, summary.getMinLongitude());
+            retVal.put(DBAssistant.MAX_LONG_COL, summary.getMaxLongitude());
+        }
+        retVal.put(DBAssistant.MOVING_TIME_COL,summary.getMovingTime());
+        retVal.put(DBAssistant.PACE_COL,summary.getAveragePace());
+        return retVal;
+    }
+}
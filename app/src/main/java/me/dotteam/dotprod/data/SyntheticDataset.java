@@ -0,0 +1,160 @@
+package me.dotteam.dotprod.data;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filler of a store with {@link SyntheticHike}s, for scale and load testing.
+ * Hikes are written the same way {@link GpxImporter} writes them: through the journal, in transactions of
+ * {@link GpxImporter#BATCH_POINTS}, with the summary and spatial index computed on the way, so no hike
+ * is ever held in memory whatever its size. Hike k of a dataset is generated from seed + k and starts
+ * k days after {@link SyntheticHike#START_TIME}, so the same seed always gives the same dataset.
+ */
+public class SyntheticDataset {
+
+    private static final String TAG="SyntheticDataset";
+
+    /**
+     * Time between the start of two hikes of a dataset
+     */
+    public static final long HIKE_SPACING=TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Interface definition for the callbacks of a generation, called on the generating thread
+     */
+    public interface Listener {
+
+        /**
+         * Method called after every batch of points written
+         * @param pointsWritten Points of the dataset written so far
+         * @param totalPoints Points of the whole dataset
+         */
+        void onProgress(long pointsWritten, long totalPoints);
+
+        /**
+         * Method called once a hike is completely written
+         * @param hikeID The hike_id given to the hike
+         * @param pointCount Number of points of the hike
+         */
+        void onHikeGenerated(int hikeID, long pointCount);
+    }
+
+    private final HikeStore mPSE;
+    private volatile boolean mCancelled;
+
+    /**
+     * Default constructor
+     * @param pse Store to write the hikes to
+     */
+    public SyntheticDataset(HikeStore pse) {
+        mPSE = pse;
+    }
+
+    /**
+     * Stop the generation. The hike being written is discarded, those already written are kept.
+     * Interrupting the generating thread has the same effect. Can be called from any thread
+     */
+    public void cancel(){
+        mCancelled = true;
+    }
+
+    public boolean isCancelled(){
+        return mCancelled;
+    }
+
+    /**
+     * Write a whole dataset
+     * @param hikeCount Number of hikes
+     * @param pointCount Number of points of every hike
+     * @param seed Seed of the dataset
+     * @param listener Receiver of the progress. May be null
+     * @return The hike_id of every hike written, in generation order
+     */
+    public List<Integer> fill(int hikeCount, int pointCount, long seed, Listener listener){
+        List<Integer> generated = new ArrayList<>(hikeCount);
+        long totalPoints = (long) hikeCount*pointCount;
+        long start = System.currentTimeMillis();
+        for (int k = 0; k < hikeCount && !isStopped(); k++) {
+            SyntheticHike hike = new SyntheticHike(seed + k, SyntheticHike.START_TIME + k*HIKE_SPACING);
+            int hikeID = write(hike, pointCount, (long) k*pointCount, totalPoints, listener);
+            if(hikeID>0){
+                generated.add(hikeID);
+                if(listener!=null){
+                    listener.onHikeGenerated(hikeID, pointCount);
+                }
+            }
+        }
+        Log.d(TAG, "Generated " + generated.size() + " hikes of " + pointCount + " points in "
+                + (System.currentTimeMillis() - start) + " ms" + (mCancelled ? ", cancelled" : ""));
+        return generated;
+    }
+
+    /**
+     * Write one hike
+     * @param hike The generator of the hike, with no point generated yet
+     * @param pointCount Number of points of the hike
+     * @return The hike_id given to the hike, or -1 if it was not written
+     */
+    public int write(SyntheticHike hike, int pointCount){
+        return write(hike, pointCount, 0, pointCount, null);
+    }
+
+    private int write(SyntheticHike hike, int pointCount, long pointsBefore, long totalPoints, Listener listener){
+        Hike openHike = new Hike(-1, hike.getStartTime(), -1);
+        openHike.setNickName(String.format("Synthetic %tF", hike.getStartTime()));
+        if(mPSE.beginSession(openHike)<1){
+            Log.e(TAG, "Could not insert a synthetic hike");
+            return -1;
+        }
+        int hikeID = openHike.getUniqueID();
+
+        boolean finished = false;
+        try {
+            HikeSummary summary = new HikeSummary();
+            HikeCellIndex cells = new HikeCellIndex();
+            List<Coordinates> batch = new ArrayList<>(GpxImporter.BATCH_POINTS);
+            int nextSequence = 0;
+            while (hike.getPointCount()<pointCount){
+                if(isStopped()){
+                    return -1;
+                }
+                hike.nextPoints(Math.min(GpxImporter.BATCH_POINTS, pointCount - hike.getPointCount()), batch);
+                nextSequence += mPSE.appendTrack(hikeID, nextSequence, batch);
+                mPSE.appendSeries(hikeID, hike.getStatistics().takePendingSamples(false));
+                summary.addPoints(batch);
+                cells.addPoints(batch);
+                batch.clear();
+                if(listener!=null){
+                    listener.onProgress(pointsBefore + hike.getPointCount(), totalPoints);
+                }
+            }
+
+            Hike finishedHike = hike.toHike();
+            finishedHike.setUniqueID(hikeID);
+            finishedHike.setNickName(openHike.getNickName());
+            //The samples still pending are written when the session is finished
+            SessionData session = new SessionData(finishedHike, hike.getStepCount(), hike.getStatistics(),
+                    new LocationPoints());
+            session.setSummary(summary);
+            finished = mPSE.finishSession(session, cells);
+            return finished ? hikeID : -1;
+        }
+        finally {
+            if(!finished){
+                mPSE.deleteHikes(Collections.singletonList(hikeID));
+                Log.w(TAG, "Discarded the unfinished synthetic hike " + hikeID);
+            }
+        }
+    }
+
+    private boolean isStopped(){
+        if(mCancelled || Thread.currentThread().isInterrupted()){
+            mCancelled = true;
+        }
+        return mCancelled;
+    }
+}
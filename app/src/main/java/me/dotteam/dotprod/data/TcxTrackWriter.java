@@ -0,0 +1,102 @@
+package me.dotteam.dotprod.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of Training Center (TCX) documents, with one Activity of a single Lap per hike.
+ * The lap totals come from the stored {@link HikeSummary}, so they are known before the points are written.
+ * Every Trackpoint needs a time: points recorded before timestamps were kept are spread evenly over the hike.
+ */
+public class TcxTrackWriter extends TrackFormatWriter {
+
+    public static final String TCX_NAMESPACE="http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2";
+
+    private String mNotes;
+    private long mStartTime;
+    private long mDuration;
+    private int mPointCount;
+    private int mPointIndex;
+    private boolean mTrackOpen;
+
+    /**
+     * Default constructor
+     * @param out Destination of the document. Should be buffered, as it is written a few characters at a time
+     */
+    public TcxTrackWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void beginDocument() throws IOException {
+        mOut.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        mOut.write("<TrainingCenterDatabase xmlns=\"" + TCX_NAMESPACE + "\">\n<Activities>\n");
+    }
+
+    @Override
+    public void beginTrack(SessionData session) throws IOException {
+        HikeSummary summary = session.getSummary();
+        long duration = session.hikeEndTime() - session.hikeStartTime();
+        mNotes = nameOf(session);
+        mStartTime = session.hikeStartTime();
+        mDuration = Math.max(duration, 0);
+        mPointCount = session.getPointCount();
+        mPointIndex = 0;
+        mTrackOpen = false;
+
+        mOut.write("<Activity Sport=\"Other\">\n<Id>");
+        writeTime(session.hikeStartTime());
+        mOut.write("</Id>\n<Lap StartTime=\"");
+        writeTime(session.hikeStartTime());
+        mOut.write("\">\n<TotalTimeSeconds>");
+        writeDecimal(Math.max(duration, 0)/1000.0, 1);
+        mOut.write("</TotalTimeSeconds>\n<DistanceMeters>");
+        writeDecimal(summary!=null ? summary.getDistance() : 0, METRE_DIGITS);
+        mOut.write("</DistanceMeters>\n<Calories>0</Calories>\n<Intensity>Active</Intensity>\n"
+                + "<TriggerMethod>Manual</TriggerMethod>\n");
+    }
+
+    @Override
+    public boolean writePoint(Coordinates point) throws IOException {
+        int index = mPointIndex++;
+        //Time is required for a Trackpoint. Without a point count, untimed points cannot be placed in the hike
+        long time = point.getTime();
+        if(time<=0){
+            if(index>=mPointCount){
+                return false;
+            }
+            time = mStartTime + (mPointCount>1 ? mDuration*index/(mPointCount - 1) : 0);
+        }
+        //A Track needs at least one Trackpoint, so it is only opened once there is one
+        if(!mTrackOpen){
+            mOut.write("<Track>\n");
+            mTrackOpen = true;
+        }
+        mOut.write("<Trackpoint><Time>");
+        writeTime(time);
+        mOut.write("</Time><Position><LatitudeDegrees>");
+        writeDecimal(point.getLatitude(), COORDINATE_DIGITS);
+        mOut.write("</LatitudeDegrees><LongitudeDegrees>");
+        writeDecimal(point.getLongitude(), COORDINATE_DIGITS);
+        mOut.write("</LongitudeDegrees></Position><AltitudeMeters>");
+        writeDecimal(point.getAltitude(), METRE_DIGITS);
+        mOut.write("</AltitudeMeters></Trackpoint>\n");
+        return true;
+    }
+
+    @Override
+    public void endTrack() throws IOException {
+        if(mTrackOpen){
+            mOut.write("</Track>\n");
+        }
+        mOut.write("</Lap>\n<Notes>");
+        writeEscaped(mNotes);
+        mOut.write("</Notes>\n</Activity>\n");
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        mOut.write("</Activities>\n</TrainingCenterDatabase>\n");
+        mOut.flush();
+    }
+}
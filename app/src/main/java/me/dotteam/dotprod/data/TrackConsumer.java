@@ -0,0 +1,32 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * Receiver of the stored tracks, streamed by {@link HikeStore#forEachTrack(TrackConsumer)}.
+ * Hikes arrive in hike_id order and the points of each hike in recorded order, a chunk at a time.
+ * The point list handed over is reused for the next chunk: copy or reduce what must be kept
+ * (a thumbnail, a statistic) instead of keeping the list, so memory stays bounded by a single chunk.
+ */
+public interface TrackConsumer {
+
+    /**
+     * Method called before the first chunk of a hike
+     * @param hikeID The hike_id of the track
+     */
+    void onTrackStart(int hikeID);
+
+    /**
+     * Method called for every chunk of a hike
+     * @param hikeID The hike_id of the track
+     * @param points The points of the chunk, at most {@link TrackChunk#MAX_POINTS}. Only valid during the call
+     * @return True to keep streaming, false to stop after this chunk
+     */
+    boolean onPoints(int hikeID, List<Coordinates> points);
+
+    /**
+     * Method called after the last chunk of a hike, also when streaming is stopped
+     * @param hikeID The hike_id of the track
+     */
+    void onTrackEnd(int hikeID);
+}
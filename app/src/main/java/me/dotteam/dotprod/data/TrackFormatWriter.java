@@ -0,0 +1,149 @@
+package me.dotteam.dotprod.data;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Base of the writers turning hikes into a track exchange format, such as GPX or TCX.
+ * Points are written to the {@link Writer} as they are handed over and never kept,
+ * so a document of any length is written in constant memory.
+ * Numbers and times are written digit by digit to avoid formatting a String for every point.
+ */
+public abstract class TrackFormatWriter {
+
+    /**
+     * Digits written after the decimal point of a latitude or longitude, the precision of the stored track
+     */
+    protected static final int COORDINATE_DIGITS=7;
+
+    /**
+     * Digits written after the decimal point of an altitude or a distance
+     */
+    protected static final int METRE_DIGITS=2;
+
+    protected final Writer mOut;
+
+    private final Calendar mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private final char[] mDigits = new char[20];
+
+    /**
+     * Default constructor
+     * @param out Destination of the document. Should be buffered, as it is written a few characters at a time
+     */
+    protected TrackFormatWriter(Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * Write what comes before the first hike
+     */
+    public abstract void beginDocument() throws IOException;
+
+    /**
+     * Write what comes before the points of a hike
+     * @param session The hike, its statistics and summary. Its points are not read
+     */
+    public abstract void beginTrack(SessionData session) throws IOException;
+
+    /**
+     * Write a point of the hike currently open
+     * @return False if the format could not hold the point and it was left out
+     */
+    public abstract boolean writePoint(Coordinates point) throws IOException;
+
+    /**
+     * Write what comes after the points of a hike
+     */
+    public abstract void endTrack() throws IOException;
+
+    /**
+     * Write what comes after the last hike and flush the destination
+     */
+    public abstract void endDocument() throws IOException;
+
+    /**
+     * Name of a hike: its nickname, or its hike_id when it has none
+     */
+    protected static String nameOf(SessionData session){
+        String nickName = session.hikeNickName();
+        if(nickName!=null && !nickName.isEmpty()){
+            return nickName;
+        }
+        return "Hike " + session.hikeID();
+    }
+
+    /**
+     * Write a number in fixed notation, as XML Schema decimals do not allow exponents
+     * @param value The number to write
+     * @param fractionDigits Digits written after the decimal point, rounded
+     */
+    protected void writeDecimal(double value, int fractionDigits) throws IOException {
+        long scale = 1;
+        for (int i = 0; i < fractionDigits; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value)*scale);
+        if(value<0 && scaled>0){
+            mOut.write('-');
+        }
+        writeLong(scaled/scale, 1);
+        if(fractionDigits>0){
+            mOut.write('.');
+            writeLong(scaled%scale, fractionDigits);
+        }
+    }
+
+    /**
+     * Write a positive number, padded with leading zeros
+     * @param value The number to write
+     * @param minDigits Minimum number of digits written
+     */
+    protected void writeLong(long value, int minDigits) throws IOException {
+        int position = mDigits.length;
+        do {
+            mDigits[--position] = (char)('0' + value%10);
+            value /= 10;
+            minDigits--;
+        } while (value>0 || minDigits>0);
+        mOut.write(mDigits, position, mDigits.length - position);
+    }
+
+    /**
+     * Write a time as an ISO 8601 UTC date and time, such as 2015-11-08T16:06:00Z
+     * @param time Milliseconds since epoch
+     */
+    protected void writeTime(long time) throws IOException {
+        mCalendar.setTimeInMillis(time);
+        writeLong(mCalendar.get(Calendar.YEAR), 4);
+        mOut.write('-');
+        writeLong(mCalendar.get(Calendar.MONTH) + 1, 2);
+        mOut.write('-');
+        writeLong(mCalendar.get(Calendar.DAY_OF_MONTH), 2);
+        mOut.write('T');
+        writeLong(mCalendar.get(Calendar.HOUR_OF_DAY), 2);
+        mOut.write(':');
+        writeLong(mCalendar.get(Calendar.MINUTE), 2);
+        mOut.write(':');
+        writeLong(mCalendar.get(Calendar.SECOND), 2);
+        mOut.write('Z');
+    }
+
+    /**
+     * Write text content or an attribute value, escaping the characters XML reserves
+     */
+    protected void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c){
+                case '<': mOut.write("&lt;"); break;
+                case '>': mOut.write("&gt;"); break;
+                case '&': mOut.write("&amp;"); break;
+                case '"': mOut.write("&quot;"); break;
+                case '\'': mOut.write("&apos;"); break;
+                default: mOut.write(c);
+            }
+        }
+    }
+}
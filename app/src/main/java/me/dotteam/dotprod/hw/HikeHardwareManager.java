@@ -504,166 +504,26 @@ public class HikeHardwareManager implements SensorTagConnector.STConnectorListen
      */
     public class AccelerometerAsPedometerListener implements SensorEventListener{
 
-        /**
-         * ELEC390 and COEN390: TI SensorTag Library for Android
-         * Author: Marc-Alexandre Chan marcalexc@arenthil.net
-         *     Modified by: Javier E. Fajardo foxtrotzulu94@gmail.com
-         * Institution: Concordia University
-         */
-
-        public final static int ACC_EVENT_COOLDOWN_MS = 500;
-
-        /** High pass filter time constant. */
-        public final static int ACC_FILTER_TAU_MS = 50;
+        private static final int SENSOR_UPDATE_PERIOD = 200;
 
-        /** Acceleration magnitude threshold. A "shake" is detected if the magnitude of the acceleration
-         * vector, after filtering, is above this value. */
-        public final static double ACC_THRESHOLD = 0.8;
+        private StepDetector mStepDetector = new StepDetector(SENSOR_UPDATE_PERIOD);
 
-        /** Previous acceleration value. */
-        private float[] mLastAcc = null;
-
-        /** Previous acceleration output value of the high-pass filter. */
-        private float[] mLastFiltAcc = null;
         /**
-         * When this value is less than ACC_EVENT_COOLDOWN_MS, we are in cooldown mode and do not detect
-         * acceleration shake events. This is set to 0 whenever an event is detected, and incremented by
-         * the sample period at every new sample received while in cooldown mode. When this value is
-         * equal to or greater than ACC_EVENT_COOLDOWN_MS, we are in normal detection mode.
-         */
-        private int mCooldownCounterMs = ACC_EVENT_COOLDOWN_MS;
-        private int SensorUpdatePeriod = 200;
-
-        private double stepsTaken=0;
-
-        private double normalizedValue=0.0f;
-
-        private final static double EPSILON = 0.00001;
-
-
-        /**
-         * This method filters the accelerometer values according to M.A. Chan's Code
+         * This method filters the accelerometer values according to M.A. Chan's Code,
+         * see {@link StepDetector}
          */
         @Override
         public void onSensorChanged(SensorEvent event) {
-            if (mLastAcc == null) {
-                
-                Log.d(TAG, "onSensorChanged First try");
-                mLastAcc = new float[3];
-                System.arraycopy(event.values, 0, mLastAcc, 0, event.values.length);
-                mLastFiltAcc = new float[]{0,0,0};
-            }
-
-            // Apply the high-pass filter.
-            mLastFiltAcc = applyFilter(SensorUpdatePeriod, event.values, mLastAcc, mLastFiltAcc);
-            System.arraycopy(event.values, 0, mLastAcc, 0, event.values.length);
-
-            // If the cooldown timer is already expired, we can try and detect a shake
-            if (mCooldownCounterMs >= ACC_EVENT_COOLDOWN_MS) {
-
-                // if the magnitude of the acceleration exceeds the shake threshold
-                normalizedValue=(magnitude(mLastFiltAcc));
-
-                if (normalizedValue > ACC_THRESHOLD) {
-                    Log.d(TAG, "Accelerometer shake detected");
-                    // reset/start the cooldown timer
-                    mCooldownCounterMs=0;
-                    stepsTaken+=1;
-                    broadcastUpdate(SensorListenerInterface.HikeSensors.PEDOMETER, stepsTaken);
-                }
-
+            if (mStepDetector.onAcceleration(event.values)) {
+                Log.d(TAG, "Accelerometer shake detected");
+                broadcastUpdate(SensorListenerInterface.HikeSensors.PEDOMETER, mStepDetector.getStepsTaken());
             }
-            else{
-                mCooldownCounterMs +=SensorUpdatePeriod;
-            }
-
-        }
-        private float[] applyFilter(long samplePeriodMs, float[] newInput, float[] prevInput,
-                                    float[] prevOutput) {
-		/**
-		 * The accelerometer always detects a 1.0g gravity component, but we don't know what the
-		 * SensorTag's orientation is so we don't necessarily know which direction the gravity
-		 * component is.
-		 *
-		 * We can assume that it is slow moving (the user won't be rotating the SensorTag very
-		 * quickly ... or if they do we can detect that as a "shake" anyway!). A high-pass filter
-		 * will therefore remove the acceleration element and allow us to only capture faster
-		 * events.
-		 *
-		 * The implementation here is a simple first-order high-pass filter:
-		 *
-		 * H(s) = (s RC) / (1 + s RC)
-		 *
-		 * where RC is the time constant the cutoff frequency is f_c = 1/(2*pi*RC).
-		 *
-		 * By applying the bilinear transformation we can get a discrete time implementation of this
-		 * filter, expressed here in the time domain:
-		 *
-		 * y[n] := k * (y[n-1] + x[n] - x[n-1])
-		 *
-		 * where x[n] is the filter input signal, y[n] is the output signal, n is the sample index,
-		 * and k is an arbitrary real constant which is related to the time constant. The system
-		 * time constant tau is equal to:
-		 *
-		 * tau = T k / (1 - k)
-		 *
-		 * where T is the sample period of the signal in seconds.
-		 *
-		 * We implement this filter below individually to each of the acceleration components, using
-		 * a history of one sample point (since the filter never needs to go more than one sample
-		 * point behind).
-		 *
-		 * More information:
-		 * https://en.wikipedia.org/wiki/High-pass_filter#Discrete-time_realization
-		 */
-
-            // Calculate the needed parameters
-            float k = (float) ACC_FILTER_TAU_MS / (ACC_FILTER_TAU_MS + samplePeriodMs);
-
-            // These variable names are used just to make the code closer to the description above
-            float[] yn, yn1, xn, xn1;
-            yn1 = prevOutput;
-            xn = newInput;
-            xn1 = prevInput;
-
-            // Apply the filter to each component of the 3D vector separately
-            yn = new float[]{
-                    k * (yn1[0] + xn[0] - xn1[0]),
-                    k * (yn1[1] + xn[1] - xn1[1]),
-                    k * (yn1[2] + xn[2] - xn1[2])};
-
-//            Log.v(TAG, "ACC FILTER: " + String.format("%.2f,%.2f,%.2f", xn[0], xn[1], xn[2]) + " -> " +
-//                    String.format("%.2f,%.2f,%.2f", yn[0], yn[1], yn[2]));
-
-            return yn;
         }
 
         @Override
         public void onAccuracyChanged(android.hardware.Sensor sensor, int accuracy) {
             //Do nothing
         }
-
-        private float magnitude(float[] vector){
-            float retVal = 0;
-            for (int i = 0; i < vector.length; i++) {
-                retVal+= (vector[i]*vector[i]);
-            }
-            return (float) Math.sqrt(retVal);
-        }
-
-        private float[] normalize(float[] vector){
-            float maxVal = 0;
-            float[] retVal = new float[vector.length];
-            for (int i = 0; i < vector.length; i++) {
-                if(Math.abs(vector[i])>maxVal){
-                    maxVal=Math.abs(vector[i]);
-                }
-            }
-            for (int i = 0; i < vector.length; i++) {
-                retVal[i] = (vector[i]/maxVal);
-            }
-            return retVal;
-        }
     }
 
     /**
@@ -0,0 +1,79 @@
+package me.dotteam.dotprod.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import me.dotteam.dotprod.data.EnvData;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.EnvStatistic;
+import me.dotteam.dotprod.data.SessionEnvData;
+import me.dotteam.dotprod.data.SyntheticHike;
+
+/**
+ * Cost of recording the readings of a whole hike, one a second
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class EnvStatisticBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int samples;
+
+    private double[] temperatures;
+    private double[] humidities;
+    private double[] pressures;
+
+    @Setup
+    public void setUp(){
+        temperatures = SyntheticHike.readings(EnvSeries.TEMPERATURE, samples, SyntheticHike.SEED);
+        humidities = SyntheticHike.readings(EnvSeries.HUMIDITY, samples, SyntheticHike.SEED);
+        pressures = SyntheticHike.readings(EnvSeries.PRESSURE, samples, SyntheticHike.SEED);
+    }
+
+    @Benchmark
+    public EnvStatistic insertSample(){
+        EnvStatistic statistic = new EnvStatistic();
+        for (double temperature : temperatures) {
+            statistic.insertSample(temperature);
+        }
+        return statistic;
+    }
+
+    /**
+     * Statistics of the three sensors, as the collection service keeps them
+     */
+    @Benchmark
+    public EnvData updateStatistics(){
+        EnvData statistics = new EnvData();
+        for (int i = 0; i < samples; i++) {
+            statistics.updateTemp(temperatures[i]);
+            statistics.updateHumidity(humidities[i]);
+            statistics.updatePressure(pressures[i]);
+        }
+        return statistics;
+    }
+
+    /**
+     * Statistics and time series of the three sensors, as recorded during a hike
+     */
+    @Benchmark
+    public SessionEnvData recordSeries(){
+        SessionEnvData recorded = new SessionEnvData();
+        for (int i = 0; i < samples; i++) {
+            long time = SyntheticHike.START_TIME + i*SyntheticHike.INTERVAL;
+            recorded.updateTemp(time, temperatures[i]);
+            recorded.updateHumidity(time, humidities[i]);
+            recorded.updatePressure(time, pressures[i]);
+        }
+        return recorded;
+    }
+}
@@ -0,0 +1,58 @@
+package me.dotteam.dotprod.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.LocationPoints;
+import me.dotteam.dotprod.data.SyntheticHike;
+
+/**
+ * Cost of collecting the points of a whole hike, as the collection service does with every fix
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LocationPointsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int points;
+
+    private List<Coordinates> track;
+
+    @Setup
+    public void setUp(){
+        track = SyntheticHike.track(points, SyntheticHike.SEED);
+    }
+
+    @Benchmark
+    public LocationPoints addPoint(){
+        LocationPoints collected = new LocationPoints();
+        for (int i = 0; i < track.size(); i++) {
+            collected.addPoint(track.get(i));
+        }
+        return collected;
+    }
+
+    /**
+     * Fixes arrive as new objects, so each one is allocated too
+     */
+    @Benchmark
+    public LocationPoints addNewPoint(){
+        LocationPoints collected = new LocationPoints();
+        for (int i = 0; i < track.size(); i++) {
+            Coordinates fix = track.get(i);
+            collected.addPoint(new Coordinates(fix.getLongitude(), fix.getLatitude(), fix.getAltitude(), fix.getTime()));
+        }
+        return collected;
+    }
+}
@@ -0,0 +1,71 @@
+package me.dotteam.dotprod.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.SessionData;
+import me.dotteam.dotprod.data.StorageValues;
+import me.dotteam.dotprod.data.SyntheticHike;
+import me.dotteam.dotprod.data.TrackChunk;
+
+/**
+ * Cost of turning a session into what Persistent Storage writes, without the database itself
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    public static final int HIKE_ID=1;
+
+    @Param({"1000", "10000", "100000"})
+    public int points;
+
+    private List<Coordinates> track;
+    private SessionData session;
+
+    @Setup
+    public void setUp(){
+        session = SyntheticHike.session(points, SyntheticHike.SEED);
+        session.setHikeID(HIKE_ID);
+        track = session.getGeoPoints().getCoordinateList();
+        //Computed once, as saveSession does
+        session.getSummary();
+    }
+
+    /**
+     * One row per point, as tracks were stored before they were packed
+     */
+    @Benchmark
+    public void coordinatesToStorage(Blackhole sink){
+        for (int i = 0; i < track.size(); i++) {
+            sink.consume(StorageValues.of(track.get(i), HIKE_ID));
+        }
+    }
+
+    /**
+     * Every row of a saved session, the track packed in chunks
+     */
+    @Benchmark
+    public void sessionToStorage(Blackhole sink){
+        sink.consume(StorageValues.of(session.getHike()));
+        sink.consume(StorageValues.nameOf(session.getHike()));
+        sink.consume(StorageValues.of(session.getCurrentStats().getTemperature(), HIKE_ID));
+        sink.consume(StorageValues.of(session.getCurrentStats().getHumidity(), HIKE_ID));
+        sink.consume(StorageValues.of(session.getCurrentStats().getPressure(), HIKE_ID));
+        sink.consume(StorageValues.of(session.getStepCount(), HIKE_ID));
+        sink.consume(StorageValues.of(session.getSummary(), HIKE_ID));
+        sink.consume(TrackChunk.split(session.getGeoPoints().getCoordinateList(), 0));
+    }
+}
@@ -0,0 +1,136 @@
+package me.dotteam.dotprod.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.EnvSample;
+import me.dotteam.dotprod.data.EnvSeries;
+import me.dotteam.dotprod.data.EnvSeriesCodec;
+import me.dotteam.dotprod.data.SyntheticHike;
+import me.dotteam.dotprod.data.TrackChunk;
+
+/**
+ * Cost of packing and unpacking a whole track and its time series, in the stored formats
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TrackCodecBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int points;
+
+    private List<Coordinates> track;
+    private List<TrackChunk> deltaChunks;
+    private List<TrackChunk> rawChunks;
+    private List<Coordinates> decoded;
+
+    private List<EnvSample> rawSamples;
+    private List<EnvSample> minuteSamples;
+    private byte[] encodedRaw;
+    private byte[] encodedMinutes;
+    private List<EnvSample> decodedSamples;
+
+    @Setup
+    public void setUp(){
+        track = SyntheticHike.track(points, SyntheticHike.SEED);
+        deltaChunks = TrackChunk.split(track, 0);
+        rawChunks = packRaw();
+        decoded = new ArrayList<>(points);
+
+        EnvSeries series = new EnvSeries(EnvSeries.TEMPERATURE);
+        double[] temperatures = SyntheticHike.readings(EnvSeries.TEMPERATURE, points, SyntheticHike.SEED);
+        for (int i = 0; i < points; i++) {
+            series.addSample(SyntheticHike.START_TIME + i*SyntheticHike.INTERVAL, temperatures[i]);
+        }
+        List<EnvSeries.Batch> batches = new ArrayList<>();
+        series.takePending(true, batches);
+        for (EnvSeries.Batch batch : batches) {
+            if(batch.tier==EnvSeries.TIER_RAW){
+                rawSamples = batch.samples;
+            }
+            else if(batch.tier==EnvSeries.TIER_1MIN){
+                minuteSamples = batch.samples;
+            }
+        }
+        encodedRaw = EnvSeriesCodec.encode(EnvSeries.TIER_RAW, rawSamples, 0, rawSamples.size());
+        encodedMinutes = EnvSeriesCodec.encode(EnvSeries.TIER_1MIN, minuteSamples, 0, minuteSamples.size());
+        decodedSamples = new ArrayList<>(points);
+    }
+
+    private List<TrackChunk> packRaw(){
+        List<TrackChunk> chunks = new ArrayList<>();
+        int sequence = 0;
+        for (int from = 0; from < track.size(); from += TrackChunk.MAX_POINTS) {
+            chunks.add(TrackChunk.pack(sequence++, track, from,
+                    Math.min(from + TrackChunk.MAX_POINTS, track.size()), TrackChunk.ENCODING_RAW));
+        }
+        return chunks;
+    }
+
+    @Benchmark
+    public List<TrackChunk> encodeDelta(){
+        return TrackChunk.split(track, 0);
+    }
+
+    @Benchmark
+    public List<Coordinates> decodeDelta(){
+        decoded.clear();
+        for (TrackChunk chunk : deltaChunks) {
+            chunk.unpack(decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * The format of chunks written before the delta codec, still read
+     */
+    @Benchmark
+    public List<TrackChunk> encodeRaw(){
+        return packRaw();
+    }
+
+    @Benchmark
+    public List<Coordinates> decodeRaw(){
+        decoded.clear();
+        for (TrackChunk chunk : rawChunks) {
+            chunk.unpack(decoded);
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] encodeRawSeries(){
+        return EnvSeriesCodec.encode(EnvSeries.TIER_RAW, rawSamples, 0, rawSamples.size());
+    }
+
+    @Benchmark
+    public List<EnvSample> decodeRawSeries(){
+        decodedSamples.clear();
+        EnvSeriesCodec.decode(EnvSeries.TIER_RAW, encodedRaw, rawSamples.size(), decodedSamples);
+        return decodedSamples;
+    }
+
+    @Benchmark
+    public byte[] encodeMinuteSeries(){
+        return EnvSeriesCodec.encode(EnvSeries.TIER_1MIN, minuteSamples, 0, minuteSamples.size());
+    }
+
+    @Benchmark
+    public List<EnvSample> decodeMinuteSeries(){
+        decodedSamples.clear();
+        EnvSeriesCodec.decode(EnvSeries.TIER_1MIN, encodedMinutes, minuteSamples.size(), decodedSamples);
+        return decodedSamples;
+    }
+}
@@ -0,0 +1,62 @@
+package me.dotteam.dotprod.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.dotteam.dotprod.data.Coordinates;
+import me.dotteam.dotprod.data.HikeCellIndex;
+import me.dotteam.dotprod.data.HikeSummary;
+import me.dotteam.dotprod.data.SyntheticHike;
+
+/**
+ * Cost of the computations done over a whole track when it is saved
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TrackDistanceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int points;
+
+    private List<Coordinates> track;
+
+    @Setup
+    public void setUp(){
+        track = SyntheticHike.track(points, SyntheticHike.SEED);
+    }
+
+    /**
+     * Haversine distance alone
+     */
+    @Benchmark
+    public double distance(){
+        double distance = 0;
+        for (int i = 1; i < track.size(); i++) {
+            distance += HikeSummary.distanceBetween(track.get(i-1), track.get(i));
+        }
+        return distance;
+    }
+
+    /**
+     * Distance, elevation, bounds and pace
+     */
+    @Benchmark
+    public HikeSummary summary(){
+        return HikeSummary.of(track);
+    }
+
+    @Benchmark
+    public HikeCellIndex cells(){
+        return HikeCellIndex.of(track);
+    }
+}
@@ -1,7 +1,5 @@
 package me.dotteam.dotprod.data;
 
-import android.content.ContentValues;
-
 /**
  * Data structure to represent Geographical Locations
  */
@@ -11,27 +9,27 @@ public class Coordinates {
     protected double latitude;
     protected double altitude;
 
+    /**
+     * Time of the fix in Milliseconds since EPOCH. 0 if unknown
+     */
+    protected long time;
 
     /**
      * Default constructor
      */
     public Coordinates(double longitude, double lat, double alt) {
-        this.longitude=longitude;
-        latitude=lat;
-        altitude=alt;
+        this(longitude,lat,alt,0);
     }
 
     /**
-     * Method to obtain an object representing the Coordinates instance to be used for storage
-     * @return ContentValues object with correct Key (String) to Value pairings
+     * Constructor with the time at which the location was obtained
+     * @param time Time in Milliseconds since Epoch
      */
-    public ContentValues toStorage(int ID) {
-        ContentValues retVal = new ContentValues();
-        retVal.put(DBAssistant.HIKE_ID,ID);
-        retVal.put(DBAssistant.LONG_COL,this.longitude);
-        retVal.put(DBAssistant.LAT_COL,this.latitude);
-        retVal.put(DBAssistant.ALT_COL,this.altitude);
-        return retVal;
+    public Coordinates(double longitude, double lat, double alt, long time) {
+        this.longitude=longitude;
+        latitude=lat;
+        altitude=alt;
+        this.time=time;
     }
 
     public double getLongitude() {
@@ -46,6 +44,10 @@ public class Coordinates {
         return altitude;
     }
 
+    public long getTime() {
+        return time;
+    }
+
     public String toString(){
         return String.format("Lat %.3f Long %.3f Alt %.3f",latitude,longitude,altitude);
     }
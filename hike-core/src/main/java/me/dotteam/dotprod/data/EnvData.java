@@ -1,6 +1,7 @@
 package me.dotteam.dotprod.data;
 
-import android.content.ContentValues;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Data structure to represent the set of Environmental Data Statistics
@@ -36,6 +37,14 @@ public class EnvData {
         this.pressure = pressure;
     }
 
+    /**
+     * Obtain a copy of the current statistics, so they can be stored while new samples keep arriving
+     * @return A new EnvData object with the same values
+     */
+    public EnvData snapshot(){
+        return new EnvData(new EnvStatistic(temperature),new EnvStatistic(humidity),new EnvStatistic(pressure));
+    }
+
     public void updateTemp(double newSample){
         temperature.insertSample(newSample);
     }
@@ -48,6 +57,16 @@ public class EnvData {
         pressure.insertSample(newSample);
     }
 
+    /**
+     * Take the samples recorded since the last call, to be written as time series.
+     * Only statistics are kept here, see {@link SessionEnvData} for the recorded samples
+     * @param closeIntervals True once recording is over, so the intervals still open are aggregated too
+     * @return The batches to write, empty if nothing was recorded
+     */
+    public List<EnvSeries.Batch> takePendingSamples(boolean closeIntervals){
+        return new ArrayList<>(0);
+    }
+
     public EnvStatistic getTemperature() {
         return temperature;
     }
@@ -60,30 +79,6 @@ public class EnvData {
         return pressure;
     }
 
-    /**
-     * Method to obtain the Temperature Statistics ContentValues to be used for storage
-     * @return ContentValues object with correct key-value pairs
-     */
-    public ContentValues getSerializedTemp(int ID) {
-        return temperature.toStorage(ID);
-    }
-
-    /**
-     * Method to obtain the Humidity Statistics ContentValues to be used for storage
-     * @return ContentValues object with correct key-value pairs
-     */
-    public ContentValues getSerializedHumidity(int ID) {
-        return humidity.toStorage(ID);
-    }
-
-    /**
-     * Method to obtain the Pressure Statistics ContentValues to be used for storage
-     * @return ContentValues object with correct key-value pairs
-     */
-    public ContentValues getSerializedPressure(int ID) {
-        return pressure.toStorage(ID);
-    }
-
     public boolean isValid(){
         return temperature.isValid() && humidity.isValid() && pressure.isValid();
     }
@@ -0,0 +1,65 @@
+package me.dotteam.dotprod.data;
+
+/**
+ * Data structure to represent a point of an environmental time series.
+ * A raw sample is a single reading, with the same min, avg and max.
+ * A sample of a downsampled tier aggregates every reading of its interval.
+ */
+public class EnvSample {
+
+    /**
+     * Time of the reading, or start of the interval, in Milliseconds since epoch
+     */
+    protected long time;
+
+    protected double min;
+    protected double avg;
+    protected double max;
+
+    /**
+     * Number of readings aggregated
+     */
+    protected int count;
+
+    /**
+     * Constructor for a single reading
+     */
+    public EnvSample(long time, double value) {
+        this(time, value, value, value, 1);
+    }
+
+    /**
+     * Constructor for an aggregate, or when building from Database
+     */
+    public EnvSample(long time, double min, double avg, double max, int count) {
+        this.time = time;
+        this.min = min;
+        this.avg = avg;
+        this.max = max;
+        this.count = count;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getAvg() {
+        return avg;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String toString(){
+        return String.format("%s: %s [%s, %s] x%s", time, avg, min, max, count);
+    }
+}
@@ -0,0 +1,142 @@
+package me.dotteam.dotprod.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time series of one environmental sensor while it is recorded.
+ * Every reading is kept at full resolution and also aggregated into the 10 second and 1 minute tiers,
+ * so charts never need to scan raw samples. Samples wait here until they are taken to be written,
+ * in batches, to the env_series table.
+ */
+public class EnvSeries {
+
+    public static final int TEMPERATURE=0;
+    public static final int HUMIDITY=1;
+    public static final int PRESSURE=2;
+
+    public static final int TIER_RAW=0;
+    public static final int TIER_10S=1;
+    public static final int TIER_1MIN=2;
+
+    /**
+     * Interval aggregated by each tier, in Milliseconds. The raw tier aggregates nothing
+     */
+    public static final long[] TIER_INTERVALS={0, 10000, 60000};
+
+    /**
+     * Maximum number of samples packed in a single row
+     */
+    public static final int MAX_SAMPLES=1024;
+
+    /**
+     * Samples of one sensor and tier, ready to be written
+     */
+    public static class Batch {
+        public final int sensor;
+        public final int tier;
+        public final List<EnvSample> samples;
+
+        public Batch(int sensor, int tier, List<EnvSample> samples) {
+            this.sensor = sensor;
+            this.tier = tier;
+            this.samples = samples;
+        }
+    }
+
+    private final int mSensor;
+
+    /**
+     * Samples not yet taken, by tier
+     */
+    private final List<List<EnvSample>> mPending = new ArrayList<>(TIER_INTERVALS.length);
+
+    /**
+     * Interval being aggregated, by tier. Unused for the raw tier
+     */
+    private final long[] mBucketStart = new long[TIER_INTERVALS.length];
+    private final double[] mBucketMin = new double[TIER_INTERVALS.length];
+    private final double[] mBucketSum = new double[TIER_INTERVALS.length];
+    private final double[] mBucketMax = new double[TIER_INTERVALS.length];
+    private final int[] mBucketCount = new int[TIER_INTERVALS.length];
+
+    /**
+     * Default constructor
+     * @param sensor One of {@link #TEMPERATURE}, {@link #HUMIDITY} or {@link #PRESSURE}
+     */
+    public EnvSeries(int sensor) {
+        mSensor = sensor;
+        for (int i = 0; i < TIER_INTERVALS.length; i++) {
+            mPending.add(new ArrayList<EnvSample>());
+        }
+    }
+
+    /**
+     * Record a reading. Readings must arrive in time order
+     * @param time Time of the reading, in Milliseconds since epoch
+     * @param value The reading
+     */
+    public synchronized void addSample(long time, double value){
+        mPending.get(TIER_RAW).add(new EnvSample(time, value));
+        for (int tier = 1; tier < TIER_INTERVALS.length; tier++) {
+            long bucket = time - time % TIER_INTERVALS[tier];
+            if(mBucketCount[tier]>0 && bucket!=mBucketStart[tier]){
+                closeBucket(tier);
+            }
+            if(mBucketCount[tier]==0){
+                mBucketStart[tier] = bucket;
+                mBucketMin[tier] = value;
+                mBucketMax[tier] = value;
+            }
+            mBucketMin[tier] = Math.min(mBucketMin[tier], value);
+            mBucketMax[tier] = Math.max(mBucketMax[tier], value);
+            mBucketSum[tier] += value;
+            ++mBucketCount[tier];
+        }
+    }
+
+    private void closeBucket(int tier){
+        int count = mBucketCount[tier];
+        mPending.get(tier).add(new EnvSample(mBucketStart[tier],
+                mBucketMin[tier], mBucketSum[tier]/count, mBucketMax[tier], count));
+        mBucketSum[tier] = 0;
+        mBucketCount[tier] = 0;
+    }
+
+    /**
+     * Take every sample waiting to be written, leaving none pending
+     * @param closeIntervals True to also aggregate the intervals still open, once recording is over
+     * @param into List that receives a batch for every tier having samples
+     */
+    public synchronized void takePending(boolean closeIntervals, List<Batch> into){
+        for (int tier = 0; tier < TIER_INTERVALS.length; tier++) {
+            if(closeIntervals && tier!=TIER_RAW && mBucketCount[tier]>0){
+                closeBucket(tier);
+            }
+            List<EnvSample> samples = mPending.get(tier);
+            if(!samples.isEmpty()){
+                into.add(new Batch(mSensor, tier, samples));
+                mPending.set(tier, new ArrayList<EnvSample>());
+            }
+        }
+    }
+
+    /**
+     * Choose the coarsest tier still showing the requested resolution
+     * @param resolution Time between two points of the chart, in Milliseconds
+     * @return The tier to read
+     */
+    public static int tierFor(long resolution){
+        int tier = TIER_RAW;
+        for (int i = 1; i < TIER_INTERVALS.length; i++) {
+            if(TIER_INTERVALS[i]<=resolution){
+                tier = i;
+            }
+        }
+        return tier;
+    }
+
+    public int getSensor() {
+        return mSensor;
+    }
+}
@@ -0,0 +1,79 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * Compact binary representation of an environmental time series, in the style of {@link TrackCodec}.
+ * Values are converted to fixed point (thousandths of a unit) and times to milliseconds, then stored as
+ * zig-zag varint encoded differences with the previous sample. Time stores the change of that difference,
+ * since readings arrive at a regular interval. Aggregated samples also store their count, and their
+ * min and max as differences with their average.
+ */
+public class EnvSeriesCodec {
+
+    /**
+     * Fixed point units per unit of the sensor (degree, percent or hPa)
+     */
+    public static final double VALUE_SCALE=1000;
+
+    /**
+     * Encode samples of a tier. The number of samples is not stored
+     * @param tier The tier of the samples. Raw samples only store their value
+     * @param samples The samples, in time order
+     * @param from Index of the first sample to encode, inclusive
+     * @param to Index of the last sample to encode, exclusive
+     * @return The encoded bytes
+     */
+    public static byte[] encode(int tier, List<EnvSample> samples, int from, int to){
+        boolean aggregated = tier!=EnvSeries.TIER_RAW;
+        TrackCodec.VarIntWriter output = new TrackCodec.VarIntWriter((to-from)*(aggregated ? 8 : 3));
+        long prevValue=0;
+        long prevTime=0;
+        long prevInterval=0;
+        for (int i = from; i < to; i++) {
+            EnvSample sample = samples.get(i);
+            long value = Math.round(sample.getAvg()*VALUE_SCALE);
+            output.writeSigned(sample.getTime()-prevTime-prevInterval);
+            output.writeSigned(value-prevValue);
+            if(aggregated){
+                output.writeUnsigned(sample.getCount());
+                output.writeUnsigned(value-Math.round(sample.getMin()*VALUE_SCALE));
+                output.writeUnsigned(Math.round(sample.getMax()*VALUE_SCALE)-value);
+            }
+
+            prevValue=value;
+            prevInterval=sample.getTime()-prevTime;
+            prevTime=sample.getTime();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decode samples encoded with {@link #encode(int, List, int, int)}, appending them to a list
+     * @param tier The tier the samples were encoded for
+     * @param data The encoded bytes
+     * @param sampleCount Number of samples that were encoded
+     * @param into List that will receive the samples in order
+     */
+    public static void decode(int tier, byte[] data, int sampleCount, List<EnvSample> into){
+        boolean aggregated = tier!=EnvSeries.TIER_RAW;
+        TrackCodec.VarIntReader input = new TrackCodec.VarIntReader(data);
+        long value=0;
+        long time=0;
+        long interval=0;
+        for (int i = 0; i < sampleCount; i++) {
+            interval += input.readSigned();
+            time += interval;
+            value += input.readSigned();
+            if(aggregated){
+                int count = (int) input.readUnsigned();
+                long min = value-input.readUnsigned();
+                long max = value+input.readUnsigned();
+                into.add(new EnvSample(time, min/VALUE_SCALE, value/VALUE_SCALE, max/VALUE_SCALE, count));
+            }
+            else {
+                into.add(new EnvSample(time, value/VALUE_SCALE));
+            }
+        }
+    }
+}
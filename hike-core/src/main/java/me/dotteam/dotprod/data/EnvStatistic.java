@@ -1,7 +1,5 @@
 package me.dotteam.dotprod.data;
 
-import android.content.ContentValues;
-
 /**
  * Data structure to represent a single Environmental Statistic
  */
@@ -28,6 +26,16 @@ public class EnvStatistic {
     public EnvStatistic() {
     }
 
+    /**
+     * Copy constructor
+     * @param copyStatistic The statistic to copy
+     */
+    public EnvStatistic(EnvStatistic copyStatistic) {
+        min = copyStatistic.min;
+        avg = copyStatistic.avg;
+        max = copyStatistic.max;
+    }
+
     public double getAvg() {
         return avg;
     }
@@ -58,19 +66,6 @@ public class EnvStatistic {
     }
 
 
-    /**
-     * Method to obtain the object of the Environmental Statistic to be used for storage
-     * @return ContentValues object with correct key-value pairs
-     */
-    public ContentValues toStorage(int ID) {
-        ContentValues retVal = new ContentValues();
-        retVal.put(DBAssistant.HIKE_ID,ID);
-        retVal.put(DBAssistant.MIN_COL,this.min);
-        retVal.put(DBAssistant.AVG_COL,this.avg);
-        retVal.put(DBAssistant.MAX_COL,this.max);
-        return retVal;
-    }
-
     public boolean isValid(){
         return max!=0 && avg!=Float.NaN && min != Float.POSITIVE_INFINITY;
     }
@@ -1,9 +1,7 @@
 package me.dotteam.dotprod.data;
 
-import android.content.ContentValues;
-import android.util.Log;
-
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 
 /**
@@ -11,6 +9,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class Hike {
 
+    private static final Logger LOG = Logger.getLogger("HIKE_OBJ");
+
     /**
      *
      */
@@ -60,7 +60,7 @@ public class Hike {
     public Hike(int ID, Hike copyHike){
         uniqueID=ID;
         if(!copyHike.isComplete()){
-            Log.w("HIKE_OBJ","Incomplete Hike Model being copied! DB might enter inconsistent state");
+            LOG.warning("Incomplete Hike Model being copied! DB might enter inconsistent state");
         }
         startTime=copyHike.startTime;
         endTime=copyHike.endTime;
@@ -79,7 +79,8 @@ public class Hike {
      * Notify the end of a Hike
      */
     public void end(){
-        if(uniqueID<0 && endTime<0){
+        //A journaled hike already has its uniqueID while being recorded
+        if(endTime<0){
             endTime=System.currentTimeMillis();
         }
     }
@@ -92,24 +93,6 @@ public class Hike {
         return (startTime>0 && endTime>0);
     }
 
-    /**
-     * Method to obtain an object representing the Hike Session instance to be used for storage
-     * @return ContentValues object with correct Key (String) to Value pairings
-     */
-    public ContentValues toStorage() {
-        ContentValues retVal = new ContentValues();
-        retVal.put(DBAssistant.HIKE_START,this.startTime);
-        retVal.put(DBAssistant.HIKE_END,this.endTime);
-        return retVal;
-    }
-
-    public ContentValues nameToStorage(){
-        ContentValues retVal = new ContentValues(2);
-        retVal.put(DBAssistant.HIKE_ID,this.uniqueID);
-        retVal.put(DBAssistant.NICKNAME,nickName);
-        return retVal;
-    }
-
     public int getUniqueID() {
         return uniqueID;
     }
@@ -0,0 +1,161 @@
+package me.dotteam.dotprod.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spatial index of tracks over a grid of latitude and longitude cells, stored in the hike_cells table.
+ * Every hike is indexed by the cells its track goes through, at two levels: fine cells of 0.01 degree
+ * (about 1 km) and coarse cells of 1 degree. A cell key orders cells row by row, so the cells of an
+ * area are a few ranges of keys, one per row, answered by the (cell, hike_id) index.
+ * Tracks crossing the antimeridian are not handled specially.
+ */
+public class HikeCellIndex {
+
+    public static final int FINE_LEVEL=1;
+    public static final int COARSE_LEVEL=2;
+
+    /**
+     * Cells per degree at each level
+     */
+    public static final int FINE_SCALE=100;
+    public static final int COARSE_SCALE=1;
+
+    /**
+     * Largest number of rows of fine cells a query reads before switching to coarse cells
+     */
+    public static final int MAX_FINE_ROWS=24;
+
+    /**
+     * Longest segment, in halves of a fine cell, whose fine cells are all indexed.
+     * Longer segments are jumps of the GPS rather than walked paths and only get coarse cells
+     */
+    public static final int MAX_SEGMENT_STEPS=32;
+
+    /**
+     * Metres per degree of latitude
+     */
+    public static final double METRES_PER_DEGREE=111195.0;
+
+    private static final int INDEX_BITS=20;
+    private static final long INDEX_MASK=(1L<<INDEX_BITS)-1;
+
+    private final Set<Long> cells = new HashSet<>();
+    private Coordinates lastPoint;
+
+    /**
+     * Compute the cells of a whole track
+     * @param points The track, in recorded order. May be null
+     * @return The index of the track
+     */
+    public static HikeCellIndex of(List<Coordinates> points){
+        HikeCellIndex index = new HikeCellIndex();
+        if(points!=null){
+            index.addPoints(points);
+        }
+        return index;
+    }
+
+    public void addPoints(List<Coordinates> points){
+        for (int i = 0; i < points.size(); i++) {
+            addPoint(points.get(i));
+        }
+    }
+
+    /**
+     * Add the next point of the track. When it is far from the previous one, the cells in
+     * between are added too, so the segment joining them is indexed
+     * @param point The point recorded after the previously added one
+     */
+    public void addPoint(Coordinates point){
+        if(lastPoint!=null){
+            double latitudeSpan = point.getLatitude() - lastPoint.getLatitude();
+            double longitudeSpan = point.getLongitude() - lastPoint.getLongitude();
+            double span = Math.max(Math.abs(latitudeSpan), Math.abs(longitudeSpan));
+            //Walk the segment in steps of half a cell
+            int steps = (int) Math.ceil(span*FINE_SCALE*2);
+            boolean fine = steps<=MAX_SEGMENT_STEPS;
+            if(!fine){
+                steps = (int) Math.ceil(span*COARSE_SCALE*2);
+            }
+            for (int i = 1; i < steps; i++) {
+                double fraction = i/(double) steps;
+                addLocation(lastPoint.getLatitude() + latitudeSpan*fraction,
+                        lastPoint.getLongitude() + longitudeSpan*fraction, fine);
+            }
+        }
+        addLocation(point.getLatitude(), point.getLongitude(), true);
+        lastPoint = point;
+    }
+
+    private void addLocation(double latitude, double longitude, boolean fine){
+        if(fine) {
+            cells.add(cellOf(FINE_LEVEL, FINE_SCALE, latitude, longitude));
+        }
+        cells.add(cellOf(COARSE_LEVEL, COARSE_SCALE, latitude, longitude));
+    }
+
+    /**
+     * @return The keys of every cell the track goes through, at both levels
+     */
+    public Set<Long> getCells() {
+        return cells;
+    }
+
+    /**
+     * Key of the cell containing a location
+     */
+    public static long cellOf(int level, int scale, double latitude, double longitude){
+        return key(level, rowOf(scale, latitude), columnOf(scale, longitude));
+    }
+
+    /**
+     * Ranges of cell keys covering an area. The coarsest level keeping the query small is used
+     * @return Pairs of keys: {first, last} of every row, both inclusive
+     */
+    public static List<long[]> rangesOf(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude){
+        int level = FINE_LEVEL;
+        int scale = FINE_SCALE;
+        if(rowOf(FINE_SCALE, maxLatitude) - rowOf(FINE_SCALE, minLatitude) >= MAX_FINE_ROWS){
+            level = COARSE_LEVEL;
+            scale = COARSE_SCALE;
+        }
+
+        long firstColumn = columnOf(scale, minLongitude);
+        long lastColumn = columnOf(scale, maxLongitude);
+        List<long[]> ranges = new ArrayList<>();
+        for (long row = rowOf(scale, minLatitude); row <= rowOf(scale, maxLatitude); row++) {
+            ranges.add(new long[]{key(level, row, firstColumn), key(level, row, lastColumn)});
+        }
+        return ranges;
+    }
+
+    /**
+     * Ranges of cell keys covering the square around a location
+     * @param radius Half the side of the square, in metres
+     * @return Pairs of keys: {first, last} of every row, both inclusive
+     */
+    public static List<long[]> rangesNear(double latitude, double longitude, double radius){
+        double latitudeSpan = radius/METRES_PER_DEGREE;
+        //Longitude degrees shrink towards the poles
+        double longitudeSpan = radius/(METRES_PER_DEGREE*Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+        return rangesOf(latitude - latitudeSpan, longitude - longitudeSpan,
+                latitude + latitudeSpan, longitude + longitudeSpan);
+    }
+
+    private static long rowOf(int scale, double latitude){
+        double clamped = Math.max(-90, Math.min(90, latitude));
+        return (long) Math.floor((clamped + 90)*scale);
+    }
+
+    private static long columnOf(int scale, double longitude){
+        double clamped = Math.max(-180, Math.min(180, longitude));
+        return (long) Math.floor((clamped + 180)*scale);
+    }
+
+    private static long key(int level, long row, long column){
+        return ((long) level << (2*INDEX_BITS)) | ((row & INDEX_MASK) << INDEX_BITS) | (column & INDEX_MASK);
+    }
+}
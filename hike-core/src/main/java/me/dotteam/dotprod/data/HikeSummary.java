@@ -0,0 +1,211 @@
+package me.dotteam.dotprod.data;
+
+import java.util.List;
+
+/**
+ * Data structure to represent the summary of a track: distance, elevation, bounds and pace.
+ * It is computed once, point by point, and stored in the hike_summary table so list and results
+ * screens never need to read the raw points.
+ */
+public class HikeSummary {
+
+    /**
+     * Mean radius of the Earth in metres, used by the haversine distance
+     */
+    public static final double EARTH_RADIUS=6371008.8;
+
+    /**
+     * Minimum altitude change in metres before it counts as gain or loss. Filters out GPS noise
+     */
+    public static final double ELEVATION_THRESHOLD=3.0;
+
+    /**
+     * Minimum speed in metres per second for an interval to count as moving
+     */
+    public static final double MOVING_SPEED=0.3;
+
+    protected double distance=0;
+    protected double elevationGain=0;
+    protected double elevationLoss=0;
+    protected double minAltitude=Double.POSITIVE_INFINITY;
+    protected double maxAltitude=Double.NEGATIVE_INFINITY;
+    protected double minLatitude=Double.POSITIVE_INFINITY;
+    protected double maxLatitude=Double.NEGATIVE_INFINITY;
+    protected double minLongitude=Double.POSITIVE_INFINITY;
+    protected double maxLongitude=Double.NEGATIVE_INFINITY;
+    protected int pointCount=0;
+
+    /**
+     * Time spent moving, in Milliseconds
+     */
+    protected long movingTime=0;
+
+    /**
+     * Only used while adding points
+     */
+    private Coordinates lastPoint;
+    private double elevationReference;
+
+    /**
+     * Default constructor, for a summary built with {@link #addPoint(Coordinates)}
+     */
+    public HikeSummary() {
+    }
+
+    /**
+     * Constructor when building from Database
+     */
+    public HikeSummary(int pointCount, double distance, double elevationGain, double elevationLoss,
+                       double minAltitude, double maxAltitude, double minLatitude, double maxLatitude,
+                       double minLongitude, double maxLongitude, long movingTime) {
+        this.pointCount = pointCount;
+        this.distance = distance;
+        this.elevationGain = elevationGain;
+        this.elevationLoss = elevationLoss;
+        this.minAltitude = minAltitude;
+        this.maxAltitude = maxAltitude;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+        this.movingTime = movingTime;
+    }
+
+    /**
+     * Compute the summary of a whole track
+     * @param points The track, in recorded order. May be null
+     * @return The summary
+     */
+    public static HikeSummary of(List<Coordinates> points){
+        HikeSummary summary = new HikeSummary();
+        if(points!=null){
+            summary.addPoints(points);
+        }
+        return summary;
+    }
+
+    public void addPoints(List<Coordinates> points){
+        for (int i = 0; i < points.size(); i++) {
+            addPoint(points.get(i));
+        }
+    }
+
+    /**
+     * Method to update the summary with the next point of the track
+     * @param point The point recorded after the previously added one
+     */
+    public void addPoint(Coordinates point){
+        double altitude = point.getAltitude();
+        minAltitude = Math.min(minAltitude, altitude);
+        maxAltitude = Math.max(maxAltitude, altitude);
+        minLatitude = Math.min(minLatitude, point.getLatitude());
+        maxLatitude = Math.max(maxLatitude, point.getLatitude());
+        minLongitude = Math.min(minLongitude, point.getLongitude());
+        maxLongitude = Math.max(maxLongitude, point.getLongitude());
+
+        if(lastPoint==null){
+            elevationReference = altitude;
+        }
+        else {
+            double segment = distanceBetween(lastPoint, point);
+            distance += segment;
+
+            long interval = point.getTime() - lastPoint.getTime();
+            if(lastPoint.getTime()>0 && interval>0 && segment*1000/interval >= MOVING_SPEED){
+                movingTime += interval;
+            }
+
+            double climb = altitude - elevationReference;
+            if(climb >= ELEVATION_THRESHOLD){
+                elevationGain += climb;
+                elevationReference = altitude;
+            }
+            else if(-climb >= ELEVATION_THRESHOLD){
+                elevationLoss -= climb;
+                elevationReference = altitude;
+            }
+        }
+
+        lastPoint = point;
+        ++pointCount;
+    }
+
+    /**
+     * Great circle distance between two points, using the haversine formula
+     * @return Distance in metres
+     */
+    public static double distanceBetween(Coordinates from, Coordinates to){
+        double fromLatitude = Math.toRadians(from.getLatitude());
+        double toLatitude = Math.toRadians(to.getLatitude());
+        double sinLatitude = Math.sin((toLatitude - fromLatitude)/2);
+        double sinLongitude = Math.sin(Math.toRadians(to.getLongitude() - from.getLongitude())/2);
+        double a = sinLatitude*sinLatitude + Math.cos(fromLatitude)*Math.cos(toLatitude)*sinLongitude*sinLongitude;
+        return 2*EARTH_RADIUS*Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @return Total distance in metres
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getElevationGain() {
+        return elevationGain;
+    }
+
+    public double getElevationLoss() {
+        return elevationLoss;
+    }
+
+    public double getMinAltitude() {
+        return minAltitude;
+    }
+
+    public double getMaxAltitude() {
+        return maxAltitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return Time spent moving, in Milliseconds
+     */
+    public long getMovingTime() {
+        return movingTime;
+    }
+
+    /**
+     * @return Average speed while moving, in metres per second. 0 if the moving time is unknown
+     */
+    public double getAveragePace() {
+        return movingTime>0 ? distance*1000/movingTime : 0;
+    }
+
+    public boolean hasBounds(){
+        return pointCount>0;
+    }
+
+    public String toString(){
+        return String.format("Summary: %s points, %.1f m, +%.1f m -%.1f m, moving %s s",
+                pointCount, distance, elevationGain, elevationLoss, movingTime/1000);
+    }
+}
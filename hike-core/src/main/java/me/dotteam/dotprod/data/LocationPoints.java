@@ -1,8 +1,6 @@
 package me.dotteam.dotprod.data;
 
 
-import android.content.ContentValues;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -0,0 +1,188 @@
+package me.dotteam.dotprod.data;
+
+/**
+ * Data structure for representing a completed hiking session.
+ * The track of a session may be loaded lazily: the header, statistics and summary are there right away,
+ * and the points are read through a {@link TrackLoader} the first time {@link #getGeoPoints()} is called.
+ */
+public class SessionData {
+
+    /**
+     * Interface definition for reading the track of a session on first access
+     */
+    public interface TrackLoader {
+
+        /**
+         * Method called once, on the thread first requesting the points
+         * @return The points of the track, in recorded order
+         */
+        LocationPoints loadTrack();
+    }
+
+    private Hike mHike;
+    private StepCount mStepCount;
+    private EnvData mCurrentStats;
+    private volatile LocationPoints mGeoPoints;
+    private HikeSummary mSummary;
+
+    /**
+     * Reads the track until it is loaded, null once done or if the track was given
+     */
+    private volatile TrackLoader mTrackLoader;
+
+    /**
+     * Held while loading the track, so the rest of the session stays available meanwhile
+     */
+    private final Object mTrackLock = new Object();
+
+    /**
+     * Indicates whether or not the SessionData was loaded from Persistent Storage
+     */
+    private boolean isFromDB;
+
+
+    /**
+     * Default constructor without step count
+     */
+    @Deprecated
+    public SessionData(Hike hikeSession, EnvData envData, LocationPoints trackpoints) {
+        mHike=hikeSession;
+        mStepCount = new StepCount(0);
+        mCurrentStats = envData;
+        mGeoPoints=trackpoints;
+    }
+
+    /**
+     * New Default Constructor
+     */
+    public SessionData(Hike hikeSession, StepCount steps, EnvData envData, LocationPoints trackpoints) {
+        mHike=hikeSession;
+        mStepCount = steps;
+        mCurrentStats = envData;
+        mGeoPoints=trackpoints;
+    }
+
+    /**
+     * Constructor of a session whose track is loaded on first access
+     * @param trackLoader Reads the track the first time {@link #getGeoPoints()} is called
+     */
+    public SessionData(Hike hikeSession, StepCount steps, EnvData envData, TrackLoader trackLoader) {
+        mHike=hikeSession;
+        mStepCount = steps;
+        mCurrentStats = envData;
+        mTrackLoader=trackLoader;
+    }
+
+    /**
+     * @return The hike this session was recorded in
+     */
+    public Hike getHike(){
+        return mHike;
+    }
+
+    public long hikeStartTime(){
+        return mHike.startTime();
+    }
+
+    public long hikeEndTime(){
+        return mHike.endTime();
+    }
+
+    public String formattedDuration(){ return mHike.elapsedTime(); }
+
+    public int hikeID(){ return mHike.getUniqueID(); }
+
+    public String hikeNickName(){ return mHike.getNickName(); }
+
+    public EnvData getCurrentStats() {
+        return mCurrentStats;
+    }
+
+    /**
+     * Obtain the track of the session, loading it first if it was not yet.
+     * Blocks while the track loads, so should be called off the main thread unless {@link #isTrackLoaded()}
+     * @return The points of the session
+     */
+    public LocationPoints getGeoPoints() {
+        LocationPoints points = mGeoPoints;
+        if(points!=null){
+            return points;
+        }
+        synchronized (mTrackLock){
+            if(mGeoPoints==null && mTrackLoader!=null){
+                mGeoPoints = mTrackLoader.loadTrack();
+                mTrackLoader = null;
+            }
+            return mGeoPoints;
+        }
+    }
+
+    /**
+     * @return True if {@link #getGeoPoints()} returns without loading anything
+     */
+    public boolean isTrackLoaded(){
+        return mGeoPoints!=null || mTrackLoader==null;
+    }
+
+    /**
+     * Obtain the number of points of the track without loading it, from the summary while it is not loaded
+     * @return Number of points, 0 if not known yet
+     */
+    public int getPointCount(){
+        LocationPoints points = mGeoPoints;
+        if(points!=null){
+            return points.getCoordinateList()!=null ? points.getCoordinateList().size() : 0;
+        }
+        synchronized (this){
+            return mSummary!=null ? mSummary.getPointCount() : 0;
+        }
+    }
+
+    /**
+     * Obtain the summary of the track. It is read from Persistent Storage when available,
+     * otherwise computed from the points the first time it is requested
+     * @return The summary of the track
+     */
+    public synchronized HikeSummary getSummary(){
+        if(mSummary==null){
+            LocationPoints points = getGeoPoints();
+            mSummary = HikeSummary.of(points!=null ? points.getCoordinateList() : null);
+        }
+        return mSummary;
+    }
+
+    /**
+     * @return True if {@link #getSummary()} returns without loading the track
+     */
+    public synchronized boolean isSummaryLoaded(){
+        return mSummary!=null || isTrackLoaded();
+    }
+
+    public synchronized void setSummary(HikeSummary summary){
+        mSummary = summary;
+    }
+
+    public StepCount getStepCount(){
+        return mStepCount;
+    }
+
+    public boolean isFromDB() {
+        return isFromDB;
+    }
+
+    public boolean setHikeID(int ID){
+        return mHike.setUniqueID(ID);
+    }
+
+    public boolean isValid(){
+        return mHike.startTime()>0 && mCurrentStats.isValid();
+    }
+
+    public String toString(){
+        return String.format("Session Data:\n%s\n%s\n%s\n%s",
+                mHike.toString(),
+                mStepCount.toString(),
+                mCurrentStats.toString(),
+                isTrackLoaded() ? String.valueOf(mGeoPoints) : "Track not loaded");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package me.dotteam.dotprod.data;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data structure class to maintain the recorded samples of a session along with its statistics
+ * Every sample is timestamped and kept in an {@link EnvSeries} until it is written to Persistent Storage.
+ */
+public class SessionEnvData extends EnvData {
+
+    protected EnvSeries recordedTemp;
+
+    protected EnvSeries recordedPressure;
+
+    protected EnvSeries recordedHumidity;
+
+    /**
+     * Default constructor
+     */
+    public SessionEnvData() {
+        recordedHumidity = new EnvSeries(EnvSeries.HUMIDITY);
+        recordedPressure = new EnvSeries(EnvSeries.PRESSURE);
+        recordedTemp = new EnvSeries(EnvSeries.TEMPERATURE);
+    }
+
+    @Override
+    public void updatePressure(double newSample) {
+        updatePressure(System.currentTimeMillis(), newSample);
+    }
+
+    @Override
+    public void updateHumidity(double newSample) {
+        updateHumidity(System.currentTimeMillis(), newSample);
+    }
+
+    @Override
+    public void updateTemp(double newSample) {
+        updateTemp(System.currentTimeMillis(), newSample);
+    }
+
+    /**
+     * Record a pressure sample taken at a given time, such as a replayed or generated one
+     * @param time Time of the sample in Milliseconds since EPOCH
+     */
+    public void updatePressure(long time, double newSample) {
+        super.updatePressure(newSample);
+        recordedPressure.addSample(time, newSample);
+    }
+
+    /**
+     * Record a humidity sample taken at a given time
+     * @param time Time of the sample in Milliseconds since EPOCH
+     */
+    public void updateHumidity(long time, double newSample) {
+        super.updateHumidity(newSample);
+        recordedHumidity.addSample(time, newSample);
+    }
+
+    /**
+     * Record a temperature sample taken at a given time
+     * @param time Time of the sample in Milliseconds since EPOCH
+     */
+    public void updateTemp(long time, double newSample) {
+        super.updateTemp(newSample);
+        recordedTemp.addSample(time, newSample);
+    }
+
+    /**
+     * Take the samples recorded since the last call, for every sensor and tier
+     * @param closeIntervals True once recording is over, so the intervals still open are aggregated too
+     * @return The batches to write, empty if nothing was recorded
+     */
+    @Override
+    public List<EnvSeries.Batch> takePendingSamples(boolean closeIntervals){
+        List<EnvSeries.Batch> batches = new ArrayList<>();
+        recordedTemp.takePending(closeIntervals, batches);
+        recordedHumidity.takePending(closeIntervals, batches);
+        recordedPressure.takePending(closeIntervals, batches);
+        return batches;
+    }
+}
@@ -1,7 +1,5 @@
 package me.dotteam.dotprod.data;
 
-import android.content.ContentValues;
-
 /**
  * Created by foxtrot on 18/11/15.
  */
@@ -23,13 +21,6 @@ public class StepCount {
         return stepsTaken;
     }
 
-    public ContentValues toStorage(int ID){
-        ContentValues retVal = new ContentValues();
-        retVal.put(DBAssistant.HIKE_ID,ID);
-        retVal.put(DBAssistant.STEP_COUNT,this.stepsTaken);
-        return retVal;
-    }
-
     public String toString(){
         if(stepsTaken>0)
             return String.format("Steps Taken: %s steps\n",stepsTaken);
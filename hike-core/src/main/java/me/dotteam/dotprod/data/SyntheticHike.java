@@ -0,0 +1,256 @@
+package me.dotteam.dotprod.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of a realistic synthetic hike, for scale testing and benchmarks.
+ * The walk goes at hiking pace with one fix a second, its heading, pace and slope drifting smoothly,
+ * with GPS noise on the altitude and the odd rest stop. Every fix comes with a reading of each sensor:
+ * the temperature drops and the pressure follows the altitude, the humidity rises as it gets colder,
+ * and steps are counted from the distance walked.
+ * The same seed always gives the same hike, so runs can be compared.
+ */
+public class SyntheticHike {
+
+    public static final long SEED=390;
+
+    public static final long START_TIME=1447000000000L;
+    public static final double START_LATITUDE=45.5048;
+    public static final double START_LONGITUDE=-73.5877;
+    public static final double START_ALTITUDE=150;
+
+    /**
+     * Average pace, in metres per second
+     */
+    public static final double WALKING_SPEED=1.3;
+
+    /**
+     * Time between two fixes or readings, in Milliseconds
+     */
+    public static final long INTERVAL=1000;
+
+    /**
+     * Length of a step, in metres
+     */
+    public static final double STRIDE=0.75;
+
+    /**
+     * Chance, at every fix, of stopping for a rest
+     */
+    public static final double REST_CHANCE=1.0/1800;
+
+    /**
+     * Standard deviation of the error on the altitude of a fix, in metres
+     */
+    public static final double ALTITUDE_NOISE=0.5;
+
+    public static final double BASE_TEMPERATURE=20;
+    public static final double BASE_HUMIDITY=60;
+
+    /**
+     * Drop of the temperature with altitude, in degrees per metre
+     */
+    public static final double LAPSE_RATE=0.0065;
+
+    /**
+     * Pressure at sea level in the standard atmosphere, in hPa
+     */
+    public static final double SEA_LEVEL_PRESSURE=1013.25;
+
+    private final Random mRandom;
+    private final long mStartTime;
+    private final SessionEnvData mStatistics = new SessionEnvData();
+
+    private double mLatitude = START_LATITUDE;
+    private double mLongitude = START_LONGITUDE;
+    private double mAltitude = START_ALTITUDE;
+    private double mHeading;
+    private double mClimb;
+    private int mRestLeft;
+
+    private double mWeather;
+    private double mTemperature;
+    private double mHumidity;
+    private double mPressure;
+    private double mSteps;
+
+    private int mPointCount;
+
+    /**
+     * Default constructor, the hike starting at {@link #START_TIME}
+     * @param seed Seed of the hike
+     */
+    public SyntheticHike(long seed){
+        this(seed, START_TIME);
+    }
+
+    /**
+     * @param seed Seed of the hike
+     * @param startTime Time of the first fix, in Milliseconds since EPOCH
+     */
+    public SyntheticHike(long seed, long startTime){
+        mRandom = new Random(seed);
+        mStartTime = startTime;
+        mHeading = mRandom.nextDouble()*2*Math.PI;
+    }
+
+    /**
+     * Walk to the next fix, taking a reading of every sensor there
+     * @return The new point
+     */
+    public Coordinates nextPoint(){
+        long time = mStartTime + mPointCount*INTERVAL;
+        if(mPointCount>0){
+            walk();
+        }
+        Coordinates point = new Coordinates(mLongitude, mLatitude,
+                mAltitude + mRandom.nextGaussian()*ALTITUDE_NOISE, time);
+        readSensors(time);
+        mPointCount++;
+        return point;
+    }
+
+    /**
+     * Walk several fixes at once
+     * @param count Number of points to add
+     * @param into List receiving the points
+     */
+    public void nextPoints(int count, List<Coordinates> into){
+        for (int i = 0; i < count; i++) {
+            into.add(nextPoint());
+        }
+    }
+
+    private void walk(){
+        if(mRestLeft>0){
+            mRestLeft--;
+        }
+        else if(mRandom.nextDouble()<REST_CHANCE){
+            //Between 1 and 5 minutes
+            mRestLeft = 60 + mRandom.nextInt(240);
+        }
+        else{
+            mHeading += mRandom.nextGaussian()*0.2;
+            double distance = WALKING_SPEED*Math.max(0, 1 + mRandom.nextGaussian()*0.2)*INTERVAL/1000;
+            mLatitude += distance*Math.cos(mHeading)/HikeCellIndex.METRES_PER_DEGREE;
+            mLongitude += distance*Math.sin(mHeading)
+                    /(HikeCellIndex.METRES_PER_DEGREE*Math.cos(Math.toRadians(mLatitude)));
+            mSteps += distance/STRIDE;
+            //Slopes change slowly
+            mClimb = 0.99*mClimb + mRandom.nextGaussian()*0.02;
+            mAltitude += mClimb;
+        }
+    }
+
+    private void readSensors(long time){
+        //GPS noise is only on the fixes, the sensors feel the real altitude
+        double altitude = mAltitude;
+        mWeather = Math.max(-5, Math.min(5, mWeather + mRandom.nextGaussian()*0.05));
+
+        mTemperature = BASE_TEMPERATURE + mWeather - LAPSE_RATE*(altitude - START_ALTITUDE)
+                + mRandom.nextGaussian()*0.1;
+        mHumidity = Math.max(0, Math.min(100, BASE_HUMIDITY - 2*(mTemperature - BASE_TEMPERATURE)
+                + mRandom.nextGaussian()*0.5));
+        mPressure = SEA_LEVEL_PRESSURE*Math.pow(1 - 2.25577e-5*altitude, 5.25588) - mWeather
+                + mRandom.nextGaussian()*0.05;
+
+        mStatistics.updateTemp(time, mTemperature);
+        mStatistics.updateHumidity(time, mHumidity);
+        mStatistics.updatePressure(time, mPressure);
+    }
+
+    /**
+     * Obtain the reading of a sensor at the last fix
+     * @param sensor One of {@link EnvSeries#TEMPERATURE}, {@link EnvSeries#HUMIDITY} or {@link EnvSeries#PRESSURE}
+     */
+    public double getReading(int sensor){
+        switch (sensor){
+            case EnvSeries.TEMPERATURE:
+                return mTemperature;
+            case EnvSeries.HUMIDITY:
+                return mHumidity;
+            case EnvSeries.PRESSURE:
+                return mPressure;
+            default:
+                throw new IllegalArgumentException("Unknown sensor " + sensor);
+        }
+    }
+
+    /**
+     * Obtain the statistics of the readings so far, along with the samples not taken yet
+     */
+    public SessionEnvData getStatistics() {
+        return mStatistics;
+    }
+
+    public StepCount getStepCount(){
+        return new StepCount(mSteps);
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * @return Time of the last fix, or the start time if there is none
+     */
+    public long getLastTime() {
+        return mStartTime + Math.max(0, mPointCount - 1)*INTERVAL;
+    }
+
+    /**
+     * Obtain the hike of the points so far, ending at the last fix
+     * @return A complete Hike, without uniqueID
+     */
+    public Hike toHike(){
+        return new Hike(-1, mStartTime, getLastTime());
+    }
+
+    /**
+     * Generate a track
+     * @param pointCount Number of points
+     * @param seed Seed of the hike
+     * @return The points, in recorded order
+     */
+    public static List<Coordinates> track(int pointCount, long seed){
+        List<Coordinates> points = new ArrayList<>(pointCount);
+        new SyntheticHike(seed).nextPoints(pointCount, points);
+        return points;
+    }
+
+    /**
+     * Generate the readings of a sensor along a hike
+     * @param sensor One of {@link EnvSeries#TEMPERATURE}, {@link EnvSeries#HUMIDITY} or {@link EnvSeries#PRESSURE}
+     * @param count Number of readings, one per {@link #INTERVAL}
+     * @param seed Seed of the hike
+     * @return The readings, in time order
+     */
+    public static double[] readings(int sensor, int count, long seed){
+        SyntheticHike hike = new SyntheticHike(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            hike.nextPoint();
+            values[i] = hike.getReading(sensor);
+        }
+        return values;
+    }
+
+    /**
+     * Generate a whole session, held in memory
+     * @param pointCount Number of points
+     * @param seed Seed of the hike
+     * @return A complete session, not stored yet
+     */
+    public static SessionData session(int pointCount, long seed){
+        SyntheticHike hike = new SyntheticHike(seed);
+        List<Coordinates> points = new ArrayList<>(pointCount);
+        hike.nextPoints(pointCount, points);
+        return new SessionData(hike.toHike(), hike.getStepCount(), hike.getStatistics(), new LocationPoints(points));
+    }
+}
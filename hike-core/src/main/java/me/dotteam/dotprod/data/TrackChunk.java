@@ -0,0 +1,177 @@
+package me.dotteam.dotprod.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data structure to represent a contiguous segment of a hike's track as it is stored.
+ * Instead of one database row per point, up to {@link #MAX_POINTS} points are packed into a single BLOB.
+ */
+public class TrackChunk {
+
+    /**
+     * Maximum number of points packed in a single chunk
+     */
+    public static final int MAX_POINTS=1024;
+
+    /**
+     * Points stored as longitude, latitude, altitude (doubles) and time (long), back to back
+     */
+    public static final int ENCODING_RAW=1;
+
+    /**
+     * Size in bytes of a single point using {@link #ENCODING_RAW}
+     */
+    public static final int RAW_POINT_SIZE=32;
+
+    /**
+     * Points stored as fixed point deltas by {@link TrackCodec}. Used for all new chunks
+     */
+    public static final int ENCODING_DELTA=2;
+
+    /**
+     * Position of this chunk within its hike's track, starting at 0
+     */
+    protected int sequence;
+
+    /**
+     * Format of the packed data
+     */
+    protected int encoding;
+
+    /**
+     * Number of points packed in the data
+     */
+    protected int pointCount;
+
+    /**
+     * Packed points
+     */
+    protected byte[] data;
+
+    /**
+     * Constructor when building from Database
+     * @param sequence Position of the chunk within the track
+     * @param encoding Format of the packed data
+     * @param pointCount Number of points packed
+     * @param data The packed points
+     */
+    public TrackChunk(int sequence, int encoding, int pointCount, byte[] data) {
+        this.sequence=sequence;
+        this.encoding=encoding;
+        this.pointCount=pointCount;
+        this.data=data;
+    }
+
+    /**
+     * Pack a range of points into a single chunk using {@link #ENCODING_DELTA}
+     * @param sequence Position of the chunk within the track
+     * @param points The track the points are taken from
+     * @param from Index of the first point to pack, inclusive
+     * @param to Index of the last point to pack, exclusive
+     * @return The packed chunk
+     */
+    public static TrackChunk pack(int sequence, List<Coordinates> points, int from, int to){
+        return pack(sequence, points, from, to, ENCODING_DELTA);
+    }
+
+    /**
+     * Pack a range of points into a single chunk
+     * @param sequence Position of the chunk within the track
+     * @param points The track the points are taken from
+     * @param from Index of the first point to pack, inclusive
+     * @param to Index of the last point to pack, exclusive
+     * @param encoding Format used to pack the points
+     * @return The packed chunk
+     */
+    public static TrackChunk pack(int sequence, List<Coordinates> points, int from, int to, int encoding){
+        switch (encoding){
+            case ENCODING_RAW:{
+                ByteBuffer buffer = ByteBuffer.allocate((to-from)*RAW_POINT_SIZE);
+                for (int i = from; i < to; i++) {
+                    Coordinates point = points.get(i);
+                    buffer.putDouble(point.getLongitude());
+                    buffer.putDouble(point.getLatitude());
+                    buffer.putDouble(point.getAltitude());
+                    buffer.putLong(point.getTime());
+                }
+                return new TrackChunk(sequence,ENCODING_RAW,to-from,buffer.array());
+            }
+            case ENCODING_DELTA:
+                return new TrackChunk(sequence,ENCODING_DELTA,to-from,TrackCodec.encode(points,from,to));
+            default:
+                throw new IllegalArgumentException("Unknown track encoding "+encoding);
+        }
+    }
+
+    /**
+     * Split a whole track in as many chunks as needed
+     * @param points The track to split
+     * @param firstSequence Sequence number assigned to the first chunk
+     * @return The packed chunks in order
+     */
+    public static List<TrackChunk> split(List<Coordinates> points, int firstSequence){
+        List<TrackChunk> chunks = new ArrayList<>(points.size()/MAX_POINTS+1);
+        int sequence = firstSequence;
+        for (int from = 0; from < points.size(); from+=MAX_POINTS) {
+            chunks.add(pack(sequence++, points, from, Math.min(from+MAX_POINTS, points.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Decode the points in this chunk, appending them to a list
+     * @param into List that will receive the points in order
+     */
+    public void unpack(List<Coordinates> into){
+        switch (encoding){
+            case ENCODING_RAW:{
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                for (int i = 0; i < pointCount; i++) {
+                    into.add(new Coordinates(
+                            buffer.getDouble(),
+                            buffer.getDouble(),
+                            buffer.getDouble(),
+                            buffer.getLong()));
+                }
+                break;
+            }
+            case ENCODING_DELTA:
+                TrackCodec.decode(data,pointCount,into);
+                break;
+            default:
+                throw new IllegalStateException("Unknown track encoding "+encoding);
+        }
+    }
+
+    /**
+     * Decode the points in this chunk
+     * @return A new list with the points in order
+     */
+    public List<Coordinates> unpack(){
+        List<Coordinates> retVal = new ArrayList<>(pointCount);
+        unpack(retVal);
+        return retVal;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getEncoding() {
+        return encoding;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public String toString(){
+        return String.format("Track Chunk %s: %s points in %s bytes",sequence,pointCount,data.length);
+    }
+}
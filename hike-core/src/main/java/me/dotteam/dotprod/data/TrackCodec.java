@@ -0,0 +1,193 @@
+package me.dotteam.dotprod.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary representation of a track.
+ * Each point is converted to fixed point (1e-7 degrees for longitude and latitude, centimetres for
+ * altitude, milliseconds for time) and stored as the zig-zag varint encoded difference with the
+ * previous point. Time stores the change of that difference instead, since fixes arrive at a regular
+ * interval. Consecutive GPS fixes are close to each other, so most fields take 1 or 2 bytes
+ * instead of 8. Decoding is lossless at that resolution.
+ */
+public class TrackCodec {
+
+    /**
+     * Fixed point units per degree of longitude or latitude
+     */
+    public static final double DEGREE_SCALE=1e7;
+
+    /**
+     * Fixed point units per metre of altitude
+     */
+    public static final double ALTITUDE_SCALE=100;
+
+    /**
+     * Encode a whole track, including its number of points
+     * @param track The track to encode
+     * @return The encoded bytes, to be read back with {@link #decode(byte[])}
+     */
+    public static byte[] encode(LocationPoints track){
+        List<Coordinates> points = track.getCoordinateList();
+        VarIntWriter output = new VarIntWriter(points.size()*8+5);
+        output.writeUnsigned(points.size());
+        encode(output, points, 0, points.size());
+        return output.toByteArray();
+    }
+
+    /**
+     * Decode a whole track encoded with {@link #encode(LocationPoints)}
+     * @param data The encoded bytes
+     * @return The decoded track
+     */
+    public static LocationPoints decode(byte[] data){
+        VarIntReader input = new VarIntReader(data);
+        int pointCount = (int) input.readUnsigned();
+        List<Coordinates> points = new ArrayList<>(pointCount);
+        decode(input, pointCount, points);
+        return new LocationPoints(points);
+    }
+
+    /**
+     * Encode a range of points. The number of points is not stored
+     * @param points The track the points are taken from
+     * @param from Index of the first point to encode, inclusive
+     * @param to Index of the last point to encode, exclusive
+     * @return The encoded bytes
+     */
+    public static byte[] encode(List<Coordinates> points, int from, int to){
+        VarIntWriter output = new VarIntWriter((to-from)*8);
+        encode(output, points, from, to);
+        return output.toByteArray();
+    }
+
+    /**
+     * Decode points encoded with {@link #encode(List, int, int)}, appending them to a list
+     * @param data The encoded bytes
+     * @param pointCount Number of points that were encoded
+     * @param into List that will receive the points in order
+     */
+    public static void decode(byte[] data, int pointCount, List<Coordinates> into){
+        decode(new VarIntReader(data), pointCount, into);
+    }
+
+    private static void encode(VarIntWriter output, List<Coordinates> points, int from, int to){
+        long prevLongitude=0;
+        long prevLatitude=0;
+        long prevAltitude=0;
+        long prevTime=0;
+        long prevInterval=0;
+        for (int i = from; i < to; i++) {
+            Coordinates point = points.get(i);
+            long longitude = Math.round(point.getLongitude()*DEGREE_SCALE);
+            long latitude = Math.round(point.getLatitude()*DEGREE_SCALE);
+            long altitude = Math.round(point.getAltitude()*ALTITUDE_SCALE);
+            long time = point.getTime();
+
+            output.writeSigned(longitude-prevLongitude);
+            output.writeSigned(latitude-prevLatitude);
+            output.writeSigned(altitude-prevAltitude);
+            output.writeSigned(time-prevTime-prevInterval);
+
+            prevLongitude=longitude;
+            prevLatitude=latitude;
+            prevAltitude=altitude;
+            prevInterval=time-prevTime;
+            prevTime=time;
+        }
+    }
+
+    private static void decode(VarIntReader input, int pointCount, List<Coordinates> into){
+        long longitude=0;
+        long latitude=0;
+        long altitude=0;
+        long time=0;
+        long interval=0;
+        for (int i = 0; i < pointCount; i++) {
+            longitude += input.readSigned();
+            latitude += input.readSigned();
+            altitude += input.readSigned();
+            interval += input.readSigned();
+            time += interval;
+            into.add(new Coordinates(
+                    longitude/DEGREE_SCALE,
+                    latitude/DEGREE_SCALE,
+                    altitude/ALTITUDE_SCALE,
+                    time));
+        }
+    }
+
+    /**
+     * Growable output of variable length integers
+     */
+    static class VarIntWriter {
+        private byte[] buffer;
+        private int position=0;
+
+        VarIntWriter(int expectedSize){
+            buffer = new byte[Math.max(expectedSize,16)];
+        }
+
+        void writeSigned(long value){
+            //Zig-zag: small negative numbers become small positive ones
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeUnsigned(long value){
+            if(position+10>buffer.length){
+                buffer = Arrays.copyOf(buffer, buffer.length*2);
+            }
+            while ((value & ~0x7FL) != 0){
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        int size(){
+            return position;
+        }
+
+        byte[] toByteArray(){
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * Sequential reader of variable length integers
+     */
+    static class VarIntReader {
+        private final byte[] buffer;
+        private int position=0;
+
+        VarIntReader(byte[] data){
+            buffer = data;
+        }
+
+        long readSigned(){
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readUnsigned(){
+            long value=0;
+            int shift=0;
+            byte current;
+            do {
+                if(position>=buffer.length || shift>63){
+                    throw new IllegalArgumentException("Malformed varint at byte "+position);
+                }
+                current = buffer[position++];
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+
+        boolean hasRemaining(){
+            return position<buffer.length;
+        }
+    }
+}
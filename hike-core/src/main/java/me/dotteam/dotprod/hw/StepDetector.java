@@ -0,0 +1,154 @@
+package me.dotteam.dotprod.hw;
+
+/**
+ * Step detection from raw accelerometer readings, used when the device has no dedicated pedometer.
+ * A step is counted whenever the high-pass filtered acceleration exceeds a threshold, followed by a
+ * cooldown period during which no other step can be detected.
+ */
+public class StepDetector {
+
+    /**
+     * ELEC390 and COEN390: TI SensorTag Library for Android
+     * Author: Marc-Alexandre Chan marcalexc@arenthil.net
+     *     Modified by: Javier E. Fajardo foxtrotzulu94@gmail.com
+     * Institution: Concordia University
+     */
+
+    public final static int ACC_EVENT_COOLDOWN_MS = 500;
+
+    /** High pass filter time constant. */
+    public final static int ACC_FILTER_TAU_MS = 50;
+
+    /** Acceleration magnitude threshold. A "shake" is detected if the magnitude of the acceleration
+     * vector, after filtering, is above this value. */
+    public final static double ACC_THRESHOLD = 0.8;
+
+    /** Previous acceleration value. */
+    private float[] mLastAcc = null;
+
+    /** Previous acceleration output value of the high-pass filter. */
+    private float[] mLastFiltAcc = null;
+    /**
+     * When this value is less than ACC_EVENT_COOLDOWN_MS, we are in cooldown mode and do not detect
+     * acceleration shake events. This is set to 0 whenever an event is detected, and incremented by
+     * the sample period at every new sample received while in cooldown mode. When this value is
+     * equal to or greater than ACC_EVENT_COOLDOWN_MS, we are in normal detection mode.
+     */
+    private int mCooldownCounterMs = ACC_EVENT_COOLDOWN_MS;
+    private int mSamplePeriod;
+
+    private double stepsTaken=0;
+
+    /**
+     * Default constructor
+     * @param samplePeriodMs Time between two readings of the accelerometer, in milliseconds
+     */
+    public StepDetector(int samplePeriodMs){
+        mSamplePeriod = samplePeriodMs;
+    }
+
+    /**
+     * Method to feed a new accelerometer reading to the detector
+     * @param values Acceleration along the 3 axes
+     * @return True if the reading completed a step
+     */
+    public boolean onAcceleration(float[] values){
+        if (mLastAcc == null) {
+            mLastAcc = new float[3];
+            System.arraycopy(values, 0, mLastAcc, 0, values.length);
+            mLastFiltAcc = new float[]{0,0,0};
+        }
+
+        // Apply the high-pass filter.
+        mLastFiltAcc = applyFilter(mSamplePeriod, values, mLastAcc, mLastFiltAcc);
+        System.arraycopy(values, 0, mLastAcc, 0, values.length);
+
+        // If the cooldown timer is already expired, we can try and detect a shake
+        if (mCooldownCounterMs >= ACC_EVENT_COOLDOWN_MS) {
+
+            // if the magnitude of the acceleration exceeds the shake threshold
+            if (magnitude(mLastFiltAcc) > ACC_THRESHOLD) {
+                // reset/start the cooldown timer
+                mCooldownCounterMs=0;
+                stepsTaken+=1;
+                return true;
+            }
+        }
+        else{
+            mCooldownCounterMs += mSamplePeriod;
+        }
+        return false;
+    }
+
+    /**
+     * @return Steps detected since the detector was created
+     */
+    public double getStepsTaken() {
+        return stepsTaken;
+    }
+
+    private static float[] applyFilter(long samplePeriodMs, float[] newInput, float[] prevInput,
+                                       float[] prevOutput) {
+        /**
+         * The accelerometer always detects a 1.0g gravity component, but we don't know what the
+         * SensorTag's orientation is so we don't necessarily know which direction the gravity
+         * component is.
+         *
+         * We can assume that it is slow moving (the user won't be rotating the SensorTag very
+         * quickly ... or if they do we can detect that as a "shake" anyway!). A high-pass filter
+         * will therefore remove the acceleration element and allow us to only capture faster
+         * events.
+         *
+         * The implementation here is a simple first-order high-pass filter:
+         *
+         * H(s) = (s RC) / (1 + s RC)
+         *
+         * where RC is the time constant the cutoff frequency is f_c = 1/(2*pi*RC).
+         *
+         * By applying the bilinear transformation we can get a discrete time implementation of this
+         * filter, expressed here in the time domain:
+         *
+         * y[n] := k * (y[n-1] + x[n] - x[n-1])
+         *
+         * where x[n] is the filter input signal, y[n] is the output signal, n is the sample index,
+         * and k is an arbitrary real constant which is related to the time constant. The system
+         * time constant tau is equal to:
+         *
+         * tau = T k / (1 - k)
+         *
+         * where T is the sample period of the signal in seconds.
+         *
+         * We implement this filter below individually to each of the acceleration components, using
+         * a history of one sample point (since the filter never needs to go more than one sample
+         * point behind).
+         *
+         * More information:
+         * https://en.wikipedia.org/wiki/High-pass_filter#Discrete-time_realization
+         */
+
+        // Calculate the needed parameters
+        float k = (float) ACC_FILTER_TAU_MS / (ACC_FILTER_TAU_MS + samplePeriodMs);
+
+        // These variable names are used just to make the code closer to the description above
+        float[] yn, yn1, xn, xn1;
+        yn1 = prevOutput;
+        xn = newInput;
+        xn1 = prevInput;
+
+        // Apply the filter to each component of the 3D vector separately
+        yn = new float[]{
+                k * (yn1[0] + xn[0] - xn1[0]),
+                k * (yn1[1] + xn[1] - xn1[1]),
+                k * (yn1[2] + xn[2] - xn1[2])};
+
+        return yn;
+    }
+
+    private static float magnitude(float[] vector){
+        float retVal = 0;
+        for (int i = 0; i < vector.length; i++) {
+            retVal+= (vector[i]*vector[i]);
+        }
+        return (float) Math.sqrt(retVal);
+    }
+}
@@ -0,0 +1,51 @@
+package me.dotteam.dotprod.loc;
+
+/**
+ * Lowpass filter smoothing the altitude of consecutive location fixes
+ */
+public class AltitudeFilter {
+
+    /**
+     * Alpha parameter for lowpass filter on altitude
+     */
+    public static final float FILTER_ALPHA = 0.25f;
+
+    private AltitudeFilter(){}
+
+    /**
+     * Method to filter a whole sequence of altitudes
+     * @param input Altitudes in the order they were obtained
+     * @return The filtered altitudes. The first one is kept as is
+     */
+    public static double[] lowpassFilter(double[] input) {
+        double[] output = new double[input.length];
+
+        output[0] = input[0];
+
+        for (int i = 1; i < input.length; i++) {
+            output[i] = smooth(output[i - 1], input[i]);
+        }
+
+        return output;
+    }
+
+    /**
+     * Method to filter a single altitude, given the filtered one before it
+     * @param previous Last filtered altitude
+     * @param current Newly obtained altitude
+     * @return The filtered altitude
+     */
+    public static double smooth(double previous, double current){
+        return previous + FILTER_ALPHA * (current - previous);
+    }
+
+    /**
+     * Distance travelled between two fixes, taking the change in altitude into account
+     * @param horizontal Distance over the ground in metres
+     * @param deltaAltitude Change in altitude in metres
+     * @return The adjusted distance, d' = sqrt(d^2 + a^2)
+     */
+    public static double adjustedDistance(double horizontal, double deltaAltitude){
+        return Math.sqrt(horizontal*horizontal + deltaAltitude*deltaAltitude);
+    }
+}